@@ -68,12 +68,16 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The implementation of {@link AnalyticsDataService}.
@@ -116,7 +120,15 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
             
     private AnalyticsDataIndexer indexer;
     
-    private Map<String, AnalyticsTableInfo> tableInfoMap = new HashMap<String, AnalyticsTableInfo>();
+    private ConcurrentMap<String, AnalyticsTableInfoSnapshot> tableInfoMap = 
+            new ConcurrentHashMap<String, AnalyticsTableInfoSnapshot>();
+    
+    /* the version of a table is removed on each invalidation, and a new one is taken from the sequence on
+     * the next lookup, so a snapshot read before an invalidation can never match a later version, and
+     * the versions of deleted tables are not retained */
+    private ConcurrentMap<String, Long> tableInfoVersions = new ConcurrentHashMap<String, Long>();
+    
+    private AtomicLong tableInfoVersionSequence = new AtomicLong();
     
     private String primaryARSName;
         
@@ -154,6 +166,11 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
         indexerInfo.setIndexWorkerCount(this.extractIndexWorkerCount(config));
         indexerInfo.setIndexCommunicatorBufferSize(config.getMaxIndexerCommunicatorBufferSize());
         indexerInfo.setIndexQueueCleanupThreshold(config.getQueueCleanupThreshold());
+        indexerInfo.setIndexSearcherMaxStaleness(this.extractIndexSearcherMaxStaleness(config));
+        indexerInfo.setShardIndexCommitInterval(this.extractShardIndexCommitInterval(config));
+        indexerInfo.setShardIndexCommitBatchSize(this.extractShardIndexCommitBatchSize(config));
+        indexerInfo.setAggregateRequestMemoryBudget(this.extractAggregateRequestMemoryBudget(config));
+        indexerInfo.setIndexDocumentWorkerCount(this.extractIndexDocumentWorkerCount(config));
         if (config.getTaxonomyWriterCacheConfiguration() != null) {
             indexerInfo.setTaxonomyWriterCacheType(config.getTaxonomyWriterCacheConfiguration().getCacheType());
             indexerInfo.setTaxonomyWriterLRUCacheType(config.getTaxonomyWriterCacheConfiguration().getLRUType());
@@ -195,6 +212,50 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
         return value;
     }
     
+    private int extractIndexSearcherMaxStaleness(AnalyticsDataServiceConfiguration config) throws AnalyticsException {
+        int value = config.getIndexSearcherMaxStaleness();
+        if (value < Constants.INDEX_SEARCHER_MAX_STALENESS_MIN) {
+            throw new AnalyticsException("The index searcher max staleness must be greater than " + 
+                    Constants.INDEX_SEARCHER_MAX_STALENESS_MIN + ": " + value);
+        }
+        return value;
+    }
+    
+    private int extractShardIndexCommitInterval(AnalyticsDataServiceConfiguration config) throws AnalyticsException {
+        int value = config.getShardIndexCommitInterval();
+        if (value < 0) {
+            throw new AnalyticsException("The shard index commit interval cannot be negative: " + value);
+        }
+        return value;
+    }
+    
+    private long extractShardIndexCommitBatchSize(AnalyticsDataServiceConfiguration config) throws AnalyticsException {
+        long value = config.getShardIndexCommitBatchSize();
+        if (value < 0) {
+            throw new AnalyticsException("The shard index commit batch size cannot be negative: " + value);
+        }
+        return value;
+    }
+    
+    private int extractAggregateRequestMemoryBudget(AnalyticsDataServiceConfiguration config) throws AnalyticsException {
+        int value = config.getAggregateRequestMemoryBudget();
+        if (value <= 0) {
+            throw new AnalyticsException("The aggregate request memory budget must be positive: " + value);
+        }
+        return value;
+    }
+    
+    private int extractIndexDocumentWorkerCount(AnalyticsDataServiceConfiguration config) throws AnalyticsException {
+        int value = config.getIndexDocumentWorkerCount();
+        if (value < 0) {
+            throw new AnalyticsException("The index document worker count cannot be negative: " + value);
+        }
+        if (value == 0) {
+            value = Runtime.getRuntime().availableProcessors();
+        }
+        return value;
+    }
+    
     public static void setInitIndexedTableStore(boolean init) {
         initIndexedTableStore.set(init);
     }
@@ -401,7 +462,7 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
         this.getAnalyticsRecordStore(recordStoreName).createTable(tenantId, tableName);
         AnalyticsTableInfo tableInfo = null;
         try {
-            tableInfo = this.lookupTableInfo(tenantId, tableName);
+            tableInfo = this.lookupTableInfo(tenantId, tableName).getTableInfo();
         } catch (AnalyticsTableNotAvailableException ignore) {
             /* ignore */
         }
@@ -594,7 +655,8 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
         tableName = GenericUtils.normalizeTableName(tableName);
         this.checkInvalidIndexNames(schema.getColumns());
         this.checkInvalidScoreParams(schema.getColumns());
-        AnalyticsTableInfo tableInfo = this.lookupTableInfo(tenantId, tableName);
+        /* the cached table information is shared by the readers, so a fresh copy is updated */
+        AnalyticsTableInfo tableInfo = this.readTableInfo(tenantId, tableName);
         tableInfo.setSchema(schema);
         this.writeTableInfo(tenantId, tableName, tableInfo);
         this.checkAndInvalidateTableInfo(tenantId, tableName);
@@ -643,7 +705,10 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
     
     public void invalidateAnalyticsTableInfoFinal(int tenantId, String tableName) {
         tableName = GenericUtils.normalizeTableName(tableName);
-        this.tableInfoMap.remove(GenericUtils.calculateTableIdentity(tenantId, tableName));
+        String tableIdentity = GenericUtils.calculateTableIdentity(tenantId, tableName);
+        this.tableInfoVersions.remove(tableIdentity);
+        this.tableInfoMap.remove(tableIdentity);
+        this.getIndexer().invalidateIndexPlan(tenantId, tableName);
         this.refreshIndexedTableStoreEntry(tenantId, tableName);
     }
 
@@ -801,15 +866,38 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
         }
     }
     
-    private AnalyticsTableInfo lookupTableInfo(int tenantId, 
+    private long lookupTableInfoVersion(String tableIdentity) {
+        Long version = this.tableInfoVersions.get(tableIdentity);
+        if (version == null) {
+            version = this.tableInfoVersionSequence.incrementAndGet();
+            Long existingVersion = this.tableInfoVersions.putIfAbsent(tableIdentity, version);
+            if (existingVersion != null) {
+                version = existingVersion;
+            }
+        }
+        return version;
+    }
+    
+    private AnalyticsTableInfoSnapshot lookupTableInfo(int tenantId, 
             String tableName) throws AnalyticsException, AnalyticsTableNotAvailableException {
         String tableIdentity = GenericUtils.calculateTableIdentity(tenantId, tableName);
-        AnalyticsTableInfo tableInfo = this.tableInfoMap.get(tableIdentity);
-        if (tableInfo == null) {
-            tableInfo = this.readTableInfo(tenantId, tableName);
-            this.tableInfoMap.put(tableIdentity, tableInfo);
+        AnalyticsTableInfoSnapshot snapshot = this.tableInfoMap.get(tableIdentity);
+        long version = this.lookupTableInfoVersion(tableIdentity);
+        if (snapshot == null || snapshot.getVersion() != version) {
+            /* the version is taken before reading, so if an invalidation happens in the middle, 
+             * this snapshot will be stale and will be reloaded by the next lookup */
+            AnalyticsTableInfo tableInfo;
+            try {
+                tableInfo = this.readTableInfo(tenantId, tableName);
+            } catch (AnalyticsTableNotAvailableException e) {
+                /* no version is retained for a table which does not exist */
+                this.tableInfoVersions.remove(tableIdentity, version);
+                throw e;
+            }
+            snapshot = new AnalyticsTableInfoSnapshot(tableInfo, this.isTableIndexed(tableInfo.getSchema()), version);
+            this.tableInfoMap.put(tableIdentity, snapshot);
         }
-        return tableInfo;
+        return snapshot;
     }
     
     private void populateWithGenerateIds(List<Record> records) {
@@ -860,10 +948,9 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
     
     private void preprocessRecordBatch(List<Record> recordBatch) throws AnalyticsException {
         Record firstRecord = recordBatch.get(0);
-        AnalyticsSchema schema = this.lookupTableInfo(firstRecord.getTenantId(), 
-                firstRecord.getTableName()).getSchema();
-        List<String> primaryKeys = schema.getPrimaryKeys();
-        if (primaryKeys != null && primaryKeys.size() > 0) {
+        List<String> primaryKeys = this.lookupTableInfo(firstRecord.getTenantId(), 
+                firstRecord.getTableName()).getPrimaryKeys();
+        if (primaryKeys.size() > 0) {
             this.populateRecordsWithPrimaryKeyAwareIds(recordBatch, primaryKeys);
         } else {
             this.populateWithGenerateIds(recordBatch);
@@ -884,9 +971,9 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
         Record firstRecord = recordsBatch.get(0);
         int tenantId = firstRecord.getTenantId();
         String tableName = firstRecord.getTableName();
-        String arsName = this.getRecordStoreNameByTable(tenantId, tableName);
-        this.getAnalyticsRecordStore(arsName).put(recordsBatch);
-        if (this.isTableIndexed(this.lookupTableInfo(tenantId, tableName).getSchema())) {
+        AnalyticsTableInfoSnapshot tableInfo = this.lookupTableInfo(tenantId, GenericUtils.normalizeTableName(tableName));
+        this.getAnalyticsRecordStore(tableInfo.getRecordStoreName()).put(recordsBatch);
+        if (tableInfo.isIndexed()) {
             this.getIndexer().put(recordsBatch);
         }
     }
@@ -998,9 +1085,8 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
             List<Map<String, Object>> valuesBatch) throws AnalyticsException, AnalyticsTableNotAvailableException {
         tableName = GenericUtils.normalizeTableName(tableName);
         List<String> ids = new ArrayList<String>();
-        AnalyticsSchema schema = this.lookupTableInfo(tenantId, tableName).getSchema();
-        List<String> primaryKeys = schema.getPrimaryKeys();
-        if (primaryKeys != null && primaryKeys.size() > 0) {
+        List<String> primaryKeys = this.lookupTableInfo(tenantId, tableName).getPrimaryKeys();
+        if (primaryKeys.size() > 0) {
             for (Map<String, Object> values : valuesBatch) {
                 ids.add(this.generateRecordIdFromPrimaryKeyValues(values, primaryKeys));
             }
@@ -1050,6 +1136,25 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
     public void delete(int tenantId, String tableName, long timeFrom, long timeTo) throws AnalyticsException,
             AnalyticsTableNotAvailableException {
         tableName = GenericUtils.normalizeTableName(tableName);
+        String arsName = this.getRecordStoreNameByTable(tenantId, tableName);
+        if (arsName == null) {
+            throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+        }
+        AnalyticsRecordStore ars = this.getAnalyticsRecordStore(arsName);
+        /* the index data is deleted first with a timestamp range delete in all the shards, and if some shard owners 
+         * were not reachable, the records are still there to be deleted by their ids below, which stages the index 
+         * data deletes for those owners */
+        if (ars.isRangeDeleteSupported() && this.getIndexer().delete(tenantId, tableName, timeFrom, timeTo)) {
+            ars.delete(tenantId, tableName, timeFrom, timeTo);
+            /* the index operations of the range applied after the first index delete, e.g. puts done meanwhile,
+             * may have indexed records which are now deleted, so the index data of the range is deleted again, 
+             * and from here on, the staged operations do not find the deleted records */
+            if (!this.getIndexer().delete(tenantId, tableName, timeFrom, timeTo)) {
+                logger.warn("Some index shard owners were not reachable when completing the range delete of [" + 
+                        tenantId + ":" + tableName + "] in range [" + timeFrom + ", " + timeTo + ")");
+            }
+            return;
+        }
         /* this is done to make sure, raw record data as well as the index data are also deleted,
          * even if the table is not indexed now, it could have been indexed earlier, so delete operation
          * must be done in the indexer as well */
@@ -1272,6 +1377,90 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
         
     }
 
+    /**
+     * This class represents an immutable view of an analytics table's meta information, with the values
+     * needed in the record write path precomputed. A snapshot is valid as long as its version matches the
+     * current version of the table, which is renewed on each invalidation. The snapshot keeps its own copy
+     * of the table information, and only hands out copies of it.
+     */
+    public static class AnalyticsTableInfoSnapshot {
+        
+        private AnalyticsTableInfo tableInfo;
+        
+        private List<String> primaryKeys;
+        
+        private boolean indexed;
+        
+        private long version;
+        
+        public AnalyticsTableInfoSnapshot(AnalyticsTableInfo tableInfo, boolean indexed, long version) {
+            this.tableInfo = copyTableInfo(tableInfo);
+            List<String> primaryKeys = this.tableInfo.getSchema().getPrimaryKeys();
+            if (primaryKeys == null) {
+                this.primaryKeys = Collections.emptyList();
+            } else {
+                this.primaryKeys = Collections.unmodifiableList(new ArrayList<String>(primaryKeys));
+            }
+            this.indexed = indexed;
+            this.version = version;
+        }
+        
+        private static AnalyticsTableInfo copyTableInfo(AnalyticsTableInfo tableInfo) {
+            return new AnalyticsTableInfo(tableInfo.getTenantId(), tableInfo.getTableName(), 
+                    tableInfo.getRecordStoreName(), copySchema(tableInfo.getSchema()));
+        }
+        
+        private static AnalyticsSchema copySchema(AnalyticsSchema schema) {
+            if (schema == null) {
+                return new AnalyticsSchema();
+            }
+            List<ColumnDefinition> columns = null;
+            if (schema.getColumns() != null) {
+                columns = new ArrayList<ColumnDefinition>(schema.getColumns().size());
+                for (ColumnDefinition column : schema.getColumns().values()) {
+                    columns.add(new ColumnDefinition(column.getName(), column.getType(), column.isIndexed(), 
+                            column.isScoreParam()));
+                }
+            }
+            List<String> primaryKeys = null;
+            if (schema.getPrimaryKeys() != null) {
+                primaryKeys = new ArrayList<String>(schema.getPrimaryKeys());
+            }
+            return new AnalyticsSchema(columns, primaryKeys);
+        }
+        
+        /**
+         * Returns a copy of the table information, which can be changed by the caller.
+         */
+        public AnalyticsTableInfo getTableInfo() {
+            return copyTableInfo(tableInfo);
+        }
+        
+        public String getRecordStoreName() {
+            return tableInfo.getRecordStoreName();
+        }
+        
+        /**
+         * Returns a copy of the table schema, which can be changed by the caller.
+         */
+        public AnalyticsSchema getSchema() {
+            return copySchema(tableInfo.getSchema());
+        }
+        
+        public List<String> getPrimaryKeys() {
+            return primaryKeys;
+        }
+        
+        public boolean isIndexed() {
+            return indexed;
+        }
+        
+        public long getVersion() {
+            return version;
+        }
+        
+    }
+
     public static class MultiTableAggregateIterator implements AnalyticsIterator<Record> {
 
         private AnalyticsIterator<Record> currentItr;
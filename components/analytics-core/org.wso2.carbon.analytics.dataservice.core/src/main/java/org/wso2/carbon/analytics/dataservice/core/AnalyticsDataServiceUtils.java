@@ -21,11 +21,13 @@ package org.wso2.carbon.analytics.dataservice.core;
 import org.apache.commons.collections.IteratorUtils;
 import org.wso2.carbon.analytics.dataservice.commons.AnalyticsDataResponse;
 import org.wso2.carbon.analytics.dataservice.commons.AnalyticsDataResponse.Entry;
+import org.wso2.carbon.analytics.datasource.commons.AnalyticsIterator;
 import org.wso2.carbon.analytics.datasource.commons.AnalyticsSchema;
 import org.wso2.carbon.analytics.datasource.commons.ColumnDefinition;
 import org.wso2.carbon.analytics.datasource.commons.ColumnDefinitionExt;
 import org.wso2.carbon.analytics.datasource.commons.Record;
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
 import org.wso2.carbon.ndatasource.core.DataSourceService;
 
 import java.util.ArrayList;
@@ -35,6 +37,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Analytics data service utilities.
@@ -45,15 +51,40 @@ public class AnalyticsDataServiceUtils {
     public static final String OPTION_IS_FACET = "-f";
     public static final String OPTION_IS_INDEXED = "-i";
 
+    private static ExecutorService parallelReadExecutor;
+
     @SuppressWarnings("unchecked")
     public static List<Record> listRecords(AnalyticsDataService ads,
                                            AnalyticsDataResponse response) throws AnalyticsException {
+        if (response.getEntries().size() > 1) {
+            return listRecords(ads, response, Constants.DEFAULT_PARALLEL_READ_CONCURRENCY);
+        }
         List<Record> result = new ArrayList<Record>();
         for (Entry entry : response.getEntries()) {
             result.addAll(IteratorUtils.toList(ads.readRecords(entry.getRecordStoreName(), entry.getRecordGroup())));
         }
         return result;
     }
+
+    /**
+     * Reads all the records of the given response, reading up to the given number of record groups concurrently.
+     * The records are returned in the same order as a sequential read.
+     */
+    public static List<Record> listRecords(AnalyticsDataService ads, AnalyticsDataResponse response,
+                                           int concurrency) throws AnalyticsException {
+        List<Record> result = new ArrayList<Record>();
+        AnalyticsIterator<Record> itr = responseToIterator(ads, response, concurrency, true);
+        try {
+            while (itr.hasNext()) {
+                result.add(itr.next());
+            }
+        } catch (IllegalStateException e) {
+            throw new AnalyticsException("Error in reading records: " + e.getMessage(), e);
+        } finally {
+            GenericUtils.closeQuietly(itr);
+        }
+        return result;
+    }
     
     private static Map<String, ColumnDefinitionExt> translate(Map<String, ColumnDefinition> colDefs) {
         Map<String, ColumnDefinitionExt> result = new LinkedHashMap<>(colDefs.size());
@@ -143,6 +174,32 @@ public class AnalyticsDataServiceUtils {
 			throws AnalyticsException {
 		return new ResponseIterator(service, response);
 	}
+
+    /**
+     * Exposes the given response as a record iterator, which reads up to the given number of record groups
+     * concurrently on a shared pool. The returned iterator must be closed if it is not fully consumed.
+     */
+    public static AnalyticsIterator<Record> responseToIterator(AnalyticsDataService service,
+            AnalyticsDataResponse response, int concurrency, boolean ordered) {
+        return new ParallelResponseIterator(service, response, getParallelReadExecutor(), concurrency,
+                Constants.DEFAULT_PARALLEL_READ_BUFFER_SIZE, ordered);
+    }
+
+    private static synchronized ExecutorService getParallelReadExecutor() {
+        if (parallelReadExecutor == null) {
+            /* the pool is shared by all the requests, each request bounds its own concurrency */
+            parallelReadExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "analytics-parallel-read-" + this.count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return parallelReadExecutor;
+    }
     
     /**
      * This class exposes an {@link AnalyticsDataResponse} as a record iterator.
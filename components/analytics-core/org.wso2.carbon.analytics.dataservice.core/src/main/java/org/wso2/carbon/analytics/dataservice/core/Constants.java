@@ -69,6 +69,14 @@ public class Constants {
     public static final String DEFAULT_LRU_CACHE_TYPE = "STRING";
     public static final String HASHED_LRU_CACHE_TYPE = "HASHED";
     public static final int DEFAULT_LRU_CACHE_SIZE = 4096;
+    public static final int DEFAULT_INDEX_SEARCHER_MAX_STALENESS = 1000;
+    public static final int INDEX_SEARCHER_MAX_STALENESS_MIN = 10;
+    public static final int DEFAULT_SHARD_INDEX_COMMIT_INTERVAL = 5000;
+    public static final long DEFAULT_SHARD_INDEX_COMMIT_BATCH_SIZE = 104857600;
+    public static final int DEFAULT_AGGREGATE_REQUEST_MEMORY_BUDGET = 67108864;
+    public static final int DEFAULT_INDEX_DOCUMENT_WORKER_COUNT = 0;
+    public static final int DEFAULT_PARALLEL_READ_CONCURRENCY = 4;
+    public static final int DEFAULT_PARALLEL_READ_BUFFER_SIZE = 1000;
     public static final String DISABLE_INDEXING_ENV_PROP = "disableIndexing";
     public static final String ANALYTICS_INDEXING_GROUP = "__ANALYTICS_INDEXING_GROUP__";
 
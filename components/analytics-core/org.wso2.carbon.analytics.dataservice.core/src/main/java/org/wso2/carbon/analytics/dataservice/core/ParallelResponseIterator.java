@@ -0,0 +1,248 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.dataservice.commons.AnalyticsDataResponse;
+import org.wso2.carbon.analytics.dataservice.commons.AnalyticsDataResponse.Entry;
+import org.wso2.carbon.analytics.datasource.commons.AnalyticsIterator;
+import org.wso2.carbon.analytics.datasource.commons.Record;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class exposes an {@link AnalyticsDataResponse} as a record iterator, where up to a given number of
+ * record groups are read concurrently and handed over through bounded buffers. In ordered mode, the records
+ * are returned in the same order as a sequential read of the response entries, and in unordered mode,
+ * they are returned as soon as any of the active readers produce them.
+ */
+public class ParallelResponseIterator implements AnalyticsIterator<Record> {
+
+    private static final Log log = LogFactory.getLog(ParallelResponseIterator.class);
+
+    private static final Object END_OF_GROUP = new Object();
+
+    private static final long BUFFER_OFFER_TIMEOUT = 100;
+
+    private AnalyticsDataService service;
+
+    private Entry[] entries;
+
+    private ExecutorService executor;
+
+    private int concurrency;
+
+    private int bufferSize;
+
+    private boolean ordered;
+
+    private int nextEntryIndex;
+
+    private Deque<GroupReader> activeReaders = new ArrayDeque<>();
+
+    private List<Future<?>> readerFutures = new ArrayList<>();
+
+    private BlockingQueue<Object> sharedBuffer;
+
+    private Record nextRecord;
+
+    private volatile boolean closed;
+
+    public ParallelResponseIterator(AnalyticsDataService service, AnalyticsDataResponse response,
+                                    ExecutorService executor, int concurrency, int bufferSize, boolean ordered) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The read concurrency must be a positive value: " + concurrency);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("The read buffer size must be a positive value: " + bufferSize);
+        }
+        this.service = service;
+        this.entries = response.getEntries().toArray(new Entry[0]);
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.bufferSize = bufferSize;
+        this.ordered = ordered;
+        if (!this.ordered) {
+            this.sharedBuffer = new ArrayBlockingQueue<Object>(this.bufferSize);
+        }
+    }
+
+    private void scheduleReaders() {
+        GroupReader reader;
+        while (this.activeReaders.size() < this.concurrency && this.nextEntryIndex < this.entries.length) {
+            if (this.ordered) {
+                reader = new GroupReader(this.entries[this.nextEntryIndex],
+                        new ArrayBlockingQueue<Object>(this.bufferSize));
+            } else {
+                reader = new GroupReader(this.entries[this.nextEntryIndex], this.sharedBuffer);
+            }
+            this.nextEntryIndex++;
+            this.activeReaders.add(reader);
+            this.readerFutures.add(this.executor.submit(reader));
+        }
+    }
+
+    private Object takeFromBuffer(BlockingQueue<Object> buffer) {
+        try {
+            return buffer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.close();
+            throw new IllegalStateException("Interrupted while waiting for records: " + e.getMessage(), e);
+        }
+    }
+
+    private Record fetchNextRecord() {
+        Object obj;
+        while (true) {
+            this.scheduleReaders();
+            if (this.activeReaders.isEmpty()) {
+                return null;
+            }
+            if (this.ordered) {
+                obj = this.takeFromBuffer(this.activeReaders.peek().getBuffer());
+            } else {
+                obj = this.takeFromBuffer(this.sharedBuffer);
+            }
+            if (obj == END_OF_GROUP) {
+                /* in unordered mode, the readers are interchangeable, we only keep track of the active count */
+                this.activeReaders.poll();
+                continue;
+            }
+            if (obj instanceof Throwable) {
+                this.close();
+                Throwable e = (Throwable) obj;
+                throw new IllegalStateException("Error in traversing record group: " + e.getMessage(), e);
+            }
+            return (Record) obj;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.nextRecord != null) {
+            return true;
+        }
+        if (this.closed) {
+            return false;
+        }
+        this.nextRecord = this.fetchNextRecord();
+        return this.nextRecord != null;
+    }
+
+    @Override
+    public Record next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Record result = this.nextRecord;
+        this.nextRecord = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        /* ignored */
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        for (Future<?> future : this.readerFutures) {
+            future.cancel(false);
+        }
+        /* release the readers which may be blocked on full buffers */
+        for (GroupReader reader : this.activeReaders) {
+            reader.getBuffer().clear();
+        }
+        this.activeReaders.clear();
+        this.readerFutures.clear();
+    }
+
+    /**
+     * This class reads a single record group into a buffer, and marks its end with {@link #END_OF_GROUP}.
+     */
+    private class GroupReader implements Runnable {
+
+        private Entry entry;
+
+        private BlockingQueue<Object> buffer;
+
+        public GroupReader(Entry entry, BlockingQueue<Object> buffer) {
+            this.entry = entry;
+            this.buffer = buffer;
+        }
+
+        public BlockingQueue<Object> getBuffer() {
+            return buffer;
+        }
+
+        private boolean offer(Object obj) throws InterruptedException {
+            while (!closed) {
+                if (this.buffer.offer(obj, BUFFER_OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            AnalyticsIterator<Record> itr = null;
+            try {
+                itr = service.readRecords(this.entry.getRecordStoreName(), this.entry.getRecordGroup());
+                while (!closed && itr.hasNext()) {
+                    if (!this.offer(itr.next())) {
+                        return;
+                    }
+                }
+                this.offer(END_OF_GROUP);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Error in reading record group: " + e.getMessage(), e);
+                }
+                try {
+                    this.offer(e);
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                }
+            } finally {
+                GenericUtils.closeQuietly(itr);
+            }
+        }
+
+    }
+
+}
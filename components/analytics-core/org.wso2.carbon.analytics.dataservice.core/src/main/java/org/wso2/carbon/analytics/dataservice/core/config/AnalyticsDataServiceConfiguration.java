@@ -55,6 +55,16 @@ public class AnalyticsDataServiceConfiguration {
 
     private int queueCleanupThreshold = Constants.DEFAULT_INDEXING_QUEUE_CLEANUP_THRESHOLD;
 
+    private int indexSearcherMaxStaleness = Constants.DEFAULT_INDEX_SEARCHER_MAX_STALENESS;
+
+    private int shardIndexCommitInterval = Constants.DEFAULT_SHARD_INDEX_COMMIT_INTERVAL;
+
+    private long shardIndexCommitBatchSize = Constants.DEFAULT_SHARD_INDEX_COMMIT_BATCH_SIZE;
+
+    private int aggregateRequestMemoryBudget = Constants.DEFAULT_AGGREGATE_REQUEST_MEMORY_BUDGET;
+
+    private int indexDocumentWorkerCount = Constants.DEFAULT_INDEX_DOCUMENT_WORKER_COUNT;
+
     @XmlElement (name = "analytics-record-store", nillable = false)
     public AnalyticsRecordStoreConfiguration[] getAnalyticsRecordStoreConfigurations() {
         return analyticsRecordStoreConfigurations;
@@ -164,6 +174,51 @@ public class AnalyticsDataServiceConfiguration {
         this.queueCleanupThreshold = queueCleanupThreshold;
     }
 
+    @XmlElement(name = "indexSearcherMaxStaleness", defaultValue = "" + Constants.DEFAULT_INDEX_SEARCHER_MAX_STALENESS)
+    public int getIndexSearcherMaxStaleness() {
+        return indexSearcherMaxStaleness;
+    }
+
+    public void setIndexSearcherMaxStaleness(int indexSearcherMaxStaleness) {
+        this.indexSearcherMaxStaleness = indexSearcherMaxStaleness;
+    }
+
+    @XmlElement(name = "shardIndexCommitInterval", defaultValue = "" + Constants.DEFAULT_SHARD_INDEX_COMMIT_INTERVAL)
+    public int getShardIndexCommitInterval() {
+        return shardIndexCommitInterval;
+    }
+
+    public void setShardIndexCommitInterval(int shardIndexCommitInterval) {
+        this.shardIndexCommitInterval = shardIndexCommitInterval;
+    }
+
+    @XmlElement(name = "shardIndexCommitBatchSize", defaultValue = "" + Constants.DEFAULT_SHARD_INDEX_COMMIT_BATCH_SIZE)
+    public long getShardIndexCommitBatchSize() {
+        return shardIndexCommitBatchSize;
+    }
+
+    public void setShardIndexCommitBatchSize(long shardIndexCommitBatchSize) {
+        this.shardIndexCommitBatchSize = shardIndexCommitBatchSize;
+    }
+
+    @XmlElement(name = "aggregateRequestMemoryBudget", defaultValue = "" + Constants.DEFAULT_AGGREGATE_REQUEST_MEMORY_BUDGET)
+    public int getAggregateRequestMemoryBudget() {
+        return aggregateRequestMemoryBudget;
+    }
+
+    public void setAggregateRequestMemoryBudget(int aggregateRequestMemoryBudget) {
+        this.aggregateRequestMemoryBudget = aggregateRequestMemoryBudget;
+    }
+
+    @XmlElement(name = "indexDocumentWorkerCount", defaultValue = "" + Constants.DEFAULT_INDEX_DOCUMENT_WORKER_COUNT)
+    public int getIndexDocumentWorkerCount() {
+        return indexDocumentWorkerCount;
+    }
+
+    public void setIndexDocumentWorkerCount(int indexDocumentWorkerCount) {
+        this.indexDocumentWorkerCount = indexDocumentWorkerCount;
+    }
+
     @XmlElement(name = "analytics-data-purging")
     public AnalyticsDataPurgingConfiguration getAnalyticsDataPurgingConfiguration() {
         return analyticsDataPurgingConfiguration;
@@ -23,8 +23,6 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.core.KeywordAnalyzer;
-import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.document.*;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.expressions.Expression;
@@ -34,7 +32,6 @@ import org.apache.lucene.facet.*;
 import org.apache.lucene.facet.taxonomy.TaxonomyFacetSumValueSource;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
-import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
 import org.apache.lucene.facet.taxonomy.writercache.LruTaxonomyWriterCache;
 import org.apache.lucene.facet.taxonomy.writercache.TaxonomyWriterCache;
@@ -51,10 +48,18 @@ import org.wso2.carbon.analytics.dataservice.commons.exception.AnalyticsIndexExc
 import org.wso2.carbon.analytics.dataservice.core.*;
 import org.wso2.carbon.analytics.dataservice.core.clustering.AnalyticsClusterException;
 import org.wso2.carbon.analytics.dataservice.core.clustering.AnalyticsClusterManager;
+import org.wso2.carbon.analytics.dataservice.core.indexing.IndexSearcherPool.SearcherReference;
 import org.wso2.carbon.analytics.dataservice.core.indexing.LocalIndexDataStore.IndexOperation;
 import org.wso2.carbon.analytics.dataservice.core.indexing.LocalIndexDataStore.LocalIndexDataQueue;
 import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.AggregateFunction;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.AVGAggregateFunction;
 import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.AggregateFunctionFactory;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.AggregateGroupState;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.COUNTAggregateFunction;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.DocValuesAggregateResult;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.MAXAggregateFunction;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.MINAggregateFunction;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.SUMAggregateFunction;
 import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.RecordContext;
 import org.wso2.carbon.analytics.dataservice.core.indexing.sort.RecordSortUtils;
 import org.wso2.carbon.analytics.datasource.commons.AnalyticsIterator;
@@ -66,9 +71,13 @@ import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsTimeoutEx
 import org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.text.DateFormat;
@@ -77,6 +86,7 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -90,6 +100,8 @@ public class AnalyticsDataIndexer {
     
     private static final String ENABLE_INDEXING_STATS_SYS_PROP = "profileIndexing";
     
+    private static final String INDEX_SEARCHER_STATS_MBEAN_NAME = "org.wso2.carbon:00=analytics,01=INDEX_SEARCHER_STATS";
+    
     private static final String INDEX_DATA_FS_BASE_PATH = File.separator + "_data" + 
             File.separator + "index" + File.separator;
 
@@ -118,13 +130,41 @@ public class AnalyticsDataIndexer {
 
     private static final String NO_OF_RECORDS = "noOfRecords";
 
+    private static final int AGGREGATE_WORKER_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static final int AGGREGATE_RECORD_FETCH_BATCH_SIZE = 1000;
+
+    private static final int AGGREGATE_RECORD_ID_SIZE_ESTIMATE = 128;
+
+    private static final int AGGREGATE_RECORD_SIZE_ESTIMATE = 1024;
+
+    /* the time an aggregate worker waits for the consumer to take a record, before the iterator is abandoned */
+    private static final long AGGREGATE_CONSUMER_TIMEOUT = 5 * 60 * 1000;
+
+    private static final FieldType INT_FIELD_TYPE = createLuceneNumericFieldType(FieldType.NumericType.INT);
+
+    private static final FieldType LONG_FIELD_TYPE = createLuceneNumericFieldType(FieldType.NumericType.LONG);
+
+    private static final FieldType FLOAT_FIELD_TYPE = createLuceneNumericFieldType(FieldType.NumericType.FLOAT);
+
+    private static final FieldType DOUBLE_FIELD_TYPE = createLuceneNumericFieldType(FieldType.NumericType.DOUBLE);
+
+    /* the minimum number of records, which are worth indexing in a separate document worker */
+    private static final int MIN_INDEX_DOCUMENT_PARTITION_SIZE = 50;
+
+    /* the numeric doc values of the double/float fields contain the truncated long values,
+     * so the raw double bits are kept in a separate doc values field for aggregations */
+    private static final String RAW_DOUBLE_DOC_VALUES_FIELD_PREFIX = "$dv_";
+
     private final Map<String, IndexWriter> indexWriters = new HashMap<>();
 
     private final Map<String, DirectoryTaxonomyWriter> indexTaxonomyWriters = new HashMap<>();
 
+    private final Map<String, IndexPlan> indexPlans = new ConcurrentHashMap<>();
+
     private AggregateFunctionFactory aggregateFunctionFactory;
     
-    private ExecutorService shardWorkerExecutor, reIndexWorkerExecutor, genericIndexExecutor;
+    private ExecutorService shardWorkerExecutor, reIndexWorkerExecutor, genericIndexExecutor, indexDocumentExecutor;
     
     private List<IndexWorker> workers;
 
@@ -140,6 +180,10 @@ public class AnalyticsDataIndexer {
     
     private AnalyticsDataIndexingStatsCollector statsCollector;
     
+    private IndexSearcherPool searcherPool;
+    
+    private IndexCommitPolicy commitPolicy;
+    
     private Map<Integer, ReentrantLock> indexerLocks = new HashMap<>();
         
     public AnalyticsDataIndexer(AnalyticsIndexerInfo indexerInfo) throws AnalyticsException {
@@ -152,11 +196,18 @@ public class AnalyticsDataIndexer {
      */
     public void init() throws AnalyticsException {
         this.genericIndexExecutor = Executors.newCachedThreadPool();
+        this.indexDocumentExecutor = Executors.newFixedThreadPool(
+                Math.max(1, this.indexerInfo.getIndexDocumentWorkerCount()));
         if (System.getProperty(ENABLE_INDEXING_STATS_SYS_PROP) != null) {
             this.indexingStatsEnabled = true;
         }
+        this.searcherPool = new IndexSearcherPool(this, this.indexerInfo.getIndexSearcherMaxStaleness());
+        this.searcherPool.init();
+        this.registerSearcherStatsMBean();
+        this.commitPolicy = new IndexCommitPolicy(this.indexerInfo.getShardIndexCommitInterval(), 
+                this.indexerInfo.getShardIndexCommitBatchSize());
         if (this.indexingStatsEnabled) {
-            this.statsCollector = new AnalyticsDataIndexingStatsCollector();
+            this.statsCollector = new AnalyticsDataIndexingStatsCollector(this.searcherPool);
         }
         this.getAnalyticsRecordStore().createTable(org.wso2.carbon.analytics.dataservice.core.Constants.META_INFO_TENANT_ID, 
                 org.wso2.carbon.analytics.dataservice.core.Constants.GLOBAL_SHARD_ALLOCATION_CONFIG_TABLE);
@@ -165,6 +216,30 @@ public class AnalyticsDataIndexer {
         this.indexNodeCoordinator.init();
     }
     
+    private void registerSearcherStatsMBean() {
+        try {
+            MBeanServer platformMBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(INDEX_SEARCHER_STATS_MBEAN_NAME);
+            if (!platformMBeanServer.isRegistered(objectName)) {
+                platformMBeanServer.registerMBean(new IndexSearcherStats(this.searcherPool), objectName);
+            }
+        } catch (JMException e) {
+            log.error("Unable to create index searcher stats MBean: " + e.getMessage(), e);
+        }
+    }
+    
+    private void unregisterSearcherStatsMBean() {
+        try {
+            MBeanServer platformMBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(INDEX_SEARCHER_STATS_MBEAN_NAME);
+            if (platformMBeanServer.isRegistered(objectName)) {
+                platformMBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Unable to remove index searcher stats MBean: " + e.getMessage(), e);
+        }
+    }
+    
     private ReentrantLock getIndexingLock(int id) {
         ReentrantLock lock = this.indexerLocks.get(id);
         if (lock == null) {
@@ -232,8 +307,9 @@ public class AnalyticsDataIndexer {
         try {
             lock.lock();
             long maxBatchSize = this.getShardIndexRecordBatchSize();
-            long processedCount = this.processLocalShardDataQueue(shardIndex, 
-                    this.localIndexDataStore.getIndexDataQueue(shardIndex), maxBatchSize)[1];
+            LocalIndexDataQueue queue = this.localIndexDataStore.getIndexDataQueue(shardIndex);
+            long processedCount = this.processLocalShardDataQueue(shardIndex, queue, maxBatchSize)[1];
+            this.checkAndCommitShard(shardIndex, queue);
             return processedCount >= maxBatchSize;
         } finally {
             lock.unlock();
@@ -257,6 +333,9 @@ public class AnalyticsDataIndexer {
                 }
                 processedCount += tmpCount;
             } while (processedCount < queueSizeAtStart);
+            /* the processed changes are already visible through the refreshed searchers, 
+             * so a commit is only done here if the commit policy asks for it */
+            this.checkAndCommitShard(shardIndex, queue);
         } finally {
             lock.unlock();
         }
@@ -275,7 +354,6 @@ public class AnalyticsDataIndexer {
         IndexOperation indexOp;
         List<IndexOperation> indexOps = new ArrayList<>();
         try {
-            dataQueue.startDequeue();
             while (!dataQueue.isEmpty()) {
                 indexOp = dataQueue.peekNext();
                 if (log.isDebugEnabled()) {
@@ -309,12 +387,58 @@ public class AnalyticsDataIndexer {
             }
             return new long[] { entriesProcessed, bytesProcessed };
         } finally {
-            /* Even if there is an error, we should dequeue the peeked records, or else,
-             * for errors like a target table couldn't be found anymore, the same records
-             * in the queue will cycle forever. This setup is specifically done for server
-             * crashes, where in the middle of the earlier loop, if it exists, the peeked
-             * records will not be lost. */
-            dataQueue.endDequeue();
+            /* Even if there is an error, the peeked records are acknowledged with the next
+             * commit, or else, for errors like a target table couldn't be found anymore, 
+             * the same records in the queue will cycle forever. The peeked records stay in the
+             * queue till the commit, so they will not be lost with server crashes. */
+            this.commitPolicy.addUncommittedBytes(shardIndex, bytesProcessed);
+        }
+    }
+    
+    /* must be called while holding the indexing lock of the shard */
+    private void checkAndCommitShard(int shardIndex, LocalIndexDataQueue dataQueue) throws AnalyticsException {
+        if (this.commitPolicy.shouldCommit(shardIndex)) {
+            this.commitShard(shardIndex, dataQueue);
+        } else if (dataQueue != null && dataQueue.getUncommittedCount() > 0 && 
+                this.commitPolicy.getUncommittedTables(shardIndex).isEmpty()) {
+            /* the dequeued entries did not result in any index changes, e.g. the target table
+             * was not available, so they can be acknowledged right away */
+            dataQueue.markCommitted();
+        }
+    }
+    
+    /* must be called while holding the indexing lock of the shard */
+    private void commitShard(int shardIndex, LocalIndexDataQueue dataQueue) throws AnalyticsException {
+        for (String tableId : this.commitPolicy.getUncommittedTables(shardIndex)) {
+            try {
+                /* the taxonomy is committed first, so the committed index never refers to missing categories */
+                this.lookupTaxonomyIndexWriter(shardIndex, tableId).commit();
+                this.lookupIndexWriter(shardIndex, tableId).commit();
+            } catch (IOException e) {
+                throw new AnalyticsIndexException("Error in committing index: " + e.getMessage(), e);
+            }
+        }
+        this.commitPolicy.committed(shardIndex);
+        if (dataQueue != null) {
+            dataQueue.markCommitted();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Committed local index [" + shardIndex + "]");
+        }
+    }
+    
+    private void commitLocalShards() {
+        ReentrantLock lock;
+        for (int shardIndex : this.localShards) {
+            lock = this.getIndexingLock(shardIndex);
+            try {
+                lock.lock();
+                this.commitShard(shardIndex, this.localIndexDataStore.getIndexDataQueue(shardIndex));
+            } catch (AnalyticsException e) {
+                log.error("Error in committing local index [" + shardIndex + "]: " + e.getMessage(), e);
+            } finally {
+                lock.unlock();
+            }
         }
     }
     
@@ -346,7 +470,7 @@ public class AnalyticsDataIndexer {
                 for (List<Record> recordBatch : recordBatches) {
                     tenantId = recordBatch.get(0).getTenantId();
                     tableName = recordBatch.get(0).getTableName();
-                    this.updateIndex(shardIndex, recordBatch, this.lookupIndices(tenantId, tableName));
+                    this.updateIndex(shardIndex, recordBatch, this.lookupIndexPlan(tenantId, tableName));
                 }
             }
         }
@@ -358,7 +482,17 @@ public class AnalyticsDataIndexer {
     }
     
     public void refreshLocalIndexShards(Set<Integer> localShards) throws AnalyticsException {
+        /* the local index queues are re-created, so the workers reading them are stopped, and the pending 
+         * changes are committed and acknowledged first */
+        this.stopAndCleanupIndexProcessing();
+        this.commitLocalShards();
+        Set<Integer> removedShards = new HashSet<>(this.localShards);
+        removedShards.removeAll(localShards);
         this.localShards = localShards;
+        /* the searchers of the shards, which are not local anymore, are not refreshed or used again */
+        for (int shardIndex : removedShards) {
+            this.searcherPool.invalidate(shardIndex);
+        }
         this.localIndexDataStore.refreshLocalIndexShards();
         if (IndexNodeCoordinator.checkIfIndexingNode()) {
             this.reschuduleWorkers();
@@ -444,15 +578,18 @@ public class AnalyticsDataIndexer {
                                              String query, int start, int count, List<SortByField> sortByFields)
             throws AnalyticsIndexException {
         List<SearchResultEntry> results = new ArrayList<>();
+        List<SearcherReference> searcherRefs = null;
         IndexReader reader = null;
         if (count <= 0) {
             log.error("Record Count/Page size is ZERO!. Please set Record count/Page size.");
         }
         try {
-            reader = this.getCombinedIndexReader(shardIndices, tenantId, tableName);
+            searcherRefs = this.acquireSearchers(shardIndices, tenantId, tableName);
+            reader = this.getCombinedIndexReader(searcherRefs);
             IndexSearcher searcher = new IndexSearcher(reader, this.genericIndexExecutor);
-            Map<String, ColumnDefinition> indices = this.lookupIndices(tenantId, tableName);
-            Query indexQuery = getSearchQueryFromString(query, indices);
+            IndexPlan indexPlan = this.lookupIndexPlan(tenantId, tableName);
+            Map<String, ColumnDefinition> indices = indexPlan.getIndices();
+            Query indexQuery = getSearchQueryFromString(query, indexPlan);
             TopDocsCollector collector = getTopDocsCollector(start, count, sortByFields, indices);
             searcher.search(indexQuery, collector);
             ScoreDoc[] hits = collector.topDocs(start).scoreDocs;
@@ -476,14 +613,14 @@ public class AnalyticsDataIndexer {
                     log.error("Error in closing the reader: " + e.getMessage(), e);
                 }
             }
+            this.releaseSearchers(searcherRefs);
         }
     }
 
-    private Query getSearchQueryFromString(String query, Map<String, ColumnDefinition> indices)
+    private Query getSearchQueryFromString(String query, IndexPlan indexPlan)
             throws org.apache.lucene.queryparser.classic.ParseException, AnalyticsIndexException {
-        Analyzer analyzer = getPerFieldAnalyzerWrapper(indices);
         String validatedQuery = getValidatedLuceneQuery(query);
-        return new AnalyticsQueryParser(analyzer, indices).parse(validatedQuery);
+        return new AnalyticsQueryParser(indexPlan.getAnalyzer(), indexPlan.getIndices()).parse(validatedQuery);
     }
 
     private String getValidatedLuceneQuery(String query) {
@@ -575,24 +712,6 @@ public class AnalyticsDataIndexer {
         return type;
     }
 
-    private Analyzer getPerFieldAnalyzerWrapper(Map<String, ColumnDefinition> indices)
-            throws AnalyticsIndexException {
-        Analyzer perFieldAnalyzerWrapper;
-        Map<String, Analyzer> analyzersPerField = new HashMap<>();
-        for (Map.Entry<String, ColumnDefinition> index : indices.entrySet()) {
-            if (index.getValue().getType() == AnalyticsSchema.ColumnType.STRING) {
-                analyzersPerField.put(Constants.NON_TOKENIZED_FIELD_PREFIX + index.getKey(), new KeywordAnalyzer());
-            }
-        }
-        if (analyzersPerField.isEmpty()) {
-            perFieldAnalyzerWrapper = new PerFieldAnalyzerWrapper(this.indexerInfo.getLuceneAnalyzer());
-        } else {
-            perFieldAnalyzerWrapper = new PerFieldAnalyzerWrapper(this.indexerInfo.getLuceneAnalyzer(), 
-                    analyzersPerField);
-        }
-        return perFieldAnalyzerWrapper;
-    }
-    
     private boolean isClusteringEnabled() {
         return AnalyticsServiceHolder.getAnalyticsClusterManager().isClusteringEnabled();
     }
@@ -657,12 +776,15 @@ public class AnalyticsDataIndexer {
     
     private int doSearchCount(Set<Integer> shardIds, int tenantId, String tableName,
             String query) throws AnalyticsIndexException {
+        List<SearcherReference> searcherRefs = null;
         IndexReader reader = null;
         try {
-            reader = this.getCombinedIndexReader(shardIds, tenantId, tableName);
+            searcherRefs = this.acquireSearchers(shardIds, tenantId, tableName);
+            reader = this.getCombinedIndexReader(searcherRefs);
             IndexSearcher searcher = new IndexSearcher(reader);
-            Map<String, ColumnDefinition> indices = this.lookupIndices(tenantId, tableName);
-            Analyzer analyzer = getPerFieldAnalyzerWrapper(indices);
+            IndexPlan indexPlan = this.lookupIndexPlan(tenantId, tableName);
+            Map<String, ColumnDefinition> indices = indexPlan.getIndices();
+            Analyzer analyzer = indexPlan.getAnalyzer();
             String validatedQuery;
             if (query == null || query.isEmpty()) {
                 log.warn("Lucene filter query is not given. So matching all values.");
@@ -689,6 +811,7 @@ public class AnalyticsDataIndexer {
                     log.error("Error in closing the reader: " + e.getMessage(), e);
                 }
             }
+            this.releaseSearchers(searcherRefs);
         }
     }
 
@@ -722,9 +845,7 @@ public class AnalyticsDataIndexer {
             }
             finalResult.addAll(entryMap.values());
         } else {
-            IndexReader indexReader = null;
             try {
-                indexReader = getCombinedIndexReader(this.localShards, tenantId, drillDownRequest.getTableName());
                 finalResult = getAnalyticsDrillDownRanges(tenantId, this.localShards, drillDownRequest);
             } catch (org.apache.lucene.queryparser.classic.ParseException e) {
                 throw new AnalyticsIndexException("Error while parsing the lucene query: " +
@@ -732,15 +853,6 @@ public class AnalyticsDataIndexer {
             } catch (IOException e) {
                 throw new AnalyticsIndexException("Error while reading sharded indices: " +
                                                   e.getMessage(), e);
-            } finally {
-                if (indexReader != null) {
-                    try {
-                        indexReader.close();
-                    } catch (IOException e) {
-                        log.error("Error in closing the index reader: " +
-                                  e.getMessage(), e);
-                    }
-                }
             }
         }
         return finalResult;
@@ -804,24 +916,37 @@ public class AnalyticsDataIndexer {
         return new ArrayList<>(drillDownRanges.values());
     }
 
-    private MultiReader getCombinedIndexReader(Set<Integer> shardIds, int tenantId, String tableName)
-            throws IOException, AnalyticsIndexException {
-        List<IndexReader> indexReaders = new ArrayList<>();
-        for (int shardId : shardIds) {
-            String tableId = this.generateTableId(tenantId, tableName);
-            try {
-                IndexReader reader = DirectoryReader.open(this.lookupIndexWriter(shardId, tableId), true);
-                indexReaders.add(reader);
-            } catch (IndexNotFoundException ignore) {
-                /* this can happen if a user just started to index records in a table,
-                 * but it didn't yet do the first commit, so it does not have segment* files.
-                 * The execution comes to this place, because the shards are identified, since
-                 * there is some other intermediate files written to the index directory. 
-                 * So in this situation, if we are in the middle of the initial commit, we ignore
-                 * this partially indexed data for now */
+    private List<SearcherReference> acquireSearchers(Set<Integer> shardIds, int tenantId, String tableName)
+            throws AnalyticsIndexException {
+        String tableId = this.generateTableId(tenantId, tableName);
+        List<SearcherReference> searcherRefs = new ArrayList<>(shardIds.size());
+        try {
+            for (int shardId : shardIds) {
+                searcherRefs.add(this.searcherPool.acquire(shardId, tableId));
             }
+        } catch (AnalyticsIndexException e) {
+            this.releaseSearchers(searcherRefs);
+            throw e;
         }
-        return new MultiReader(indexReaders.toArray(new IndexReader[indexReaders.size()]));
+        return searcherRefs;
+    }
+
+    private void releaseSearchers(List<SearcherReference> searcherRefs) {
+        if (searcherRefs == null) {
+            return;
+        }
+        for (SearcherReference searcherRef : searcherRefs) {
+            searcherRef.release();
+        }
+    }
+
+    private MultiReader getCombinedIndexReader(List<SearcherReference> searcherRefs) throws IOException {
+        IndexReader[] indexReaders = new IndexReader[searcherRefs.size()];
+        for (int i = 0; i < indexReaders.length; i++) {
+            indexReaders[i] = searcherRefs.get(i).getIndexReader();
+        }
+        /* the sub readers are owned by the searcher pool, so they must not be closed with the multi reader */
+        return new MultiReader(indexReaders, false);
     }
 
     public SubCategories drilldownCategories(int tenantId, CategoryDrillDownRequest drillDownRequest)
@@ -895,11 +1020,12 @@ public class AnalyticsDataIndexer {
         try {
             IndexSearcher indexSearcher = new IndexSearcher(indexReader);
             FacetsCollector facetsCollector = new FacetsCollector(true);
-            Map<String, ColumnDefinition> indices = this.lookupIndices(tenantId, drillDownRequest.getTableName());
-            FacetsConfig config = this.getFacetsConfigurations(indices);
+            IndexPlan indexPlan = this.lookupIndexPlan(tenantId, drillDownRequest.getTableName());
+            Map<String, ColumnDefinition> indices = indexPlan.getIndices();
+            FacetsConfig config = indexPlan.getFacetsConfig();
             DrillSideways drillSideways = new DrillSideways(indexSearcher, config, taxonomyReader);
             DrillDownQuery drillDownQuery = this.createDrillDownQuery(drillDownRequest,
-                    indices, config,rangeField, range);
+                    indexPlan, rangeField, range);
             drillSideways.search(drillDownQuery, facetsCollector);
             int topResultCount = drillDownRequest.getRecordStartIndex() + drillDownRequest.getRecordCount();
             TopDocs topDocs;
@@ -919,8 +1045,6 @@ public class AnalyticsDataIndexer {
             return new ArrayList<>();
         } catch (IOException e) {
             throw new AnalyticsIndexException("Error while performing drilldownRecords: " + e.getMessage(), e);
-        } finally {
-            this.closeTaxonomyIndexReaders(indexReader, taxonomyReader);
         }
     }
 
@@ -932,13 +1056,14 @@ public class AnalyticsDataIndexer {
         try {
             IndexSearcher indexSearcher = new IndexSearcher(indexReader);
             FacetsCollector facetsCollector = new FacetsCollector(true);
-            Map<String, ColumnDefinition> indices = this.lookupIndices(tenantId, drillDownRequest.getTableName());
-            FacetsConfig config = this.getFacetsConfigurations(indices);
+            IndexPlan indexPlan = this.lookupIndexPlan(tenantId, drillDownRequest.getTableName());
+            Map<String, ColumnDefinition> indices = indexPlan.getIndices();
+            FacetsConfig config = indexPlan.getFacetsConfig();
             DrillSideways drillSideways = new DrillSideways(indexSearcher, config, taxonomyReader);
             Query queryObj = new MatchAllDocsQuery();
             if (drillDownRequest.getQuery() != null && !drillDownRequest.getQuery().isEmpty()) {
-                Analyzer analyzer = getPerFieldAnalyzerWrapper(indices);
-                queryObj = (new AnalyticsQueryParser(analyzer, indices)).parse(drillDownRequest.getQuery());
+                queryObj = (new AnalyticsQueryParser(indexPlan.getAnalyzer(), indices)).parse(
+                        drillDownRequest.getQuery());
             }
             DrillDownQuery drillDownQuery = new DrillDownQuery(config, queryObj);
             String[] path = drillDownRequest.getPath();
@@ -958,8 +1083,6 @@ public class AnalyticsDataIndexer {
             throw new AnalyticsIndexException("Error while performing drilldownCategories: " + e.getMessage(), e);
         } catch (org.apache.lucene.queryparser.classic.ParseException e) {
             throw new AnalyticsIndexException("Error while parsing query " + e.getMessage(), e);
-        } finally {
-            this.closeTaxonomyIndexReaders(indexReader, taxonomyReader);
         }
     }
 
@@ -988,11 +1111,10 @@ public class AnalyticsDataIndexer {
             throws AnalyticsIndexException {
         try {
             IndexSearcher indexSearcher = new IndexSearcher(indexReader);
-            Map<String, ColumnDefinition> indices = this.lookupIndices(tenantId,
-                                                                drillDownRequest.getTableName());
-            FacetsConfig config = this.getFacetsConfigurations(indices);
+            IndexPlan indexPlan = this.lookupIndexPlan(tenantId, drillDownRequest.getTableName());
+            Map<String, ColumnDefinition> indices = indexPlan.getIndices();
             DrillDownQuery drillDownQuery = this.createDrillDownQuery(drillDownRequest,
-                                                                      indices, config,rangeField, range);
+                                                                      indexPlan, rangeField, range);
             ValueSource scoreFunction = this.getCompiledScoreFunction(drillDownRequest.getScoreFunction(), indices);
             FacetsCollector facetsCollector = new FacetsCollector(true);
             Map<String, List<String>> categoryPaths = drillDownRequest.getCategoryPaths();
@@ -1017,44 +1139,21 @@ public class AnalyticsDataIndexer {
             return 0;
         } catch (IOException e) {
             throw new AnalyticsIndexException("Error while getting drilldownCount: " + e.getMessage(), e);
-        } finally {
-            this.closeTaxonomyIndexReaders(indexReader, taxonomyReader);
-        }
-    }
-
-    private void closeTaxonomyIndexReaders(IndexReader indexReader, TaxonomyReader taxonomyReader)
-            throws AnalyticsIndexException {
-        if (indexReader != null) {
-            try {
-                indexReader.close();
-            } catch (IOException e) {
-                log.error("Error while closing index reader in drilldown: "+
-                                                  e.getMessage(), e);
-            }
-        }
-        if (taxonomyReader != null) {
-            try {
-                taxonomyReader.close();
-            } catch (IOException e) {
-                log.error("Error while closing taxonomy reader in drilldown: "+
-                                                  e.getMessage(), e);
-            }
         }
     }
 
     private DrillDownQuery createDrillDownQuery(AnalyticsDrillDownRequest drillDownRequest,
-                                                Map<String, ColumnDefinition> indices, FacetsConfig config,
-                                                String rangeField,
+                                                IndexPlan indexPlan, String rangeField,
                                                 AnalyticsDrillDownRange range)
             throws AnalyticsIndexException {
+        Map<String, ColumnDefinition> indices = indexPlan.getIndices();
         Query languageQuery = new MatchAllDocsQuery();
         try {
             if (drillDownRequest.getQuery() != null && !drillDownRequest.getQuery().isEmpty()) {
-                Analyzer analyzer = getPerFieldAnalyzerWrapper(indices);
-                languageQuery = new AnalyticsQueryParser(analyzer,
+                languageQuery = new AnalyticsQueryParser(indexPlan.getAnalyzer(),
                          indices).parse(drillDownRequest.getQuery());
             }
-            DrillDownQuery drillDownQuery = new DrillDownQuery(config, languageQuery);
+            DrillDownQuery drillDownQuery = new DrillDownQuery(indexPlan.getFacetsConfig(), languageQuery);
             if (range != null && rangeField != null) {
                 ColumnDefinition columnDefinition = indices.get(rangeField);
                 NumericRangeQuery<? extends Number> numericRangeQuery = getNumericRangeQuery(rangeField, range, columnDefinition);
@@ -1104,18 +1203,6 @@ public class AnalyticsDataIndexer {
         return numericRangeQuery;
     }
 
-    private FacetsConfig getFacetsConfigurations(Map<String, ColumnDefinition> indices) {
-        FacetsConfig config = new FacetsConfig();
-        for (Map.Entry<String, ColumnDefinition> entry : indices.entrySet()) {
-            if (entry.getValue().isFacet()) {
-                String indexField = entry.getKey();
-                config.setHierarchical(indexField, true);
-                config.setMultiValued(indexField, true);
-            }
-        }
-        return config;
-    }
-
     public AggregateFunctionFactory getAggregateFunctionFactory() {
         if (this.aggregateFunctionFactory == null) {
             this.aggregateFunctionFactory = new AggregateFunctionFactory();
@@ -1280,26 +1367,26 @@ public class AnalyticsDataIndexer {
             final String rangeField,
             final AnalyticsDrillDownRange range)
             throws AnalyticsIndexException {
+        String tableId = this.generateTableId(tenantId, drillDownRequest.getTableName());
+        SearcherReference searcherRef = this.searcherPool.acquire(shardId, tableId);
         try {
-            String tableId = this.generateTableId(tenantId, drillDownRequest.getTableName());
-            IndexReader indexReader = DirectoryReader.open(this.lookupIndexWriter(shardId, tableId), true);
-            TaxonomyReader taxonomyReader = new DirectoryTaxonomyReader(this.lookupTaxonomyIndexWriter(shardId, tableId));
-            return drillDownRecords(tenantId, drillDownRequest, indexReader, taxonomyReader, rangeField, range);
-        } catch (IOException e) {
-            throw new AnalyticsIndexException("Error in opening index readers: " + e.getMessage(), e);
+            return drillDownRecords(tenantId, drillDownRequest, searcherRef.getIndexReader(),
+                    searcherRef.getTaxonomyReader(), rangeField, range);
+        } finally {
+            searcherRef.release();
         }
     }
 
     private CategoryDrillDownResponse drillDownCategoriesPerShard(final int tenantId, final int shardId,
                                                              final CategoryDrillDownRequest drillDownRequest)
             throws AnalyticsIndexException {
+        String tableId = this.generateTableId(tenantId, drillDownRequest.getTableName());
+        SearcherReference searcherRef = this.searcherPool.acquire(shardId, tableId);
         try {
-            String tableId = this.generateTableId(tenantId, drillDownRequest.getTableName());
-            IndexReader indexReader = DirectoryReader.open(this.lookupIndexWriter(shardId, tableId), true);
-            TaxonomyReader taxonomyReader = new DirectoryTaxonomyReader(this.lookupTaxonomyIndexWriter(shardId, tableId));
-            return drilldowncategories(tenantId, indexReader, taxonomyReader, drillDownRequest);
-        } catch (IOException e) {
-            throw new AnalyticsIndexException("Error in opening index readers: " + e.getMessage(), e);
+            return drilldowncategories(tenantId, searcherRef.getIndexReader(), searcherRef.getTaxonomyReader(),
+                    drillDownRequest);
+        } finally {
+            searcherRef.release();
         }
     }
 
@@ -1309,13 +1396,13 @@ public class AnalyticsDataIndexer {
                                                    final String rangeField,
                                                    final AnalyticsDrillDownRange range)
             throws AnalyticsIndexException {
+        String tableId = this.generateTableId(tenantId, drillDownRequest.getTableName());
+        SearcherReference searcherRef = this.searcherPool.acquire(shardId, tableId);
         try {
-            String tableId = this.generateTableId(tenantId, drillDownRequest.getTableName());
-            IndexReader indexReader = DirectoryReader.open(this.lookupIndexWriter(shardId, tableId), true);
-            TaxonomyReader taxonomyReader = new DirectoryTaxonomyReader(this.lookupTaxonomyIndexWriter(shardId, tableId));
-            return getDrillDownRecordCount(tenantId, drillDownRequest, indexReader, taxonomyReader, rangeField, range);
-        } catch (IOException e) {
-            throw new AnalyticsIndexException("Error in opening index readers: " + e.getMessage(), e);
+            return getDrillDownRecordCount(tenantId, drillDownRequest, searcherRef.getIndexReader(),
+                    searcherRef.getTaxonomyReader(), rangeField, range);
+        } finally {
+            searcherRef.release();
         }
     }
 
@@ -1347,6 +1434,55 @@ public class AnalyticsDataIndexer {
         this.localIndexDataStore.delete(tenantId, tableName, ids);
     }
     
+    /**
+    * Deletes the records in the given time range in the index.
+    * @param tenantId The tenant id
+    * @param tableName The table name
+    * @param timeFrom The starting time, inclusive
+    * @param timeTo The ending time, non-inclusive
+    * @return True, if the index data was deleted in all the shards, false if some shard owners were not reachable
+    * @throws AnalyticsException
+    */
+    public boolean delete(int tenantId, String tableName, long timeFrom, long timeTo) throws AnalyticsException {
+        return this.indexNodeCoordinator.delete(tenantId, tableName, timeFrom, timeTo);
+    }
+    
+    public void deleteLocal(int tenantId, String tableName, long timeFrom, long timeTo) throws AnalyticsException {
+        String tableId = this.generateTableId(tenantId, tableName);
+        Query query = NumericRangeQuery.newLongRange(INDEX_INTERNAL_TIMESTAMP_FIELD, timeFrom, timeTo, true, false);
+        ReentrantLock lock;
+        IndexWriter indexWriter;
+        for (int shardIndex : this.localShards) {
+            lock = this.getIndexingLock(shardIndex);
+            try {
+                lock.lock();
+                /* the staged and queued operations are processed first, so the records added earlier are also 
+                 * deleted, and the staged operations are not applied after the delete */
+                this.indexNodeCoordinator.processStagingEntries(shardIndex);
+                this.processIndexOperationsFlushQueue(shardIndex);
+                if (!this.isIndexAvailable(shardIndex, tableId)) {
+                    /* the table does not have any index data in this shard */
+                    continue;
+                }
+                indexWriter = this.lookupIndexWriter(shardIndex, tableId);
+                this.searcherPool.markStale(shardIndex, tableId);
+                this.commitPolicy.addUncommittedTable(shardIndex, tableId);
+                indexWriter.deleteDocuments(query);
+                this.searcherPool.refresh(shardIndex, tableId);
+                /* range deletes are not in the local index queue to be replayed, so they are committed right away */
+                this.commitShard(shardIndex, this.localIndexDataStore.getIndexDataQueue(shardIndex));
+            } catch (IOException e) {
+                throw new AnalyticsIndexException("Error in deleting index data range: " + e.getMessage(), e);
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Deleted local index data of [" + tenantId + ":" + tableName + "] in range [" + timeFrom + 
+                    ", " + timeTo + ")");
+        }
+    }
+    
     private void deleteInIndex(int tenantId, String tableName, int shardIndex, List<String> ids) throws AnalyticsException {
         if (log.isDebugEnabled()) {
             log.debug("Deleting data in local index [" + shardIndex + "]: " + ids.size());
@@ -1358,8 +1494,10 @@ public class AnalyticsDataIndexer {
             terms.add(new Term(INDEX_ID_INTERNAL_FIELD, id));
         }
         try {
+            this.searcherPool.markStale(shardIndex, tableId);
+            this.commitPolicy.addUncommittedTable(shardIndex, tableId);
             indexWriter.deleteDocuments(terms.toArray(new Term[terms.size()]));
-            indexWriter.commit();
+            this.searcherPool.refresh(shardIndex, tableId);
             if (this.isIndexingStatsEnabled()) {
                 this.statsCollector.processedRecords(terms.size());
             }
@@ -1401,7 +1539,7 @@ public class AnalyticsDataIndexer {
     }
         
     private void updateIndex(int shardIndex, List<Record> recordBatch, 
-            Map<String, ColumnDefinition> columns) throws AnalyticsIndexException {
+            IndexPlan indexPlan) throws AnalyticsIndexException {
         if (log.isDebugEnabled()) {
             log.debug("Updating data in local index [" + shardIndex + "]: " + recordBatch.size());
         }
@@ -1412,12 +1550,15 @@ public class AnalyticsDataIndexer {
         IndexWriter indexWriter = this.lookupIndexWriter(shardIndex, tableId);
         TaxonomyWriter taxonomyWriter = this.lookupTaxonomyIndexWriter(shardIndex, tableId);
         try {
-            for (Record record : recordBatch) {
-                indexWriter.updateDocument(new Term(INDEX_ID_INTERNAL_FIELD, record.getId()),
-                                           this.generateIndexDoc(record, columns, taxonomyWriter).getFields());
+            this.searcherPool.markStale(shardIndex, tableId);
+            this.commitPolicy.addUncommittedTable(shardIndex, tableId);
+            List<List<Record>> partitions = this.partitionRecordsForIndexing(recordBatch);
+            if (partitions.size() == 1) {
+                this.updateIndexDocuments(indexWriter, taxonomyWriter, recordBatch, indexPlan);
+            } else {
+                this.updateIndexDocumentsInParallel(indexWriter, taxonomyWriter, partitions, indexPlan);
             }
-            indexWriter.commit();
-            taxonomyWriter.commit();
+            this.searcherPool.refresh(shardIndex, tableId);
             if (this.isIndexingStatsEnabled()) {
                 this.statsCollector.processedRecords(recordBatch.size());
             }
@@ -1426,6 +1567,78 @@ public class AnalyticsDataIndexer {
         }
     }
     
+    /**
+     * Splits the given records to partitions to be indexed in parallel, where all the records with the same id
+     * are in the same partition, in their original order, so the last update of a record is the one indexed.
+     */
+    private List<List<Record>> partitionRecordsForIndexing(List<Record> records) {
+        int count = Math.min(this.indexerInfo.getIndexDocumentWorkerCount(), 
+                records.size() / MIN_INDEX_DOCUMENT_PARTITION_SIZE);
+        List<List<Record>> result = new ArrayList<>();
+        if (count <= 1) {
+            result.add(records);
+            return result;
+        }
+        for (int i = 0; i < count; i++) {
+            result.add(new ArrayList<Record>(records.size() / count + 1));
+        }
+        for (Record record : records) {
+            result.get((record.getId().hashCode() & Integer.MAX_VALUE) % count).add(record);
+        }
+        return result;
+    }
+    
+    private void updateIndexDocuments(IndexWriter indexWriter, TaxonomyWriter taxonomyWriter, List<Record> records,
+            IndexPlan indexPlan) throws AnalyticsIndexException, IOException {
+        for (Record record : records) {
+            indexWriter.updateDocument(new Term(INDEX_ID_INTERNAL_FIELD, record.getId()),
+                                       this.generateIndexDoc(record, indexPlan, taxonomyWriter).getFields());
+        }
+    }
+    
+    /**
+     * Builds and writes the index documents of the given partitions concurrently, using the index document workers,
+     * where the index and the taxonomy writers are thread-safe. This returns only after all the partitions are done,
+     * so no changes are done to the index after the caller releases the shard's indexing lock.
+     */
+    private void updateIndexDocumentsInParallel(final IndexWriter indexWriter, final TaxonomyWriter taxonomyWriter,
+            List<List<Record>> partitions, final IndexPlan indexPlan) throws AnalyticsIndexException {
+        List<Future<Object>> futures = new ArrayList<>(partitions.size());
+        for (final List<Record> partition : partitions) {
+            futures.add(this.indexDocumentExecutor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    updateIndexDocuments(indexWriter, taxonomyWriter, partition, indexPlan);
+                    return null;
+                }
+            }));
+        }
+        Throwable error = null;
+        boolean interrupted = false;
+        for (Future<Object> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause();
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    /* the running workers must be waited for, before the indexing lock is released */
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw new AnalyticsIndexException("Error in updating index: " + error.getMessage(), error);
+        }
+    }
+    
     private String trimNonTokenizedIndexStringField(String value) {
         if (value.length() > MAX_NON_TOKENIZED_INDEX_STRING_SIZE) {
             return value.substring(0, MAX_NON_TOKENIZED_INDEX_STRING_SIZE);
@@ -1436,7 +1649,6 @@ public class AnalyticsDataIndexer {
     
     private void checkAndAddDocEntry(Document doc, AnalyticsSchema.ColumnType type, String name, Object obj)
             throws AnalyticsIndexException {
-        FieldType numericFieldType;
         if (obj == null) {
             doc.add(new StringField(name, NULL_INDEX_VALUE, Store.NO));
             return;
@@ -1450,33 +1662,33 @@ public class AnalyticsDataIndexer {
                                     this.trimNonTokenizedIndexStringField(obj.toString()), Store.NO));
             break;
         case INTEGER:
-            numericFieldType = getLuceneNumericFieldType(FieldType.NumericType.INT);
             if (obj instanceof Number) {
-                doc.add(new IntField(name, ((Number) obj).intValue(), numericFieldType));
+                doc.add(new IntField(name, ((Number) obj).intValue(), INT_FIELD_TYPE));
             } else {
                 doc.add(new StringField(name, obj.toString(), Store.NO));
             }
             break;
         case DOUBLE:
-            numericFieldType = getLuceneNumericFieldType(FieldType.NumericType.DOUBLE);
             if (obj instanceof Number) {
-                doc.add(new DoubleField(name, ((Number) obj).doubleValue(), numericFieldType));
+                doc.add(new DoubleField(name, ((Number) obj).doubleValue(), DOUBLE_FIELD_TYPE));
+                doc.add(new DoubleDocValuesField(RAW_DOUBLE_DOC_VALUES_FIELD_PREFIX + name,
+                        ((Number) obj).doubleValue()));
             } else {
                 doc.add(new StringField(name, obj.toString(), Store.NO));
             }
             break;
         case LONG:
-            numericFieldType = getLuceneNumericFieldType(FieldType.NumericType.LONG);
             if (obj instanceof Number) {
-                doc.add(new LongField(name, ((Number) obj).longValue(), numericFieldType));
+                doc.add(new LongField(name, ((Number) obj).longValue(), LONG_FIELD_TYPE));
             } else {
                 doc.add(new StringField(name, obj.toString(), Store.NO));
             }
             break;
         case FLOAT:
-            numericFieldType = getLuceneNumericFieldType(FieldType.NumericType.FLOAT);
             if (obj instanceof Number) {
-                doc.add(new FloatField(name, ((Number) obj).floatValue(), numericFieldType));
+                doc.add(new FloatField(name, ((Number) obj).floatValue(), FLOAT_FIELD_TYPE));
+                doc.add(new DoubleDocValuesField(RAW_DOUBLE_DOC_VALUES_FIELD_PREFIX + name,
+                        ((Number) obj).floatValue()));
             } else {
                 doc.add(new StringField(name, obj.toString(), Store.NO));
             }
@@ -1490,7 +1702,7 @@ public class AnalyticsDataIndexer {
         }
     }
 
-    private FieldType getLuceneNumericFieldType(FieldType.NumericType type) {
+    private static FieldType createLuceneNumericFieldType(FieldType.NumericType type) {
         FieldType fieldType = new FieldType();
         fieldType.setStored(false);
         fieldType.setDocValuesType(DocValuesType.NUMERIC);
@@ -1506,14 +1718,11 @@ public class AnalyticsDataIndexer {
     }
 
     private void checkAndAddTaxonomyDocEntries(Document doc,
-                                                   String name, Object obj,
-                                                   FacetsConfig facetsConfig)
+                                                   String name, Object obj)
             throws AnalyticsIndexException {
         if (obj == null) {
             doc.add(new StringField(name, NULL_INDEX_VALUE, Store.NO));
         } else {
-            facetsConfig.setMultiValued(name, true);
-            facetsConfig.setHierarchical(name, true);
             String values = obj.toString();
             if (values.isEmpty()) {
                 values = EMPTY_FACET_VALUE;
@@ -1522,24 +1731,24 @@ public class AnalyticsDataIndexer {
         }
     }
 
-    private Document generateIndexDoc(Record record, Map<String, ColumnDefinition> columns,
+    private Document generateIndexDoc(Record record, IndexPlan indexPlan,
                    TaxonomyWriter taxonomyWriter) throws AnalyticsIndexException, IOException {
         Document doc = new Document();
-        FacetsConfig config = new FacetsConfig();
-        FieldType numericFieldType = getLuceneNumericFieldType(FieldType.NumericType.LONG);
         doc.add(new StringField(INDEX_ID_INTERNAL_FIELD, record.getId(), Store.YES));
-        doc.add(new LongField(INDEX_INTERNAL_TIMESTAMP_FIELD, record.getTimestamp(), numericFieldType));
+        doc.add(new LongField(INDEX_INTERNAL_TIMESTAMP_FIELD, record.getTimestamp(), LONG_FIELD_TYPE));
         /* make the best effort to store in the given timestamp, or else, 
          * fall back to a compatible format, or else, lastly, string */
         String name;
-        for (Map.Entry<String, ColumnDefinition> entry : columns.entrySet()) {
+        Object value;
+        for (Map.Entry<String, ColumnDefinition> entry : indexPlan.getIndices().entrySet()) {
             name = entry.getKey();
-            this.checkAndAddDocEntry(doc, entry.getValue().getType(), name, record.getValue(name));
+            value = record.getValue(name);
+            this.checkAndAddDocEntry(doc, entry.getValue().getType(), name, value);
             if (entry.getValue().isFacet()) {
-                this.checkAndAddTaxonomyDocEntries(doc, name, record.getValue(name), config);
+                this.checkAndAddTaxonomyDocEntries(doc, name, value);
             }
         }
-        return config.build(taxonomyWriter, doc);
+        return indexPlan.getFacetsConfig().build(taxonomyWriter, doc);
     }
 
     public Map<String, ColumnDefinition> lookupIndices(int tenantId, String tableName) throws AnalyticsIndexException {
@@ -1554,6 +1763,30 @@ public class AnalyticsDataIndexer {
         return indices;
     }
 
+    /**
+     * Returns the index plan of the given table, which is created once per table schema.
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @return The index plan
+     * @throws AnalyticsIndexException
+     */
+    public IndexPlan lookupIndexPlan(int tenantId, String tableName) throws AnalyticsIndexException {
+        Map<String, ColumnDefinition> indices = this.lookupIndices(tenantId, tableName);
+        String tableId = this.generateTableId(tenantId, tableName);
+        IndexPlan indexPlan = this.indexPlans.get(tableId);
+        /* the indexed columns of a schema are created once per schema instance, so a changed
+         * schema is detected here, even if the invalidation of the table is not received */
+        if (indexPlan == null || indexPlan.getIndices() != indices) {
+            indexPlan = new IndexPlan(indices, this.indexerInfo.getLuceneAnalyzer());
+            this.indexPlans.put(tableId, indexPlan);
+        }
+        return indexPlan;
+    }
+    
+    public void invalidateIndexPlan(int tenantId, String tableName) {
+        this.indexPlans.remove(this.generateTableId(tenantId, tableName));
+    }
+
     private String generateDirPath(int shardId, String basePath, String tableId) {
         String indexStoreLoc = this.indexerInfo.getIndexStoreLocation();
         if (!indexStoreLoc.endsWith(File.separator)) {
@@ -1579,7 +1812,16 @@ public class AnalyticsDataIndexer {
         return shardId + "_" + tableId;
     }
 
-    private IndexWriter lookupIndexWriter(int shardId, String tableId) throws AnalyticsIndexException {
+    private boolean isIndexAvailable(int shardId, String tableId) {
+        synchronized (this.indexWriters) {
+            if (this.indexWriters.containsKey(this.generateShardedTableId(shardId, tableId))) {
+                return true;
+            }
+        }
+        return new File(this.generateDirPath(shardId, INDEX_DATA_FS_BASE_PATH, tableId)).exists();
+    }
+
+    IndexWriter lookupIndexWriter(int shardId, String tableId) throws AnalyticsIndexException {
         String shardedTableId = this.generateShardedTableId(shardId, tableId);
         IndexWriter indexWriter = this.indexWriters.get(shardedTableId);
         if (indexWriter == null) {
@@ -1599,7 +1841,7 @@ public class AnalyticsDataIndexer {
         return indexWriter;
     }
 
-    private DirectoryTaxonomyWriter lookupTaxonomyIndexWriter(int shardId, String tableId) throws AnalyticsIndexException {
+    DirectoryTaxonomyWriter lookupTaxonomyIndexWriter(int shardId, String tableId) throws AnalyticsIndexException {
         String shardedTableId = this.generateShardedTableId(shardId, tableId);
         DirectoryTaxonomyWriter taxonomyWriter = this.indexTaxonomyWriters.get(shardedTableId);
         if (taxonomyWriter == null) {
@@ -1672,6 +1914,8 @@ public class AnalyticsDataIndexer {
                 indexWriter.deleteAll();
                 indexWriter.commit();
                 synchronized (this.indexTaxonomyWriters) {
+                    /* the pooled searchers are bound to the current taxonomy writer, which is re-created here */
+                    this.searcherPool.invalidate(shardIndex, tableId);
                     taxonomyWriter = this.lookupTaxonomyIndexWriter(shardIndex, tableId);
                     taxonomyWriter.commit();
                     taxonomyWriter.close();
@@ -1739,10 +1983,14 @@ public class AnalyticsDataIndexer {
 
     public void close() throws AnalyticsIndexException {
         this.stopAndCleanupIndexProcessing();
+        this.commitLocalShards();
         this.localIndexDataStore.close();
         this.indexNodeCoordinator.close();
+        this.unregisterSearcherStatsMBean();
+        this.searcherPool.close();
         this.closeAndRemoveIndexWriters();
         this.genericIndexExecutor.shutdown();
+        this.indexDocumentExecutor.shutdown();
     }
         
     public void waitForIndexing(long maxWait) throws AnalyticsException, AnalyticsTimeoutException {
@@ -1800,6 +2048,17 @@ public class AnalyticsDataIndexer {
         AnalyticsIterator<Record> iterator;
         List<String[]> subCategories;
         Set<List<String>> finalUniqueCategories;
+        if (this.isDocValuesAggregationApplicable(tenantId, aggregateRequest)) {
+            DocValuesAggregateResult result = this.getDocValuesAggregates(tenantId, aggregateRequest);
+            if (result.isComplete()) {
+                return new NonStreamingAggregateRecordIterator(this.generateDocValuesAggregateRecords(tenantId,
+                        aggregateRequest, result));
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Doc values aggregation is not possible for table '" + aggregateRequest.getTableName() +
+                        "' with legacy index segments, falling back to record aggregation");
+            }
+        }
         try {
             if (this.isClusteringEnabled()) {
                 finalUniqueCategories = new HashSet<>();
@@ -1812,8 +2071,16 @@ public class AnalyticsDataIndexer {
                 finalUniqueCategories = getUniqueGroupings(tenantId, this.localShards, aggregateRequest);
             }
             subCategories =  getUniqueSubCategories(aggregateRequest, finalUniqueCategories);
-        //    iterator = new StreamingAggregateRecordIterator(tenantId, subCategories, aggregateRequest, indexer);
-            iterator = this.getNonStreamingAggregateRecords(tenantId, aggregateRequest, subCategories);
+            /* validate the request before the groups are aggregated in the background */
+            this.initPerAliasAggregateFunctions(aggregateRequest);
+            if ((aggregateRequest.getGroupByField() == null || aggregateRequest.getGroupByField().isEmpty()) &&
+                    aggregateRequest.getNoOfRecords() <= 0) {
+                throw new AnalyticsException("No of records to be iterated is missing.. ( Parameter : NoOfRecords is zero..)");
+            }
+            StreamingAggregateRecordIterator streamingIterator = new StreamingAggregateRecordIterator(tenantId,
+                    subCategories, aggregateRequest, this, this.indexerInfo.getAggregateRequestMemoryBudget());
+            streamingIterator.start(this.genericIndexExecutor);
+            iterator = streamingIterator;
             return iterator;
         } catch (IOException e) {
             log.error("Error occured while performing aggregation, " + e.getMessage(), e);
@@ -1821,54 +2088,198 @@ public class AnalyticsDataIndexer {
         }
     }
 
-    private AnalyticsIterator<Record> getNonStreamingAggregateRecords(int tenantId, AggregateRequest aggregateRequest,
-                                                 List<String[]> subCategories)
+    /**
+     * Checks whether the given aggregate request can be calculated directly from the index doc values, without
+     * fetching the records from the record store, i.e. all the aggregates are built-in SUM/AVG/MIN/MAX/COUNT
+     * functions over indexed numeric fields, and the request does not limit the records which are aggregated.
+     */
+    private boolean isDocValuesAggregationApplicable(int tenantId, AggregateRequest aggregateRequest)
             throws AnalyticsException {
-        Map<String, String[]> recordIdsPerGroup = new HashMap<>();
-        List<String> allMatchingIds = new ArrayList<>();
-        for (String[] category : subCategories) {
-            List<SearchResultEntry> resultEntries = this.getSearchResultEntries(tenantId, category, aggregateRequest);
-            List<String> ids = getRecordIds(resultEntries);
-            allMatchingIds.addAll(ids);
-            if (category != null && category.length != 0) {
-                for (String id : ids) {
-                    recordIdsPerGroup.put(id, category);
-                }
+        if (aggregateRequest.getAggregateLevel() < 0 || aggregateRequest.getFields() == null ||
+                aggregateRequest.getFields().isEmpty()) {
+            return false;
+        }
+        Map<String, ColumnDefinition> indices = this.lookupIndices(tenantId, aggregateRequest.getTableName());
+        String groupByField = aggregateRequest.getGroupByField();
+        boolean grouped = groupByField != null && !groupByField.isEmpty();
+        if (grouped) {
+            ColumnDefinition groupByColumn = indices.get(groupByField);
+            if (aggregateRequest.getNoOfRecords() > 0 || groupByColumn == null || !groupByColumn.isFacet()) {
+                return false;
             }
+        } else if (aggregateRequest.getNoOfRecords() <= 0) {
+            return false;
         }
-        return getNonStreamingAggregatesIterator(tenantId, aggregateRequest, recordIdsPerGroup, allMatchingIds);
+        for (AggregateField field : aggregateRequest.getFields()) {
+            if (field.getAlias() == null || field.getAlias().isEmpty() ||
+                    !this.isDocValuesAggregateField(field, indices)) {
+                return false;
+            }
+        }
+        /* a non-grouped aggregation considers only the top records of the search, so it can be calculated
+         * over all the matching documents, only if the matching documents are within the limit */
+        return grouped || this.searchCount(tenantId, aggregateRequest.getTableName(),
+                aggregateRequest.getQuery()) <= aggregateRequest.getNoOfRecords();
     }
 
-    private AnalyticsIterator<Record> getNonStreamingAggregatesIterator(int tenantId, AggregateRequest aggregateRequest,
-                                                   Map<String, String[]> recordIdsPerGroup,
-                                                   List<String> allMatchingIds)
+    private boolean isDocValuesAggregateField(AggregateField field, Map<String, ColumnDefinition> indices)
             throws AnalyticsException {
-        List<Record> aggregatedRecords = new ArrayList<>();
-        AnalyticsDataResponse response = this.getAnalyticsDataService().get(tenantId, aggregateRequest.getTableName(),
-                1, null, allMatchingIds);
-        Iterator<Record> recordIterator = AnalyticsDataServiceUtils.responseToIterator(this.getAnalyticsDataService(), response);
+        AggregateFunction function;
+        try {
+            function = this.getAggregateFunctionFactory().create(field.getAggregateFunction(),
+                    field.getAggregateVariables());
+        } catch (AnalyticsException e) {
+            /* the record aggregation will report the error */
+            return false;
+        }
+        /* the exact classes are checked, since the built-in functions can be overridden by OSGi components */
+        Class<?> functionClass = function.getClass();
+        if (functionClass == COUNTAggregateFunction.class) {
+            return true;
+        }
+        if (functionClass != SUMAggregateFunction.class && functionClass != AVGAggregateFunction.class &&
+                functionClass != MINAggregateFunction.class && functionClass != MAXAggregateFunction.class) {
+            return false;
+        }
+        String[] variables = field.getAggregateVariables();
+        if (variables == null || variables.length == 0) {
+            return false;
+        }
+        ColumnDefinition column = indices.get(variables[0]);
+        if (column == null) {
+            return false;
+        }
+        switch (column.getType()) {
+        case INTEGER:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+            return true;
+        default:
+            return false;
+        }
+    }
 
-        Map<String[], List<Record>> recordsPerGroup = new HashMap<>();
-        if (aggregateRequest.getGroupByField() != null && !aggregateRequest.getGroupByField().isEmpty()) {
-            while (recordIterator.hasNext()) {
-                Record record = recordIterator.next();
-                String id = record.getId();
-                String[] group = recordIdsPerGroup.get(id);
-                List<Record> records = recordsPerGroup.get(group);
-                if (records == null) {
-                    records = new ArrayList<>();
-                }
-                records.add(record);
-                recordsPerGroup.put(group, records);
+    private DocValuesAggregateResult getDocValuesAggregates(int tenantId, AggregateRequest aggregateRequest)
+            throws AnalyticsIndexException {
+        if (this.isClusteringEnabled()) {
+            DocValuesAggregateResult result = new DocValuesAggregateResult();
+            List<DocValuesAggregateResult> entries = this.executeIndexLookup(
+                    new DocValuesAggregateCall(tenantId, aggregateRequest));
+            for (DocValuesAggregateResult entry : entries) {
+                result.merge(entry);
             }
+            return result;
         } else {
-            recordsPerGroup.put(new String[]{}, AnalyticsDataServiceUtils.listRecords(this.getAnalyticsDataService(), response));
+            return this.getDocValuesAggregates(tenantId, this.localShards, aggregateRequest);
+        }
+    }
+
+    public DocValuesAggregateResult getDocValuesAggregates(final int tenantId, Set<Integer> shardIndices,
+                                                           final AggregateRequest aggregateRequest)
+            throws AnalyticsIndexException {
+        List<Future<DocValuesAggregateResult>> futures = new ArrayList<>();
+        for (final int shardIndex : shardIndices) {
+            futures.add(this.genericIndexExecutor.submit(new Callable<DocValuesAggregateResult>() {
+                @Override
+                public DocValuesAggregateResult call() throws Exception {
+                    return aggregateShardDocValues(tenantId, shardIndex, aggregateRequest);
+                }
+            }));
         }
-        for (Entry<String[], List<Record>> entry : recordsPerGroup.entrySet()) {
-            aggregatedRecords.add(this.aggregatePerGrouping(tenantId, entry.getKey(),entry.getValue().iterator(),
-                    entry.getValue().size(), aggregateRequest ));
+        DocValuesAggregateResult result = new DocValuesAggregateResult();
+        try {
+            for (Future<DocValuesAggregateResult> future : futures) {
+                result.merge(future.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new AnalyticsIndexException("Error in doc values aggregation: " + e.getMessage(), e);
         }
-        return new NonStreamingAggregateRecordIterator(aggregatedRecords);
+        return result;
+    }
+
+    private DocValuesAggregateResult aggregateShardDocValues(int tenantId, int shardIndex,
+                                                             AggregateRequest aggregateRequest)
+            throws AnalyticsIndexException {
+        IndexPlan indexPlan = this.lookupIndexPlan(tenantId, aggregateRequest.getTableName());
+        Map<String, ColumnDefinition> indices = indexPlan.getIndices();
+        List<AggregateField> fields = aggregateRequest.getFields();
+        String[] valueFields = new String[fields.size()];
+        boolean[] floatingPointValues = new boolean[fields.size()];
+        String fieldName;
+        AnalyticsSchema.ColumnType type;
+        for (int i = 0; i < valueFields.length; i++) {
+            if (Constants.COUNT_AGGREGATE.equals(fields.get(i).getAggregateFunction())) {
+                continue;
+            }
+            fieldName = fields.get(i).getAggregateVariables()[0];
+            type = indices.get(fieldName).getType();
+            floatingPointValues[i] = type == AnalyticsSchema.ColumnType.FLOAT ||
+                    type == AnalyticsSchema.ColumnType.DOUBLE;
+            valueFields[i] = floatingPointValues[i] ? RAW_DOUBLE_DOC_VALUES_FIELD_PREFIX + fieldName : fieldName;
+        }
+        String groupByField = aggregateRequest.getGroupByField();
+        if (groupByField != null && groupByField.isEmpty()) {
+            groupByField = null;
+        }
+        SearcherReference searcherRef = this.searcherPool.acquire(shardIndex,
+                this.generateTableId(tenantId, aggregateRequest.getTableName()));
+        try {
+            DocValuesAggregateResult result = new DocValuesAggregateResult();
+            for (int i = 0; i < valueFields.length; i++) {
+                if (floatingPointValues[i] && DocValuesAggregateCollector.hasLegacyDocValues(
+                        searcherRef.getIndexReader(), fields.get(i).getAggregateVariables()[0], valueFields[i])) {
+                    result.setComplete(false);
+                    return result;
+                }
+            }
+            Query query = this.getSearchQueryFromString(aggregateRequest.getQuery(), indexPlan);
+            DocValuesAggregateCollector collector;
+            if (groupByField != null) {
+                FacetsConfig config = indexPlan.getFacetsConfig();
+                List<String> parentPath = aggregateRequest.getParentPath();
+                if (parentPath == null) {
+                    parentPath = new ArrayList<>(0);
+                }
+                DrillDownQuery drillDownQuery = new DrillDownQuery(config, query);
+                drillDownQuery.add(groupByField, parentPath.toArray(new String[parentPath.size()]));
+                query = drillDownQuery;
+                collector = new DocValuesAggregateCollector(valueFields, floatingPointValues, groupByField,
+                        config.getDimConfig(groupByField).indexFieldName,
+                        parentPath.size() + aggregateRequest.getAggregateLevel() + 1,
+                        searcherRef.getTaxonomyReader());
+            } else {
+                collector = new DocValuesAggregateCollector(valueFields, floatingPointValues, null, null, 0,
+                        searcherRef.getTaxonomyReader());
+            }
+            searcherRef.getSearcher().search(query, collector);
+            result.getGroups().putAll(collector.getGroups());
+            return result;
+        } catch (IOException | org.apache.lucene.queryparser.classic.ParseException e) {
+            throw new AnalyticsIndexException("Error in doc values aggregation: " + e.getMessage(), e);
+        } finally {
+            searcherRef.release();
+        }
+    }
+
+    private List<Record> generateDocValuesAggregateRecords(int tenantId, AggregateRequest aggregateRequest,
+                                                           DocValuesAggregateResult result)
+            throws AnalyticsException {
+        List<Record> aggregatedRecords = new ArrayList<>();
+        List<AggregateField> fields = aggregateRequest.getFields();
+        Map<String, Object> aggregateResults;
+        for (Entry<List<String>, AggregateGroupState> entry : result.getGroups().entrySet()) {
+            aggregateResults = new HashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                aggregateResults.put(fields.get(i).getAlias(), entry.getValue().finish(i,
+                        fields.get(i).getAggregateFunction()));
+            }
+            String[] path = entry.getKey().toArray(new String[entry.getKey().size()]);
+            aggregatedRecords.add(new Record(tenantId, aggregateRequest.getTableName(),
+                    this.generateAggregateRecordValues(path, (int) entry.getValue().getRecordCount(),
+                            aggregateRequest, aggregateResults)));
+        }
+        return aggregatedRecords;
     }
 
     public Set<List<String>> getUniqueGroupings(int tenantId, Set<Integer> localShards, AggregateRequest aggregateRequest)
@@ -1918,42 +2329,77 @@ public class AnalyticsDataIndexer {
         return groupings;
     }
 
-    private Record aggregatePerGrouping(int tenantId, String[] path, Iterator<Record> iterator, int actualNoOfRecords,
-                                        AggregateRequest aggregateRequest)
+    private int processAggregates(Iterator<Record> iterator, AggregateRequest aggregateRequest,
+                                  Map<String, AggregateFunction> perAliasAggregateFunction)
             throws AnalyticsException {
-        Map<String, AggregateFunction> perAliasAggregateFunction = initPerAliasAggregateFunctions(aggregateRequest);
-        Record aggregatedRecord;
+        int count = 0;
         while (iterator.hasNext()) {
             Record record = iterator.next();
+            RecordContext recordValues = RecordContext.create(record.getValues());
             for (AggregateField field : aggregateRequest.getFields()) {
-                AggregateFunction function = perAliasAggregateFunction.get(field.getAlias());
-                RecordContext recordValues = RecordContext.create(record.getValues());
-                function.process(recordValues);
+                perAliasAggregateFunction.get(field.getAlias()).process(recordValues);
             }
+            count++;
+        }
+        return count;
+    }
+
+    private Record createAggregateRecord(int tenantId, String[] path, int actualNoOfRecords,
+                                         AggregateRequest aggregateRequest,
+                                         Map<String, AggregateFunction> perAliasAggregateFunction)
+            throws AnalyticsException {
+        Record aggregatedRecord;
+        Map<String, Object> aggregateResults = new HashMap<>();
+        for (AggregateField field : aggregateRequest.getFields()) {
+            aggregateResults.put(field.getAlias(), perAliasAggregateFunction.get(field.getAlias()).finish());
         }
         Map<String, Object> aggregatedValues = generateAggregateRecordValues(path, actualNoOfRecords, aggregateRequest,
-                                                                             perAliasAggregateFunction);
+                                                                             aggregateResults);
         aggregatedRecord = new Record(tenantId, aggregateRequest.getTableName(), aggregatedValues);
         return aggregatedRecord;
     }
 
+    private AnalyticsDrillDownRequest createGroupDrillDownRequest(String[] path, AggregateRequest aggregateRequest) {
+        int recordCount = aggregateRequest.getNoOfRecords() > 0 ? aggregateRequest.getNoOfRecords() : Integer.MAX_VALUE;
+        AnalyticsDrillDownRequest analyticsDrillDownRequest = new AnalyticsDrillDownRequest();
+        analyticsDrillDownRequest.setTableName(aggregateRequest.getTableName());
+        analyticsDrillDownRequest.setQuery(aggregateRequest.getQuery());
+        analyticsDrillDownRequest.setRecordStartIndex(0);
+        analyticsDrillDownRequest.setRecordCount(recordCount);
+        Map<String, List<String>> groupByCategory = new HashMap<>();
+        List<String> groupByValue = new ArrayList<>();
+        groupByValue.addAll(Arrays.asList(path));
+        groupByCategory.put(aggregateRequest.getGroupByField(), groupByValue);
+        analyticsDrillDownRequest.setCategoryPaths(groupByCategory);
+        return analyticsDrillDownRequest;
+    }
+
+    /**
+     * Returns the number of records a group of an aggregate request matches, from the index hit count, without
+     * loading the matching record ids.
+     */
+    private int getSearchResultCount(int tenantId, String[] path, AggregateRequest aggregateRequest)
+            throws AnalyticsException {
+        long count;
+        if (aggregateRequest.getGroupByField() != null && !aggregateRequest.getGroupByField().isEmpty()) {
+            count = (long) this.getDrillDownRecordCount(tenantId, this.createGroupDrillDownRequest(path,
+                    aggregateRequest), null, null);
+        } else {
+            count = this.searchCount(tenantId, aggregateRequest.getTableName(), aggregateRequest.getQuery());
+        }
+        if (aggregateRequest.getNoOfRecords() > 0) {
+            count = Math.min(count, aggregateRequest.getNoOfRecords());
+        }
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
     private List<SearchResultEntry> getSearchResultEntries(int tenantId, String[] path,
                                                            AggregateRequest aggregateRequest)
             throws AnalyticsException {
         List<SearchResultEntry> searchResultEntries;
         if (aggregateRequest.getGroupByField() != null && !aggregateRequest.getGroupByField().isEmpty()) {
-            int recordCount = aggregateRequest.getNoOfRecords() > 0 ? aggregateRequest.getNoOfRecords() : Integer.MAX_VALUE;
-            AnalyticsDrillDownRequest analyticsDrillDownRequest = new AnalyticsDrillDownRequest();
-            analyticsDrillDownRequest.setTableName(aggregateRequest.getTableName());
-            analyticsDrillDownRequest.setQuery(aggregateRequest.getQuery());
-            analyticsDrillDownRequest.setRecordStartIndex(0);
-            analyticsDrillDownRequest.setRecordCount(recordCount);
-            Map<String, List<String>> groupByCategory = new HashMap<>();
-            List<String> groupByValue = new ArrayList<>();
-            groupByValue.addAll(Arrays.asList(path));
-            groupByCategory.put(aggregateRequest.getGroupByField(), groupByValue);
-            analyticsDrillDownRequest.setCategoryPaths(groupByCategory);
-            searchResultEntries = this.getDrillDownRecords(tenantId, analyticsDrillDownRequest, null, null);
+            searchResultEntries = this.getDrillDownRecords(tenantId, this.createGroupDrillDownRequest(path,
+                    aggregateRequest), null, null);
         } else {
             if (aggregateRequest.getNoOfRecords() > 0) {
                 searchResultEntries = this.search(tenantId, aggregateRequest.getTableName(), aggregateRequest.getQuery(),
@@ -1967,18 +2413,12 @@ public class AnalyticsDataIndexer {
 
     private Map<String, Object> generateAggregateRecordValues(String[] path, int actualNoOfRecords,
                                                               AggregateRequest aggregateRequest,
-                                                              Map<String, AggregateFunction> perAliasAggregateFunction)
-            throws AnalyticsException {
-        Map<String, Object> aggregatedValues = new HashMap<>();
+                                                              Map<String, Object> aggregateResults) {
+        Map<String, Object> aggregatedValues = new HashMap<>(aggregateResults);
         String luceneQuery = "*:*";
         if (aggregateRequest.getQuery() != null && !aggregateRequest.getQuery().isEmpty()) {
             luceneQuery = aggregateRequest.getQuery();
         }
-        for (AggregateField field : aggregateRequest.getFields()) {
-            String alias = field.getAlias();
-            Object result = perAliasAggregateFunction.get(alias).finish();
-            aggregatedValues.put(alias, result);
-        }
         if (aggregateRequest.getGroupByField() != null && !aggregateRequest.getGroupByField().isEmpty()) {
             aggregatedValues.put(aggregateRequest.getGroupByField(),
                                  path);
@@ -2028,82 +2468,203 @@ public class AnalyticsDataIndexer {
         }
     }
 
-    /*private static class StreamingAggregateRecordIterator implements AnalyticsIterator<Record> {
+    /**
+     * This class represents an aggregate record iterator, which aggregates the groups of a request in parallel,
+     * and streams the aggregated records to the consumer as soon as each group is completed. The groups being
+     * aggregated at a time are limited by the memory budget of the request, and the workers are blocked when
+     * the consumer does not keep up with the aggregated records.
+     */
+    private static class StreamingAggregateRecordIterator implements AnalyticsIterator<Record> {
+
+        private static final Object END_OF_RECORDS = new Object();
+
+        private static final int PUBLISH_TIMEOUT = 100;
 
-        private static Log logger = LogFactory.getLog(StreamingAggregateRecordIterator.class);
-        private AggregateRequest request;
-        private List<String[]> groupings;
         private int tenantId;
-        private String[] currentGrouping;
+
+        private AggregateRequest request;
+
         private AnalyticsDataIndexer indexer;
-        private Record currentRecord;
+
+        private Queue<String[]> groupings;
+
+        private boolean grouped;
+
+        private int workerCount;
+
+        private int memoryBudget;
+
+        private Semaphore memoryPermits;
+
+        private BlockingQueue<Object> results;
+
+        private AtomicInteger activeWorkers;
+
+        private volatile boolean closed;
+
+        private volatile boolean abandoned;
+
+        private Object current;
+
         public StreamingAggregateRecordIterator(int tenantId, List<String[]> uniqueGroupings,
-                                                AggregateRequest request,
-                                                AnalyticsDataIndexer indexer) {
-            this.request = request;
+                                                AggregateRequest request, AnalyticsDataIndexer indexer,
+                                                int memoryBudget) {
             this.tenantId = tenantId;
-            this.groupings = uniqueGroupings;
+            this.request = request;
             this.indexer = indexer;
+            this.groupings = new ConcurrentLinkedQueue<>(uniqueGroupings);
+            this.grouped = request.getGroupByField() != null && !request.getGroupByField().isEmpty();
+            this.workerCount = Math.max(1, Math.min(uniqueGroupings.size(), AGGREGATE_WORKER_COUNT));
+            this.memoryBudget = memoryBudget;
+            this.memoryPermits = new Semaphore(memoryBudget);
+            this.results = new ArrayBlockingQueue<>(this.workerCount);
+            this.activeWorkers = new AtomicInteger(this.workerCount);
+        }
+
+        public void start(ExecutorService executor) {
+            for (int i = 0; i < this.workerCount; i++) {
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        processGroupings();
+                    }
+                });
+            }
+        }
+
+        private void processGroupings() {
+            try {
+                String[] grouping;
+                Record record;
+                while (!this.closed && (grouping = this.groupings.poll()) != null) {
+                    record = this.aggregateGrouping(grouping);
+                    if (record != null) {
+                        this.publish(record);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Failed to create aggregated record: " + e.getMessage(), e);
+                this.groupings.clear();
+                this.publish(e);
+            } finally {
+                if (this.activeWorkers.decrementAndGet() == 0) {
+                    this.publish(END_OF_RECORDS);
+                }
+            }
+        }
+
+        private Record aggregateGrouping(String[] grouping) throws AnalyticsException, InterruptedException {
+            /* the memory is reserved using the index hit count, before the matching record ids are loaded */
+            int estimatedCount = this.indexer.getSearchResultCount(this.tenantId, grouping, this.request);
+            if (estimatedCount == 0 && this.grouped) {
+                return null;
+            }
+            int permits = this.calculateMemoryPermits(estimatedCount);
+            this.memoryPermits.acquire(permits);
+            try {
+                if (this.closed) {
+                    return null;
+                }
+                List<String> recordIds = getRecordIds(this.indexer.getSearchResultEntries(this.tenantId, grouping,
+                        this.request));
+                if (recordIds.isEmpty() && this.grouped) {
+                    return null;
+                }
+                Map<String, AggregateFunction> perAliasAggregateFunction =
+                        this.indexer.initPerAliasAggregateFunctions(this.request);
+                AnalyticsDataService ads = this.indexer.getAnalyticsDataService();
+                AnalyticsDataResponse response;
+                int noOfRecords = 0;
+                for (int i = 0; i < recordIds.size() && !this.closed; i += AGGREGATE_RECORD_FETCH_BATCH_SIZE) {
+                    response = ads.get(this.tenantId, this.request.getTableName(), 1, null, new ArrayList<>(
+                            recordIds.subList(i, Math.min(i + AGGREGATE_RECORD_FETCH_BATCH_SIZE, recordIds.size()))));
+                    noOfRecords += this.indexer.processAggregates(AnalyticsDataServiceUtils.responseToIterator(ads,
+                            response), this.request, perAliasAggregateFunction);
+                }
+                return this.indexer.createAggregateRecord(this.tenantId, grouping, noOfRecords, this.request,
+                        perAliasAggregateFunction);
+            } finally {
+                this.memoryPermits.release(permits);
+            }
+        }
+
+        /**
+         * Estimates the memory required to aggregate a group, which is the matching record ids, and a batch of
+         * records fetched from the record store; a group larger than the whole budget is aggregated alone.
+         */
+        private int calculateMemoryPermits(int noOfRecords) {
+            long size = (long) noOfRecords * AGGREGATE_RECORD_ID_SIZE_ESTIMATE +
+                    (long) Math.min(noOfRecords, AGGREGATE_RECORD_FETCH_BATCH_SIZE) * AGGREGATE_RECORD_SIZE_ESTIMATE;
+            return (int) Math.max(1, Math.min(size, this.memoryBudget));
+        }
+
+        /**
+         * Hands over an item to the consumer, and if the consumer does not take it within the consumer timeout,
+         * i.e. the iterator has been abandoned without closing it, the iterator is closed, so the workers are
+         * released.
+         */
+        private void publish(Object item) {
+            long deadline = System.currentTimeMillis() + AGGREGATE_CONSUMER_TIMEOUT;
+            try {
+                while (!this.closed) {
+                    if (this.results.offer(item, PUBLISH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                    if (System.currentTimeMillis() > deadline) {
+                        log.warn("The aggregate records of table '" + this.request.getTableName() + "' have not " +
+                                "been consumed for " + (AGGREGATE_CONSUMER_TIMEOUT / 1000) + " seconds, the " +
+                                "aggregation is stopped");
+                        this.abandoned = true;
+                        this.stop();
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void stop() {
+            this.closed = true;
+            this.groupings.clear();
+            this.results.clear();
         }
 
         @Override
         public void close() throws IOException {
-            this.request = null;
-            this.currentGrouping = null;
-            this.groupings = null;
-            this.currentRecord = null;
+            this.stop();
         }
 
         @Override
         public synchronized boolean hasNext() {
-            if (groupings != null && !groupings.isEmpty()) {
-                currentGrouping = groupings.get(0);
-                try {
-                    if (currentRecord != null) {
-                        return true;
-                    } else {
-                        currentRecord = getAggregatedRecord();
-                    }
-                } catch (AnalyticsException e) {
-                    logger.error("Failed to create aggregated record: " + e.getMessage(), e);
-                    throw new RuntimeException("Error while iterating aggregate records: " +
-                                               e.getMessage(), e);
-                }
-                if (currentRecord == null) {
-                    groupings.remove(currentGrouping);
-                    return this.hasNext();
-                } else {
-                    return true;
+            if (this.current == null) {
+                if (this.abandoned) {
+                    throw new RuntimeException("The aggregation has been stopped, since the aggregate records " +
+                            "were not consumed within " + (AGGREGATE_CONSUMER_TIMEOUT / 1000) + " seconds");
                 }
-            } else {
+                if (this.closed) {
                     return false;
+                }
+                try {
+                    this.current = this.results.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while iterating aggregate records", e);
+                }
             }
-        }
-
-        private Record getAggregatedRecord() throws AnalyticsException {
-            List<SearchResultEntry> searchResultEntries = indexer.getSearchResultEntries(tenantId,
-                currentGrouping, request);
-            if (!searchResultEntries.isEmpty()) {
-                List<String> recordIds = getRecordIds(searchResultEntries);
-                int noOfRecords = recordIds.size();
-                AnalyticsDataResponse analyticsDataResponse =
-                        indexer.getAnalyticsIndexerInfo().getAnalyticsDataService().get(tenantId, request.getTableName(),
-                                                                                        1, null, recordIds);
-                Iterator<Record> iterator = AnalyticsDataServiceUtils.responseToIterator(indexer.getAnalyticsIndexerInfo()
-                        .getAnalyticsDataService(), analyticsDataResponse);
-                return indexer.aggregatePerGrouping(tenantId, currentGrouping, iterator, noOfRecords, request);
-            } else {
-                return null;
+            if (this.current instanceof Exception) {
+                Exception e = (Exception) this.current;
+                throw new RuntimeException("Error while iterating aggregate records: " + e.getMessage(), e);
             }
+            return this.current != END_OF_RECORDS;
         }
 
         @Override
         public synchronized Record next() {
-            if (hasNext()) {
-                groupings.remove(currentGrouping);
-                Record tempRecord = currentRecord;
-                currentRecord = null;
-                return tempRecord;
+            if (this.hasNext()) {
+                Record record = (Record) this.current;
+                this.current = null;
+                return record;
             }
             return null;
         }
@@ -2112,7 +2673,7 @@ public class AnalyticsDataIndexer {
         public void remove() {
             //This will not work in this iterator
         }
-    }*/
+    }
 
     private static class NonStreamingAggregateRecordIterator implements AnalyticsIterator<Record> {
 
@@ -2274,14 +2835,19 @@ public class AnalyticsDataIndexer {
 
         private void addAllCategoriesToSet(String[] parent, int localAggregateLevel, Set<List<String>> uniqueGroups)
                 throws IOException, AnalyticsException {
-            TaxonomyReader taxonomyReader = new DirectoryTaxonomyReader(indexer.lookupTaxonomyIndexWriter(shardId, tableId));
-            IndexReader indexReader = DirectoryReader.open(indexer.lookupIndexWriter(shardId, tableId), true);
             CategoryDrillDownRequest request = new CategoryDrillDownRequest();
             request.setFieldName(aggregateRequest.getGroupByField());
             request.setPath(parent);
             request.setTableName(aggregateRequest.getTableName());
             request.setQuery(aggregateRequest.getQuery());
-            CategoryDrillDownResponse resultEntries = indexer.drilldowncategories(tenantId, indexReader, taxonomyReader, request);
+            CategoryDrillDownResponse resultEntries;
+            SearcherReference searcherRef = indexer.searcherPool.acquire(shardId, tableId);
+            try {
+                resultEntries = indexer.drilldowncategories(tenantId, searcherRef.getIndexReader(),
+                        searcherRef.getTaxonomyReader(), request);
+            } finally {
+                searcherRef.release();
+            }
 
             for (CategorySearchResultEntry child : resultEntries.getCategories()) {
                 List<String> newParent = new ArrayList<>();
@@ -2532,6 +3098,36 @@ public class AnalyticsDataIndexer {
         
     }
 
+    public static class DocValuesAggregateCall extends IndexLookupOperationCall<DocValuesAggregateResult> {
+
+        private static final long serialVersionUID = 4470927611390843522L;
+        private int tenantId;
+        private AggregateRequest request;
+
+        public DocValuesAggregateCall(int tenantId, AggregateRequest request) {
+            this.tenantId = tenantId;
+            this.request = request;
+        }
+
+        @Override
+        public IndexLookupOperationCall<DocValuesAggregateResult> copy() {
+            return new DocValuesAggregateCall(tenantId, request);
+        }
+
+        @Override
+        public DocValuesAggregateResult call() throws Exception {
+            AnalyticsDataService ads = AnalyticsServiceHolder.getAnalyticsDataService();
+            if (ads == null) {
+                throw new AnalyticsException("The Analytics data service implementation is not registered");
+            }
+            if (ads instanceof AnalyticsDataServiceImpl) {
+                AnalyticsDataServiceImpl adsImpl = (AnalyticsDataServiceImpl) ads;
+                return adsImpl.getIndexer().getDocValuesAggregates(tenantId, this.shardIndices, request);
+            }
+            return new DocValuesAggregateResult();
+        }
+    }
+
     public static class SearchWithAggregateCall extends IndexLookupOperationCall<Set<List<String>>> {
 
         private static final long serialVersionUID = -5074344695392737981L;
@@ -40,7 +40,10 @@ public class AnalyticsDataIndexingStatsCollector extends TimerTask {
     
     private long lastTime;
     
-    public AnalyticsDataIndexingStatsCollector() {
+    private IndexSearcherPool searcherPool;
+    
+    public AnalyticsDataIndexingStatsCollector(IndexSearcherPool searcherPool) {
+        this.searcherPool = searcherPool;
         Timer timer = new Timer(true);
         this.lastTime = System.currentTimeMillis();
         timer.scheduleAtFixedRate(this, INTERVAL, INTERVAL);
@@ -58,6 +61,9 @@ public class AnalyticsDataIndexingStatsCollector extends TimerTask {
             long timeInt = System.currentTimeMillis() - this.lastTime;
             double tps = recordsProcessed / (double) timeInt * 1000;
             log.info("Indexing Statistics TPS: " + tps + ", Full Count: " + currentFullCount);
+            log.info("Index Searcher Refresh Statistics Count: " + this.searcherPool.getRefreshCount() + 
+                    ", Avg Lag: " + this.searcherPool.getAverageRefreshLag() + " ms, Max Lag: " + 
+                    this.searcherPool.getMaxRefreshLag() + " ms");
         }
         this.lastTime = System.currentTimeMillis();
     }
@@ -63,6 +63,15 @@ public class AnalyticsIndexerInfo {
 
     private int taxonomyWriterLRUCacheSize;
 
+    private int indexSearcherMaxStaleness;
+
+    private int shardIndexCommitInterval;
+
+    private long shardIndexCommitBatchSize;
+
+    private int aggregateRequestMemoryBudget;
+
+    private int indexDocumentWorkerCount;
 
     public Analyzer getLuceneAnalyzer() {
         return luceneAnalyzer;
@@ -207,4 +216,44 @@ public class AnalyticsIndexerInfo {
     public void setTaxonomyWriterLRUCacheSize(int taxonomyWriterLRUCacheSize) {
         this.taxonomyWriterLRUCacheSize = taxonomyWriterLRUCacheSize;
     }
+
+    public int getIndexSearcherMaxStaleness() {
+        return indexSearcherMaxStaleness;
+    }
+
+    public void setIndexSearcherMaxStaleness(int indexSearcherMaxStaleness) {
+        this.indexSearcherMaxStaleness = indexSearcherMaxStaleness;
+    }
+
+    public int getShardIndexCommitInterval() {
+        return shardIndexCommitInterval;
+    }
+
+    public void setShardIndexCommitInterval(int shardIndexCommitInterval) {
+        this.shardIndexCommitInterval = shardIndexCommitInterval;
+    }
+
+    public long getShardIndexCommitBatchSize() {
+        return shardIndexCommitBatchSize;
+    }
+
+    public void setShardIndexCommitBatchSize(long shardIndexCommitBatchSize) {
+        this.shardIndexCommitBatchSize = shardIndexCommitBatchSize;
+    }
+
+    public int getAggregateRequestMemoryBudget() {
+        return aggregateRequestMemoryBudget;
+    }
+
+    public void setAggregateRequestMemoryBudget(int aggregateRequestMemoryBudget) {
+        this.aggregateRequestMemoryBudget = aggregateRequestMemoryBudget;
+    }
+
+    public int getIndexDocumentWorkerCount() {
+        return indexDocumentWorkerCount;
+    }
+
+    public void setIndexDocumentWorkerCount(int indexDocumentWorkerCount) {
+        this.indexDocumentWorkerCount = indexDocumentWorkerCount;
+    }
 }
@@ -0,0 +1,214 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core.indexing;
+
+import org.apache.lucene.facet.taxonomy.DocValuesOrdinalsReader;
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.OrdinalsReader;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IntsRef;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.AggregateGroupState;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a Lucene collector, which calculates the built-in aggregates of the matching
+ * documents of a shard in a single pass, using the numeric doc values of the aggregated fields, and
+ * the facet ordinals of the group by field.
+ */
+public class DocValuesAggregateCollector extends SimpleCollector {
+
+    private String groupByField;
+
+    private int groupPathLength;
+
+    private TaxonomyReader taxonomyReader;
+
+    private OrdinalsReader ordinalsReader;
+
+    private String[] valueFields;
+
+    private boolean[] floatingPointValues;
+
+    private Map<List<String>, AggregateGroupState> groups = new HashMap<>();
+
+    private AggregateGroupState singleGroupState;
+
+    private Map<Integer, List<String>> ordinalGroups = new HashMap<>();
+
+    private OrdinalsReader.OrdinalsSegmentReader ordinalsSegmentReader;
+
+    private IntsRef ordinals = new IntsRef(32);
+
+    private NumericDocValues[] values;
+
+    private Bits[] docsWithValues;
+
+    /**
+     * Creates the collector.
+     * @param valueFields The doc values fields of the aggregate fields, a null entry is given for the aggregates
+     * which does not need a field value, i.e. COUNT
+     * @param floatingPointValues Whether the respective doc values contain the raw bits of double values
+     * @param groupByField The facet field to group the documents by, or null, if all the documents are aggregated
+     * into a single group
+     * @param groupByIndexField The index field name the facet ordinals of the group by field is stored in
+     * @param groupPathLength The number of path components of a group
+     * @param taxonomyReader The taxonomy reader of the shard
+     */
+    public DocValuesAggregateCollector(String[] valueFields, boolean[] floatingPointValues, String groupByField,
+                                       String groupByIndexField, int groupPathLength,
+                                       TaxonomyReader taxonomyReader) {
+        this.valueFields = valueFields;
+        this.floatingPointValues = floatingPointValues;
+        this.groupByField = groupByField;
+        this.groupPathLength = groupPathLength;
+        this.taxonomyReader = taxonomyReader;
+        this.values = new NumericDocValues[valueFields.length];
+        this.docsWithValues = new Bits[valueFields.length];
+        if (this.groupByField != null) {
+            this.ordinalsReader = new DocValuesOrdinalsReader(groupByIndexField);
+        } else {
+            /* all the matching records of a non-grouped aggregation are in a single, possibly empty group */
+            this.singleGroupState = new AggregateGroupState(valueFields.length);
+            this.groups.put(new ArrayList<String>(0), this.singleGroupState);
+        }
+    }
+
+    public Map<List<String>, AggregateGroupState> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Checks whether the given reader contains segments, which were indexed before the raw double doc values
+     * field was introduced, where the doc values of the original field contains truncated values.
+     * @param reader The index reader
+     * @param field The original field name
+     * @param valueField The raw double doc values field name
+     * @return true if legacy segments exist
+     */
+    public static boolean hasLegacyDocValues(IndexReader reader, String field, String valueField) {
+        FieldInfos fieldInfos;
+        FieldInfo fieldInfo;
+        for (LeafReaderContext ctx : reader.leaves()) {
+            fieldInfos = ctx.reader().getFieldInfos();
+            fieldInfo = fieldInfos.fieldInfo(field);
+            if (fieldInfo != null && fieldInfo.getDocValuesType() == DocValuesType.NUMERIC &&
+                    fieldInfos.fieldInfo(valueField) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        if (this.ordinalsReader != null) {
+            this.ordinalsSegmentReader = this.ordinalsReader.getReader(context);
+        }
+        for (int i = 0; i < this.valueFields.length; i++) {
+            if (this.valueFields[i] != null) {
+                this.values[i] = DocValues.getNumeric(context.reader(), this.valueFields[i]);
+                this.docsWithValues[i] = DocValues.getDocsWithField(context.reader(), this.valueFields[i]);
+            }
+        }
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        AggregateGroupState state = this.lookupGroupState(doc);
+        if (state == null) {
+            return;
+        }
+        state.incrementRecordCount();
+        long value;
+        for (int i = 0; i < this.valueFields.length; i++) {
+            if (this.valueFields[i] == null) {
+                continue;
+            }
+            /* a record without a numeric value for the field is counted, but not aggregated for the field */
+            if (!this.docsWithValues[i].get(doc)) {
+                continue;
+            }
+            value = this.values[i].get(doc);
+            if (this.floatingPointValues[i]) {
+                state.process(i, Double.longBitsToDouble(value));
+            } else {
+                state.process(i, value);
+            }
+        }
+    }
+
+    private AggregateGroupState lookupGroupState(int doc) throws IOException {
+        if (this.ordinalsReader == null) {
+            return this.singleGroupState;
+        }
+        this.ordinalsSegmentReader.get(doc, this.ordinals);
+        List<String> group = null;
+        for (int i = this.ordinals.offset; i < this.ordinals.offset + this.ordinals.length; i++) {
+            group = this.lookupOrdinalGroup(this.ordinals.ints[i]);
+            if (group != null) {
+                break;
+            }
+        }
+        if (group == null) {
+            return null;
+        }
+        AggregateGroupState state = this.groups.get(group);
+        if (state == null) {
+            state = new AggregateGroupState(this.valueFields.length);
+            this.groups.put(group, state);
+        }
+        return state;
+    }
+
+    private List<String> lookupOrdinalGroup(int ordinal) throws IOException {
+        if (this.ordinalGroups.containsKey(ordinal)) {
+            return this.ordinalGroups.get(ordinal);
+        }
+        List<String> group = null;
+        FacetLabel label = this.taxonomyReader.getPath(ordinal);
+        /* the first component of the label is the facet field name */
+        if (label != null && label.length == this.groupPathLength + 1 &&
+                this.groupByField.equals(label.components[0])) {
+            group = new ArrayList<>(Arrays.asList(label.components).subList(1, label.length));
+        }
+        this.ordinalGroups.put(ordinal, group);
+        return group;
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core.indexing;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class decides when the index changes of a shard should be committed. The changes are group
+ * committed, either when the configured commit interval has elapsed since the last commit, or when
+ * the amount of uncommitted index data exceeds the configured batch size. Between commits, the changes
+ * are made visible to searches with near-real-time reader refreshes, and the durability is given by the
+ * local index data queues, which keep the uncommitted entries for replay.
+ */
+public class IndexCommitPolicy {
+
+    private long commitInterval;
+
+    private long commitBatchSize;
+
+    private Map<Integer, ShardCommitState> shardStates = new ConcurrentHashMap<>();
+
+    public IndexCommitPolicy(long commitInterval, long commitBatchSize) {
+        this.commitInterval = commitInterval;
+        this.commitBatchSize = commitBatchSize;
+    }
+
+    public long getCommitInterval() {
+        return commitInterval;
+    }
+
+    public long getCommitBatchSize() {
+        return commitBatchSize;
+    }
+
+    private ShardCommitState lookupShardState(int shardIndex) {
+        ShardCommitState state = this.shardStates.get(shardIndex);
+        if (state == null) {
+            synchronized (this.shardStates) {
+                state = this.shardStates.get(shardIndex);
+                if (state == null) {
+                    state = new ShardCommitState();
+                    this.shardStates.put(shardIndex, state);
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Records that the given table of the shard has uncommitted index changes.
+     * @param shardIndex The shard index
+     * @param tableId The table id
+     */
+    public void addUncommittedTable(int shardIndex, String tableId) {
+        this.lookupShardState(shardIndex).addTable(tableId);
+    }
+
+    /**
+     * Records the amount of index data processed in the shard, which is not yet committed.
+     * @param shardIndex The shard index
+     * @param bytes The processed data size in bytes
+     */
+    public void addUncommittedBytes(int shardIndex, long bytes) {
+        this.lookupShardState(shardIndex).addBytes(bytes);
+    }
+
+    /**
+     * Checks whether the given shard's changes should be committed now.
+     * @param shardIndex The shard index
+     * @return true if a commit should be done
+     */
+    public boolean shouldCommit(int shardIndex) {
+        return this.lookupShardState(shardIndex).shouldCommit(this.commitInterval, this.commitBatchSize);
+    }
+
+    /**
+     * Returns the tables of the given shard, which has uncommitted index changes.
+     * @param shardIndex The shard index
+     * @return The set of table ids
+     */
+    public Set<String> getUncommittedTables(int shardIndex) {
+        return this.lookupShardState(shardIndex).getTables();
+    }
+
+    /**
+     * Resets the state of the given shard, this must be called after a successful commit.
+     * @param shardIndex The shard index
+     */
+    public void committed(int shardIndex) {
+        this.lookupShardState(shardIndex).reset();
+    }
+
+    /**
+     * Uncommitted state of a shard.
+     */
+    private static class ShardCommitState {
+
+        private Set<String> tables = new HashSet<>();
+
+        private long bytes;
+
+        private long lastCommitTime = System.currentTimeMillis();
+
+        public synchronized void addTable(String tableId) {
+            this.tables.add(tableId);
+        }
+
+        public synchronized void addBytes(long bytes) {
+            this.bytes += bytes;
+        }
+
+        public synchronized Set<String> getTables() {
+            return new HashSet<>(this.tables);
+        }
+
+        public synchronized boolean shouldCommit(long commitInterval, long commitBatchSize) {
+            if (this.tables.isEmpty()) {
+                return false;
+            }
+            return this.bytes >= commitBatchSize ||
+                    System.currentTimeMillis() - this.lastCommitTime >= commitInterval;
+        }
+
+        public synchronized void reset() {
+            this.tables.clear();
+            this.bytes = 0;
+            this.lastCommitTime = System.currentTimeMillis();
+        }
+
+    }
+
+}
@@ -18,6 +18,9 @@
  */
 package org.wso2.carbon.analytics.dataservice.core.indexing;
 
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.DataSerializable;
@@ -72,6 +75,10 @@ public class IndexNodeCoordinator implements GroupEventListener {
 
     private static final String GSA_LOCK = "__GLOBAL_SHARD_ALLOCATION_LOCK__";
 
+    private static final String STAGING_NOTIFICATION_TOPIC = "__ANALYTICS_INDEX_STAGING_TOPIC__";
+
+    private static final int MAX_STAGING_WORKER_COUNT = 4;
+
     private static Log log = LogFactory.getLog(IndexNodeCoordinator.class);
 
     private AnalyticsDataIndexer indexer;
@@ -92,6 +99,10 @@ public class IndexNodeCoordinator implements GroupEventListener {
 
     private List<StagingDataIndexWorker> stagingIndexWorkers;
 
+    private volatile Map<Integer, StagingDataIndexWorker> stagingShardWorkerMap;
+
+    private String stagingNotificationListenerId;
+
     private int failedIndexOperationCount;
 
     private RemoteMemberIndexCommunicator remoteCommunicator;
@@ -126,9 +137,17 @@ public class IndexNodeCoordinator implements GroupEventListener {
         if (this.isClusteringEnabled()) {
             AnalyticsClusterManager acm = AnalyticsServiceHolder.getAnalyticsClusterManager();
             acm.joinGroup(Constants.ANALYTICS_INDEXING_GROUP, this);
+            if (this.indexingNode && this.stagingNotificationListenerId == null) {
+                this.stagingNotificationListenerId = this.getStagingNotificationTopic().addMessageListener(
+                        new StagingNotificationListener());
+            }
         }
     }
 
+    private ITopic<StagingNotification> getStagingNotificationTopic() {
+        return AnalyticsServiceHolder.getHazelcastInstance().getTopic(STAGING_NOTIFICATION_TOPIC);
+    }
+
     private List<Integer> calculateGlobalLocalShardDiff() throws AnalyticsException {
         List<Integer> result = new ArrayList<>();
         int shardCount = this.indexer.getShardCount();
@@ -336,6 +355,7 @@ public class IndexNodeCoordinator implements GroupEventListener {
         Map<Integer, List<String>> shardedIds = this.indexer.extractShardedIds(ids);
         List<String> localIds = new ArrayList<>();
         Map<String, List<String>> remoteIdsMap = new HashMap<>();
+        Map<String, List<String>> stagingIdsMap = new HashMap<>();
         for (Map.Entry<Integer, List<String>> entry : shardedIds.entrySet()) {
             Set<String> nodeIds = this.shardMemberMap.getNodeIdsForShard(entry.getKey());
             for (String nodeId : nodeIds) {
@@ -343,16 +363,13 @@ public class IndexNodeCoordinator implements GroupEventListener {
                     localIds.addAll(entry.getValue());
                 } else {
                     Object memberNode = this.shardMemberMap.getMemberFromNodeId(nodeId);
-                    if (memberNode == null) {
-                        this.addToStaging(nodeId, tenantId, tableName, entry.getValue());
-                    } else {
-                        List<String> remoteIds = remoteIdsMap.get(nodeId);
-                        if (remoteIds == null) {
-                            remoteIds = new ArrayList<>();
-                            remoteIdsMap.put(nodeId, remoteIds);
-                        }
-                        remoteIds.addAll(entry.getValue());
+                    Map<String, List<String>> targetIdsMap = memberNode == null ? stagingIdsMap : remoteIdsMap;
+                    List<String> targetIds = targetIdsMap.get(nodeId);
+                    if (targetIds == null) {
+                        targetIds = new ArrayList<>();
+                        targetIdsMap.put(nodeId, targetIds);
                     }
+                    targetIds.addAll(entry.getValue());
                 }
             }
         }
@@ -360,12 +377,16 @@ public class IndexNodeCoordinator implements GroupEventListener {
         for (Map.Entry<String, List<String>> entry : remoteIdsMap.entrySet()) {
             this.processRemoteRecordDelete(entry.getKey(), tenantId, tableName, entry.getValue());
         }
+        for (Map.Entry<String, List<String>> entry : stagingIdsMap.entrySet()) {
+            this.addToStaging(entry.getKey(), tenantId, tableName, entry.getValue());
+        }
     }
 
     public void put(List<Record> records) throws AnalyticsException {
         Map<Integer, List<Record>> shardedRecords = this.indexer.extractShardedRecords(records);
         List<Record> localRecords = new ArrayList<>();
         Map<String, List<Record>> remoteRecordsMap = new HashMap<>();
+        Map<String, List<Record>> stagingRecordsMap = new HashMap<>();
         for (Map.Entry<Integer, List<Record>> entry : shardedRecords.entrySet()) {
             Set<String> nodeIds = this.shardMemberMap.getNodeIdsForShard(entry.getKey());
             for (String nodeId : nodeIds) {
@@ -373,16 +394,14 @@ public class IndexNodeCoordinator implements GroupEventListener {
                     localRecords.addAll(entry.getValue());
                 } else {
                     Object memberNode = this.shardMemberMap.getMemberFromNodeId(nodeId);
-                    if (memberNode == null) {
-                        this.addToStaging(nodeId, entry.getValue());
-                    } else {
-                        List<Record> remoteRecords = remoteRecordsMap.get(nodeId);
-                        if (remoteRecords == null) {
-                            remoteRecords = new ArrayList<>();
-                            remoteRecordsMap.put(nodeId, remoteRecords);
-                        }
-                        remoteRecords.addAll(entry.getValue());
+                    Map<String, List<Record>> targetRecordsMap = memberNode == null ? stagingRecordsMap :
+                            remoteRecordsMap;
+                    List<Record> targetRecords = targetRecordsMap.get(nodeId);
+                    if (targetRecords == null) {
+                        targetRecords = new ArrayList<>();
+                        targetRecordsMap.put(nodeId, targetRecords);
                     }
+                    targetRecords.addAll(entry.getValue());
                 }
             }
         }
@@ -390,6 +409,9 @@ public class IndexNodeCoordinator implements GroupEventListener {
         for (Map.Entry<String, List<Record>> entry : remoteRecordsMap.entrySet()) {
             this.processRemoteRecordPut(entry.getKey(), entry.getValue());
         }
+        for (Map.Entry<String, List<Record>> entry : stagingRecordsMap.entrySet()) {
+            this.addToStaging(entry.getKey(), entry.getValue());
+        }
     }
 
     private void processRemoteRecordPut(String nodeId, List<Record> records) throws AnalyticsException {
@@ -448,12 +470,46 @@ public class IndexNodeCoordinator implements GroupEventListener {
     }
 
     private void addToStaging(String nodeId, List<Record> records) throws AnalyticsException {
-        this.stagingIndexDataStore.put(nodeId, records);
+        this.notifyStagingConsumer(nodeId, this.stagingIndexDataStore.put(nodeId, records));
     }
 
     private void addToStaging(String nodeId, int tenantId, String tableName, List<String> ids)
             throws AnalyticsException {
-        this.stagingIndexDataStore.delete(nodeId, tenantId, tableName, ids);
+        this.notifyStagingConsumer(nodeId, this.stagingIndexDataStore.delete(nodeId, tenantId, tableName, ids));
+    }
+
+    private void notifyStagingConsumer(String nodeId, Set<Integer> shardIndices) {
+        if (shardIndices.isEmpty()) {
+            return;
+        }
+        if (this.isClusteringEnabled()) {
+            try {
+                this.getStagingNotificationTopic().publish(new StagingNotification(nodeId,
+                        new HashSet<>(shardIndices)));
+            } catch (Exception e) {
+                /* the staging workers will pick up the data in their next full scan anyway */
+                log.warn("Error in publishing staging index data notification: " + e.getMessage());
+            }
+        } else {
+            this.onStagingNotification(nodeId, shardIndices);
+        }
+    }
+
+    private void onStagingNotification(String nodeId, Set<Integer> shardIndices) {
+        if (!this.indexingNode || !nodeId.equals(this.myNodeId)) {
+            return;
+        }
+        Map<Integer, StagingDataIndexWorker> workerMap = this.stagingShardWorkerMap;
+        if (workerMap == null) {
+            return;
+        }
+        StagingDataIndexWorker worker;
+        for (int shardIndex : shardIndices) {
+            worker = workerMap.get(shardIndex);
+            if (worker != null) {
+                worker.notifyShard(shardIndex);
+            }
+        }
     }
 
     private void readAndIndexTable(IndexedTableId tableId, Object[] initShardObjs) throws AnalyticsException {
@@ -653,6 +709,7 @@ public class IndexNodeCoordinator implements GroupEventListener {
     }
 
     private void stopAndCleanupStagingWorkers() {
+        this.stagingShardWorkerMap = null;
         if (this.stagingIndexWorkers != null) {
             for (StagingDataIndexWorker worker : this.stagingIndexWorkers) {
                 worker.stop();
@@ -680,19 +737,41 @@ public class IndexNodeCoordinator implements GroupEventListener {
         if (localShardIndices.length == 0) {
             return;
         }
-        this.stagingWorkerExecutor = Executors.newFixedThreadPool(localShardIndices.length);
-        this.stagingIndexWorkers = new ArrayList<>(localShardIndices.length);
-        for (int shardIndex : localShardIndices) {
-            StagingDataIndexWorker worker = new StagingDataIndexWorker(shardIndex);
+        /* a few workers each handle a set of shards, rather than a thread per shard polling its staging table */
+        int workerCount = Math.min(localShardIndices.length, MAX_STAGING_WORKER_COUNT);
+        List<List<Integer>> workerShardIndices = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workerShardIndices.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < localShardIndices.length; i++) {
+            workerShardIndices.get(i % workerCount).add(localShardIndices[i]);
+        }
+        this.stagingWorkerExecutor = Executors.newFixedThreadPool(workerCount);
+        this.stagingIndexWorkers = new ArrayList<>(workerCount);
+        Map<Integer, StagingDataIndexWorker> workerMap = new HashMap<>(localShardIndices.length);
+        for (List<Integer> shardIndices : workerShardIndices) {
+            StagingDataIndexWorker worker = new StagingDataIndexWorker(shardIndices);
+            for (int shardIndex : shardIndices) {
+                workerMap.put(shardIndex, worker);
+            }
             this.stagingIndexWorkers.add(worker);
             this.stagingWorkerExecutor.execute(worker);
         }
+        this.stagingShardWorkerMap = workerMap;
         if (log.isDebugEnabled()) {
             log.debug("Created " + this.stagingIndexWorkers.size() + " staging worker threads.");
         }
     }
 
     public void close() {
+        if (this.stagingNotificationListenerId != null) {
+            try {
+                this.getStagingNotificationTopic().removeMessageListener(this.stagingNotificationListenerId);
+            } catch (Exception e) {
+                log.debug("Error in removing staging notification listener: " + e.getMessage(), e);
+            }
+            this.stagingNotificationListenerId = null;
+        }
         this.remoteCommunicator.close();
         this.stopAndCleanupStagingWorkers();
         this.localShardProcessExecutor.shutdownNow();
@@ -725,6 +804,39 @@ public class IndexNodeCoordinator implements GroupEventListener {
         }
     }
 
+    /**
+     * Deletes the index data of a time range in all the shards. The shard owners are reached with an executeAll
+     * call, where each indexing member returns its node id, so the members which did not do the delete are known.
+     * @return True, if all the shard owners deleted the index data, or else, the shards of the owners which were 
+     * not reachable at the moment still have the index data of the range
+     * @throws AnalyticsException
+     */
+    public boolean delete(int tenantId, String tableName, long timeFrom, long timeTo) throws AnalyticsException {
+        Set<String> deletedNodeIds = new HashSet<>();
+        if (this.isClusteringEnabled()) {
+            AnalyticsClusterManager acm = AnalyticsServiceHolder.getAnalyticsClusterManager();
+            deletedNodeIds.addAll(acm.executeAll(Constants.ANALYTICS_INDEXING_GROUP, new IndexDataRangeDeleteCall(
+                    tenantId, tableName, timeFrom, timeTo)));
+        } else {
+            deletedNodeIds.add(this.deleteLocal(tenantId, tableName, timeFrom, timeTo));
+        }
+        int shardCount = this.indexer.getShardCount();
+        Set<String> nodeIds;
+        for (int i = 0; i < shardCount; i++) {
+            nodeIds = this.shardMemberMap.getNodeIdsForShard(i);
+            if (nodeIds != null && !deletedNodeIds.containsAll(nodeIds)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private String deleteLocal(int tenantId, String tableName, long timeFrom, long timeTo) 
+            throws AnalyticsException {
+        this.indexer.deleteLocal(tenantId, tableName, timeFrom, timeTo);
+        return this.indexingNode ? this.myNodeId : null;
+    }
+
     public void clearIndexData(int tenantId, String tableName) throws AnalyticsException {
         if (this.isClusteringEnabled()) {
             AnalyticsClusterManager acm = AnalyticsServiceHolder.getAnalyticsClusterManager();
@@ -834,6 +946,41 @@ public class IndexNodeCoordinator implements GroupEventListener {
         }
     }
 
+    public static class IndexDataRangeDeleteCall implements Callable<String>, Serializable {
+
+        private static final long serialVersionUID = 3498815395743221386L;
+
+        private int tenantId;
+
+        private String tableName;
+
+        private long timeFrom;
+
+        private long timeTo;
+
+        public IndexDataRangeDeleteCall(int tenantId, String tableName, long timeFrom, long timeTo) {
+            this.tenantId = tenantId;
+            this.tableName = tableName;
+            this.timeFrom = timeFrom;
+            this.timeTo = timeTo;
+        }
+
+        @Override
+        public String call() throws Exception {
+            AnalyticsDataService ads = AnalyticsServiceHolder.getAnalyticsDataService();
+            if (ads == null) {
+                throw new AnalyticsException("The analytics data service implementation is not registered");
+            }
+            /* these cluster messages are specific to AnalyticsDataServiceImpl */
+            if (ads instanceof AnalyticsDataServiceImpl) {
+                AnalyticsDataServiceImpl adsImpl = (AnalyticsDataServiceImpl) ads;
+                return adsImpl.getIndexer().getIndexNodeCoordinator().deleteLocal(this.tenantId, this.tableName, 
+                        this.timeFrom, this.timeTo);
+            }
+            return null;
+        }
+    }
+
     public static class QueryLocalShardsAndAddressCall implements Callable<LocalShardAddressInfo>, Serializable {
 
         private static final long serialVersionUID = -3795137566620416535L;
@@ -963,6 +1110,25 @@ public class IndexNodeCoordinator implements GroupEventListener {
         this.stagingIndexDataStore.removeEntries(this.myNodeId, shardIndex, Arrays.asList(entry.getRecordId()));
     }
 
+    /**
+     * Processes all the staged index operations of the given local shard, which queues them in the local 
+     * index data store.
+     * @param shardIndex The local shard index
+     * @throws AnalyticsException
+     */
+    public void processStagingEntries(int shardIndex) throws AnalyticsException {
+        if (!this.indexingNode || this.myNodeId == null) {
+            return;
+        }
+        List<StagingIndexDataEntry> entries;
+        do {
+            entries = this.stagingIndexDataStore.loadEntries(this.myNodeId, shardIndex);
+            for (StagingIndexDataEntry entry : entries) {
+                this.processStagingEntry(shardIndex, entry);
+            }
+        } while (!entries.isEmpty());
+    }
+
     private Set<String> extractIds(List<Record> records) {
         Set<String> ids = new HashSet<>(records.size());
         for (Record record : records) {
@@ -973,47 +1139,134 @@ public class IndexNodeCoordinator implements GroupEventListener {
 
     /**
      * This class consumes the index staging data that is been put by data publishers like the Spark analytics tables,
-     * which does not have direct visibility to indexing nodes.
+     * which does not have direct visibility to indexing nodes. A worker handles a set of shards, and only reads the
+     * staging data of the shards it is notified of, other than a periodic full scan of all its shards.
      */
     private class StagingDataIndexWorker implements Runnable {
 
-        private static final int STAGING_INDEXER_WORKER_SLEEP = 5000;
+        private static final long STAGING_WORKER_FULL_SCAN_INTERVAL = 60000;
+
+        private static final long STAGING_WORKER_ERROR_RETRY_INTERVAL = 5000;
+
+        private List<Integer> shardIndices;
 
-        private int shardIndex;
+        private Set<Integer> pendingShardIndices = new HashSet<>();
 
-        private boolean stop;
+        private volatile boolean stop;
 
-        public StagingDataIndexWorker(int shardIndex) {
-            this.shardIndex = shardIndex;
+        public StagingDataIndexWorker(List<Integer> shardIndices) {
+            this.shardIndices = shardIndices;
+        }
+
+        public synchronized void notifyShard(int shardIndex) {
+            this.pendingShardIndices.add(shardIndex);
+            this.notifyAll();
+        }
+
+        private synchronized Set<Integer> waitForShards(long nextFullScanTime) throws InterruptedException {
+            long waitTime = nextFullScanTime - System.currentTimeMillis();
+            while (!this.stop && this.pendingShardIndices.isEmpty() && waitTime > 0) {
+                this.wait(waitTime);
+                waitTime = nextFullScanTime - System.currentTimeMillis();
+            }
+            if (this.pendingShardIndices.isEmpty()) {
+                return null;
+            }
+            Set<Integer> result = this.pendingShardIndices;
+            this.pendingShardIndices = new HashSet<>();
+            return result;
         }
 
         @Override
         public void run() {
+            long nextFullScanTime = 0;
+            Set<Integer> currentShardIndices;
             while (!this.stop) {
                 try {
-                    List<StagingIndexDataEntry> entries = stagingIndexDataStore.loadEntries(myNodeId, this.shardIndex);
-                    if (!entries.isEmpty()) {
-                        for (StagingIndexDataEntry entry : entries) {
-                            processStagingEntry(this.shardIndex, entry);
+                    currentShardIndices = this.waitForShards(nextFullScanTime);
+                    if (this.stop) {
+                        break;
+                    }
+                    if (currentShardIndices == null) {
+                        currentShardIndices = new HashSet<>(this.shardIndices);
+                        nextFullScanTime = System.currentTimeMillis() + STAGING_WORKER_FULL_SCAN_INTERVAL;
+                    }
+                    /* the shards are loaded together, sharing a single batch of entries */
+                    Map<Integer, List<StagingIndexDataEntry>> shardedEntries = stagingIndexDataStore.loadEntries(
+                            myNodeId, currentShardIndices);
+                    int entryCount = 0;
+                    for (Map.Entry<Integer, List<StagingIndexDataEntry>> shardEntries : shardedEntries.entrySet()) {
+                        for (StagingIndexDataEntry entry : shardEntries.getValue()) {
+                            processStagingEntry(shardEntries.getKey(), entry);
+                        }
+                        entryCount += shardEntries.getValue().size();
+                        /* there can be more entries left in the shard, check it again */
+                        this.notifyShard(shardEntries.getKey());
+                    }
+                    if (entryCount >= Constants.RECORDS_BATCH_SIZE) {
+                        /* the batch is full, so the shards which did not fit in it are checked again */
+                        for (int shardIndex : currentShardIndices) {
+                            this.notifyShard(shardIndex);
                         }
-                    } else {
-                        Thread.sleep(STAGING_INDEXER_WORKER_SLEEP);
                     }
                 } catch (AnalyticsInterruptException | InterruptedException e) {
                     // This exception can be thrown from data queues, if the shutdown hook is triggered
-                    log.debug("Staging Data Index Worker Interuppted [" + this.shardIndex + "]: " + e.getMessage(), e);
+                    log.debug("Staging Data Index Worker Interuppted " + this.shardIndices + ": " + e.getMessage(), e);
                     return;
                 } catch (Exception e) {
                     log.error("Error in processing staging index data: " + e.getMessage(), e);
+                    nextFullScanTime = System.currentTimeMillis() + STAGING_WORKER_ERROR_RETRY_INTERVAL;
                 }
             }
             if (log.isDebugEnabled()) {
-                log.debug("Staging Data Index Worker Exiting [" + this.shardIndex + "]");
+                log.debug("Staging Data Index Worker Exiting " + this.shardIndices);
             }
         }
 
-        public void stop() {
+        public synchronized void stop() {
             this.stop = true;
+            this.notifyAll();
+        }
+
+    }
+
+    /**
+     * This class represents a notification sent to the target node, when index staging data is added to its shards.
+     */
+    public static class StagingNotification implements Serializable {
+
+        private static final long serialVersionUID = -4385626405937162370L;
+
+        private String nodeId;
+
+        private Set<Integer> shardIndices;
+
+        public StagingNotification() { }
+
+        public StagingNotification(String nodeId, Set<Integer> shardIndices) {
+            this.nodeId = nodeId;
+            this.shardIndices = shardIndices;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public Set<Integer> getShardIndices() {
+            return shardIndices;
+        }
+
+    }
+
+    /**
+     * This class listens to staging notifications, and wakes up the local staging workers of the notified shards.
+     */
+    private class StagingNotificationListener implements MessageListener<StagingNotification> {
+
+        @Override
+        public void onMessage(Message<StagingNotification> message) {
+            StagingNotification notification = message.getMessageObject();
+            onStagingNotification(notification.getNodeId(), notification.getShardIndices());
         }
 
     }
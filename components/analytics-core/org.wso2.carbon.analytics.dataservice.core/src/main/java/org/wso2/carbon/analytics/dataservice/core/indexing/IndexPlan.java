@@ -0,0 +1,92 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core.indexing;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.facet.FacetsConfig;
+import org.wso2.carbon.analytics.dataservice.commons.Constants;
+import org.wso2.carbon.analytics.datasource.commons.AnalyticsSchema;
+import org.wso2.carbon.analytics.datasource.commons.ColumnDefinition;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class represents the Lucene artifacts derived from the indexed columns of a table, which are used
+ * in indexing and searching the table. These are immutable after creation, so a single instance is shared
+ * by all the threads working on the table, till the table schema changes.
+ */
+public class IndexPlan {
+
+    private Map<String, ColumnDefinition> indices;
+
+    private FacetsConfig facetsConfig;
+
+    private Analyzer analyzer;
+
+    public IndexPlan(Map<String, ColumnDefinition> indices, Analyzer defaultAnalyzer) {
+        this.indices = indices;
+        this.facetsConfig = new FacetsConfig();
+        Map<String, Analyzer> analyzersPerField = new HashMap<>();
+        Analyzer keywordAnalyzer = new KeywordAnalyzer();
+        for (Map.Entry<String, ColumnDefinition> entry : indices.entrySet()) {
+            if (entry.getValue().isFacet()) {
+                this.facetsConfig.setHierarchical(entry.getKey(), true);
+                this.facetsConfig.setMultiValued(entry.getKey(), true);
+            }
+            if (entry.getValue().getType() == AnalyticsSchema.ColumnType.STRING) {
+                analyzersPerField.put(Constants.NON_TOKENIZED_FIELD_PREFIX + entry.getKey(), keywordAnalyzer);
+            }
+        }
+        if (analyzersPerField.isEmpty()) {
+            this.analyzer = new PerFieldAnalyzerWrapper(defaultAnalyzer);
+        } else {
+            this.analyzer = new PerFieldAnalyzerWrapper(defaultAnalyzer, analyzersPerField);
+        }
+    }
+
+    /**
+     * Returns the indexed columns this plan is created from.
+     * @return The indexed columns
+     */
+    public Map<String, ColumnDefinition> getIndices() {
+        return indices;
+    }
+
+    /**
+     * Returns the facets configuration, where all the facet columns are hierarchical and multi-valued.
+     * This must not be modified.
+     * @return The facets configuration
+     */
+    public FacetsConfig getFacetsConfig() {
+        return facetsConfig;
+    }
+
+    /**
+     * Returns the analyzer to be used in parsing queries, where the non-tokenized string fields are
+     * analyzed as keywords.
+     * @return The analyzer
+     */
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+}
@@ -0,0 +1,349 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core.indexing;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.wso2.carbon.analytics.dataservice.commons.exception.AnalyticsIndexException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps a pool of near-real-time index searchers per shard/table, which are
+ * refreshed periodically and after index updates, so search operations do not have to
+ * re-open the index readers for each lookup.
+ */
+public class IndexSearcherPool {
+
+    private static final Log log = LogFactory.getLog(IndexSearcherPool.class);
+
+    private AnalyticsDataIndexer indexer;
+
+    private long maxStaleness;
+
+    private Map<String, SearcherEntry> entries = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService refreshExecutor;
+
+    private AtomicLong refreshCount = new AtomicLong();
+
+    private AtomicLong totalRefreshLag = new AtomicLong();
+
+    private AtomicLong maxRefreshLag = new AtomicLong();
+
+    public IndexSearcherPool(AnalyticsDataIndexer indexer, long maxStaleness) {
+        this.indexer = indexer;
+        this.maxStaleness = maxStaleness;
+    }
+
+    /**
+     * Starts the background refresher, which makes sure the pooled searchers are never older
+     * than the configured max staleness. It is stopped by {@link #close()}.
+     */
+    public void init() {
+        this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "analytics-index-searcher-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refreshAll();
+            }
+        }, this.maxStaleness, this.maxStaleness, TimeUnit.MILLISECONDS);
+    }
+
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    private String generateEntryId(int shardId, String tableId) {
+        return shardId + "_" + tableId;
+    }
+
+    private SearcherEntry lookupEntry(int shardId, String tableId) throws AnalyticsIndexException {
+        String entryId = this.generateEntryId(shardId, tableId);
+        SearcherEntry entry = this.entries.get(entryId);
+        if (entry == null) {
+            synchronized (this.entries) {
+                entry = this.entries.get(entryId);
+                if (entry == null) {
+                    IndexWriter indexWriter = this.indexer.lookupIndexWriter(shardId, tableId);
+                    DirectoryTaxonomyWriter taxonomyWriter = this.indexer.lookupTaxonomyIndexWriter(shardId, tableId);
+                    try {
+                        entry = new SearcherEntry(shardId, new SearcherTaxonomyManager(indexWriter, true, null,
+                                taxonomyWriter));
+                    } catch (IOException e) {
+                        throw new AnalyticsIndexException("Error in creating index searcher manager: " +
+                                e.getMessage(), e);
+                    }
+                    this.entries.put(entryId, entry);
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Acquires a reference to the current searcher of the given shard/table, the returned reference
+     * must be released by calling {@link SearcherReference#release()}.
+     * @param shardId The shard index
+     * @param tableId The table id
+     * @return The acquired searcher reference
+     * @throws AnalyticsIndexException
+     */
+    public SearcherReference acquire(int shardId, String tableId) throws AnalyticsIndexException {
+        SearcherEntry entry = this.lookupEntry(shardId, tableId);
+        try {
+            return new SearcherReference(entry.manager, entry.manager.acquire());
+        } catch (IOException e) {
+            throw new AnalyticsIndexException("Error in acquiring index searcher: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Marks the searcher of the given shard/table as stale, this is called when the index writer
+     * receives new changes, and is used to calculate the refresh lag.
+     * @param shardId The shard index
+     * @param tableId The table id
+     */
+    public void markStale(int shardId, String tableId) {
+        SearcherEntry entry = this.entries.get(this.generateEntryId(shardId, tableId));
+        if (entry != null && entry.staleSince == 0) {
+            entry.staleSince = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Refreshes the searcher of the given shard/table, blocking till the latest index changes are visible.
+     * @param shardId The shard index
+     * @param tableId The table id
+     * @throws AnalyticsIndexException
+     */
+    public void refresh(int shardId, String tableId) throws AnalyticsIndexException {
+        SearcherEntry entry = this.entries.get(this.generateEntryId(shardId, tableId));
+        if (entry == null) {
+            /* nobody has searched this shard yet, the first lookup will open a fresh reader */
+            return;
+        }
+        try {
+            entry.manager.maybeRefreshBlocking();
+            this.updateRefreshStats(entry);
+        } catch (IOException e) {
+            throw new AnalyticsIndexException("Error in refreshing index searcher: " + e.getMessage(), e);
+        }
+    }
+
+    private void refreshAll() {
+        for (SearcherEntry entry : this.entries.values()) {
+            try {
+                if (entry.manager.maybeRefresh()) {
+                    this.updateRefreshStats(entry);
+                }
+            } catch (Exception e) {
+                log.error("Error in refreshing index searcher: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void updateRefreshStats(SearcherEntry entry) {
+        long staleSince = entry.staleSince;
+        if (staleSince == 0) {
+            return;
+        }
+        entry.staleSince = 0;
+        long lag = System.currentTimeMillis() - staleSince;
+        this.refreshCount.incrementAndGet();
+        this.totalRefreshLag.addAndGet(lag);
+        long currentMax = this.maxRefreshLag.get();
+        while (lag > currentMax && !this.maxRefreshLag.compareAndSet(currentMax, lag)) {
+            currentMax = this.maxRefreshLag.get();
+        }
+    }
+
+    /**
+     * Closes and removes the searcher manager of the given shard/table, this must be called before the
+     * underlying index/taxonomy writers are closed.
+     * @param shardId The shard index
+     * @param tableId The table id
+     */
+    public void invalidate(int shardId, String tableId) {
+        SearcherEntry entry;
+        synchronized (this.entries) {
+            entry = this.entries.remove(this.generateEntryId(shardId, tableId));
+        }
+        if (entry != null) {
+            this.closeEntry(entry);
+        }
+    }
+
+    /**
+     * Closes and removes the searcher managers of all the tables of the given shard, this is called when
+     * the shard is not a local shard anymore.
+     * @param shardId The shard index
+     */
+    public void invalidate(int shardId) {
+        synchronized (this.entries) {
+            Iterator<SearcherEntry> itr = this.entries.values().iterator();
+            SearcherEntry entry;
+            while (itr.hasNext()) {
+                entry = itr.next();
+                if (entry.shardId == shardId) {
+                    this.closeEntry(entry);
+                    itr.remove();
+                }
+            }
+        }
+    }
+
+    private void closeEntry(SearcherEntry entry) {
+        try {
+            entry.manager.close();
+        } catch (IOException e) {
+            log.error("Error in closing index searcher manager: " + e.getMessage(), e);
+        }
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    public long getMaxRefreshLag() {
+        return maxRefreshLag.get();
+    }
+
+    public double getAverageRefreshLag() {
+        long count = this.refreshCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return this.totalRefreshLag.get() / (double) count;
+    }
+
+    /**
+     * Returns the time since the oldest change, which is not visible to the searches yet.
+     * @return The current refresh lag in milliseconds, or 0 if all the changes are visible
+     */
+    public long getCurrentRefreshLag() {
+        long now = System.currentTimeMillis();
+        long result = 0;
+        long staleSince;
+        for (SearcherEntry entry : this.entries.values()) {
+            staleSince = entry.staleSince;
+            if (staleSince != 0) {
+                result = Math.max(result, now - staleSince);
+            }
+        }
+        return result;
+    }
+
+    public void close() {
+        if (this.refreshExecutor != null) {
+            this.refreshExecutor.shutdownNow();
+            this.refreshExecutor = null;
+        }
+        synchronized (this.entries) {
+            Iterator<SearcherEntry> itr = this.entries.values().iterator();
+            while (itr.hasNext()) {
+                this.closeEntry(itr.next());
+                itr.remove();
+            }
+        }
+    }
+
+    /**
+     * Pooled searcher manager entry of a shard/table.
+     */
+    private static class SearcherEntry {
+
+        private int shardId;
+
+        private SearcherTaxonomyManager manager;
+
+        private volatile long staleSince;
+
+        public SearcherEntry(int shardId, SearcherTaxonomyManager manager) {
+            this.shardId = shardId;
+            this.manager = manager;
+        }
+
+    }
+
+    /**
+     * Represents an acquired, reference counted searcher, which must be released after use.
+     */
+    public static class SearcherReference {
+
+        private SearcherTaxonomyManager manager;
+
+        private SearcherAndTaxonomy searcherAndTaxonomy;
+
+        private boolean released;
+
+        public SearcherReference(SearcherTaxonomyManager manager, SearcherAndTaxonomy searcherAndTaxonomy) {
+            this.manager = manager;
+            this.searcherAndTaxonomy = searcherAndTaxonomy;
+        }
+
+        public IndexSearcher getSearcher() {
+            return this.searcherAndTaxonomy.searcher;
+        }
+
+        public IndexReader getIndexReader() {
+            return this.searcherAndTaxonomy.searcher.getIndexReader();
+        }
+
+        public TaxonomyReader getTaxonomyReader() {
+            return this.searcherAndTaxonomy.taxonomyReader;
+        }
+
+        public synchronized void release() {
+            if (this.released) {
+                return;
+            }
+            this.released = true;
+            try {
+                this.manager.release(this.searcherAndTaxonomy);
+            } catch (IOException e) {
+                log.error("Error in releasing index searcher: " + e.getMessage(), e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core.indexing;
+
+/**
+ * This interface exposes the refresh statistics of the pooled index searchers, where the refresh lag is the
+ * time an index change takes to be visible to the searches.
+ */
+public interface IndexSearcherStatsMBean {
+
+    /**
+     * This will return the number of searcher refreshes, which made index changes visible.
+     * @return The refresh count.
+     */
+    long getRefreshCount();
+
+    /**
+     * This will return the average refresh lag.
+     * @return The average refresh lag in milliseconds.
+     */
+    double getAverageRefreshLag();
+
+    /**
+     * This will return the maximum refresh lag.
+     * @return The maximum refresh lag in milliseconds.
+     */
+    long getMaxRefreshLag();
+
+    /**
+     * This will return the time since the oldest index change, which is not visible to the searches yet.
+     * @return The current refresh lag in milliseconds.
+     */
+    long getCurrentRefreshLag();
+
+}
@@ -18,8 +18,11 @@
  */
 package org.wso2.carbon.analytics.dataservice.core.indexing;
 
+import com.leansoft.bigqueue.BigArrayImpl;
 import com.leansoft.bigqueue.BigQueueImpl;
+import com.leansoft.bigqueue.IBigArray;
 import com.leansoft.bigqueue.IBigQueue;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.analytics.dataservice.commons.exception.AnalyticsInterruptException;
@@ -28,12 +31,24 @@ import org.wso2.carbon.analytics.datasource.commons.Record;
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Manages local indexing data.
@@ -54,14 +69,28 @@ public class LocalIndexDataStore {
     
     public void refreshLocalIndexShards() throws AnalyticsException {
         this.flushQueues();
-        for (int shardIndex : this.indexer.getLocalShards()) {
-            this.indexDataQueues.put(shardIndex, new LocalIndexDataQueue(shardIndex,
-                    indexer.getAnalyticsIndexerInfo().getIndexQueueCleanupThreshold()));
+        Set<Integer> localShards = this.indexer.getLocalShards();
+        /* the queues of the shards, which are not local anymore, are closed to release their files */
+        Iterator<Map.Entry<Integer, LocalIndexDataQueue>> itr = this.indexDataQueues.entrySet().iterator();
+        Map.Entry<Integer, LocalIndexDataQueue> queueEntry;
+        while (itr.hasNext()) {
+            queueEntry = itr.next();
+            if (!localShards.contains(queueEntry.getKey())) {
+                queueEntry.getValue().close();
+                itr.remove();
+            }
+        }
+        for (int shardIndex : localShards) {
+            /* an existing queue is kept as it is, since it tracks the entries already read from it */
+            if (!this.indexDataQueues.containsKey(shardIndex)) {
+                this.indexDataQueues.put(shardIndex, new LocalIndexDataQueue(shardIndex,
+                        indexer.getAnalyticsIndexerInfo().getIndexQueueCleanupThreshold()));
+            }
         }
     }
     
     public void put(List<Record> records) throws AnalyticsException {
-        Map<Integer, List<Record>> recordsMap = this.indexer.extractShardedRecords(records);
+        Map<Integer, List<Record>> recordsMap = this.indexer.extractShardedRecords(this.projectIndexedColumns(records));
         LocalIndexDataQueue dataList;
         for (Map.Entry<Integer, List<Record>> entry : recordsMap.entrySet()) {
             dataList = this.indexDataQueues.get(entry.getKey());
@@ -85,6 +114,35 @@ public class LocalIndexDataStore {
         }
     }
     
+    /**
+     * Creates copies of the given records, which only contain the values of the indexed columns of their tables,
+     * since only those are used in indexing, and the rest would only inflate the local index queues.
+     */
+    private List<Record> projectIndexedColumns(List<Record> records) throws AnalyticsException {
+        Map<String, Set<String>> indexedColumns = new HashMap<>();
+        List<Record> result = new ArrayList<>(records.size());
+        Map<String, Object> values;
+        Set<String> columns;
+        String tableKey;
+        for (Record record : records) {
+            tableKey = record.getTenantId() + ":" + record.getTableName();
+            columns = indexedColumns.get(tableKey);
+            if (columns == null) {
+                columns = this.indexer.lookupIndices(record.getTenantId(), record.getTableName()).keySet();
+                indexedColumns.put(tableKey, columns);
+            }
+            values = new HashMap<>(columns.size());
+            for (String column : columns) {
+                if (record.getValues().containsKey(column)) {
+                    values.put(column, record.getValue(column));
+                }
+            }
+            result.add(new Record(record.getId(), record.getTenantId(), record.getTableName(), values,
+                    record.getTimestamp()));
+        }
+        return result;
+    }
+    
     private void flushQueues() {
         for (LocalIndexDataQueue queue : this.indexDataQueues.values()) {
             queue.flush();
@@ -92,7 +150,10 @@ public class LocalIndexDataStore {
     }
     
     public void close() {
-        this.flushQueues();
+        for (LocalIndexDataQueue queue : this.indexDataQueues.values()) {
+            queue.close();
+        }
+        this.indexDataQueues.clear();
     }
     
     public LocalIndexDataQueue getIndexDataQueue(int shardIndex) {
@@ -102,6 +163,12 @@ public class LocalIndexDataStore {
     public static class IndexOperation implements Serializable {
         
         private static final long serialVersionUID = 7764589621281488353L;
+        
+        private static final byte ENTRY_FORMAT_VERSION = 1;
+        
+        private static final byte OPERATION_PUT = 0;
+        
+        private static final byte OPERATION_DELETE = 1;
 
         private boolean delete;
         
@@ -161,16 +228,113 @@ public class LocalIndexDataStore {
             return this;
         }
         
-        public byte[] getBytes() {
-            return GenericUtils.serializeObject(this);
+        /**
+         * Encodes this operation in the local index queue entry format, which is, the format version, the
+         * operation type, and then either the delete tenant id, table name and the ids, or the id, tenant id,
+         * table name, timestamp and the encoded values of each record.
+         * @return The encoded operation
+         * @throws AnalyticsException
+         */
+        public byte[] getBytes() throws AnalyticsException {
+            try {
+                ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(byteOut);
+                out.writeByte(ENTRY_FORMAT_VERSION);
+                if (this.delete) {
+                    out.writeByte(OPERATION_DELETE);
+                    out.writeInt(this.deleteTenantId);
+                    writeString(out, this.deleteTableName);
+                    out.writeInt(this.ids.size());
+                    for (String id : this.ids) {
+                        writeString(out, id);
+                    }
+                } else {
+                    out.writeByte(OPERATION_PUT);
+                    out.writeInt(this.records.size());
+                    byte[] values;
+                    for (Record record : this.records) {
+                        writeString(out, record.getId());
+                        out.writeInt(record.getTenantId());
+                        writeString(out, record.getTableName());
+                        out.writeLong(record.getTimestamp());
+                        values = GenericUtils.encodeRecordValues(record.getValues());
+                        out.writeInt(values.length);
+                        out.write(values);
+                    }
+                }
+                out.flush();
+                return byteOut.toByteArray();
+            } catch (IOException e) {
+                throw new AnalyticsException("Error in encoding index operation: " + e.getMessage(), e);
+            }
+        }
+        
+        public static IndexOperation fromBytes(byte[] data) throws AnalyticsException {
+            IndexOperation result;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                byte version = buffer.get();
+                if (version != ENTRY_FORMAT_VERSION) {
+                    throw new AnalyticsException("Unsupported index operation format version: " + version);
+                }
+                if (buffer.get() == OPERATION_DELETE) {
+                    result = new IndexOperation(true);
+                    result.setDeleteTenantId(buffer.getInt());
+                    result.setDeleteTableName(readString(buffer));
+                    int count = buffer.getInt();
+                    List<String> ids = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        ids.add(readString(buffer));
+                    }
+                    result.setIds(ids);
+                } else {
+                    result = new IndexOperation(false);
+                    int count = buffer.getInt();
+                    List<Record> records = new ArrayList<>(count);
+                    String id, tableName;
+                    int tenantId;
+                    long timestamp;
+                    byte[] values;
+                    for (int i = 0; i < count; i++) {
+                        id = readString(buffer);
+                        tenantId = buffer.getInt();
+                        tableName = readString(buffer);
+                        timestamp = buffer.getLong();
+                        values = new byte[buffer.getInt()];
+                        buffer.get(values);
+                        records.add(new Record(id, tenantId, tableName, GenericUtils.decodeRecordValues(values, null),
+                                timestamp));
+                    }
+                    result.setRecords(records);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new AnalyticsException("Error in decoding index operation: " + e.getMessage(), e);
+            }
+            result.setByteSize(data.length);
+            return result;
         }
         
-        public static IndexOperation fromBytes(byte[] data) {
+        /**
+         * Decodes an operation persisted by an earlier version, where the whole object was serialized.
+         */
+        public static IndexOperation fromLegacyBytes(byte[] data) {
             IndexOperation result = (IndexOperation) GenericUtils.deserializeObject(data);
             result.setByteSize(data.length);
             return result;
         }
         
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        
+        private static String readString(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
         public long getByteSize() {
             return byteSize;
         }
@@ -183,45 +347,85 @@ public class LocalIndexDataStore {
     
     /**
      * Local persistent queue implementation. This should be used in a single thread at a time, 
-     * due to reliability guarantees it gives with dequeue.
+     * due to reliability guarantees it gives with dequeue. The dequeued entries stay in the queue
+     * till the index changes done with them are committed, which is tracked by a persisted acknowledged
+     * index, so the uncommitted entries can be replayed in order if the server crashes before the commit.
      */
     public static class LocalIndexDataQueue {
         
-        private static final String PRIMARY_QUEUE_SUFFIX = "P";
+        private static final String QUEUE_SUFFIX = "Q";
+        
+        private static final String ACK_INDEX_FILE_SUFFIX = "A";
+        
+        private static final String LEGACY_PRIMARY_QUEUE_SUFFIX = "P";
+        
+        private static final String LEGACY_SECONDARY_QUEUE_SUFFIX = "S";
         
-        private static final String SECONDARY_QUEUE_SUFFIX = "S";
-
         private int queueCleanupThreshold;
         
-        private IBigQueue primaryQueue;
+        private IBigArray queue;
+        
+        private RandomAccessFile ackIndexFile;
         
-        private IBigQueue secondaryQueue;
+        private MappedByteBuffer ackIndexBuffer;
         
-        private long secondaryQueueInitialCount;
+        private long ackIndex;
         
-        private long secondaryProcessedCount;
+        private long readIndex;
+        
+        private long uncommittedCount;
                 
         private long removedDataSize = 0;
         
         public LocalIndexDataQueue(int shardIndex, int queueCleanupThreshold) throws AnalyticsException {
-            this.primaryQueue = this.createQueue(shardIndex + PRIMARY_QUEUE_SUFFIX);
-            this.secondaryQueue = this.createQueue(shardIndex + SECONDARY_QUEUE_SUFFIX);
+            String path = GenericUtils.resolveLocation(Constants.DEFAULT_LOCAL_INDEX_STAGING_LOCATION);
             this.queueCleanupThreshold = queueCleanupThreshold;
-        }
-        
-        private IBigQueue createQueue(String queueId) throws AnalyticsException {
-            String path = Constants.DEFAULT_LOCAL_INDEX_STAGING_LOCATION;
-            path = GenericUtils.resolveLocation(path);
             try {
-                return new BigQueueImpl(path, queueId);
+                this.queue = new BigArrayImpl(path, shardIndex + QUEUE_SUFFIX);
+                this.ackIndexFile = new RandomAccessFile(new File(path, shardIndex + ACK_INDEX_FILE_SUFFIX), "rw");
+                this.ackIndexBuffer = this.ackIndexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 8);
+                /* the entries after the acknowledged index were not committed to the index earlier */
+                this.ackIndex = Math.min(Math.max(this.ackIndexBuffer.getLong(0), this.queue.getTailIndex()),
+                        this.queue.getHeadIndex());
+                this.readIndex = this.ackIndex;
+                if (this.queue.getHeadIndex() > this.readIndex) {
+                    log.info("Index data queue recovery [" + shardIndex + "]: " + 
+                            (this.queue.getHeadIndex() - this.readIndex));
+                }
+                this.migrateLegacyQueue(path, shardIndex + LEGACY_SECONDARY_QUEUE_SUFFIX);
+                this.migrateLegacyQueue(path, shardIndex + LEGACY_PRIMARY_QUEUE_SUFFIX);
             } catch (IOException e) {
                 throw new AnalyticsException("Error in creating queue: " + e.getMessage(), e);
             }
         }
         
+        /**
+         * Moves the entries of a queue created by an earlier version, where the entries were copied to
+         * a secondary queue till they are committed, to this queue.
+         */
+        private void migrateLegacyQueue(String path, String queueId) throws IOException, AnalyticsException {
+            File queueDir = new File(path, queueId);
+            if (!queueDir.exists()) {
+                return;
+            }
+            IBigQueue legacyQueue = new BigQueueImpl(path, queueId);
+            long count = 0;
+            while (!legacyQueue.isEmpty()) {
+                this.queue.append(IndexOperation.fromLegacyBytes(legacyQueue.peek()).getBytes());
+                legacyQueue.dequeue();
+                count++;
+            }
+            this.queue.flush();
+            legacyQueue.close();
+            FileUtils.deleteDirectory(queueDir);
+            if (count > 0) {
+                log.info("Legacy index data queue migration [" + queueId + "]: " + count);
+            }
+        }
+        
         public void enqueue(IndexOperation indexOp) throws AnalyticsException {
             try {
-                this.primaryQueue.enqueue(indexOp.getBytes());
+                this.queue.append(indexOp.getBytes());
             } catch (ClosedByInterruptException e) {
                 throw new AnalyticsInterruptException("Error in index data enqueue (Interrupted..): " + e.getMessage(), e);
             } catch (IOException e) {
@@ -229,60 +433,52 @@ public class LocalIndexDataStore {
             }
         }
         
-        public void startDequeue() {
-            this.secondaryProcessedCount = 0;
-            this.secondaryQueueInitialCount = this.secondaryQueue.size();
-            if (log.isDebugEnabled()) {
-                if (this.secondaryQueueInitialCount > 0) {
-                    log.debug("Secondary index data queue processing: " + this.secondaryQueueInitialCount);
+        /**
+         * Acknowledges all the entries dequeued so far, this must be called after the index changes
+         * done with those entries are committed. The acknowledged index is forced to the disk right away,
+         * which is cheap compared to the index commit done before it.
+         * @throws AnalyticsException
+         */
+        public void markCommitted() throws AnalyticsException {
+            this.ackIndex = this.readIndex;
+            this.ackIndexBuffer.putLong(0, this.ackIndex);
+            this.ackIndexBuffer.force();
+            this.uncommittedCount = 0;
+            if (this.removedDataSize > this.queueCleanupThreshold) {
+                try {
+                    this.queueCleanup();
+                } catch (IOException e) {
+                    throw new AnalyticsException("Error in marking committed: " + e.getMessage(), e);
                 }
+                this.removedDataSize = 0;
             }
         }
         
-        private void queueDrain(IBigQueue queue, long count) throws IOException {
-            long queueSize = queue.size();
-            count = queueSize < count ? queueSize : count;
-            for (int i = 0; i < count; i++) {
-                queue.dequeue();
+        /**
+         * Removes the pages of the queue which only contain acknowledged entries.
+         */
+        private void queueCleanup() throws IOException {
+            /* the head entry is always kept, since the queue can only be cleaned up before a valid index */
+            long cleanupIndex = Math.min(this.ackIndex, this.queue.getHeadIndex() - 1);
+            if (cleanupIndex > this.queue.getTailIndex()) {
+                this.queue.removeBeforeIndex(cleanupIndex);
+                if (log.isDebugEnabled()) {
+                    log.debug("Queue GC: " + this.queue.getTailIndex() + "|" + this.queue.getHeadIndex());
+                }
             }
         }
         
-        public void endDequeue() throws AnalyticsException {
-            try {
-                this.queueDrain(this.secondaryQueue, this.secondaryProcessedCount);
-                this.secondaryProcessedCount = 0;
-            } catch (IOException e) {
-                throw new AnalyticsException("Error in end dequeue: " + e.getMessage(), e);
-            }
+        public long getUncommittedCount() {
+            return uncommittedCount;
         }
         
         public IndexOperation peekNext() throws AnalyticsException {
             try {
-                byte[] data;
-                if (this.secondaryProcessedCount < this.secondaryQueueInitialCount) {
-                    /* the following will not end up in strict FIFO, but it's
-                     * rare that the secondary queue processing will also fail,
-                     * and even when that happens, it's unlikely you need strict
-                     * ordered retrieval of records then */
-                    data = this.secondaryQueue.peek();
-                    this.secondaryQueue.enqueue(data);
-                    this.secondaryQueue.dequeue();
-                } else {
-                    data = this.primaryQueue.peek();
-                    this.secondaryQueue.enqueue(data);
-                    this.primaryQueue.dequeue();
-                }
-                this.secondaryProcessedCount++;
+                byte[] data = this.queue.get(this.readIndex);
+                this.readIndex++;
+                this.uncommittedCount++;
                 IndexOperation indexOp = IndexOperation.fromBytes(data);
                 this.removedDataSize += indexOp.getByteSize();
-                if (this.removedDataSize > queueCleanupThreshold) {
-                    this.primaryQueue.gc();
-                    this.secondaryQueue.gc();
-                    this.removedDataSize = 0;
-                    if (log.isDebugEnabled()) {
-                        log.debug("Queue GC: " + this.primaryQueue + "|" + this.secondaryQueue);
-                    }
-                }
                 return indexOp;
             } catch (IOException e) {
                 throw new AnalyticsException("Error in index data peekNext: " + e.getMessage(), e);
@@ -294,12 +490,26 @@ public class LocalIndexDataStore {
         }
         
         public long size() {
-            return this.primaryQueue.size() + this.secondaryQueue.size() - this.secondaryProcessedCount;
+            return this.queue.getHeadIndex() - this.readIndex;
         }
         
         public void flush() {
-            this.primaryQueue.flush();
-            this.secondaryQueue.flush();
+            this.queue.flush();
+            this.ackIndexBuffer.force();
+        }
+        
+        public void close() {
+            this.flush();
+            try {
+                this.queue.close();
+            } catch (IOException e) {
+                log.warn("Error in closing index data queue: " + e.getMessage(), e);
+            }
+            try {
+                this.ackIndexFile.close();
+            } catch (IOException e) {
+                log.warn("Error in closing index data queue acknowledged index file: " + e.getMessage(), e);
+            }
         }
         
     }
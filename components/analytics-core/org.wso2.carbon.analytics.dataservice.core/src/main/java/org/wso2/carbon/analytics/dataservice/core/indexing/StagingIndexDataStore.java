@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -56,50 +57,89 @@ public class StagingIndexDataStore {
         }
     }
     
-    public void put(String nodeId, List<Record> records) throws AnalyticsException {
+    /**
+     * Stages the given records to be indexed by the given node, where all the shards of the records are
+     * written to the record store with a single put.
+     * @param nodeId The target node id
+     * @param records The records to be indexed
+     * @return The shard indices the records are staged in
+     * @throws AnalyticsException
+     */
+    public Set<Integer> put(String nodeId, List<Record> records) throws AnalyticsException {
         Map<Integer, List<Record>> shardedRecords = this.indexer.extractShardedRecords(records);
+        Map<Integer, List<StagingIndexDataEntry>> shardedEntries = new HashMap<>(shardedRecords.size());
         for (Map.Entry<Integer, List<Record>> entry : shardedRecords.entrySet()) {
             Collection<List<Record>> recordBatches = GenericUtils.generateRecordBatches(entry.getValue());
+            List<StagingIndexDataEntry> indexEntries = new ArrayList<>(recordBatches.size());
             for (List<Record> recordBatch : recordBatches) {
                 int tenantId = recordBatch.get(0).getTenantId();
                 String tableName = recordBatch.get(0).getTableName();
-                List<String> ids = new ArrayList<>();
+                List<String> ids = new ArrayList<>(recordBatch.size());
                 for (Record record : recordBatch) {
                     ids.add(record.getId());
                 }
-                StagingIndexDataEntry indexEntry = new StagingIndexDataEntry(tenantId, tableName, ids);
-                this.addEntryToShard(nodeId, entry.getKey(), indexEntry);
+                indexEntries.add(new StagingIndexDataEntry(tenantId, tableName, ids));
             }
+            shardedEntries.put(entry.getKey(), indexEntries);
         }
+        this.addEntries(nodeId, shardedEntries);
         if (log.isDebugEnabled()) {
             log.debug("Staging index data put: " + records.size());
         }
+        return shardedEntries.keySet();
     }
     
-    public void delete(String nodeId, int tenantId, String tableName, List<String> ids) throws AnalyticsException {
+    /**
+     * Stages the deletion of the given records from the index of the given node, where all the shards of the
+     * records are written to the record store with a single put.
+     * @param nodeId The target node id
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @param ids The ids of the records to be deleted
+     * @return The shard indices the deletions are staged in
+     * @throws AnalyticsException
+     */
+    public Set<Integer> delete(String nodeId, int tenantId, String tableName, List<String> ids) throws AnalyticsException {
         Map<Integer, List<String>> shardedIds = this.indexer.extractShardedIds(ids);
+        Map<Integer, List<StagingIndexDataEntry>> shardedEntries = new HashMap<>(shardedIds.size());
         for (Map.Entry<Integer, List<String>> entry : shardedIds.entrySet()) {
-            StagingIndexDataEntry indexEntry = new StagingIndexDataEntry(tenantId, tableName, ids);
-            this.addEntryToShard(nodeId, entry.getKey(), indexEntry);
+            shardedEntries.put(entry.getKey(), Arrays.asList(new StagingIndexDataEntry(tenantId, tableName,
+                    entry.getValue())));
         }
+        this.addEntries(nodeId, shardedEntries);
         if (log.isDebugEnabled()) {
             log.debug("Staging index data delete: " + ids.size());
         }
+        return shardedEntries.keySet();
     }
     
-    private void addEntryToShard(String nodeId, int shardIndex, StagingIndexDataEntry entry) throws AnalyticsException {
-        String tableName = this.generateTableName(nodeId, shardIndex);
+    private void addEntries(String nodeId, Map<Integer, List<StagingIndexDataEntry>> shardedEntries) 
+            throws AnalyticsException {
+        if (shardedEntries.isEmpty()) {
+            return;
+        }
         int tenantId = Constants.META_INFO_TENANT_ID;
-        Map<String, Object> values = new HashMap<>(1);
-        values.put(Constants.INDEX_STAGING_DATA_COLUMN, entry);
+        List<Record> records = new ArrayList<>();
+        Map<String, Object> values;
+        Record record;
+        for (Map.Entry<Integer, List<StagingIndexDataEntry>> entry : shardedEntries.entrySet()) {
+            for (StagingIndexDataEntry indexEntry : entry.getValue()) {
+                values = new HashMap<>(1);
+                values.put(Constants.INDEX_STAGING_DATA_COLUMN, indexEntry);
+                record = new Record(GenericUtils.generateRecordID(), tenantId,
+                        this.generateTableName(nodeId, entry.getKey()), values);
+                indexEntry.setRecordId(record.getId());
+                records.add(record);
+            }
+        }
         AnalyticsRecordStore rs = this.indexer.getAnalyticsRecordStore();
-        Record record = new Record(GenericUtils.generateRecordID(), tenantId, tableName, values);
-        entry.setRecordId(record.getId());
         try {
-            rs.put(Arrays.asList(record));
+            rs.put(records);
         } catch (AnalyticsTableNotAvailableException e) {
-            rs.createTable(tenantId, tableName);
-            rs.put(Arrays.asList(record));
+            for (int shardIndex : shardedEntries.keySet()) {
+                rs.createTable(tenantId, this.generateTableName(nodeId, shardIndex));
+            }
+            rs.put(records);
         }
     }
     
@@ -108,19 +148,52 @@ public class StagingIndexDataStore {
     }
     
     public List<StagingIndexDataEntry> loadEntries(String nodeId, int shardIndex) throws AnalyticsException {
+        List<StagingIndexDataEntry> result = this.loadEntries(nodeId, Arrays.asList(shardIndex)).get(shardIndex);
+        if (result == null) {
+            return new ArrayList<>(0);
+        }
+        return result;
+    }
+    
+    /**
+     * Loads the staged entries of the given shards in a single pass, where at most 
+     * {@link Constants#RECORDS_BATCH_SIZE} entries are loaded in total, shared by all the shards. The staging 
+     * data of each shard lives in its own table, so the record store is still read once for each shard 
+     * which has entries left in the batch.
+     * @param nodeId The target node id
+     * @param shardIndices The shard indices
+     * @return The loaded entries, keyed by the shard index, where shards without entries are not included
+     * @throws AnalyticsException
+     */
+    public Map<Integer, List<StagingIndexDataEntry>> loadEntries(String nodeId, 
+            Collection<Integer> shardIndices) throws AnalyticsException {
         AnalyticsRecordStore rs = this.indexer.getAnalyticsRecordStore();
-        try {
-            List<Record> records = GenericUtils.listRecords(rs, rs.get(Constants.META_INFO_TENANT_ID, 
-                    this.generateTableName(nodeId, shardIndex), 1, null, 
-                    Long.MIN_VALUE, Long.MAX_VALUE, 0, Constants.RECORDS_BATCH_SIZE));
-            List<StagingIndexDataEntry> result = new ArrayList<>(records.size());
+        Map<Integer, List<StagingIndexDataEntry>> result = new HashMap<>();
+        int remaining = Constants.RECORDS_BATCH_SIZE;
+        List<Record> records;
+        List<StagingIndexDataEntry> entries;
+        for (int shardIndex : shardIndices) {
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                records = GenericUtils.listRecords(rs, rs.get(Constants.META_INFO_TENANT_ID, 
+                        this.generateTableName(nodeId, shardIndex), 1, null, 
+                        Long.MIN_VALUE, Long.MAX_VALUE, 0, remaining));
+            } catch (AnalyticsTableNotAvailableException e) {
+                continue;
+            }
+            if (records.isEmpty()) {
+                continue;
+            }
+            entries = new ArrayList<>(records.size());
             for (Record record : records) {
-                result.add((StagingIndexDataEntry) record.getValue(Constants.INDEX_STAGING_DATA_COLUMN));
+                entries.add((StagingIndexDataEntry) record.getValue(Constants.INDEX_STAGING_DATA_COLUMN));
             }
-            return result;
-        } catch (AnalyticsTableNotAvailableException e) {
-            return new ArrayList<>(0);
+            result.put(shardIndex, entries);
+            remaining -= records.size();
         }
+        return result;
     }
     
     public void removeEntries(String nodeId, int shardIndex, List<String> ids) throws AnalyticsException {
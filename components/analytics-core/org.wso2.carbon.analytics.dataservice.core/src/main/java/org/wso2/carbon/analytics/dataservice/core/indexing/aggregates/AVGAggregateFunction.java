@@ -50,8 +50,8 @@ public class AVGAggregateFunction implements AggregateFunction {
         }
         Object value = ctx.getValue(aggregateFields[0]);
         if (value == null) {
-            throw new AnalyticsException("Error while calculating Average: value of the field, " +
-                                         aggregateFields[0] + " is null");
+            /* the records without a value for the field are skipped, as in the doc values aggregation */
+            return;
         }
         if (value instanceof Number) {
             sum += ((Number)value).doubleValue();
@@ -0,0 +1,117 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core.indexing.aggregates;
+
+import org.wso2.carbon.analytics.dataservice.commons.Constants;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class represents the mergeable, partial state of the built-in aggregate functions of a single
+ * group, which is calculated directly from the index doc values of a shard. The partial states of
+ * different shards/nodes are merged to get the final aggregate values.
+ */
+public class AggregateGroupState implements Serializable {
+
+    private static final long serialVersionUID = -4409478128377213870L;
+
+    private long recordCount;
+
+    private long[] valueCounts;
+
+    private double[] sums;
+
+    private double[] mins;
+
+    private double[] maxs;
+
+    public AggregateGroupState(int fieldCount) {
+        this.valueCounts = new long[fieldCount];
+        this.sums = new double[fieldCount];
+        this.mins = new double[fieldCount];
+        this.maxs = new double[fieldCount];
+        Arrays.fill(this.mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.maxs, Double.NEGATIVE_INFINITY);
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public void incrementRecordCount() {
+        this.recordCount++;
+    }
+
+    public long getValueCount(int fieldIndex) {
+        return valueCounts[fieldIndex];
+    }
+
+    public void process(int fieldIndex, double value) {
+        this.valueCounts[fieldIndex]++;
+        this.sums[fieldIndex] += value;
+        if (value < this.mins[fieldIndex]) {
+            this.mins[fieldIndex] = value;
+        }
+        if (value > this.maxs[fieldIndex]) {
+            this.maxs[fieldIndex] = value;
+        }
+    }
+
+    public void merge(AggregateGroupState state) {
+        this.recordCount += state.recordCount;
+        for (int i = 0; i < this.sums.length; i++) {
+            this.valueCounts[i] += state.valueCounts[i];
+            this.sums[i] += state.sums[i];
+            this.mins[i] = Math.min(this.mins[i], state.mins[i]);
+            this.maxs[i] = Math.max(this.maxs[i], state.maxs[i]);
+        }
+    }
+
+    /**
+     * Returns the final value of the given built-in aggregate function.
+     * @param fieldIndex The index of the aggregate field
+     * @param aggregateFunction The aggregate function name
+     * @return The aggregated value
+     * @throws AnalyticsException
+     */
+    public Number finish(int fieldIndex, String aggregateFunction) throws AnalyticsException {
+        switch (aggregateFunction) {
+        case Constants.SUM_AGGREGATE:
+            return this.sums[fieldIndex];
+        case Constants.AVG_AGGREGATE:
+            /* the records without a value for the field are not included in the average */
+            if (this.valueCounts[fieldIndex] != 0) {
+                return this.sums[fieldIndex] / this.valueCounts[fieldIndex];
+            } else {
+                throw new AnalyticsException("Cannot compute average, count is zero (Division by Zero!");
+            }
+        case Constants.MIN_AGGREGATE:
+            return this.mins[fieldIndex];
+        case Constants.MAX_AGGREGATE:
+            return this.maxs[fieldIndex];
+        case Constants.COUNT_AGGREGATE:
+            return this.recordCount;
+        default:
+            throw new AnalyticsException("Unsupported doc values aggregate function: " + aggregateFunction);
+        }
+    }
+
+}
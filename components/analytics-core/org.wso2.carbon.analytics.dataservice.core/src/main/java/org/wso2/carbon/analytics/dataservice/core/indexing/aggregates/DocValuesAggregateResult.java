@@ -0,0 +1,65 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core.indexing.aggregates;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the per group aggregate states calculated from the index doc values of a set of shards.
+ * A result is marked as incomplete, if any of the shards could not be aggregated using its doc values, where the
+ * caller should fall back to aggregating the records from the record store.
+ */
+public class DocValuesAggregateResult implements Serializable {
+
+    private static final long serialVersionUID = -2470353185826359823L;
+
+    private boolean complete = true;
+
+    private Map<List<String>, AggregateGroupState> groups = new HashMap<>();
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public Map<List<String>, AggregateGroupState> getGroups() {
+        return groups;
+    }
+
+    public void merge(DocValuesAggregateResult result) {
+        if (!result.isComplete()) {
+            this.complete = false;
+        }
+        for (Map.Entry<List<String>, AggregateGroupState> entry : result.getGroups().entrySet()) {
+            AggregateGroupState state = this.groups.get(entry.getKey());
+            if (state == null) {
+                this.groups.put(entry.getKey(), entry.getValue());
+            } else {
+                state.merge(entry.getValue());
+            }
+        }
+    }
+
+}
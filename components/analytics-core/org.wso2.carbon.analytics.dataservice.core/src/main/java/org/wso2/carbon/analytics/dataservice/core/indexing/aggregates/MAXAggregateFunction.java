@@ -29,7 +29,7 @@ public class MAXAggregateFunction implements AggregateFunction {
     private String[] aggregateFields;
 
     public MAXAggregateFunction() {
-        maxValue = Double.MIN_VALUE;
+        maxValue = Double.NEGATIVE_INFINITY;
     }
 
     @Override
@@ -45,8 +45,8 @@ public class MAXAggregateFunction implements AggregateFunction {
         }
         Object value = ctx.getValue(aggregateFields[0]);
         if (value == null) {
-            throw new AnalyticsException("Error while calculating MAX: value of the field, " +
-                                         aggregateFields[0] + " is null");
+            /* the records without a value for the field are skipped, as in the doc values aggregation */
+            return;
         }
         if (value instanceof Number) {
             Number numericValue = (Number) value;
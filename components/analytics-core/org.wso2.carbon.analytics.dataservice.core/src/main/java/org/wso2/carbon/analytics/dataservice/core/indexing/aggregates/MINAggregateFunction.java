@@ -30,7 +30,7 @@ public class MINAggregateFunction implements AggregateFunction {
     private String[] aggregateFields;
 
     public MINAggregateFunction() {
-        minValue = Double.MAX_VALUE;
+        minValue = Double.POSITIVE_INFINITY;
     }
 
     @Override
@@ -46,8 +46,8 @@ public class MINAggregateFunction implements AggregateFunction {
         }
         Object value = ctx.getValue(aggregateFields[0]);
         if (value == null) {
-            throw new AnalyticsException("Error while calculating MIN: value of the field, " +
-                                         aggregateFields[0] + " is null");
+            /* the records without a value for the field are skipped, as in the doc values aggregation */
+            return;
         }
         if (value instanceof Number) {
             Number numericValue = (Number) value;
@@ -46,8 +46,8 @@ public class SUMAggregateFunction implements AggregateFunction {
         }
         Object value = ctx.getValue(aggregateFields[0]);
         if (value == null) {
-            throw new AnalyticsException("Error while calculating SUM: value of the field, " +
-                                         aggregateFields[0] + " is null");
+            /* the records without a value for the field are skipped, as in the doc values aggregation */
+            return;
         }
         if (value instanceof Number) {
             sum += ((Number)value).doubleValue();
@@ -0,0 +1,226 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core.indexing;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.facet.FacetField;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.dataservice.commons.Constants;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.AVGAggregateFunction;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.AggregateFunction;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.AggregateGroupState;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.COUNTAggregateFunction;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.MAXAggregateFunction;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.MINAggregateFunction;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.RecordContext;
+import org.wso2.carbon.analytics.dataservice.core.indexing.aggregates.SUMAggregateFunction;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the tests of {@link DocValuesAggregateCollector}.
+ */
+public class DocValuesAggregateCollectorTest {
+
+    private static final String GROUP_FIELD = "country";
+
+    private static final String LONG_FIELD = "count";
+
+    private static final String DOUBLE_FIELD = "$raw_price";
+
+    private Directory indexDir;
+
+    private Directory taxonomyDir;
+
+    private FacetsConfig facetsConfig;
+
+    private IndexWriter indexWriter;
+
+    private DirectoryTaxonomyWriter taxonomyWriter;
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        this.indexDir = new RAMDirectory();
+        this.taxonomyDir = new RAMDirectory();
+        this.facetsConfig = new FacetsConfig();
+        this.indexWriter = new IndexWriter(this.indexDir, new IndexWriterConfig(new StandardAnalyzer()));
+        this.taxonomyWriter = new DirectoryTaxonomyWriter(this.taxonomyDir);
+    }
+
+    @AfterMethod
+    public void cleanup() throws IOException {
+        this.indexWriter.close();
+        this.taxonomyWriter.close();
+        this.indexDir.close();
+        this.taxonomyDir.close();
+    }
+
+    private void addDocument(String group, Long count, Double price) throws IOException {
+        Document doc = new Document();
+        if (group != null) {
+            doc.add(new FacetField(GROUP_FIELD, group));
+        }
+        if (count != null) {
+            doc.add(new NumericDocValuesField(LONG_FIELD, count));
+        }
+        if (price != null) {
+            doc.add(new NumericDocValuesField(DOUBLE_FIELD, Double.doubleToRawLongBits(price)));
+        }
+        this.indexWriter.addDocument(this.facetsConfig.build(this.taxonomyWriter, doc));
+    }
+
+    private void addRecord(List<Map<String, Object>> records, Long count, Double price) throws IOException {
+        this.addDocument("LK", count, price);
+        Map<String, Object> values = new HashMap<>();
+        values.put(LONG_FIELD, count);
+        values.put(DOUBLE_FIELD, price);
+        records.add(values);
+    }
+
+    private Number recordAggregate(AggregateFunction function, String field, List<Map<String, Object>> records)
+            throws AnalyticsException {
+        function.setAggregateFields(new String[] { field });
+        for (Map<String, Object> values : records) {
+            function.process(RecordContext.create(values));
+        }
+        return function.finish();
+    }
+
+    private Map<List<String>, AggregateGroupState> collect(String groupByField) throws IOException {
+        this.indexWriter.commit();
+        this.taxonomyWriter.commit();
+        DirectoryReader reader = DirectoryReader.open(this.indexDir);
+        DirectoryTaxonomyReader taxonomyReader = new DirectoryTaxonomyReader(this.taxonomyDir);
+        try {
+            DocValuesAggregateCollector collector = new DocValuesAggregateCollector(
+                    new String[] { null, LONG_FIELD, DOUBLE_FIELD }, new boolean[] { false, false, true },
+                    groupByField, groupByField == null ? null :
+                            this.facetsConfig.getDimConfig(groupByField).indexFieldName, 1, taxonomyReader);
+            new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+            return collector.getGroups();
+        } finally {
+            reader.close();
+            taxonomyReader.close();
+        }
+    }
+
+    @Test
+    public void testMissingValues() throws IOException, AnalyticsException {
+        this.addDocument("LK", 5L, 2.5);
+        this.addDocument("LK", null, -4.0);
+        this.addDocument("LK", -3L, null);
+        this.addDocument("LK", null, null);
+        Map<List<String>, AggregateGroupState> groups = this.collect(null);
+        Assert.assertEquals(groups.size(), 1);
+        AggregateGroupState state = groups.values().iterator().next();
+        Assert.assertEquals(state.finish(0, Constants.COUNT_AGGREGATE).longValue(), 4);
+        Assert.assertEquals(state.getValueCount(1), 2);
+        Assert.assertEquals(state.finish(1, Constants.SUM_AGGREGATE).doubleValue(), 2.0);
+        Assert.assertEquals(state.finish(1, Constants.AVG_AGGREGATE).doubleValue(), 1.0);
+        Assert.assertEquals(state.finish(1, Constants.MIN_AGGREGATE).doubleValue(), -3.0);
+        Assert.assertEquals(state.finish(2, Constants.MIN_AGGREGATE).doubleValue(), -4.0);
+        Assert.assertEquals(state.finish(2, Constants.MAX_AGGREGATE).doubleValue(), 2.5);
+    }
+
+    @Test
+    public void testNegativeValuesGrouped() throws IOException, AnalyticsException {
+        this.addDocument("LK", -10L, -1.5);
+        this.addDocument("LK", -20L, -0.5);
+        this.addDocument("US", 7L, null);
+        this.addDocument(null, 100L, 100.0);
+        Map<List<String>, AggregateGroupState> groups = this.collect(GROUP_FIELD);
+        Assert.assertEquals(groups.size(), 2);
+        AggregateGroupState lk = groups.get(Arrays.asList("LK"));
+        Assert.assertEquals(lk.finish(0, Constants.COUNT_AGGREGATE).longValue(), 2);
+        Assert.assertEquals(lk.finish(1, Constants.MAX_AGGREGATE).doubleValue(), -10.0);
+        Assert.assertEquals(lk.finish(1, Constants.MIN_AGGREGATE).doubleValue(), -20.0);
+        Assert.assertEquals(lk.finish(2, Constants.MAX_AGGREGATE).doubleValue(), -0.5);
+        AggregateGroupState us = groups.get(Arrays.asList("US"));
+        Assert.assertEquals(us.finish(0, Constants.COUNT_AGGREGATE).longValue(), 1);
+        Assert.assertEquals(us.getValueCount(2), 0);
+        Assert.assertEquals(us.finish(2, Constants.MAX_AGGREGATE).doubleValue(), Double.NEGATIVE_INFINITY);
+    }
+
+    @Test
+    public void testEmptyIndex() throws IOException, AnalyticsException {
+        Map<List<String>, AggregateGroupState> groups = this.collect(null);
+        Assert.assertEquals(groups.size(), 1);
+        Assert.assertEquals(groups.values().iterator().next().finish(0, Constants.COUNT_AGGREGATE).longValue(), 0);
+    }
+
+    @Test
+    public void testRecordAggregatesMatch() throws IOException, AnalyticsException {
+        List<Map<String, Object>> records = new ArrayList<>();
+        this.addRecord(records, -7L, -2.5);
+        this.addRecord(records, null, -9.25);
+        this.addRecord(records, -3L, null);
+        this.addRecord(records, -12L, -0.75);
+        this.addRecord(records, null, null);
+        AggregateGroupState state = this.collect(null).values().iterator().next();
+        for (int i = 1; i <= 2; i++) {
+            String field = i == 1 ? LONG_FIELD : DOUBLE_FIELD;
+            Assert.assertEquals(this.recordAggregate(new SUMAggregateFunction(), field, records).doubleValue(),
+                    state.finish(i, Constants.SUM_AGGREGATE).doubleValue());
+            Assert.assertEquals(this.recordAggregate(new AVGAggregateFunction(), field, records).doubleValue(),
+                    state.finish(i, Constants.AVG_AGGREGATE).doubleValue());
+            Assert.assertEquals(this.recordAggregate(new MINAggregateFunction(), field, records).doubleValue(),
+                    state.finish(i, Constants.MIN_AGGREGATE).doubleValue());
+            Assert.assertEquals(this.recordAggregate(new MAXAggregateFunction(), field, records).doubleValue(),
+                    state.finish(i, Constants.MAX_AGGREGATE).doubleValue());
+        }
+        Assert.assertEquals(this.recordAggregate(new COUNTAggregateFunction(), null, records).longValue(),
+                state.finish(0, Constants.COUNT_AGGREGATE).longValue());
+        Assert.assertEquals(state.finish(1, Constants.MAX_AGGREGATE).doubleValue(), -3.0);
+    }
+
+    @Test
+    public void testRecordAggregatesWithoutValues() throws IOException, AnalyticsException {
+        List<Map<String, Object>> records = new ArrayList<>();
+        this.addRecord(records, null, null);
+        AggregateGroupState state = this.collect(null).values().iterator().next();
+        Assert.assertEquals(this.recordAggregate(new MAXAggregateFunction(), LONG_FIELD, records).doubleValue(),
+                state.finish(1, Constants.MAX_AGGREGATE).doubleValue());
+        Assert.assertEquals(this.recordAggregate(new MINAggregateFunction(), LONG_FIELD, records).doubleValue(),
+                state.finish(1, Constants.MIN_AGGREGATE).doubleValue());
+        Assert.assertEquals(this.recordAggregate(new SUMAggregateFunction(), LONG_FIELD, records).doubleValue(),
+                state.finish(1, Constants.SUM_AGGREGATE).doubleValue());
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.core.indexing.aggregates;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.dataservice.commons.Constants;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+
+/**
+ * This class represents the tests of {@link AggregateGroupState}.
+ */
+public class AggregateGroupStateTest {
+
+    @Test
+    public void testNegativeValues() throws AnalyticsException {
+        AggregateGroupState state = new AggregateGroupState(1);
+        for (double value : new double[] { -5, -1.5, -20 }) {
+            state.incrementRecordCount();
+            state.process(0, value);
+        }
+        Assert.assertEquals(state.finish(0, Constants.MIN_AGGREGATE).doubleValue(), -20.0);
+        Assert.assertEquals(state.finish(0, Constants.MAX_AGGREGATE).doubleValue(), -1.5);
+        Assert.assertEquals(state.finish(0, Constants.SUM_AGGREGATE).doubleValue(), -26.5);
+        Assert.assertEquals(state.finish(0, Constants.COUNT_AGGREGATE).longValue(), 3);
+    }
+
+    @Test
+    public void testEmptyState() throws AnalyticsException {
+        AggregateGroupState state = new AggregateGroupState(1);
+        Assert.assertEquals(state.finish(0, Constants.MIN_AGGREGATE).doubleValue(), Double.POSITIVE_INFINITY);
+        Assert.assertEquals(state.finish(0, Constants.MAX_AGGREGATE).doubleValue(), Double.NEGATIVE_INFINITY);
+        Assert.assertEquals(state.finish(0, Constants.COUNT_AGGREGATE).longValue(), 0);
+    }
+
+    @Test(expectedExceptions = AnalyticsException.class)
+    public void testAverageWithoutValues() throws AnalyticsException {
+        AggregateGroupState state = new AggregateGroupState(1);
+        state.incrementRecordCount();
+        state.finish(0, Constants.AVG_AGGREGATE);
+    }
+
+    @Test
+    public void testMerge() throws AnalyticsException {
+        AggregateGroupState state1 = new AggregateGroupState(2);
+        state1.incrementRecordCount();
+        state1.process(0, 10);
+        state1.process(1, -3);
+        AggregateGroupState state2 = new AggregateGroupState(2);
+        /* the second field is missing in this record */
+        state2.incrementRecordCount();
+        state2.process(0, -2);
+        AggregateGroupState state3 = new AggregateGroupState(2);
+        state1.merge(state2);
+        state1.merge(state3);
+        Assert.assertEquals(state1.finish(0, Constants.COUNT_AGGREGATE).longValue(), 2);
+        Assert.assertEquals(state1.finish(0, Constants.MIN_AGGREGATE).doubleValue(), -2.0);
+        Assert.assertEquals(state1.finish(0, Constants.MAX_AGGREGATE).doubleValue(), 10.0);
+        Assert.assertEquals(state1.finish(0, Constants.AVG_AGGREGATE).doubleValue(), 4.0);
+        Assert.assertEquals(state1.getValueCount(1), 1);
+        Assert.assertEquals(state1.finish(1, Constants.MIN_AGGREGATE).doubleValue(), -3.0);
+        Assert.assertEquals(state1.finish(1, Constants.MAX_AGGREGATE).doubleValue(), -3.0);
+        Assert.assertEquals(state1.finish(1, Constants.AVG_AGGREGATE).doubleValue(), -3.0);
+    }
+
+}
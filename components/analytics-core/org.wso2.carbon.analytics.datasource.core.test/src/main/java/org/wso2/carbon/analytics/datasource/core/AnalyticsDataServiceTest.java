@@ -27,8 +27,10 @@ import org.wso2.carbon.analytics.dataservice.core.Constants;
 import org.wso2.carbon.analytics.dataservice.core.clustering.AnalyticsClusterException;
 import org.wso2.carbon.analytics.dataservice.core.clustering.AnalyticsClusterManager;
 import org.wso2.carbon.analytics.dataservice.core.clustering.GroupEventListener;
+import org.wso2.carbon.analytics.dataservice.commons.AnalyticsDataResponse;
 import org.wso2.carbon.analytics.dataservice.commons.AnalyticsDrillDownRequest;
 import org.wso2.carbon.analytics.dataservice.commons.SearchResultEntry;
+import org.wso2.carbon.analytics.datasource.commons.AnalyticsIterator;
 import org.wso2.carbon.analytics.datasource.commons.AnalyticsSchema;
 import org.wso2.carbon.analytics.datasource.commons.AnalyticsSchema.ColumnType;
 import org.wso2.carbon.analytics.datasource.commons.ColumnDefinition;
@@ -38,6 +40,7 @@ import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.base.MultitenantConstants;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -257,6 +260,32 @@ public class AnalyticsDataServiceTest implements GroupEventListener {
         this.service.deleteTable(7, "T1");
     }
     
+    @Test (enabled = true, dependsOnMethods = "testMultipleDataRecordAddRetieveWithTimestampRange")
+    public void testParallelRangeRead() throws AnalyticsException, IOException {
+        this.service.deleteTable(7, "T1");
+        this.service.createTable(7, "T1");
+        List<Record> records = AnalyticsRecordStoreTest.generateRecords(7, "T1", 1, 500, 1000, 10);
+        this.service.put(records);
+        AnalyticsDataResponse resp = this.service.get(7, "T1", 5, null, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1);
+        List<Record> recordsIn = AnalyticsDataServiceUtils.listRecords(this.service, resp, 1);
+        Assert.assertEquals(AnalyticsDataServiceUtils.listRecords(this.service, resp, 3), recordsIn);
+        Assert.assertEquals(new HashSet<>(recordsIn), new HashSet<>(records));
+        AnalyticsIterator<Record> itr = AnalyticsDataServiceUtils.responseToIterator(this.service, resp, 3, false);
+        Set<Record> unorderedRecordsIn = new HashSet<>();
+        while (itr.hasNext()) {
+            unorderedRecordsIn.add(itr.next());
+        }
+        itr.close();
+        Assert.assertEquals(unorderedRecordsIn, new HashSet<>(records));
+        /* closing before the end should release the readers */
+        itr = AnalyticsDataServiceUtils.responseToIterator(this.service, resp, 2, true);
+        Assert.assertTrue(itr.hasNext());
+        itr.next();
+        itr.close();
+        Assert.assertFalse(itr.hasNext());
+        this.service.deleteTable(7, "T1");
+    }
+    
     private List<Record> generateIndexRecords(int tenantId, String tableName, int n, long startTimestamp) {
         Map<String, Object> values;
         Record record;
@@ -1058,12 +1087,44 @@ public class AnalyticsDataServiceTest implements GroupEventListener {
         System.out.println("\n************** END ANALYTICS DS (WITH FACET INDEXING - MULTIPLE THREADS, MULTIPLE TABLES) PERF TEST **************");
     }
 
+    @Test (dependsOnMethods = "testFacetDataRecordAddReadPerformanceIndexMultipleTablesNC")
+    public void testFacetDataRecordAddPerformanceIndexLargeBatches() throws AnalyticsException {
+        System.out.println("\n************** START ANALYTICS DS (WITH FACET INDEXING - LARGE BATCHES) PERF TEST **************");
+        
+        int tenantId = 50;
+        String tableName = "TableZ";
+        this.cleanupTable(tenantId, tableName);
+        int n = 20, batch = 5000;
+        List<ColumnDefinition> columns = new ArrayList<>();
+        columns.add(new ColumnDefinitionExt("tenant", ColumnType.INTEGER, true, false));
+        columns.add(new ColumnDefinitionExt("ip", ColumnType.STRING, true, false));
+        columns.add(new ColumnDefinitionExt("log", ColumnType.STRING, true, false));
+        columns.add(new ColumnDefinitionExt("location", ColumnType.STRING, true, false, true));
+        this.service.createTable(tenantId, tableName);
+        this.service.setTableSchema(tenantId, tableName, new AnalyticsSchema(columns, null));
+        
+        /* the records of a shard are indexed in parallel by the index document workers, so the throughput here
+         * is expected to scale with the "indexDocumentWorkerCount" setting, up to the available processors */
+        long start = System.currentTimeMillis();
+        this.writeIndexRecordsWithFacets(tenantId, new String[]{tableName}, n, batch);
+        this.service.waitForIndexing(DEFAULT_WAIT_TIME);
+        long end = System.currentTimeMillis();
+        System.out.println("* Available Processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.println("* Records: " + (n * batch));
+        System.out.println("* Write Time: " + (end - start) + " ms.");
+        System.out.println("* Write Throughput (TPS): " + (n * batch) / (double) (end - start) * 1000.0);
+        Assert.assertEquals(this.service.searchCount(tenantId, tableName, "*:*"), n * batch);
+        
+        this.cleanupTable(tenantId, tableName);
+        System.out.println("\n************** END ANALYTICS DS (WITH FACET INDEXING - LARGE BATCHES) PERF TEST **************");
+    }
+
     private void resetClusterTestResults() {
         this.becameLeader = false;
         this.leaderUpdated = false;
     }
     
-    @Test (dependsOnMethods = "testFacetDataRecordAddReadPerformanceIndexMultipleTablesNC")
+    @Test (dependsOnMethods = "testFacetDataRecordAddPerformanceIndexLargeBatches")
     public void testAnalyticsClusterManager() throws AnalyticsClusterException {
         AnalyticsClusterManager acm = AnalyticsServiceHolder.getAnalyticsClusterManager();
         if (!acm.isClusteringEnabled()) {
@@ -688,4 +688,33 @@ public class AnalyticsRecordStoreTest {
         this.cleanupT1();
     }
 
+    @Test public void testShortRangeReadPerformance() throws AnalyticsException {
+        System.out.println("\n************** START SHORT RANGE READ PERF TEST [" + this.getImplementationName() +
+                "] **************");
+        this.cleanupT1();
+        this.analyticsRS.createTable(7, "T1");
+        List<Record> records = generateRecords(7, "T1", 0, 1000, 10000, 1);
+        this.analyticsRS.put(records);
+        int n = 2000;
+        List<Record> recordsIn;
+        /* warm-up */
+        for (int i = 0; i < 100; i++) {
+            GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", 1, null, 10000 + i, 10010 + i,
+                    0, -1));
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            recordsIn = GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", 1, null,
+                    10000 + (i % 990), 10010 + (i % 990), 0, -1));
+            Assert.assertEquals(recordsIn.size(), 10);
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("* Range Reads: " + n);
+        System.out.println("* Read Time: " + (end - start) + " ms.");
+        System.out.println("* Read Throughput (Reads/Sec): " + n / (double) (end - start) * 1000.0);
+        System.out.println("************** END SHORT RANGE READ PERF TEST [" + this.getImplementationName() +
+                "] **************\n");
+        this.cleanupT1();
+    }
+
 }
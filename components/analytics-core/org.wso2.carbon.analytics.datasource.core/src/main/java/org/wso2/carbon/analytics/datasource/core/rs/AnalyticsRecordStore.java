@@ -73,6 +73,14 @@ public interface AnalyticsRecordStore {
      * @throws AnalyticsException
      */
     boolean isRecordCountSupported() throws AnalyticsException;
+    
+    /**
+     * Checks whether or not the time range based delete operation is done natively in the record store,
+     * without the records being read in first by the caller.
+     * 
+     * @return Range delete support
+     */
+    boolean isRangeDeleteSupported();
 
     /**
      * Returns the number of records in the table with the given category and name, -1 if the number of records cannot
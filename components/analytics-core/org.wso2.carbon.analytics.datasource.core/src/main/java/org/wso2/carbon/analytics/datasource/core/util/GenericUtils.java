@@ -96,6 +96,10 @@ public class GenericUtils {
     private static final byte DATA_TYPE_OBJECT = 0x10;
 
     public static final String WSO2_ANALYTICS_CONF_DIRECTORY_SYS_PROP = "wso2_custom_conf_dir";
+
+    /* the version 2 record values format is only written when this is set to true, which should be done
+     * after all the nodes sharing the record stores are able to read it */
+    public static final String ENABLE_RECORD_VALUES_V2_SYS_PROP = "enableRecordValuesV2";
     
     private static final String ANALYTICS_USER_TABLE_PREFIX = "ANX";
 
@@ -140,7 +144,41 @@ public class GenericUtils {
         return path;
     }
 
+    /**
+     * Encodes the given record values using the version 1 binary format, or the version 2 format of
+     * {@link RecordValuesCodec} if it is enabled with the {@link #ENABLE_RECORD_VALUES_V2_SYS_PROP}
+     * system property.
+     * @param values The record values
+     * @return The encoded data
+     * @throws AnalyticsException
+     */
     public static byte[] encodeRecordValues(Map<String, Object> values) throws AnalyticsException {
+        if (values instanceof LazyRecordValues) {
+            /* values read from a record store, and not modified after, are written back as they are */
+            byte[] data = ((LazyRecordValues) values).getUnmodifiedData();
+            if (data != null) {
+                return data;
+            }
+        }
+        if (isRecordValuesV2Enabled()) {
+            return RecordValuesCodec.encode(values);
+        } else {
+            return encodeRecordValuesV1(values);
+        }
+    }
+
+    private static boolean isRecordValuesV2Enabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLE_RECORD_VALUES_V2_SYS_PROP));
+    }
+
+    /**
+     * Encodes the given record values using the version 1 binary format, where each column is written
+     * with its full name, type and value.
+     * @param values The record values
+     * @return The encoded data
+     * @throws AnalyticsException
+     */
+    public static byte[] encodeRecordValuesV1(Map<String, Object> values) throws AnalyticsException {
         ByteArrayDataOutput byteOut = ByteStreams.newDataOutput();
         String name;
         Object value;
@@ -199,7 +237,37 @@ public class GenericUtils {
         return buffer.toByteArray();
     }
 
+    /**
+     * Decodes the given record values, which can be in any of the supported binary formats.
+     * @param data The encoded data
+     * @param columns The columns to be decoded, or null for all the columns
+     * @return The decoded record values
+     * @throws AnalyticsException
+     */
     public static Map<String, Object> decodeRecordValues(byte[] data, Set<String> columns) throws AnalyticsException {
+        if (RecordValuesCodec.isEncoded(data)) {
+            return RecordValuesCodec.decode(data, columns);
+        }
+        return decodeRecordValuesV1(data, columns);
+    }
+
+    /**
+     * Decodes a single column of the given record values, which can be in any of the supported binary formats.
+     * @param data The encoded data
+     * @param column The column to be decoded
+     * @param notFound The object to be returned, if the column is not present
+     * @return The decoded value, or the given not found object
+     * @throws AnalyticsException
+     */
+    public static Object decodeRecordValue(byte[] data, String column, Object notFound) throws AnalyticsException {
+        if (RecordValuesCodec.isEncoded(data)) {
+            return RecordValuesCodec.decodeColumn(data, column, notFound);
+        }
+        Map<String, Object> values = decodeRecordValuesV1(data, Collections.singleton(column));
+        return values.containsKey(column) ? values.get(column) : notFound;
+    }
+
+    private static Map<String, Object> decodeRecordValuesV1(byte[] data, Set<String> columns) throws AnalyticsException {
         /* using LinkedHashMap to retain the column order */
         Map<String, Object> result = new LinkedHashMap<>();
         int type, size;
@@ -0,0 +1,192 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core.util;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class represents the values of a record, which are backed by the encoded record data read from a
+ * record store. A column is decoded only when it is first looked up, and all the values are decoded only when
+ * the map is iterated or modified. Till then, the record is serialized, and written back to a record store,
+ * using the encoded data as it is.
+ */
+public class LazyRecordValues extends AbstractMap<String, Object> implements Serializable, KryoSerializable {
+
+    private static final long serialVersionUID = 6473516338232069185L;
+
+    /* after these many individual column lookups, all the values are decoded at once */
+    private static final int MAX_COLUMN_LOOKUPS = 8;
+
+    private static final Object NOT_PRESENT = new Object();
+
+    private byte[] data;
+
+    private Set<String> columns;
+
+    private Map<String, Object> values;
+
+    private transient Map<String, Object> decodedColumns;
+
+    public LazyRecordValues() { }
+
+    /**
+     * Creates the record values.
+     * @param data The encoded record values
+     * @param columns The columns to be included, or null for all the columns
+     */
+    public LazyRecordValues(byte[] data, Set<String> columns) {
+        this.data = data;
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the encoded data, if all the columns of it are included, and the values are not decoded as a
+     * whole, which would allow modifications.
+     * @return The encoded data, or null
+     */
+    public synchronized byte[] getUnmodifiedData() {
+        if (this.values == null && this.columns == null) {
+            return this.data;
+        }
+        return null;
+    }
+
+    private synchronized Map<String, Object> materialize() {
+        if (this.values == null) {
+            try {
+                this.values = GenericUtils.decodeRecordValues(this.data, this.columns);
+            } catch (AnalyticsException e) {
+                throw new RuntimeException("Error in decoding record values: " + e.getMessage(), e);
+            }
+            this.data = null;
+            this.columns = null;
+            this.decodedColumns = null;
+        }
+        return this.values;
+    }
+
+    private synchronized Object lookupColumn(String column) {
+        if (this.values != null) {
+            return this.values.containsKey(column) ? this.values.get(column) : NOT_PRESENT;
+        }
+        if (this.columns != null && !this.columns.contains(column)) {
+            return NOT_PRESENT;
+        }
+        if (this.decodedColumns == null) {
+            this.decodedColumns = new HashMap<>();
+        } else if (this.decodedColumns.containsKey(column)) {
+            return this.decodedColumns.get(column);
+        } else if (this.decodedColumns.size() >= MAX_COLUMN_LOOKUPS) {
+            this.materialize();
+            return this.lookupColumn(column);
+        }
+        Object value;
+        try {
+            value = GenericUtils.decodeRecordValue(this.data, column, NOT_PRESENT);
+        } catch (AnalyticsException e) {
+            throw new RuntimeException("Error in decoding record value: " + e.getMessage(), e);
+        }
+        this.decodedColumns.put(column, value);
+        return value;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        Object value = this.lookupColumn((String) key);
+        return value == NOT_PRESENT ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && this.lookupColumn((String) key) != NOT_PRESENT;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return this.materialize().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return this.materialize().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> map) {
+        this.materialize().putAll(map);
+    }
+
+    @Override
+    public void clear() {
+        this.materialize().clear();
+    }
+
+    @Override
+    public int size() {
+        return this.materialize().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.materialize().isEmpty();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return this.materialize().entrySet();
+    }
+
+    @Override
+    public synchronized void write(Kryo kryo, Output output) {
+        if (this.values != null) {
+            output.writeBoolean(true);
+            kryo.writeClassAndObject(output, this.values);
+        } else {
+            output.writeBoolean(false);
+            output.writeInt(this.data.length);
+            output.writeBytes(this.data);
+            kryo.writeClassAndObject(output, this.columns);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized void read(Kryo kryo, Input input) {
+        if (input.readBoolean()) {
+            this.values = (Map<String, Object>) kryo.readClassAndObject(input);
+        } else {
+            this.data = input.readBytes(input.readInt());
+            this.columns = (Set<String>) kryo.readClassAndObject(input);
+        }
+    }
+
+}
@@ -0,0 +1,551 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core.util;
+
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class represents the version 2 binary encoding of record values. The encoded data starts with a
+ * format marker, which can never be the first byte of a version 1 encoded record, followed by the version,
+ * the column count and a null bitmap. Each column is written as its name and, if not null, the type and
+ * the value, where the integers are written as zigzag varints, and the lengths as varints. The encoding is
+ * done in a reusable thread local buffer, and the decoding resolves the column names through a thread local
+ * dictionary, so unrequested columns are skipped without materialising their values.
+ */
+public class RecordValuesCodec {
+
+    public static final byte FORMAT_MARKER = (byte) 0xFF;
+
+    public static final byte VERSION_2 = 0x02;
+
+    private static final int HEADER_SIZE = 2;
+
+    private static final byte DATA_TYPE_STRING = 0x01;
+
+    private static final byte DATA_TYPE_INTEGER = 0x02;
+
+    private static final byte DATA_TYPE_LONG = 0x03;
+
+    private static final byte DATA_TYPE_FLOAT = 0x04;
+
+    private static final byte DATA_TYPE_DOUBLE = 0x05;
+
+    private static final byte DATA_TYPE_BOOLEAN_TRUE = 0x06;
+
+    private static final byte DATA_TYPE_BOOLEAN_FALSE = 0x07;
+
+    private static final byte DATA_TYPE_BINARY = 0x08;
+
+    private static final byte DATA_TYPE_OBJECT = 0x10;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /* larger buffers are not retained by the threads after encoding a record */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int COLUMN_NAME_DICTIONARY_SIZE = 1024;
+
+    private static ThreadLocal<EncodeBuffer> encodeBufferTL = new ThreadLocal<EncodeBuffer>() {
+        protected EncodeBuffer initialValue() {
+            return new EncodeBuffer();
+        }
+    };
+
+    private static ThreadLocal<ColumnNameDictionary> columnNameDictionaryTL = new ThreadLocal<ColumnNameDictionary>() {
+        protected ColumnNameDictionary initialValue() {
+            return new ColumnNameDictionary(COLUMN_NAME_DICTIONARY_SIZE);
+        }
+    };
+
+    /**
+     * Checks whether the given data is encoded using this codec.
+     * @param data The encoded data
+     * @return true if the data is in version 2 format
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data.length >= HEADER_SIZE && data[0] == FORMAT_MARKER && data[1] == VERSION_2;
+    }
+
+    public static byte[] encode(Map<String, Object> values) throws AnalyticsException {
+        EncodeBuffer buffer = encodeBufferTL.get();
+        try {
+            buffer.write(FORMAT_MARKER);
+            buffer.write(VERSION_2);
+            int count = values.size();
+            buffer.writeVarInt(count);
+            int bitmapOffset = buffer.reserve((count + 7) >>> 3);
+            int index = 0;
+            Object value;
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                if (index >= count) {
+                    throw new AnalyticsException("The record values has been modified while encoding");
+                }
+                buffer.writeString(entry.getKey());
+                value = entry.getValue();
+                if (value == null) {
+                    buffer.setBit(bitmapOffset, index);
+                } else {
+                    writeValue(buffer, value);
+                }
+                index++;
+            }
+            return buffer.toByteArray();
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    private static void writeValue(EncodeBuffer buffer, Object value) {
+        if (value instanceof String) {
+            buffer.write(DATA_TYPE_STRING);
+            buffer.writeString((String) value);
+        } else if (value instanceof Long) {
+            buffer.write(DATA_TYPE_LONG);
+            buffer.writeVarLong(zigZagEncode((Long) value));
+        } else if (value instanceof Double) {
+            buffer.write(DATA_TYPE_DOUBLE);
+            buffer.writeLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Boolean) {
+            buffer.write((Boolean) value ? DATA_TYPE_BOOLEAN_TRUE : DATA_TYPE_BOOLEAN_FALSE);
+        } else if (value instanceof Integer) {
+            buffer.write(DATA_TYPE_INTEGER);
+            buffer.writeVarInt(zigZagEncode((Integer) value));
+        } else if (value instanceof Float) {
+            buffer.write(DATA_TYPE_FLOAT);
+            buffer.writeInt(Float.floatToIntBits((Float) value));
+        } else if (value instanceof byte[]) {
+            buffer.write(DATA_TYPE_BINARY);
+            byte[] binData = (byte[]) value;
+            buffer.writeVarInt(binData.length);
+            buffer.write(binData);
+        } else {
+            buffer.write(DATA_TYPE_OBJECT);
+            byte[] binData = GenericUtils.serializeObject(value);
+            buffer.writeVarInt(binData.length);
+            buffer.write(binData);
+        }
+    }
+
+    public static Map<String, Object> decode(byte[] data, Set<String> columns) throws AnalyticsException {
+        try {
+            DecodeCursor cursor = new DecodeCursor(data, HEADER_SIZE);
+            int count = cursor.readVarInt();
+            int bitmapOffset = cursor.position;
+            cursor.position += (count + 7) >>> 3;
+            ColumnNameDictionary dictionary = columnNameDictionaryTL.get();
+            /* using LinkedHashMap to retain the column order */
+            Map<String, Object> result = new LinkedHashMap<>(columns == null ? (count * 4 / 3 + 1) :
+                    (Math.min(count, columns.size()) * 4 / 3 + 1));
+            int nameSize;
+            String name;
+            boolean include;
+            for (int i = 0; i < count; i++) {
+                nameSize = cursor.readVarInt();
+                name = dictionary.lookup(data, cursor.position, nameSize);
+                cursor.position += nameSize;
+                include = columns == null || columns.contains(name);
+                if ((data[bitmapOffset + (i >>> 3)] & (1 << (i & 7))) != 0) {
+                    if (include) {
+                        result.put(name, null);
+                    }
+                } else if (include) {
+                    result.put(name, readValue(cursor));
+                } else {
+                    skipValue(cursor);
+                }
+            }
+            return result;
+        } catch (AnalyticsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AnalyticsException("Error in decoding record values: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes a single column value, skipping over the other columns without materialising them.
+     * @param data The encoded data
+     * @param column The column name
+     * @param notFound The value to be returned, if the column is not present in the data
+     * @return The decoded value, or the given not found value
+     * @throws AnalyticsException
+     */
+    public static Object decodeColumn(byte[] data, String column, Object notFound) throws AnalyticsException {
+        try {
+            byte[] columnBytes = column.getBytes(StandardCharsets.UTF_8);
+            DecodeCursor cursor = new DecodeCursor(data, HEADER_SIZE);
+            int count = cursor.readVarInt();
+            int bitmapOffset = cursor.position;
+            cursor.position += (count + 7) >>> 3;
+            int nameSize;
+            boolean match;
+            for (int i = 0; i < count; i++) {
+                nameSize = cursor.readVarInt();
+                match = nameSize == columnBytes.length && matches(columnBytes, data, cursor.position);
+                cursor.position += nameSize;
+                if ((data[bitmapOffset + (i >>> 3)] & (1 << (i & 7))) != 0) {
+                    if (match) {
+                        return null;
+                    }
+                } else if (match) {
+                    return readValue(cursor);
+                } else {
+                    skipValue(cursor);
+                }
+            }
+            return notFound;
+        } catch (AnalyticsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AnalyticsException("Error in decoding record value: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean matches(byte[] value, byte[] data, int offset) {
+        for (int i = 0; i < value.length; i++) {
+            if (value[i] != data[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object readValue(DecodeCursor cursor) throws AnalyticsException {
+        byte type = cursor.readByte();
+        int size;
+        Object value;
+        switch (type) {
+        case DATA_TYPE_STRING:
+            size = cursor.readVarInt();
+            value = new String(cursor.data, cursor.position, size, StandardCharsets.UTF_8);
+            cursor.position += size;
+            return value;
+        case DATA_TYPE_LONG:
+            return zigZagDecode(cursor.readVarLong());
+        case DATA_TYPE_DOUBLE:
+            return Double.longBitsToDouble(cursor.readLong());
+        case DATA_TYPE_BOOLEAN_TRUE:
+            return true;
+        case DATA_TYPE_BOOLEAN_FALSE:
+            return false;
+        case DATA_TYPE_INTEGER:
+            return zigZagDecode(cursor.readVarInt());
+        case DATA_TYPE_FLOAT:
+            return Float.intBitsToFloat(cursor.readInt());
+        case DATA_TYPE_BINARY:
+            return cursor.readBytes(cursor.readVarInt());
+        case DATA_TYPE_OBJECT:
+            return GenericUtils.deserializeObject(cursor.readBytes(cursor.readVarInt()));
+        default:
+            throw new AnalyticsException("Unknown encoded data source type : " + type);
+        }
+    }
+
+    private static void skipValue(DecodeCursor cursor) throws AnalyticsException {
+        byte type = cursor.readByte();
+        switch (type) {
+        case DATA_TYPE_STRING:
+        case DATA_TYPE_BINARY:
+        case DATA_TYPE_OBJECT:
+            int size = cursor.readVarInt();
+            cursor.position += size;
+            break;
+        case DATA_TYPE_LONG:
+            cursor.readVarLong();
+            break;
+        case DATA_TYPE_INTEGER:
+            cursor.readVarInt();
+            break;
+        case DATA_TYPE_DOUBLE:
+            cursor.position += 8;
+            break;
+        case DATA_TYPE_FLOAT:
+            cursor.position += 4;
+            break;
+        case DATA_TYPE_BOOLEAN_TRUE:
+        case DATA_TYPE_BOOLEAN_FALSE:
+            break;
+        default:
+            throw new AnalyticsException("Unknown encoded data source type : " + type);
+        }
+    }
+
+    private static int zigZagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Growable, reusable encode buffer.
+     */
+    private static class EncodeBuffer {
+
+        private byte[] data = new byte[INITIAL_BUFFER_SIZE];
+
+        private int position;
+
+        private void ensureCapacity(int size) {
+            if (this.position + size > this.data.length) {
+                byte[] newData = new byte[Math.max(this.data.length * 2, this.position + size)];
+                System.arraycopy(this.data, 0, newData, 0, this.position);
+                this.data = newData;
+            }
+        }
+
+        public void write(byte value) {
+            this.ensureCapacity(1);
+            this.data[this.position++] = value;
+        }
+
+        public void write(byte[] value) {
+            this.ensureCapacity(value.length);
+            System.arraycopy(value, 0, this.data, this.position, value.length);
+            this.position += value.length;
+        }
+
+        public int reserve(int size) {
+            this.ensureCapacity(size);
+            int offset = this.position;
+            for (int i = 0; i < size; i++) {
+                this.data[this.position++] = 0;
+            }
+            return offset;
+        }
+
+        public void setBit(int offset, int index) {
+            this.data[offset + (index >>> 3)] |= (1 << (index & 7));
+        }
+
+        public void writeVarInt(int value) {
+            this.ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                this.data[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.data[this.position++] = (byte) value;
+        }
+
+        public void writeVarLong(long value) {
+            this.ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                this.data[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.data[this.position++] = (byte) value;
+        }
+
+        public void writeInt(int value) {
+            this.ensureCapacity(4);
+            this.data[this.position++] = (byte) (value >>> 24);
+            this.data[this.position++] = (byte) (value >>> 16);
+            this.data[this.position++] = (byte) (value >>> 8);
+            this.data[this.position++] = (byte) value;
+        }
+
+        public void writeLong(long value) {
+            this.writeInt((int) (value >>> 32));
+            this.writeInt((int) value);
+        }
+
+        /**
+         * Writes the UTF-8 encoded string prefixed by its size, without creating an intermediate byte array,
+         * unpaired surrogates are written as '?', similar to {@link String#getBytes(java.nio.charset.Charset)}.
+         */
+        public void writeString(String value) {
+            int length = value.length();
+            int size = 0;
+            char c;
+            for (int i = 0; i < length; i++) {
+                c = value.charAt(i);
+                if (c < 0x80) {
+                    size++;
+                } else if (c < 0x800) {
+                    size += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                        Character.isLowSurrogate(value.charAt(i + 1))) {
+                    size += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    size++;
+                } else {
+                    size += 3;
+                }
+            }
+            this.writeVarInt(size);
+            this.ensureCapacity(size);
+            byte[] buff = this.data;
+            int pos = this.position;
+            int codePoint;
+            for (int i = 0; i < length; i++) {
+                c = value.charAt(i);
+                if (c < 0x80) {
+                    buff[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buff[pos++] = (byte) (0xC0 | (c >> 6));
+                    buff[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                        Character.isLowSurrogate(value.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buff[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                    buff[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buff[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buff[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    buff[pos++] = (byte) '?';
+                } else {
+                    buff[pos++] = (byte) (0xE0 | (c >> 12));
+                    buff[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buff[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            this.position = pos;
+        }
+
+        public byte[] toByteArray() {
+            byte[] result = new byte[this.position];
+            System.arraycopy(this.data, 0, result, 0, this.position);
+            return result;
+        }
+
+        public void reset() {
+            this.position = 0;
+            if (this.data.length > MAX_RETAINED_BUFFER_SIZE) {
+                this.data = new byte[INITIAL_BUFFER_SIZE];
+            }
+        }
+
+    }
+
+    /**
+     * Read position over an encoded record.
+     */
+    private static class DecodeCursor {
+
+        private byte[] data;
+
+        private int position;
+
+        public DecodeCursor(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        public byte readByte() {
+            return this.data[this.position++];
+        }
+
+        public int readVarInt() throws AnalyticsException {
+            int result = 0;
+            byte b;
+            for (int shift = 0; shift < 32; shift += 7) {
+                b = this.data[this.position++];
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new AnalyticsException("Malformed encoded varint value");
+        }
+
+        public long readVarLong() throws AnalyticsException {
+            long result = 0;
+            byte b;
+            for (int shift = 0; shift < 64; shift += 7) {
+                b = this.data[this.position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new AnalyticsException("Malformed encoded varlong value");
+        }
+
+        public int readInt() {
+            return ((this.data[this.position++] & 0xFF) << 24) | ((this.data[this.position++] & 0xFF) << 16) |
+                    ((this.data[this.position++] & 0xFF) << 8) | (this.data[this.position++] & 0xFF);
+        }
+
+        public long readLong() {
+            return ((long) this.readInt() << 32) | (this.readInt() & 0xFFFFFFFFL);
+        }
+
+        public byte[] readBytes(int size) {
+            byte[] result = new byte[size];
+            System.arraycopy(this.data, this.position, result, 0, size);
+            this.position += size;
+            return result;
+        }
+
+    }
+
+    /**
+     * A fixed size, direct mapped dictionary of column names keyed by their encoded bytes, which avoids
+     * creating a new string for the same column name in every decoded record.
+     */
+    private static class ColumnNameDictionary {
+
+        private byte[][] keys;
+
+        private String[] names;
+
+        private int mask;
+
+        public ColumnNameDictionary(int size) {
+            this.keys = new byte[size][];
+            this.names = new String[size];
+            this.mask = size - 1;
+        }
+
+        public String lookup(byte[] data, int offset, int size) {
+            int hash = 1;
+            for (int i = offset; i < offset + size; i++) {
+                hash = 31 * hash + data[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & this.mask;
+            byte[] key = this.keys[slot];
+            if (key != null && key.length == size && matches(key, data, offset)) {
+                return this.names[slot];
+            }
+            key = new byte[size];
+            System.arraycopy(data, offset, key, 0, size);
+            String name = new String(key, StandardCharsets.UTF_8);
+            this.keys[slot] = key;
+            this.names[slot] = name;
+            return name;
+        }
+
+    }
+
+}
@@ -34,6 +34,8 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.core.util.LazyRecordValues;
+import org.wso2.carbon.analytics.datasource.core.util.RecordValuesCodec;
 
 /**
  * This class represents the test operations related to {@link GenericUtils}.
@@ -153,6 +155,163 @@ public class GenericUtilsTest {
         System.out.println("Record Decode TPS: " + (count) / (double) (end - start) * 1000.0);
     }
     
+    @Test
+    public void testDecodeV1EncodedData() throws AnalyticsException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("C1", "ABC");
+        values.put("C3", 434);
+        values.put("C5", 4493855L);
+        values.put("C6", true);
+        values.put("C8", 445.6);
+        values.put("C9", 3.14f);
+        values.put("C10", null);
+        values.put("C11", new BigDecimal(54522.6420));
+        byte[] data = GenericUtils.encodeRecordValuesV1(values);
+        Assert.assertEquals(GenericUtils.decodeRecordValues(data, null), values);
+        Set<String> columns = new HashSet<String>();
+        columns.add("C5");
+        columns.add("C10");
+        Assert.assertEquals(GenericUtils.decodeRecordValues(data, columns).keySet(), columns);
+    }
+    
+    @Test
+    public void testEncodeDecodeNumericRangesAndStrings() throws AnalyticsException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("C1", Integer.MIN_VALUE);
+        values.put("C2", Integer.MAX_VALUE);
+        values.put("C3", Long.MIN_VALUE);
+        values.put("C4", Long.MAX_VALUE);
+        values.put("C5", -1L);
+        values.put("C6", Double.NaN);
+        values.put("C7", "\u00e9t\u00e9 \u4e16\u754c \ud83d\ude00");
+        values.put("C8", "");
+        values.put("\u00e9", new BigDecimal(Math.PI));
+        byte[] data = GenericUtils.encodeRecordValuesV1(values);
+        Assert.assertEquals(GenericUtils.decodeRecordValues(data, null), values);
+        data = RecordValuesCodec.encode(values);
+        Assert.assertEquals(GenericUtils.decodeRecordValues(data, null), values);
+    }
+    
+    @Test
+    public void testEncodeDecodeV1V2Formats() throws AnalyticsException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("C1", "ABC");
+        values.put("C2", 434);
+        values.put("C3", 4493855L);
+        values.put("C4", false);
+        values.put("C5", 3.14f);
+        values.put("C6", null);
+        values.put("C7", new byte[0]);
+        values.put("C8", new BigDecimal(54522.6420));
+        byte[] dataV1 = GenericUtils.encodeRecordValues(values);
+        Assert.assertFalse(RecordValuesCodec.isEncoded(dataV1));
+        byte[] dataV2;
+        System.setProperty(GenericUtils.ENABLE_RECORD_VALUES_V2_SYS_PROP, Boolean.TRUE.toString());
+        try {
+            dataV2 = GenericUtils.encodeRecordValues(values);
+        } finally {
+            System.clearProperty(GenericUtils.ENABLE_RECORD_VALUES_V2_SYS_PROP);
+        }
+        Assert.assertTrue(RecordValuesCodec.isEncoded(dataV2));
+        for (byte[] data : new byte[][] { dataV1, dataV2 }) {
+            Map<String, Object> valuesIn = GenericUtils.decodeRecordValues(data, null);
+            Assert.assertEquals(valuesIn.keySet(), values.keySet());
+            Assert.assertEquals(valuesIn.get("C1"), "ABC");
+            Assert.assertEquals(valuesIn.get("C2"), 434);
+            Assert.assertEquals(valuesIn.get("C3"), 4493855L);
+            Assert.assertEquals(valuesIn.get("C4"), false);
+            Assert.assertEquals(valuesIn.get("C5"), 3.14f);
+            Assert.assertNull(valuesIn.get("C6"));
+            Assert.assertEquals(((byte[]) valuesIn.get("C7")).length, 0);
+            Assert.assertEquals(valuesIn.get("C8"), values.get("C8"));
+            Assert.assertEquals(GenericUtils.decodeRecordValue(data, "C3", null), 4493855L);
+            Assert.assertEquals(GenericUtils.decodeRecordValue(data, "C9", Boolean.TRUE), Boolean.TRUE);
+            Assert.assertEquals(new LazyRecordValues(data, null).get("C1"), "ABC");
+        }
+    }
+    
+    @Test
+    public void testEncodeDecodeV1V2Perf() throws AnalyticsException {
+        Map<String, Object> cols = new HashMap<String, Object>();
+        for (int i = 0; i < 20; i++) {
+            cols.put("Column S - " + i, "OIJFFOWIJ FWOIJF EQF OIJFOIEJF EOIJFOI:JWLIFJ :WOIFJ:OIJ:OXXCW @#$#@2342323 OIJFW");
+            cols.put("Column I - " + i, (long) i);
+            cols.put("Column D - " + i, i + 0.535);
+            cols.put("Column N - " + i, null);
+        }
+        Set<String> columns = new HashSet<String>();
+        columns.add("Column S - 0");
+        columns.add("Column I - 10");
+        int count = 50000;
+        byte[] dataV1 = GenericUtils.encodeRecordValuesV1(cols);
+        byte[] dataV2 = RecordValuesCodec.encode(cols);
+        System.out.println("Record Size V1: " + dataV1.length + " V2: " + dataV2.length);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            GenericUtils.encodeRecordValuesV1(cols);
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("Record Encode V1 TPS: " + (count) / (double) (end - start) * 1000.0);
+        start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            RecordValuesCodec.encode(cols);
+        }
+        end = System.currentTimeMillis();
+        System.out.println("Record Encode V2 TPS: " + (count) / (double) (end - start) * 1000.0);
+        start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            GenericUtils.decodeRecordValues(dataV1, null);
+        }
+        end = System.currentTimeMillis();
+        System.out.println("Record Decode V1 TPS: " + (count) / (double) (end - start) * 1000.0);
+        start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            GenericUtils.decodeRecordValues(dataV2, null);
+        }
+        end = System.currentTimeMillis();
+        System.out.println("Record Decode V2 TPS: " + (count) / (double) (end - start) * 1000.0);
+        start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            GenericUtils.decodeRecordValues(dataV1, columns);
+        }
+        end = System.currentTimeMillis();
+        System.out.println("Record Projected Decode V1 TPS: " + (count) / (double) (end - start) * 1000.0);
+        start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            GenericUtils.decodeRecordValues(dataV2, columns);
+        }
+        end = System.currentTimeMillis();
+        System.out.println("Record Projected Decode V2 TPS: " + (count) / (double) (end - start) * 1000.0);
+        Assert.assertTrue(dataV2.length < dataV1.length);
+    }
+    
+    @Test
+    public void testLazyRecordValues() throws AnalyticsException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("C1", "ABC");
+        values.put("C2", 5L);
+        values.put("C3", null);
+        byte[] data = GenericUtils.encodeRecordValues(values);
+        LazyRecordValues lazyValues = new LazyRecordValues(data, null);
+        Assert.assertEquals(lazyValues.get("C1"), "ABC");
+        Assert.assertEquals(lazyValues.get("C2"), 5L);
+        Assert.assertNull(lazyValues.get("C3"));
+        Assert.assertTrue(lazyValues.containsKey("C3"));
+        Assert.assertFalse(lazyValues.containsKey("C4"));
+        Assert.assertSame(GenericUtils.encodeRecordValues(lazyValues), data);
+        Assert.assertEquals(GenericUtils.deserializeObject(GenericUtils.serializeObject(lazyValues)), values);
+        Set<String> columns = new HashSet<String>();
+        columns.add("C2");
+        LazyRecordValues projectedValues = new LazyRecordValues(data, columns);
+        Assert.assertNull(projectedValues.get("C1"));
+        Assert.assertEquals(projectedValues.get("C2"), 5L);
+        Assert.assertNull(projectedValues.getUnmodifiedData());
+        lazyValues.put("C4", 1.5);
+        Assert.assertEquals(lazyValues.size(), 4);
+        Assert.assertEquals(GenericUtils.decodeRecordValues(GenericUtils.encodeRecordValues(lazyValues), null),
+                lazyValues);
+    }
+    
     @Test
     public void testObjectSerializeDeserializeOne() throws IOException {
         BigDecimal obj = new BigDecimal(54522.6420);
@@ -18,20 +18,25 @@
 package org.wso2.carbon.analytics.datasource.cassandra;
 
 import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BatchStatement.Type;
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.Host;
 import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.TokenRange;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.google.common.cache.CacheBuilder;
 
 import com.google.common.collect.Lists;
 import org.apache.commons.collections.MultiHashMap;
 import org.apache.commons.collections.MultiMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.analytics.datasource.commons.AnalyticsIterator;
 import org.wso2.carbon.analytics.datasource.commons.Record;
 import org.wso2.carbon.analytics.datasource.commons.RecordGroup;
@@ -39,6 +44,7 @@ import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.core.util.LazyRecordValues;
 import org.wso2.carbon.ndatasource.common.DataSourceException;
 
 import java.io.IOException;
@@ -46,12 +52,15 @@ import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -60,6 +69,18 @@ import java.util.concurrent.ConcurrentMap;
 @SuppressWarnings("deprecation")
 public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
 
+    private static final Log log = LogFactory.getLog(CassandraAnalyticsRecordStore.class);
+    
+    private static final String TS_BUCKET_SIZE_META_ENTRY = "TS_BUCKET_SIZE";
+    
+    private static final String TS_LEGACY_MIGRATION_META_ENTRY = "TS_LEGACY_MIGRATED";
+    
+    private static final String ENCODED_DATA_INSERT_COLUMNS = "id, timestamp, encoded_data";
+    
+    private static final String DATA_INSERT_COLUMNS = "id, timestamp, data, encoded_data";
+    
+    private static final String LEGACY_DATA_INSERT_COLUMNS = "id, timestamp, data";
+    
     private Session session;
     
     private PreparedStatement tableExistsStmt;
@@ -68,10 +89,24 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
     
     private PreparedStatement timestampRecordAddStmt;
     
+    private PreparedStatement timestampBucketAddStmt;
+    
+    private PreparedStatement timestampBucketDeleteStmt;
+    
+    private PreparedStatement timestampBucketEntryDeleteStmt;
+    
     private String ksName;
     
+    private long tsBucketSize;
+    
+    private boolean encodedDataEnabled;
+    
     private ConcurrentMap<Object, Object> recordInsertStmtMap = CacheBuilder.newBuilder().maximumSize(
             CassandraConstants.RECORD_INSERT_STATEMENTS_CACHE_SIZE).build().asMap();
+    
+    /* the data tables which do not have the encoded data column, since it could not be added to them,
+     * which are read and written using only the "data" column */
+    private Set<String> legacyDataTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     @Override
     public void init(Map<String, String> properties) throws AnalyticsException {
@@ -89,9 +124,21 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
                         "client from Datasource");
             }
             this.session.execute(ksCreateQuery);
-            this.session.execute("CREATE TABLE IF NOT EXISTS " + this.ksName + ".TS (tenantId INT, "
-                    + "tableName VARCHAR, timestamp VARINT, id VARCHAR, PRIMARY KEY ((tenantId, tableName), timestamp))");
+            /* the timestamp index is partitioned by time buckets, so a single table's index is spread
+             * across the cluster, and the buckets available for a table is tracked in TS_BUCKETS */
+            this.session.execute("CREATE TABLE IF NOT EXISTS " + this.ksName + ".TS_BUCKETED (tenantId INT, "
+                    + "tableName VARCHAR, bucket BIGINT, timestamp VARINT, id VARCHAR, "
+                    + "PRIMARY KEY ((tenantId, tableName, bucket), timestamp))");
+            this.session.execute("CREATE TABLE IF NOT EXISTS " + this.ksName + ".TS_BUCKETS (tenantId INT, "
+                    + "tableName VARCHAR, bucket BIGINT, PRIMARY KEY ((tenantId, tableName), bucket))");
+            this.session.execute("CREATE TABLE IF NOT EXISTS " + this.ksName + ".TS_META (name VARCHAR, "
+                    + "value BIGINT, PRIMARY KEY (name))");
             this.initCommonPreparedStatements();
+            this.tsBucketSize = this.resolveTSBucketSize(CassandraUtils.extractTSBucketSize(properties));
+            this.encodedDataEnabled = Boolean.parseBoolean(System.getProperty(
+                    CassandraConstants.ENABLE_ENCODED_DATA_SYS_PROP));
+            this.migrateLegacyTimestampIndex();
+            this.addMissingEncodedDataColumns();
         } catch (DataSourceException e) {
             throw new AnalyticsException("Error establishing connection to Cassandra instance:" + e.getMessage(), e);
         }
@@ -100,27 +147,287 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
     private void initCommonPreparedStatements() {
         this.tableExistsStmt = this.session.prepare("SELECT columnfamily_name FROM system.schema_columnfamilies WHERE "
                 + "keyspace_name = ? and columnfamily_name = ?");
-        this.timestampRecordDeleteStmt = session.prepare("DELETE FROM " + 
-                this.ksName + ".TS WHERE tenantId = ? AND tableName = ? and timestamp = ?");
-        this.timestampRecordAddStmt = session.prepare(
-                "INSERT INTO " + this.ksName + ".TS (tenantId, tableName, timestamp, id) VALUES (?, ?, ?, ?)");
+        this.timestampRecordDeleteStmt = session.prepare("DELETE FROM " + this.ksName + 
+                ".TS_BUCKETED WHERE tenantId = ? AND tableName = ? AND bucket = ? and timestamp = ?");
+        this.timestampRecordAddStmt = session.prepare("INSERT INTO " + this.ksName + 
+                ".TS_BUCKETED (tenantId, tableName, bucket, timestamp, id) VALUES (?, ?, ?, ?, ?)");
+        this.timestampBucketAddStmt = session.prepare(
+                "INSERT INTO " + this.ksName + ".TS_BUCKETS (tenantId, tableName, bucket) VALUES (?, ?, ?)");
+        this.timestampBucketDeleteStmt = session.prepare("DELETE FROM " + this.ksName + 
+                ".TS_BUCKETED WHERE tenantId = ? AND tableName = ? AND bucket = ?");
+        this.timestampBucketEntryDeleteStmt = session.prepare("DELETE FROM " + this.ksName + 
+                ".TS_BUCKETS WHERE tenantId = ? AND tableName = ? AND bucket = ?");
     }
     
-    private PreparedStatement retrieveRecordInsertStmt(String dataTable) {
-        PreparedStatement stmt = (PreparedStatement) this.recordInsertStmtMap.get(dataTable);
+    /**
+     * The bucket size is fixed once the timestamp index has been created, since the existing index entries
+     * are looked up using it, so a differently configured value is ignored.
+     */
+    private long resolveTSBucketSize(long configuredBucketSize) {
+        this.session.execute("INSERT INTO " + this.ksName + ".TS_META (name, value) VALUES (?, ?) IF NOT EXISTS", 
+                TS_BUCKET_SIZE_META_ENTRY, configuredBucketSize);
+        long bucketSize = this.session.execute("SELECT value FROM " + this.ksName + ".TS_META WHERE name = ?", 
+                TS_BUCKET_SIZE_META_ENTRY).one().getLong(0);
+        if (bucketSize != configuredBucketSize) {
+            log.warn("The configured Cassandra timestamp index " + CassandraConstants.TS_BUCKET_SIZE + ": " + 
+                    configuredBucketSize + " is ignored, the existing bucket size: " + bucketSize + " is used.");
+        }
+        return bucketSize;
+    }
+    
+    /**
+     * Moves the entries of the earlier single partition per table timestamp index, to the time bucketed one.
+     * The completed migration is marked in TS_META, so the legacy index is only looked up once.
+     */
+    private void migrateLegacyTimestampIndex() {
+        if (this.session.execute("SELECT value FROM " + this.ksName + ".TS_META WHERE name = ?", 
+                TS_LEGACY_MIGRATION_META_ENTRY).one() != null) {
+            return;
+        }
+        Statement stmt = this.tableExistsStmt.bind(this.ksName.toLowerCase(), "ts");
+        if (this.session.execute(stmt).iterator().hasNext()) {
+            ResultSet partitions = this.session.execute("SELECT DISTINCT tenantId, tableName FROM " + 
+                    this.ksName + ".TS");
+            int tenantId;
+            String tableName;
+            for (Row partition : partitions) {
+                tenantId = partition.getInt(0);
+                tableName = partition.getString(1);
+                ResultSet rs = this.session.execute("SELECT timestamp, id FROM " + this.ksName + 
+                        ".TS WHERE tenantId = ? AND tableName = ?", tenantId, tableName);
+                Iterator<Row> itr = rs.iterator();
+                long count = 0;
+                while (itr.hasNext()) {
+                    count += this.migrateLegacyTSBatch(tenantId, tableName, itr);
+                }
+                this.session.execute("DELETE FROM " + this.ksName + ".TS WHERE tenantId = ? AND tableName = ?", 
+                        tenantId, tableName);
+                log.info("Migrated " + count + " timestamp index entries of table [" + tenantId + ":" + 
+                        tableName + "] to the time bucketed timestamp index.");
+            }
+        }
+        this.session.execute("INSERT INTO " + this.ksName + ".TS_META (name, value) VALUES (?, ?)", 
+                TS_LEGACY_MIGRATION_META_ENTRY, System.currentTimeMillis());
+    }
+    
+    /**
+     * The legacy entries are grouped by their time bucket, and written using unlogged batches which only
+     * contain a single partition's entries, same as in {@link #addTSRecordStatements(List, int, String, List)}.
+     */
+    private int migrateLegacyTSBatch(int tenantId, String tableName, Iterator<Row> itr) {
+        Map<Long, List<Statement>> bucketEntries = new HashMap<Long, List<Statement>>();
+        List<Statement> entries;
+        Row row;
+        BigInteger ts;
+        Long bucket;
+        int count = 0;
+        for (; count < CassandraConstants.STREAMING_BATCH_SIZE && itr.hasNext(); count++) {
+            row = itr.next();
+            ts = row.getVarint(0);
+            bucket = this.toBucket(ts);
+            entries = bucketEntries.get(bucket);
+            if (entries == null) {
+                entries = new ArrayList<Statement>();
+                bucketEntries.put(bucket, entries);
+            }
+            entries.add(this.timestampRecordAddStmt.bind(tenantId, tableName, bucket, ts, row.getString(1)));
+        }
+        List<Statement> stmts = new ArrayList<Statement>();
+        BatchStatement stmt;
+        for (List<Statement> partitionEntries : bucketEntries.values()) {
+            for (List<Statement> partitionBatch : Lists.partition(partitionEntries, 
+                    CassandraConstants.PARTITION_WRITE_BATCH_SIZE)) {
+                stmt = new BatchStatement(Type.UNLOGGED);
+                stmt.addAll(partitionBatch);
+                stmts.add(stmt);
+            }
+        }
+        stmt = new BatchStatement(Type.UNLOGGED);
+        this.addTSBuckets(stmt, tenantId, tableName, bucketEntries.keySet());
+        stmts.add(stmt);
+        this.executeAsync(stmts);
+        return count;
+    }
+    
+    private void addTSBuckets(BatchStatement stmt, int tenantId, String tableName, Set<Long> buckets) {
+        for (Long bucket : buckets) {
+            stmt.add(this.timestampBucketAddStmt.bind(tenantId, tableName, bucket));
+        }
+    }
+    
+    private long toBucket(long timestamp) {
+        long bucket = timestamp / this.tsBucketSize;
+        if (timestamp % this.tsBucketSize < 0) {
+            bucket--;
+        }
+        return bucket;
+    }
+    
+    private long toBucket(BigInteger tsTableTimestamp) {
+        BigInteger[] qr = tsTableTimestamp.divideAndRemainder(BigInteger.valueOf(CassandraConstants.TS_MULTIPLIER));
+        long timestamp = qr[0].longValue();
+        if (qr[1].signum() < 0) {
+            timestamp--;
+        }
+        return this.toBucket(timestamp);
+    }
+    
+    private BigInteger toTSTableBoundary(long timestamp) {
+        return BigInteger.valueOf(timestamp).multiply(BigInteger.valueOf(CassandraConstants.TS_MULTIPLIER));
+    }
+    
+    private List<Long> lookupBuckets(int tenantId, String tableName, long timeFrom, long timeTo) {
+        ResultSet rs = this.session.execute("SELECT bucket FROM " + this.ksName + ".TS_BUCKETS WHERE tenantId = ? "
+                + "AND tableName = ? AND bucket >= ? AND bucket <= ?", tenantId, tableName, 
+                this.toBucket(timeFrom), this.toBucket(timeTo));
+        List<Long> result = new ArrayList<Long>();
+        for (Row row : rs) {
+            result.add(row.getLong(0));
+        }
+        return result;
+    }
+    
+    private boolean isBucketCoveredByRange(long bucket, long timeFrom, long timeTo) {
+        boolean startCovered = timeFrom == Long.MIN_VALUE || bucket > this.toBucket(timeFrom) || 
+                timeFrom == bucket * this.tsBucketSize;
+        return startCovered && bucket < this.toBucket(timeTo);
+    }
+    
+    private String generateRecordInsertQuery(String dataTable, String columns) {
+        StringBuilder params = new StringBuilder("?");
+        for (int i = 1; i < columns.split(",").length; i++) {
+            params.append(", ?");
+        }
+        return "INSERT INTO " + this.ksName + "." + dataTable + " (" + columns + ") VALUES (" + params + ")";
+    }
+    
+    private PreparedStatement retrieveRecordInsertStmt(String dataTable, String columns) {
+        String query = this.generateRecordInsertQuery(dataTable, columns);
+        PreparedStatement stmt = (PreparedStatement) this.recordInsertStmtMap.get(query);
         if (stmt == null) {
             synchronized (this.recordInsertStmtMap) {
-                stmt = (PreparedStatement) this.recordInsertStmtMap.get(dataTable);
+                stmt = (PreparedStatement) this.recordInsertStmtMap.get(query);
                 if (stmt == null) {
-                    stmt = session.prepare("INSERT INTO " + this.ksName + "." + dataTable + 
-                            " (id, timestamp, data) VALUES (?, ?, ?)");
-                    this.recordInsertStmtMap.put(dataTable, stmt);
+                    stmt = session.prepare(query);
+                    this.recordInsertStmtMap.put(query, stmt);
                 }
             }            
         }
         return stmt;
     }
+    
+    private void removeRecordInsertStmts(String dataTable) {
+        for (String columns : new String[] { ENCODED_DATA_INSERT_COLUMNS, DATA_INSERT_COLUMNS, 
+                LEGACY_DATA_INSERT_COLUMNS }) {
+            this.recordInsertStmtMap.remove(this.generateRecordInsertQuery(dataTable, columns));
+        }
+    }
 
+    private RecordGroup[] calculateTimeBucketGroups(int tenantId, String tableName, List<String> columns,
+            int numPartitionsHint, long timeFrom, long timeTo) {
+        List<Long> buckets = this.lookupBuckets(tenantId, tableName, timeFrom, timeTo);
+        if (buckets.isEmpty()) {
+            return new RecordGroup[] { new GlobalCassandraRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, -1) };
+        }
+        int partitionSize = (int) Math.ceil(buckets.size() / (double) numPartitionsHint);
+        List<RecordGroup> result = new ArrayList<RecordGroup>(numPartitionsHint);
+        for (List<Long> partitionBuckets : Lists.partition(buckets, partitionSize)) {
+            result.add(new TimeBucketRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, 
+                    new ArrayList<Long>(partitionBuckets)));
+        }
+        return result.toArray(new RecordGroup[result.size()]);
+    }
+    
+    /**
+     * The record values can be written as a single encoded blob, to the "encoded_data" column, where the tables
+     * created earlier only have the "data" map column with each value serialized separately, so the new column
+     * is added to those when the record store is initialized, and the earlier records are still read from the 
+     * "data" column.
+     */
+    private void addMissingEncodedDataColumns() {
+        ResultSet rs = this.session.execute("SELECT columnfamily_name, column_name FROM system.schema_columns "
+                + "WHERE keyspace_name = ?", this.ksName.toLowerCase());
+        Set<String> dataTables = new HashSet<String>();
+        Set<String> encodedDataTables = new HashSet<String>();
+        for (Row row : rs) {
+            if ("data".equals(row.getString(1))) {
+                dataTables.add(row.getString(0));
+            } else if ("encoded_data".equals(row.getString(1))) {
+                encodedDataTables.add(row.getString(0));
+            }
+        }
+        dataTables.removeAll(encodedDataTables);
+        for (String dataTable : dataTables) {
+            this.checkAndAddEncodedDataColumn(dataTable);
+        }
+    }
+    
+    private boolean encodedDataColumnExists(String dataTable) {
+        String query = "SELECT column_name FROM system.schema_columns WHERE keyspace_name = ? AND "
+                + "columnfamily_name = ? AND column_name = ?";
+        return this.session.execute(query, this.ksName.toLowerCase(), dataTable.toLowerCase(), 
+                "encoded_data").iterator().hasNext();
+    }
+    
+    private void checkAndAddEncodedDataColumn(String dataTable) {
+        if (!this.encodedDataColumnExists(dataTable)) {
+            try {
+                this.session.execute("ALTER TABLE " + this.ksName + "." + dataTable + " ADD encoded_data BLOB");
+            } catch (InvalidQueryException e) {
+                /* the column may have been added concurrently by another node, or else,
+                 * the table is not there, which will be reported by the following operations */
+                if (!this.encodedDataColumnExists(dataTable)) {
+                    log.warn("Error in adding the encoded data column to '" + dataTable + "': " + e.getMessage());
+                    this.legacyDataTables.add(dataTable.toLowerCase());
+                    return;
+                }
+            }
+        }
+        this.legacyDataTables.remove(dataTable.toLowerCase());
+    }
+    
+    /**
+     * The data table columns read for the records, where a table without the encoded data column is
+     * read only using the "data" column.
+     */
+    private String recordColumns(String dataTable) {
+        if (this.legacyDataTables.contains(dataTable.toLowerCase())) {
+            return "id, timestamp, data";
+        }
+        return "id, timestamp, data, encoded_data";
+    }
+    
+    /**
+     * The data table columns written for the records, where the "encoded_data" column is only written if
+     * it is enabled, since the nodes not upgraded yet only read the "data" column. Otherwise, the "data" column
+     * is written, while clearing the "encoded_data" column, which would be read before it.
+     */
+    private String recordInsertColumns(String dataTable) {
+        if (this.legacyDataTables.contains(dataTable.toLowerCase())) {
+            return LEGACY_DATA_INSERT_COLUMNS;
+        } else if (this.encodedDataEnabled) {
+            return ENCODED_DATA_INSERT_COLUMNS;
+        } else {
+            return DATA_INSERT_COLUMNS;
+        }
+    }
+    
+    /**
+     * Executes the given statements asynchronously, while keeping the number of requests in-flight bounded.
+     */
+    private void executeAsync(List<Statement> stmts) {
+        LinkedList<ResultSetFuture> inflightWrites = new LinkedList<ResultSetFuture>();
+        for (Statement stmt : stmts) {
+            if (inflightWrites.size() >= CassandraConstants.MAX_INFLIGHT_WRITES) {
+                inflightWrites.poll().getUninterruptibly();
+            }
+            inflightWrites.add(this.session.executeAsync(stmt));
+        }
+        for (ResultSetFuture inflightWrite : inflightWrites) {
+            inflightWrite.getUninterruptibly();
+        }
+    }
+    
     private TokenRangeRecordGroup[] calculateTokenRangeGroups(int tenantId, String tableName, List<String> columns,
                                                               int numPartitionsHint, int count) {
         Metadata md = this.session.getCluster().getMetadata();
@@ -199,19 +506,34 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
     public synchronized void createTable(int tenantId, String tableName) throws AnalyticsException {
         String dataTable = this.generateTargetDataTableName(tenantId, tableName);
         this.session.execute("CREATE TABLE IF NOT EXISTS " + this.ksName + "." + dataTable +
-                " (id VARCHAR, timestamp BIGINT, data MAP<VARCHAR, BLOB>, PRIMARY KEY (id))");
+                " (id VARCHAR, timestamp BIGINT, data MAP<VARCHAR, BLOB>, encoded_data BLOB, PRIMARY KEY (id))");
+        if (this.legacyDataTables.contains(dataTable.toLowerCase())) {
+            this.checkAndAddEncodedDataColumn(dataTable);
+        }
     }
 
     @Override
     public void delete(int tenantId, String tableName, long timeFrom, long timeTo) 
             throws AnalyticsException, AnalyticsTableNotAvailableException {
-        ResultSet rs = this.session.execute("SELECT id, timestamp FROM " + this.ksName + 
-                ".TS WHERE tenantId = ? AND tableName = ? AND timestamp >= ? AND timestamp < ?",
-                tenantId, tableName, BigInteger.valueOf(timeFrom).multiply(BigInteger.valueOf(CassandraConstants.TS_MULTIPLIER)), 
-                BigInteger.valueOf(timeTo).multiply(BigInteger.valueOf(CassandraConstants.TS_MULTIPLIER)));
-        Iterator<Row> tsItr = rs.iterator();
-        while (tsItr.hasNext()) {
-            this.deleteWithTSItrBatch(tenantId, tableName, tsItr);
+        for (long bucket : this.lookupBuckets(tenantId, tableName, timeFrom, timeTo)) {
+            ResultSet rs = this.session.execute("SELECT id, timestamp FROM " + this.ksName + ".TS_BUCKETED WHERE "
+                    + "tenantId = ? AND tableName = ? AND bucket = ? AND timestamp >= ? AND timestamp < ?",
+                    tenantId, tableName, bucket, this.toTSTableBoundary(timeFrom), this.toTSTableBoundary(timeTo));
+            Iterator<Row> tsItr = rs.iterator();
+            if (this.isBucketCoveredByRange(bucket, timeFrom, timeTo)) {
+                /* the whole bucket is in the range, so after its records are deleted, the bucket's entry in 
+                 * TS_BUCKETS and its index partition are removed with single deletes, rather than deleting 
+                 * the index entries one by one */
+                while (tsItr.hasNext()) {
+                    this.deleteWithTSItrBatch(tenantId, tableName, bucket, tsItr, false);
+                }
+                this.session.execute(this.timestampBucketEntryDeleteStmt.bind(tenantId, tableName, bucket));
+                this.session.execute(this.timestampBucketDeleteStmt.bind(tenantId, tableName, bucket));
+            } else {
+                while (tsItr.hasNext()) {
+                    this.deleteWithTSItrBatch(tenantId, tableName, bucket, tsItr, true);
+                }
+            }
         }
     }
 
@@ -226,17 +548,22 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
         return result;
     }
     
-    private void deleteWithTSItrBatch(int tenantId, String tableName, Iterator<Row> itr) {
+    private void deleteWithTSItrBatch(int tenantId, String tableName, long bucket, Iterator<Row> itr, 
+            boolean deleteTSEntries) {
         String dataTable = this.generateTargetDataTableName(tenantId, tableName);
         List<String> ids = new ArrayList<String>();
         BatchStatement stmt = new BatchStatement();
         Row row;
         for (int i = 0; i < CassandraConstants.STREAMING_BATCH_SIZE && itr.hasNext(); i++) {
             row = itr.next();
-            stmt.add(this.timestampRecordDeleteStmt.bind(tenantId, tableName, row.getVarint(1)));
+            if (deleteTSEntries) {
+                stmt.add(this.timestampRecordDeleteStmt.bind(tenantId, tableName, bucket, row.getVarint(1)));
+            }
             ids.add(row.getString(0));
         }
-        this.session.execute(stmt);
+        if (deleteTSEntries) {
+            this.session.execute(stmt);
+        }
         this.session.execute("DELETE FROM " + this.ksName + "." + dataTable + " WHERE id IN ?", ids);
     }
     
@@ -258,7 +585,7 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
     private void deleteTSEntries(int tenantId, String tableName, Collection<BigInteger> tsTableTimestamps) {
         BatchStatement stmt = new BatchStatement();
         for (BigInteger ts : tsTableTimestamps) {
-            stmt.add(this.timestampRecordDeleteStmt.bind(tenantId, tableName, ts));
+            stmt.add(this.timestampRecordDeleteStmt.bind(tenantId, tableName, this.toBucket(ts), ts));
         }
         this.session.execute(stmt);
     }
@@ -266,8 +593,14 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
     @Override
     public synchronized void deleteTable(int tenantId, String tableName) throws AnalyticsException {
         String dataTable = this.generateTargetDataTableName(tenantId, tableName);
-        this.session.execute("DELETE FROM " + this.ksName + ".TS WHERE tenantId = ? AND tableName = ?", tenantId, tableName);
+        for (long bucket : this.lookupBuckets(tenantId, tableName, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            this.session.execute(this.timestampBucketDeleteStmt.bind(tenantId, tableName, bucket));
+        }
+        this.session.execute("DELETE FROM " + this.ksName + ".TS_BUCKETS WHERE tenantId = ? AND tableName = ?", 
+                tenantId, tableName);
         this.session.execute("DROP TABLE IF EXISTS " + this.ksName + "." + dataTable);
+        this.removeRecordInsertStmts(dataTable);
+        this.legacyDataTables.remove(dataTable.toLowerCase());
     }
 
     @Override
@@ -287,10 +620,13 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
         if (!this.tableExists(tenantId, tableName)) {
             throw new AnalyticsTableNotAvailableException(tenantId, tableName);
         }
-        if (numPartitionsHint == 1 || !(timeFrom == Long.MIN_VALUE && timeTo == Long.MAX_VALUE)) {
-            return new RecordGroup[] { new GlobalCassandraRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, recordsCount) };
-        } else {
+        if (timeFrom == Long.MIN_VALUE && timeTo == Long.MAX_VALUE && numPartitionsHint > 1) {
             return this.calculateTokenRangeGroups(tenantId, tableName, columns, numPartitionsHint, recordsCount);
+        } else if (numPartitionsHint > 1 && recordsCount == -1 && 
+                !(timeFrom == Long.MIN_VALUE && timeTo == Long.MAX_VALUE)) {
+            return this.calculateTimeBucketGroups(tenantId, tableName, columns, numPartitionsHint, timeFrom, timeTo);
+        } else {
+            return new RecordGroup[] { new GlobalCassandraRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, recordsCount) };
         }
     }
 
@@ -314,6 +650,10 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
             }
         } else if (recordGroup instanceof TokenRangeRecordGroup) {
             return this.readPartitionedRecords((TokenRangeRecordGroup) recordGroup);
+        } else if (recordGroup instanceof TimeBucketRecordGroup) {
+            TimeBucketRecordGroup tbrg = (TimeBucketRecordGroup) recordGroup;
+            return new CassandraTimeBucketDataIterator(tbrg.getTenantId(), tbrg.getTableName(), tbrg.getColumns(), 
+                    tbrg.getTimeFrom(), tbrg.getTimeTo(), tbrg.getBuckets(), -1);
         } else {
             throw new AnalyticsException("Unknnown Cassandra record group type: " + recordGroup.getClass());
         }
@@ -335,24 +675,17 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
         int count = recordGroup.getCount();
         if (recordGroup.getTimeFrom() == Long.MIN_VALUE && recordGroup.getTimeTo() == Long.MAX_VALUE) {
             if (count == -1) {
-                query = "SELECT id, timestamp, data FROM " + this.ksName + "." + dataTable;
+                query = "SELECT " + this.recordColumns(dataTable) + " FROM " + this.ksName + "." + dataTable;
             } else {
-                query = "SELECT id, timestamp, data FROM " + this.ksName + "." + dataTable + " LIMIT " + count;
+                query = "SELECT " + this.recordColumns(dataTable) + " FROM " + this.ksName + "." + dataTable + " LIMIT " + count;
             }
             rs = this.session.execute(query);
             return this.lookupRecordsByDirectRS(tenantId, tableName, rs, columns);
         } else {
-            if (count == -1) {
-                query = "SELECT id, timestamp FROM " + this.ksName + ".TS WHERE tenantId = ? AND tableName = ? "
-                        + "AND timestamp >= ? AND timestamp < ?";
-            } else {
-                query = "SELECT id, timestamp FROM " + this.ksName + ".TS WHERE tenantId = ? AND tableName = ? "
-                        + "AND timestamp >= ? AND timestamp < ? LIMIT " + count;
-            }
-            ResultSet tsrs = this.session.execute(query, tenantId, tableName,
-                    BigInteger.valueOf(recordGroup.getTimeFrom()).multiply(BigInteger.valueOf(CassandraConstants.TS_MULTIPLIER)),
-                    BigInteger.valueOf(recordGroup.getTimeTo()).multiply(BigInteger.valueOf(CassandraConstants.TS_MULTIPLIER)));
-            return new CassandraRecordTSBasedIDDataIterator(tenantId, tableName, tsrs.iterator(), columns);
+            List<Long> buckets = this.lookupBuckets(tenantId, tableName, recordGroup.getTimeFrom(), 
+                    recordGroup.getTimeTo());
+            return new CassandraTimeBucketDataIterator(tenantId, tableName, columns, recordGroup.getTimeFrom(), 
+                    recordGroup.getTimeTo(), buckets, count);
         }
     }
     
@@ -363,7 +696,7 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
     
     private AnalyticsIterator<Record> lookupRecordsByIds(int tenantId, String tableName, List<String> ids, List<String> columns) {
         String dataTable = this.generateTargetDataTableName(tenantId, tableName);
-        ResultSet rs = this.session.execute("SELECT id, timestamp, data FROM " + this.ksName + 
+        ResultSet rs = this.session.execute("SELECT " + this.recordColumns(dataTable) + " FROM " + this.ksName + 
                 "." + dataTable + " WHERE id IN ?", ids);
         return this.lookupRecordsByDirectRS(tenantId, tableName, rs, columns);
     }
@@ -393,6 +726,13 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
         return false;
     }
     
+    @Override
+    public boolean isRangeDeleteSupported() {
+        /* time range deletes are done by streaming the ids from the timestamp table, and deleting in batches,
+         * where the fully covered time buckets of the timestamp table are dropped as whole partitions */
+        return true;
+    }
+    
     @Override
     public void put(List<Record> records) throws AnalyticsException, AnalyticsTableNotAvailableException {
         Collection<List<Record>> batches = GenericUtils.generateRecordBatches(records);
@@ -401,14 +741,6 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
     
-    private Map<String, ByteBuffer> getDataMapFromValues(Map<String, Object> values) {
-        Map<String, ByteBuffer> result = new HashMap<String, ByteBuffer>(values.size());
-        for (Map.Entry<String, Object> entry : values.entrySet()) {
-            result.put(entry.getKey(), ByteBuffer.wrap(GenericUtils.serializeObject(entry.getValue())));
-        }
-        return result;
-    }
-    
     private BigInteger toTSTableTimestamp(long timestamp, String id) {
         return (BigInteger.valueOf(timestamp).multiply(BigInteger.valueOf(CassandraConstants.TS_MULTIPLIER))).add(
                 BigInteger.valueOf(Math.abs(id.hashCode() % CassandraConstants.TS_MULTIPLIER)));
@@ -421,8 +753,11 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
         String dataTable = this.generateTargetDataTableName(tenantId, tableName);
         try {
             //this.deleteTSEntries(tenantId, tableName, dataTable, this.extractRecordIds(batch));
-            this.addRawRecordBatch(dataTable, batch);
-            this.addTSRecordBatch(tenantId, tableName, batch);
+            List<Statement> stmts = new ArrayList<Statement>(batch.size() + 
+                    batch.size() / CassandraConstants.PARTITION_WRITE_BATCH_SIZE + 2);
+            this.addRawRecordStatements(stmts, dataTable, batch);
+            this.addTSRecordStatements(stmts, tenantId, tableName, batch);
+            this.executeAsync(stmts);
         } catch (Exception e) {
             if (!this.tableExists(tenantId, tableName)) {
                 throw new AnalyticsTableNotAvailableException(tenantId, tableName);
@@ -432,22 +767,68 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
     
-    private void addRawRecordBatch(String dataTable, List<Record> batch) {
-        PreparedStatement ps = this.retrieveRecordInsertStmt(dataTable);
-        BatchStatement stmt = new BatchStatement();
+    /**
+     * Each record is a partition of its own in the data table, so they are written as individual statements.
+     */
+    private void addRawRecordStatements(List<Statement> stmts, String dataTable, 
+            List<Record> batch) throws AnalyticsException {
+        String columns = this.recordInsertColumns(dataTable);
+        PreparedStatement ps = this.retrieveRecordInsertStmt(dataTable, columns);
         for (Record record : batch) {
-            stmt.add(ps.bind(record.getId(), record.getTimestamp(), this.getDataMapFromValues(record.getValues())));
+            if (ENCODED_DATA_INSERT_COLUMNS.equals(columns)) {
+                stmts.add(ps.bind(record.getId(), record.getTimestamp(), 
+                        ByteBuffer.wrap(GenericUtils.encodeRecordValues(record.getValues()))));
+            } else if (DATA_INSERT_COLUMNS.equals(columns)) {
+                stmts.add(ps.bind(record.getId(), record.getTimestamp(), 
+                        this.getDataMapFromValues(record.getValues()), null));
+            } else {
+                stmts.add(ps.bind(record.getId(), record.getTimestamp(), 
+                        this.getDataMapFromValues(record.getValues())));
+            }
         }
-        this.session.execute(stmt);
     }
-        
-    private void addTSRecordBatch(int tenantId, String tableName, List<Record> batch) {
-        BatchStatement stmt = new BatchStatement();
+    
+    private Map<String, ByteBuffer> getDataMapFromValues(Map<String, Object> values) {
+        Map<String, ByteBuffer> result = new HashMap<String, ByteBuffer>(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            result.put(entry.getKey(), ByteBuffer.wrap(GenericUtils.serializeObject(entry.getValue())));
+        }
+        return result;
+    }
+    
+    /**
+     * The timestamp index entries are grouped by their time bucket, and each group is written using
+     * unlogged batches, which only contain a single partition's entries.
+     */
+    private void addTSRecordStatements(List<Statement> stmts, int tenantId, String tableName, List<Record> batch) {
+        Map<Long, List<Record>> bucketRecords = new HashMap<Long, List<Record>>();
+        Long bucket;
+        List<Record> records;
         for (Record record : batch) {
-            stmt.add(this.timestampRecordAddStmt.bind(tenantId, tableName, this.toTSTableTimestamp(record.getTimestamp(), 
-                    record.getId()), record.getId()));
+            bucket = this.toBucket(record.getTimestamp());
+            records = bucketRecords.get(bucket);
+            if (records == null) {
+                records = new ArrayList<Record>();
+                bucketRecords.put(bucket, records);
+            }
+            records.add(record);
         }
-        this.session.execute(stmt);
+        BatchStatement stmt;
+        for (Map.Entry<Long, List<Record>> entry : bucketRecords.entrySet()) {
+            bucket = entry.getKey();
+            for (List<Record> partitionBatch : Lists.partition(entry.getValue(), 
+                    CassandraConstants.PARTITION_WRITE_BATCH_SIZE)) {
+                stmt = new BatchStatement(Type.UNLOGGED);
+                for (Record record : partitionBatch) {
+                    stmt.add(this.timestampRecordAddStmt.bind(tenantId, tableName, bucket, 
+                            this.toTSTableTimestamp(record.getTimestamp(), record.getId()), record.getId()));
+                }
+                stmts.add(stmt);
+            }
+        }
+        stmt = new BatchStatement(Type.UNLOGGED);
+        this.addTSBuckets(stmt, tenantId, tableName, bucketRecords.keySet());
+        stmts.add(stmt);
     }
 
     private boolean tableExists(int tenantId, String tableName) throws AnalyticsException {
@@ -491,10 +872,10 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
             CassandraTokenRange tokenRange = this.tokenRangesItr.next();
             String query;
             if (this.count == -1) {
-                query = "SELECT id, timestamp, data FROM " + ksName + "." + dataTable + 
+                query = "SELECT " + recordColumns(dataTable) + " FROM " + ksName + "." + dataTable + 
                         " WHERE token(id) > ? and token(id) <= ?";
             } else {
-                query = "SELECT id, timestamp, data FROM " + ksName + "." + dataTable + 
+                query = "SELECT " + recordColumns(dataTable) + " FROM " + ksName + "." + dataTable + 
                         " WHERE token(id) > ? and token(id) <= ? LIMIT " + this.count;
             }
             ResultSet rs = session.execute(query, tokenRange.getStart(), tokenRange.getEnd());
@@ -543,6 +924,114 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
         
     }
     
+    /**
+     * Cassandra data {@link AnalyticsIterator} implementation for streaming, which reads data
+     * using the time buckets of the timestamp index, where the next buckets are read ahead asynchronously.
+     */
+    public class CassandraTimeBucketDataIterator implements AnalyticsIterator<Record> {
+        
+        private int tenantId;
+        
+        private String tableName;
+        
+        private List<String> columns;
+        
+        private long timeFrom;
+        
+        private long timeTo;
+        
+        private Iterator<Long> bucketsItr;
+        
+        private LinkedList<ResultSetFuture> bucketReads = new LinkedList<ResultSetFuture>();
+        
+        private AnalyticsIterator<Record> dataItr;
+        
+        private int count;
+        
+        private int dataPointer;
+        
+        public CassandraTimeBucketDataIterator(int tenantId, String tableName, List<String> columns,
+                long timeFrom, long timeTo, List<Long> buckets, int count) {
+            this.tenantId = tenantId;
+            this.tableName = tableName;
+            this.columns = columns;
+            this.timeFrom = timeFrom;
+            this.timeTo = timeTo;
+            this.bucketsItr = buckets.iterator();
+            this.count = count;
+        }
+        
+        private void scheduleBucketReads() {
+            String query;
+            if (this.count == -1) {
+                query = "SELECT id, timestamp FROM " + ksName + ".TS_BUCKETED WHERE tenantId = ? AND tableName = ? "
+                        + "AND bucket = ? AND timestamp >= ? AND timestamp < ?";
+            } else {
+                query = "SELECT id, timestamp FROM " + ksName + ".TS_BUCKETED WHERE tenantId = ? AND tableName = ? "
+                        + "AND bucket = ? AND timestamp >= ? AND timestamp < ? LIMIT " + this.count;
+            }
+            while (this.bucketReads.size() < CassandraConstants.TS_BUCKET_PREFETCH_COUNT && this.bucketsItr.hasNext()) {
+                this.bucketReads.add(session.executeAsync(query, this.tenantId, this.tableName, this.bucketsItr.next(),
+                        toTSTableBoundary(this.timeFrom), toTSTableBoundary(this.timeTo)));
+            }
+        }
+        
+        private boolean populateNextBucketData() {
+            this.scheduleBucketReads();
+            ResultSetFuture bucketRead = this.bucketReads.poll();
+            if (bucketRead == null) {
+                return false;
+            }
+            ResultSet rs = bucketRead.getUninterruptibly();
+            this.scheduleBucketReads();
+            this.dataItr = new CassandraRecordTSBasedIDDataIterator(this.tenantId, this.tableName, 
+                    rs.iterator(), this.columns);
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.count != -1 && this.dataPointer >= this.count) {
+                return false;
+            }
+            if (this.dataItr == null) {
+                if (!this.populateNextBucketData()) {
+                    return false;
+                }
+            }
+            if (this.dataItr.hasNext()) {
+                return true;
+            } else {
+                this.dataItr = null;
+                return this.hasNext();
+            }
+        }
+
+        @Override
+        public Record next() {
+            if (this.hasNext()) {
+                this.dataPointer++;
+                return this.dataItr.next();
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ResultSetFuture bucketRead : this.bucketReads) {
+                bucketRead.cancel(true);
+            }
+            this.bucketReads.clear();
+        }
+        
+    }
+    
     /**
      * Cassandra data {@link AnalyticsIterator} implementation for streaming, which reads data
      * using the record id based lookups.
@@ -574,7 +1063,8 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
                 ids.add(row.getString(0));
             }
             String dataTable = generateTargetDataTableName(this.tenantId, this.tableName);
-            ResultSet rs = session.execute("SELECT id, timestamp, data FROM " + ksName + "." + dataTable + " WHERE id IN ?", ids);
+            ResultSet rs = session.execute("SELECT " + recordColumns(dataTable) + " FROM " + ksName + "." + 
+                    dataTable + " WHERE id IN ?", ids);
             this.dataItr = new CassandraDirectDataIterator(this.tenantId, this.tableName, rs.iterator(), this.columns);
         }
         
@@ -636,7 +1126,8 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
                 tsIds.put(row.getString(0), row.getVarint(1));
             }
             String dataTable = generateTargetDataTableName(this.tenantId, this.tableName);
-            ResultSet rs = session.execute("SELECT id, timestamp, data FROM " + ksName + "." + dataTable + " WHERE id IN ?", tsIds.keySet());
+            ResultSet rs = session.execute("SELECT " + recordColumns(dataTable) + " FROM " + ksName + "." + 
+                    dataTable + " WHERE id IN ?", tsIds.keySet());
             this.dataItr = new CassandraTSValidatingDirectDataIterator(this.tenantId, this.tableName, rs.iterator(), this.columns, tsIds);
         }
         
@@ -680,6 +1171,11 @@ public class CassandraAnalyticsRecordStore implements AnalyticsRecordStore {
         public Record next() {
             Row row = this.resultSetItr.next();
             Map<String, Object> values;
+            ByteBuffer encodedData = row.getColumnDefinitions().size() > 3 ? row.getBytes(3) : null;
+            if (encodedData != null) {
+                values = new LazyRecordValues(this.extractBytes(encodedData), this.columns);
+                return new Record(row.getString(0), this.tenantId, this.tableName, values, row.getLong(1));
+            }
             Map<String, ByteBuffer> binaryValues = row.getMap(2, String.class, ByteBuffer.class);
             if (this.columns == null) {
                 values = new HashMap<String, Object>(binaryValues.size());
@@ -29,6 +29,12 @@ public class CassandraConstants {
     public static final String CLASS = "class";
     
     public static final String REPLICATION_FACTOR = "replication_factor";
+    
+    public static final String TS_BUCKET_SIZE = "ts_bucket_size";
+    
+    /* the record values are only written to the encoded data column when this is set to true, which should
+     * be done after all the nodes sharing the record store are able to read it */
+    public static final String ENABLE_ENCODED_DATA_SYS_PROP = "enableCassandraEncodedData";
 
     public static final int STREAMING_BATCH_SIZE = 1000;
     
@@ -36,6 +42,12 @@ public class CassandraConstants {
 
     public static final int TS_MULTIPLIER = (int) Math.pow(2, 30);
     
+    public static final int TS_BUCKET_PREFETCH_COUNT = 4;
+    
+    public static final int MAX_INFLIGHT_WRITES = 128;
+    
+    public static final int PARTITION_WRITE_BATCH_SIZE = 100;
+    
     public static final String DEFAULT_ARS_KS_NAME = "ARS";
     
     public static final String DEFAULT_AFS_KS_NAME = "AFS";
@@ -44,4 +56,6 @@ public class CassandraConstants {
     
     public static final int DEFAULT_REPLICATION_FACTOR = 3;
     
+    public static final long DEFAULT_TS_BUCKET_SIZE = 86400000L;
+    
 }
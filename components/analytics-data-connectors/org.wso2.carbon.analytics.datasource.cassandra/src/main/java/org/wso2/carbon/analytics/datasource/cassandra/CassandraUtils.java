@@ -97,4 +97,22 @@ public class CassandraUtils {
         return rf;
     }
     
+    public static long extractTSBucketSize(Map<String, String> properties) throws AnalyticsException {
+        String bucketSizeStr = properties.get(CassandraConstants.TS_BUCKET_SIZE);
+        long bucketSize;
+        if (bucketSizeStr == null) {
+            bucketSize = CassandraConstants.DEFAULT_TS_BUCKET_SIZE;
+        } else {
+            try {
+                bucketSize = Long.parseLong(bucketSizeStr);
+            } catch (NumberFormatException e) {
+                throw new AnalyticsException("Invalid " + CassandraConstants.TS_BUCKET_SIZE + ": " + bucketSizeStr);
+            }
+        }
+        if (bucketSize <= 0) {
+            throw new AnalyticsException("The " + CassandraConstants.TS_BUCKET_SIZE + " must be positive: " + bucketSize);
+        }
+        return bucketSize;
+    }
+    
 }
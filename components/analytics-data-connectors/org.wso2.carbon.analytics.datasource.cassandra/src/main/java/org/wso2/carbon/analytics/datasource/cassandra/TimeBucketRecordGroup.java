@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.cassandra;
+
+import java.util.List;
+
+import org.wso2.carbon.analytics.datasource.commons.RecordGroup;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+
+/**
+ * Cassandra {@link RecordGroup} implementation, which covers a set of time buckets
+ * of the timestamp index table, used for partition based time range record groups.
+ */
+public class TimeBucketRecordGroup implements RecordGroup {
+
+    private static final long serialVersionUID = 2417409516838413062L;
+
+    private int tenantId;
+    
+    private String tableName;
+    
+    private List<String> columns;
+    
+    private long timeFrom;
+    
+    private long timeTo;
+    
+    private List<Long> buckets;
+    
+    public TimeBucketRecordGroup(int tenantId, String tableName, List<String> columns, long timeFrom, 
+            long timeTo, List<Long> buckets) {
+        this.tenantId = tenantId;
+        this.tableName = tableName;
+        this.columns = columns;
+        this.timeFrom = timeFrom;
+        this.timeTo = timeTo;
+        this.buckets = buckets;
+    }
+
+    @Override
+    public String[] getLocations() throws AnalyticsException {
+        return new String[] { "localhost" };
+    }
+    
+    public int getTenantId() {
+        return tenantId;
+    }
+    
+    public String getTableName() {
+        return tableName;
+    }
+    
+    public List<String> getColumns() {
+        return columns;
+    }
+    
+    public long getTimeFrom() {
+        return timeFrom;
+    }
+    
+    public long getTimeTo() {
+        return timeTo;
+    }
+    
+    public List<Long> getBuckets() {
+        return buckets;
+    }
+    
+}
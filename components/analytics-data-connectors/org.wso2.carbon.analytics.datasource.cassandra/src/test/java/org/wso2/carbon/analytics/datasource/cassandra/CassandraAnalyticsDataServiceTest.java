@@ -35,7 +35,8 @@ import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
 public class CassandraAnalyticsDataServiceTest extends AnalyticsDataServiceTest {
 
     @BeforeClass
-    public void setup() throws NamingException, AnalyticsException, IOException {
+    public void setup() throws Exception {
+        CassandraTestUtils.startEmbeddedCassandra();
         GenericUtils.clearGlobalCustomDataSourceRepo();
         System.setProperty(GenericUtils.WSO2_ANALYTICS_CONF_DIRECTORY_SYS_PROP, "src/test/resources/conf1");
         AnalyticsServiceHolder.setHazelcastInstance(null);
@@ -25,8 +25,6 @@ import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStoreTest;
 import org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
 
-import javax.naming.NamingException;
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -36,13 +34,15 @@ import java.util.Map;
 public class CassandraAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
 
     @BeforeClass
-    public void setup() throws NamingException, AnalyticsException, IOException {
+    public void setup() throws Exception {
+        CassandraTestUtils.startEmbeddedCassandra();
         GenericUtils.clearGlobalCustomDataSourceRepo();
         System.setProperty(GenericUtils.WSO2_ANALYTICS_CONF_DIRECTORY_SYS_PROP, "src/test/resources/conf1");        
         AnalyticsRecordStore ars = new CassandraAnalyticsRecordStore();
         Map<String, String> props = new HashMap<String, String>();
         props.put("datasource", "WSO2_ANALYTICS_DS_CASSANDRA");
         props.put("keyspace", "ARS_TEST");
+        props.put("ts_bucket_size", "200");
         ars.init(props);
         this.init("CassandraAnalyticsDataSource", ars);
     }
@@ -0,0 +1,171 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.analytics.datasource.cassandra;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.datasource.commons.Record;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStoreTest;
+import org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests the records written to the "data" column and the "encoded_data" column, and compares the ingest
+ * throughput of both.
+ */
+public class CassandraRecordEncodingTest {
+
+    private static final String DS_NAME = "WSO2_ANALYTICS_DS_CASSANDRA";
+
+    private static final String KS_NAME = "ARS_ENCODING_TEST";
+
+    private static final int TENANT_ID = 1;
+
+    private Session session;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        CassandraTestUtils.startEmbeddedCassandra();
+        GenericUtils.clearGlobalCustomDataSourceRepo();
+        System.setProperty(GenericUtils.WSO2_ANALYTICS_CONF_DIRECTORY_SYS_PROP, "src/test/resources/conf1");
+        this.session = ((Cluster) GenericUtils.loadGlobalDataSource(DS_NAME)).connect();
+        this.session.execute("DROP KEYSPACE IF EXISTS " + KS_NAME);
+    }
+
+    @AfterClass
+    public void destroy() {
+        System.clearProperty(CassandraConstants.ENABLE_ENCODED_DATA_SYS_PROP);
+        this.session.execute("DROP KEYSPACE IF EXISTS " + KS_NAME);
+        this.session.close();
+    }
+
+    private AnalyticsRecordStore createRecordStore(boolean encodedData) throws AnalyticsException {
+        System.setProperty(CassandraConstants.ENABLE_ENCODED_DATA_SYS_PROP, Boolean.toString(encodedData));
+        AnalyticsRecordStore ars = new CassandraAnalyticsRecordStore();
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", DS_NAME);
+        props.put("keyspace", KS_NAME);
+        props.put("replication_factor", "1");
+        ars.init(props);
+        return ars;
+    }
+
+    private int countEncodedRecords(String tableName) {
+        int count = 0;
+        for (Row row : this.session.execute("SELECT encoded_data FROM " + KS_NAME + "." + 
+                GenericUtils.generateTableUUID(TENANT_ID, tableName))) {
+            if (row.getBytes(0) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Set<Record> readRecords(AnalyticsRecordStore ars, String tableName) throws AnalyticsException {
+        return new HashSet<Record>(GenericUtils.listRecords(ars, ars.get(TENANT_ID, tableName, 1, null, 
+                Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)));
+    }
+
+    private List<Record> updateRecords(List<Record> records, String serverName) {
+        List<Record> result = new ArrayList<Record>(records.size());
+        Map<String, Object> values;
+        for (Record record : records) {
+            values = new HashMap<String, Object>(record.getValues());
+            values.put("server_name", serverName);
+            result.add(new Record(record.getId(), record.getTenantId(), record.getTableName(), values, 
+                    record.getTimestamp()));
+        }
+        return result;
+    }
+
+    @Test
+    public void testDataAndEncodedDataRecords() throws AnalyticsException {
+        AnalyticsRecordStore legacyARS = this.createRecordStore(false);
+        AnalyticsRecordStore encodedARS = this.createRecordStore(true);
+        legacyARS.createTable(TENANT_ID, "T1");
+        List<Record> records1 = AnalyticsRecordStoreTest.generateRecords(TENANT_ID, "T1", 1, 100, 1000, 1);
+        legacyARS.put(records1);
+        Assert.assertEquals(this.countEncodedRecords("T1"), 0);
+        List<Record> records2 = AnalyticsRecordStoreTest.generateRecords(TENANT_ID, "T1", 2, 100, 2000, 1);
+        encodedARS.put(records2);
+        Assert.assertEquals(this.countEncodedRecords("T1"), 100);
+        Set<Record> expected = new HashSet<Record>(records1);
+        expected.addAll(records2);
+        Assert.assertEquals(this.readRecords(legacyARS, "T1"), expected);
+        Assert.assertEquals(this.readRecords(encodedARS, "T1"), expected);
+        /* the records written with the encoded data, and updated after without it, must not be read with
+         * their earlier encoded values */
+        List<Record> records2Updated = this.updateRecords(records2, "ESB-UPDATED");
+        legacyARS.put(records2Updated);
+        Assert.assertEquals(this.countEncodedRecords("T1"), 0);
+        expected = new HashSet<Record>(records1);
+        expected.addAll(records2Updated);
+        Assert.assertEquals(this.readRecords(encodedARS, "T1"), expected);
+        legacyARS.deleteTable(TENANT_ID, "T1");
+        legacyARS.destroy();
+        encodedARS.destroy();
+    }
+
+    private double measureIngestThroughput(AnalyticsRecordStore ars, String tableName) throws AnalyticsException {
+        ars.createTable(TENANT_ID, tableName);
+        /* warm-up */
+        for (int i = 0; i < 10; i++) {
+            ars.put(AnalyticsRecordStoreTest.generateRecords(TENANT_ID, tableName, i, 100, -1, -1));
+        }
+        int n = 50, batch = 200;
+        List<List<Record>> batches = new ArrayList<List<Record>>(n);
+        for (int i = 0; i < n; i++) {
+            batches.add(AnalyticsRecordStoreTest.generateRecords(TENANT_ID, tableName, i, batch, -1, -1));
+        }
+        long start = System.currentTimeMillis();
+        for (List<Record> records : batches) {
+            ars.put(records);
+        }
+        long end = System.currentTimeMillis();
+        ars.deleteTable(TENANT_ID, tableName);
+        return (n * batch) / (double) (end - start) * 1000.0;
+    }
+
+    @Test
+    public void testIngestPerformance() throws AnalyticsException {
+        AnalyticsRecordStore legacyARS = this.createRecordStore(false);
+        AnalyticsRecordStore encodedARS = this.createRecordStore(true);
+        System.out.println("\n************** START CASSANDRA INGEST PERF TEST **************");
+        System.out.println("* Data Column Write Throughput (TPS): " + 
+                this.measureIngestThroughput(legacyARS, "T_DATA"));
+        System.out.println("* Encoded Data Column Write Throughput (TPS): " + 
+                this.measureIngestThroughput(encodedARS, "T_ENCODED"));
+        System.out.println("************** END CASSANDRA INGEST PERF TEST **************\n");
+        legacyARS.destroy();
+        encodedARS.destroy();
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.analytics.datasource.cassandra;
+
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+
+/**
+ * Utility methods for the Cassandra connector tests.
+ */
+public class CassandraTestUtils {
+
+    private static final long EMBEDDED_CASSANDRA_STARTUP_TIMEOUT = 60000;
+
+    /**
+     * Starts the embedded Cassandra node the test datasources connect to, if it is not already running.
+     */
+    public static void startEmbeddedCassandra() throws Exception {
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra(EMBEDDED_CASSANDRA_STARTUP_TIMEOUT);
+    }
+
+}
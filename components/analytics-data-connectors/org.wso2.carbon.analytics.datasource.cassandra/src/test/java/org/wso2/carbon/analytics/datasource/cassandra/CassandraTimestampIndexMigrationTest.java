@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.analytics.datasource.cassandra;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the migration of the legacy single partition per table timestamp index, to the time bucketed one.
+ */
+public class CassandraTimestampIndexMigrationTest {
+
+    private static final String DS_NAME = "WSO2_ANALYTICS_DS_CASSANDRA";
+
+    private static final String KS_NAME = "ARS_MIGRATION_TEST";
+
+    private static final int TENANT_ID = 1;
+
+    private static final String TABLE_NAME = "T1";
+
+    private static final long BUCKET_SIZE = 200;
+
+    private Session session;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        CassandraTestUtils.startEmbeddedCassandra();
+        GenericUtils.clearGlobalCustomDataSourceRepo();
+        System.setProperty(GenericUtils.WSO2_ANALYTICS_CONF_DIRECTORY_SYS_PROP, "src/test/resources/conf1");
+        this.session = ((Cluster) GenericUtils.loadGlobalDataSource(DS_NAME)).connect();
+        this.session.execute("DROP KEYSPACE IF EXISTS " + KS_NAME);
+        this.session.execute("CREATE KEYSPACE " + KS_NAME + " WITH REPLICATION = "
+                + "{'class':'SimpleStrategy', 'replication_factor':1}");
+        this.session.execute("CREATE TABLE " + KS_NAME + ".TS (tenantId INT, tableName VARCHAR, "
+                + "timestamp VARINT, id VARCHAR, PRIMARY KEY ((tenantId, tableName), timestamp))");
+    }
+
+    @AfterClass
+    public void destroy() {
+        this.session.execute("DROP KEYSPACE IF EXISTS " + KS_NAME);
+        this.session.close();
+    }
+
+    private void addLegacyEntry(long timestamp, String id) {
+        BigInteger ts = BigInteger.valueOf(timestamp).multiply(BigInteger.valueOf(
+                CassandraConstants.TS_MULTIPLIER)).add(BigInteger.valueOf(Math.abs(id.hashCode() % 
+                CassandraConstants.TS_MULTIPLIER)));
+        this.session.execute("INSERT INTO " + KS_NAME + ".TS (tenantId, tableName, timestamp, id) "
+                + "VALUES (?, ?, ?, ?)", TENANT_ID, TABLE_NAME, ts, id);
+    }
+
+    private AnalyticsRecordStore createRecordStore() throws AnalyticsException {
+        AnalyticsRecordStore ars = new CassandraAnalyticsRecordStore();
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", DS_NAME);
+        props.put("keyspace", KS_NAME);
+        props.put("replication_factor", "1");
+        props.put("ts_bucket_size", Long.toString(BUCKET_SIZE));
+        ars.init(props);
+        return ars;
+    }
+
+    private int countLegacyEntries() {
+        return this.session.execute("SELECT id FROM " + KS_NAME + ".TS WHERE tenantId = ? AND tableName = ?",
+                TENANT_ID, TABLE_NAME).all().size();
+    }
+
+    private int countBucketedEntries() {
+        int count = 0;
+        for (Row row : this.session.execute("SELECT bucket FROM " + KS_NAME + ".TS_BUCKETS WHERE tenantId = ? "
+                + "AND tableName = ?", TENANT_ID, TABLE_NAME)) {
+            count += this.session.execute("SELECT id FROM " + KS_NAME + ".TS_BUCKETED WHERE tenantId = ? AND "
+                    + "tableName = ? AND bucket = ?", TENANT_ID, TABLE_NAME, row.getLong(0)).all().size();
+        }
+        return count;
+    }
+
+    @Test
+    public void testMigration() throws AnalyticsException {
+        int count = 2500;
+        for (int i = 0; i < count; i++) {
+            this.addLegacyEntry(i, "ID" + i);
+        }
+        AnalyticsRecordStore ars = this.createRecordStore();
+        Assert.assertEquals(this.countLegacyEntries(), 0);
+        Assert.assertEquals(this.countBucketedEntries(), count);
+        Assert.assertEquals(this.session.execute("SELECT bucket FROM " + KS_NAME + ".TS_BUCKETS WHERE tenantId = ? "
+                + "AND tableName = ?", TENANT_ID, TABLE_NAME).all().size(), (int) (count / BUCKET_SIZE) + 1);
+        Assert.assertNotNull(this.session.execute("SELECT value FROM " + KS_NAME + ".TS_META WHERE name = ?",
+                "TS_LEGACY_MIGRATED").one());
+        ars.destroy();
+    }
+
+    @Test(dependsOnMethods = "testMigration")
+    public void testMigrationNotRepeated() throws AnalyticsException {
+        this.addLegacyEntry(10000, "ID_AFTER_MIGRATION");
+        AnalyticsRecordStore ars = this.createRecordStore();
+        /* the completed migration is marked, so the legacy index is not looked up again */
+        Assert.assertEquals(this.countLegacyEntries(), 1);
+        Assert.assertEquals(this.countBucketedEntries(), 2500);
+        ars.destroy();
+    }
+
+}
@@ -27,6 +27,18 @@ public class HBaseAnalyticsConfigurationEntry {
 
     private int batchSize = HBaseAnalyticsDSConstants.DEFAULT_QUERY_BATCH_SIZE;
 
+    private long writeBufferSize = HBaseAnalyticsDSConstants.DEFAULT_WRITE_BUFFER_SIZE;
+
+    private int indexSaltBuckets = HBaseAnalyticsDSConstants.DEFAULT_INDEX_SALT_BUCKETS;
+
+    private int scanCaching = HBaseAnalyticsDSConstants.DEFAULT_SCAN_CACHING;
+
+    private long filterScanMinTimeRange = HBaseAnalyticsDSConstants.DEFAULT_FILTER_SCAN_MIN_TIME_RANGE;
+
+    private int readAheadPoolSize = HBaseAnalyticsDSConstants.DEFAULT_READ_AHEAD_POOL_SIZE;
+
+    private int readAheadQueueSize = HBaseAnalyticsDSConstants.DEFAULT_READ_AHEAD_QUEUE_SIZE;
+
     @XmlElement(name = "query-batch-size")
     public int getBatchSize() {
         return batchSize;
@@ -36,4 +48,58 @@ public class HBaseAnalyticsConfigurationEntry {
         this.batchSize = batchSize;
     }
 
+    @XmlElement(name = "write-buffer-size")
+    public long getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public void setWriteBufferSize(long writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    @XmlElement(name = "index-salt-buckets")
+    public int getIndexSaltBuckets() {
+        return indexSaltBuckets;
+    }
+
+    public void setIndexSaltBuckets(int indexSaltBuckets) {
+        this.indexSaltBuckets = indexSaltBuckets;
+    }
+
+    @XmlElement(name = "scan-caching")
+    public int getScanCaching() {
+        return scanCaching;
+    }
+
+    public void setScanCaching(int scanCaching) {
+        this.scanCaching = scanCaching;
+    }
+
+    @XmlElement(name = "filter-scan-min-time-range")
+    public long getFilterScanMinTimeRange() {
+        return filterScanMinTimeRange;
+    }
+
+    public void setFilterScanMinTimeRange(long filterScanMinTimeRange) {
+        this.filterScanMinTimeRange = filterScanMinTimeRange;
+    }
+
+    @XmlElement(name = "read-ahead-pool-size")
+    public int getReadAheadPoolSize() {
+        return readAheadPoolSize;
+    }
+
+    public void setReadAheadPoolSize(int readAheadPoolSize) {
+        this.readAheadPoolSize = readAheadPoolSize;
+    }
+
+    @XmlElement(name = "read-ahead-queue-size")
+    public int getReadAheadQueueSize() {
+        return readAheadQueueSize;
+    }
+
+    public void setReadAheadQueueSize(int readAheadQueueSize) {
+        this.readAheadQueueSize = readAheadQueueSize;
+    }
+
 }
@@ -33,10 +33,12 @@ import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.hbase.HBaseTimestampIndexReader.IndexEntry;
 import org.wso2.carbon.analytics.datasource.hbase.rg.HBaseIDRecordGroup;
 import org.wso2.carbon.analytics.datasource.hbase.rg.HBaseRegionSplitRecordGroup;
 import org.wso2.carbon.analytics.datasource.hbase.rg.HBaseTimestampRecordGroup;
 import org.wso2.carbon.analytics.datasource.hbase.util.HBaseAnalyticsDSConstants;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseIndexRowKeyCodec;
 import org.wso2.carbon.analytics.datasource.hbase.util.HBaseUtils;
 import org.wso2.carbon.ndatasource.common.DataSourceException;
 
@@ -45,6 +47,16 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Apache HBase implementation of {@link org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore}
@@ -55,11 +67,24 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
 
     private HBaseAnalyticsConfigurationEntry queryConfig;
 
+    private ConcurrentMap<TableName, HBaseIndexRowKeyCodec> indexCodecs = new ConcurrentHashMap<>();
+
+    /* the idle buffered mutators of each table, a put takes a mutator for its own use, so a flush only
+     * contains the mutations of that put, and the mutators are reused by the later puts */
+    private ConcurrentMap<TableName, Queue<PooledMutator>> mutatorPools = new ConcurrentHashMap<>();
+
+    /* used by the timestamp iterators to read the next batch, while the current one is being consumed */
+    private ThreadPoolExecutor readAheadExecutor;
+
     private static final Log log = LogFactory.getLog(HBaseAnalyticsRecordStore.class);
 
+    private static final long READ_AHEAD_THREAD_KEEP_ALIVE = 60000;
+
     public HBaseAnalyticsRecordStore(Connection conn, HBaseAnalyticsConfigurationEntry entry) throws IOException, AnalyticsException {
         this.conn = conn;
         this.queryConfig = entry;
+        this.checkConfiguration();
+        this.initReadAheadExecutor();
     }
 
     public HBaseAnalyticsRecordStore() {
@@ -70,6 +95,8 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
     @Override
     public void init(Map<String, String> properties) throws AnalyticsException {
         this.queryConfig = HBaseUtils.lookupConfiguration();
+        this.checkConfiguration();
+        this.initReadAheadExecutor();
         String dsName = properties.get(HBaseAnalyticsDSConstants.DATASOURCE_NAME);
         if (dsName == null) {
             throw new AnalyticsException("The property '" + HBaseAnalyticsDSConstants.DATASOURCE_NAME +
@@ -93,6 +120,37 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         log.debug("Initialized connection to HBase instance successfully.");
     }
 
+    private void checkConfiguration() throws AnalyticsException {
+        int saltBuckets = this.queryConfig.getIndexSaltBuckets();
+        if (saltBuckets < 0 || saltBuckets > HBaseAnalyticsDSConstants.MAX_INDEX_SALT_BUCKETS) {
+            throw new AnalyticsException("The HBase index salt bucket count must be between 0 and " +
+                    HBaseAnalyticsDSConstants.MAX_INDEX_SALT_BUCKETS + ": " + saltBuckets);
+        }
+        if (this.queryConfig.getWriteBufferSize() <= 0) {
+            throw new AnalyticsException("The HBase write buffer size must be positive: " +
+                    this.queryConfig.getWriteBufferSize());
+        }
+        if (this.queryConfig.getScanCaching() <= 0) {
+            throw new AnalyticsException("The HBase scan caching must be positive: " +
+                    this.queryConfig.getScanCaching());
+        }
+        if (this.queryConfig.getReadAheadPoolSize() <= 0 || this.queryConfig.getReadAheadQueueSize() <= 0) {
+            throw new AnalyticsException("The HBase read ahead pool size and queue size must be positive: " +
+                    this.queryConfig.getReadAheadPoolSize() + ", " + this.queryConfig.getReadAheadQueueSize());
+        }
+    }
+
+    /**
+     * The read ahead tasks are rejected when the pool and its queue are full, and then the iterators read
+     * their next batch in the consumer's thread.
+     */
+    private void initReadAheadExecutor() {
+        int poolSize = this.queryConfig.getReadAheadPoolSize();
+        this.readAheadExecutor = new ThreadPoolExecutor(poolSize, poolSize, READ_AHEAD_THREAD_KEEP_ALIVE,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(this.queryConfig.getReadAheadQueueSize()));
+        this.readAheadExecutor.allowCoreThreadTimeOut(true);
+    }
+
     @Override
     public void createTable(int tenantId, String tableName) throws AnalyticsException {
         /* If the table we're proposing to create already exists, return in silence */
@@ -114,12 +172,22 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         /* creating table with standard column family "carbon-analytics-index" for storing timestamp -> ID index*/
         indexDescriptor.addFamily(new HColumnDescriptor(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME)
                 .setMaxVersions(1));
+        HBaseIndexRowKeyCodec indexCodec = new HBaseIndexRowKeyCodec(this.queryConfig.getIndexSaltBuckets());
+        if (indexCodec.isSalted()) {
+            indexDescriptor.setValue(HBaseAnalyticsDSConstants.INDEX_SALT_BUCKETS_PROPERTY,
+                    String.valueOf(this.queryConfig.getIndexSaltBuckets()));
+        }
 
         /* Table creation should fail if index cannot be created, so attempting to create index table first. */
         Admin admin = null;
         try {
             admin = this.conn.getAdmin();
-            admin.createTable(indexDescriptor);
+            if (indexCodec.isSalted() && this.queryConfig.getIndexSaltBuckets() > 1) {
+                /* pre-splitting the index table, so the salt buckets are spread across regions from the start */
+                admin.createTable(indexDescriptor, indexCodec.splitKeys());
+            } else {
+                admin.createTable(indexDescriptor);
+            }
             admin.createTable(dataDescriptor);
             log.debug("Table " + tableName + " for tenant " + tenantId + " created");
         } catch (IOException e) {
@@ -167,12 +235,102 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
             /* finally, delete the index table */
             admin.disableTable(indexTable);
             admin.deleteTable(indexTable);
+            this.indexCodecs.remove(indexTable);
             log.debug("Table " + tableName + " for tenant " + tenantId + " deleted");
         } catch (IOException e) {
             throw new AnalyticsException("Error deleting table " + tableName, e);
         } finally {
             GenericUtils.closeQuietly(admin);
+            this.closeMutators(dataTable);
+            this.closeMutators(indexTable);
+        }
+    }
+
+    private Queue<PooledMutator> lookupMutatorPool(TableName table) {
+        Queue<PooledMutator> pool = this.mutatorPools.get(table);
+        if (pool == null) {
+            pool = new ConcurrentLinkedQueue<>();
+            Queue<PooledMutator> existingPool = this.mutatorPools.putIfAbsent(table, pool);
+            if (existingPool != null) {
+                pool = existingPool;
+            }
+        }
+        return pool;
+    }
+
+    private void closeMutators(TableName table) {
+        Queue<PooledMutator> pool = this.mutatorPools.remove(table);
+        if (pool != null) {
+            this.closeMutators(pool);
+        }
+    }
+
+    private void closeMutators(Queue<PooledMutator> pool) {
+        PooledMutator mutator;
+        while ((mutator = pool.poll()) != null) {
+            /* closing the mutator flushes any buffered mutations */
+            GenericUtils.closeQuietly(mutator.getMutator());
+        }
+    }
+
+    /**
+     * Writes the given mutations to a table through a pooled buffered mutator, which is used only by this call
+     * till it is returned to the pool, so the mutations are sent in write buffer sized rounds, and any failure
+     * is reported to the caller of these mutations only. A mutator which had a failure is not reused.
+     */
+    private void writeMutations(TableName table, List<? extends Mutation> mutations) throws IOException {
+        Queue<PooledMutator> pool = this.lookupMutatorPool(table);
+        PooledMutator mutator = pool.poll();
+        if (mutator == null) {
+            MutationFailureListener listener = new MutationFailureListener();
+            mutator = new PooledMutator(this.conn.getBufferedMutator(new BufferedMutatorParams(table)
+                    .writeBufferSize(this.queryConfig.getWriteBufferSize()).listener(listener)), listener);
+        }
+        boolean reusable = false;
+        try {
+            mutator.getMutator().mutate(mutations);
+            mutator.getMutator().flush();
+            mutator.getListener().checkFailures();
+            reusable = true;
+        } finally {
+            if (reusable) {
+                pool.offer(mutator);
+                /* the table may have been deleted, or the store destroyed, while the mutator was in use */
+                if (this.mutatorPools.get(table) != pool) {
+                    this.closeMutators(pool);
+                }
+            } else {
+                GenericUtils.closeQuietly(mutator.getMutator());
+            }
+        }
+    }
+
+    /**
+     * Returns the row key codec of the given index table, which depends on whether the table was created with
+     * salted row keys, as recorded in its table descriptor.
+     */
+    private HBaseIndexRowKeyCodec lookupIndexCodec(int tenantId, String tableName) throws AnalyticsException {
+        TableName indexTable = TableName.valueOf(HBaseUtils.generateTableName(tenantId, tableName,
+                HBaseAnalyticsDSConstants.TableType.INDEX));
+        HBaseIndexRowKeyCodec indexCodec = this.indexCodecs.get(indexTable);
+        if (indexCodec == null) {
+            Admin admin = null;
+            try {
+                admin = this.conn.getAdmin();
+                String saltBuckets = admin.getTableDescriptor(indexTable).getValue(
+                        HBaseAnalyticsDSConstants.INDEX_SALT_BUCKETS_PROPERTY);
+                indexCodec = new HBaseIndexRowKeyCodec(saltBuckets == null ? 0 : Integer.parseInt(saltBuckets));
+                this.indexCodecs.put(indexTable, indexCodec);
+            } catch (TableNotFoundException e) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            } catch (IOException e) {
+                throw new AnalyticsException("Error reading the index descriptor of table " + tableName +
+                        " for tenant " + tenantId + " : " + e.getMessage(), e);
+            } finally {
+                GenericUtils.closeQuietly(admin);
+            }
         }
+        return indexCodec;
     }
 
     @Override
@@ -187,6 +345,12 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         return false;
     }
 
+    @Override
+    public boolean isRangeDeleteSupported() {
+        /* time range deletes are done by scanning the timestamp index table, and deleting in batches */
+        return true;
+    }
+
     @Override
     public long getRecordCount(int tenantId, String tableName, long timeFrom, long timeTo) throws AnalyticsException {
         return -1;
@@ -196,7 +360,7 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
     public void put(List<Record> records) throws AnalyticsException, AnalyticsTableNotAvailableException {
         int tenantId = 0;
         String tableName = null;
-        Table table, indexTable;
+        TableName table, indexTable;
         if (records.isEmpty()) {
             return;
         }
@@ -206,21 +370,17 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
             for (Map.Entry<String, List<Record>> entry : recordBatches.entrySet()) {
                 tenantId = HBaseUtils.inferTenantId(entry.getKey());
                 tableName = HBaseUtils.inferTableName(entry.getKey());
-                table = this.conn.getTable(TableName.valueOf(HBaseUtils.generateTableName(tenantId, tableName,
-                        HBaseAnalyticsDSConstants.TableType.DATA)));
-                indexTable = this.conn.getTable(TableName.valueOf(HBaseUtils.generateTableName(tenantId, tableName,
-                        HBaseAnalyticsDSConstants.TableType.INDEX)));
+                table = TableName.valueOf(HBaseUtils.generateTableName(tenantId, tableName,
+                        HBaseAnalyticsDSConstants.TableType.DATA));
+                indexTable = TableName.valueOf(HBaseUtils.generateTableName(tenantId, tableName,
+                        HBaseAnalyticsDSConstants.TableType.INDEX));
                 /* Populating batched Put instances from records in a single batch */
-                List<List<Put>> allPuts = this.populatePuts(recordBatches.get(entry.getKey()));
-                /* Using Table.put(List<Put>) method to minimise network calls per table */
-                try {
-                    indexTable.put(allPuts.get(0));
-                    table.put(allPuts.get(1));
-                    log.debug("Processed " + records.size() + " PUT operations for " + tableName + " for tenant " + tenantId);
-                } finally {
-                    table.close();
-                    indexTable.close();
-                }
+                List<List<Put>> allPuts = this.populatePuts(recordBatches.get(entry.getKey()),
+                        this.lookupIndexCodec(tenantId, tableName));
+                /* the index is written first, so a record is never visible without its index entry */
+                this.writeMutations(indexTable, allPuts.get(0));
+                this.writeMutations(table, allPuts.get(1));
+                log.debug("Processed " + records.size() + " PUT operations for " + tableName + " for tenant " + tenantId);
             }
         } catch (AnalyticsTableNotAvailableException e) {
             throw e;
@@ -232,7 +392,8 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
 
-    private List<List<Put>> populatePuts(List<Record> records) throws AnalyticsException {
+    private List<List<Put>> populatePuts(List<Record> records, HBaseIndexRowKeyCodec indexCodec)
+            throws AnalyticsException {
         byte[] data;
         List<Put> puts = new ArrayList<>();
         List<Put> indexPuts = new ArrayList<>();
@@ -253,7 +414,7 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
                     HBaseAnalyticsDSConstants.ANALYTICS_ROWDATA_QUALIFIER_NAME, data);
             put.addColumn(HBaseAnalyticsDSConstants.ANALYTICS_DATA_COLUMN_FAMILY_NAME,
                     HBaseAnalyticsDSConstants.ANALYTICS_TS_QUALIFIER_NAME, Bytes.toBytes(timestamp));
-            indexPuts.add(this.putIndexData(record));
+            indexPuts.add(this.putIndexData(record, indexCodec));
             puts.add(put);
         }
         List<List<Put>> output = new ArrayList<>();
@@ -262,10 +423,10 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         return output;
     }
 
-    private Put putIndexData(Record record) {
-        Put indexPut = new Put(HBaseUtils.encodeLong(record.getTimestamp()));
+    private Put putIndexData(Record record, HBaseIndexRowKeyCodec indexCodec) {
+        Put indexPut = new Put(indexCodec.encode(record.getTimestamp(), record.getId()));
         /* Setting the column qualifier the same as the column value to enable multiple columns per row with
-        * unique qualifiers, since we will anyway not use the qualifier during index read */
+        * unique qualifiers (for non-salted index rows), since we will anyway not use the qualifier during index read */
         indexPut.addColumn(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, Bytes.toBytes(record.getId()),
                 Bytes.toBytes(record.getId()));
         return indexPut;
@@ -301,7 +462,11 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         }
         if ((timeFrom < 0) && (timeTo >= Long.MAX_VALUE - 1)) {
             log.debug("Performing GET on region split contours for table " + tableName + " and tenantID " + tenantId);
-            return this.computeRegionSplits(tenantId, tableName, columns, recordsCount);
+            return this.computeRegionSplits(tenantId, tableName, columns, recordsCount, -1L, Long.MAX_VALUE);
+        } else if (numPartitionsHint > 1 && recordsCount < 0 && this.isFilterScanRange(timeFrom, timeTo)) {
+            log.debug("Performing GET on filtered region split contours for table " + tableName + " and tenantID " +
+                    tenantId);
+            return this.computeRegionSplits(tenantId, tableName, columns, recordsCount, timeFrom, timeTo);
         } else {
             log.debug("Performing GET through timestamp slices for table " + tableName + " and tenantID " + tenantId);
             return new HBaseTimestampRecordGroup[]{
@@ -310,6 +475,18 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
 
+    /**
+     * Checks whether a time range is wide enough to be read by scanning the data table with a timestamp filter,
+     * rather than looking up each record through the timestamp index.
+     */
+    private boolean isFilterScanRange(long timeFrom, long timeTo) {
+        long threshold = this.queryConfig.getFilterScanMinTimeRange();
+        if (threshold <= 0) {
+            return false;
+        }
+        return timeFrom < 0 || timeTo >= Long.MAX_VALUE - 1 || timeTo - timeFrom >= threshold;
+    }
+
     @Override
     public RecordGroup[] get(int tenantId, String tableName, int numPartitionsHint, List<String> columns,
                              List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
@@ -338,8 +515,10 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
 
         } else if (recordGroup instanceof HBaseRegionSplitRecordGroup) {
             HBaseRegionSplitRecordGroup rsRecordGroup = (HBaseRegionSplitRecordGroup) recordGroup;
-            return this.getRecords(rsRecordGroup.getTenantId(), rsRecordGroup.getTableName(),
-                    rsRecordGroup.getColumns(), rsRecordGroup.getRecordsCount(), rsRecordGroup.getStartRow(), rsRecordGroup.getEndRow());
+            return new HBaseRegionSplitIterator(rsRecordGroup.getTenantId(), rsRecordGroup.getTableName(),
+                    rsRecordGroup.getColumns(), rsRecordGroup.getRecordsCount(), this.conn, rsRecordGroup.getStartRow(),
+                    rsRecordGroup.getEndRow(), rsRecordGroup.getTimeFrom(), rsRecordGroup.getTimeTo(),
+                    this.queryConfig.getScanCaching());
         } else {
             throw new AnalyticsException("Invalid HBase RecordGroup implementation: " + recordGroup.getClass());
         }
@@ -355,15 +534,18 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
                                                 long endTime, int recordsCount)
             throws AnalyticsException, AnalyticsTableNotAvailableException {
         int batchSize = this.queryConfig.getBatchSize();
-        return new HBaseTimestampIterator(tenantId, tableName, columns, startTime, endTime, recordsCount, this.conn, batchSize);
+        return new HBaseTimestampIterator(tenantId, tableName, columns, startTime, endTime, recordsCount, this.conn,
+                batchSize, this.lookupIndexCodec(tenantId, tableName), this.readAheadExecutor);
     }
 
     public AnalyticsIterator<Record> getRecords(int tenantId, String tableName, List<String> columns, int recordsCount, byte[] startRow, byte[] endRow)
             throws AnalyticsException, AnalyticsTableNotAvailableException {
-        return new HBaseRegionSplitIterator(tenantId, tableName, columns, recordsCount, this.conn, startRow, endRow);
+        return new HBaseRegionSplitIterator(tenantId, tableName, columns, recordsCount, this.conn, startRow, endRow,
+                -1L, Long.MAX_VALUE, this.queryConfig.getScanCaching());
     }
 
-    private RecordGroup[] computeRegionSplits(int tenantId, String tableName, List<String> columns, int recordsCount) throws AnalyticsException {
+    private RecordGroup[] computeRegionSplits(int tenantId, String tableName, List<String> columns, int recordsCount,
+                                              long timeFrom, long timeTo) throws AnalyticsException {
         List<RecordGroup> regionalGroups = new ArrayList<>();
         String formattedTableName = HBaseUtils.generateTableName(tenantId, tableName, HBaseAnalyticsDSConstants.TableType.DATA);
         try {
@@ -373,7 +555,7 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
             byte[][] endKeys = startEndKeys.getSecond();
             for (int i = 0; i < startKeys.length && i < endKeys.length; i++) {
                 RecordGroup regionalGroup = new HBaseRegionSplitRecordGroup(tenantId, tableName, columns, recordsCount,
-                        startKeys[i], endKeys[i], locator.getRegionLocation(startKeys[i]).getHostname());
+                        startKeys[i], endKeys[i], locator.getRegionLocation(startKeys[i]).getHostname(), timeFrom, timeTo);
                 regionalGroups.add(regionalGroup);
             }
         } catch (IOException e) {
@@ -386,54 +568,34 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
     @Override
     public void delete(int tenantId, String tableName, long timeFrom, long timeTo) throws AnalyticsException {
         int batchSize = this.queryConfig.getBatchSize();
-        int batchCounter = 0;
         ListMultimap<String, Long> recordsWithRef = ArrayListMultimap.create();
-        List<byte[]> timestamps = new ArrayList<>();
+        Set<byte[]> indexRows = new TreeSet<>(Bytes.BYTES_COMPARATOR);
         String formattedTableName = HBaseUtils.generateTableName(tenantId, tableName, HBaseAnalyticsDSConstants.TableType.INDEX);
+        HBaseIndexRowKeyCodec indexCodec = this.lookupIndexCodec(tenantId, tableName);
         Table indexTable = null;
-        Scan indexScan = new Scan();
-        if (timeFrom >= 0L) {
-            indexScan.setStartRow(HBaseUtils.encodeLong(timeFrom));
-        }
-        if (!(timeTo >= Long.MAX_VALUE - 1)) {
-            indexScan.setStopRow(HBaseUtils.encodeLong(timeTo));
-        }
-        indexScan.addFamily(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME);
-        ResultScanner resultScanner = null;
         try {
             indexTable = this.conn.getTable(TableName.valueOf(formattedTableName));
-            resultScanner = indexTable.getScanner(indexScan);
-            for (Result rowResult : resultScanner) {
-                /* Using Result.rawCells() because the descriptors in the secondary index are never known in advance */
-                Cell[] cells = rowResult.rawCells();
-                for (Cell cell : cells) {
-                    if (cell != null) {
-                        /* recordId -> the record ID which corresponds to the index lookup */
-                        String recordId = Bytes.toString(CellUtil.cloneValue(cell));
-                        /* timeStampRef -> what actual index entry was used to retrieve this particular record ID */
-                        Long timeStampRef = Bytes.toLong(rowResult.getRow());
-                        recordsWithRef.put(recordId, timeStampRef);
-                        batchCounter++;
-                    }
-                }
-                timestamps.add(rowResult.getRow());
-                if (batchCounter >= batchSize) {
-                    batchCounter = 0;
-                    /* Delete only the records which actually have their timestamp matching the retrieved
-                    secondary index entries */
-                    this.deleteDataRows(tenantId, tableName, recordsWithRef);
-                    /* Delete ALL retrieved secondary index entries, whether backed by actual records or not */
-                    this.deleteRows(tenantId, tableName, HBaseAnalyticsDSConstants.TableType.INDEX, timestamps);
-                    recordsWithRef.clear();
-                    timestamps.clear();
+            HBaseTimestampIndexReader indexReader = new HBaseTimestampIndexReader(indexTable, indexCodec, timeFrom, timeTo);
+            List<IndexEntry> indexEntries;
+            do {
+                indexEntries = indexReader.next(batchSize);
+                for (IndexEntry indexEntry : indexEntries) {
+                    /* record ID -> what actual index entry was used to retrieve this particular record ID */
+                    recordsWithRef.put(indexEntry.getRecordId(), indexEntry.getTimestamp());
+                    indexRows.add(indexEntry.getRow());
                 }
-            }
-            this.deleteDataRows(tenantId, tableName, recordsWithRef);
-            this.deleteRows(tenantId, tableName, HBaseAnalyticsDSConstants.TableType.INDEX, timestamps);
+                /* Delete only the records which actually have their timestamp matching the retrieved
+                secondary index entries */
+                this.deleteDataRows(tenantId, tableName, recordsWithRef);
+                /* Delete ALL retrieved secondary index entries, whether backed by actual records or not */
+                this.deleteRows(tenantId, tableName, HBaseAnalyticsDSConstants.TableType.INDEX,
+                        new ArrayList<>(indexRows));
+                recordsWithRef.clear();
+                indexRows.clear();
+            } while (!indexReader.isExhausted());
         } catch (IOException e) {
             throw new AnalyticsException("Index for table " + tableName + " could not be read for deletion: " + e.getMessage(), e);
         } finally {
-            GenericUtils.closeQuietly(resultScanner);
             GenericUtils.closeQuietly(indexTable);
         }
     }
@@ -465,6 +627,7 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         List<Delete> indexDeletes = new ArrayList<>();
         List<Get> gets = new ArrayList<>();
         Table dataTable = null;
+        HBaseIndexRowKeyCodec indexCodec = this.lookupIndexCodec(tenantId, tableName);
         for (String rowId : rowIds) {
             if (!rowId.isEmpty()) {
                 gets.add(new Get(Bytes.toBytes(rowId)).addColumn(HBaseAnalyticsDSConstants.ANALYTICS_DATA_COLUMN_FAMILY_NAME,
@@ -481,8 +644,8 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
                             HBaseAnalyticsDSConstants.ANALYTICS_TS_QUALIFIER_NAME);
                     byte[] data = CellUtil.cloneValue(dataCell);
                     if (data.length > 0) {
-                        indexDeletes.add(new Delete(data).addColumn(
-                                HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, res.getRow()));
+                        indexDeletes.add(new Delete(indexCodec.encode(Bytes.toLong(data), Bytes.toString(res.getRow())))
+                                .addColumn(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, res.getRow()));
                     }
                 }
             }
@@ -569,6 +732,15 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
 
     @Override
     public void destroy() throws AnalyticsException {
+        for (TableName table : this.mutatorPools.keySet()) {
+            this.closeMutators(table);
+        }
+        if (this.readAheadExecutor != null) {
+            /* the pending reads are cancelled, so their iterators do not wait on them */
+            for (Runnable task : this.readAheadExecutor.shutdownNow()) {
+                ((Future<?>) task).cancel(false);
+            }
+        }
         try {
             this.conn.close();
             log.debug("Closed HBase connection transients successfully.");
@@ -577,6 +749,65 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
 
+    /**
+     * A pooled buffered mutator, together with the listener which collects its failures.
+     */
+    private static class PooledMutator {
+
+        private BufferedMutator mutator;
+
+        private MutationFailureListener listener;
+
+        private PooledMutator(BufferedMutator mutator, MutationFailureListener listener) {
+            this.mutator = mutator;
+            this.listener = listener;
+        }
+
+        public BufferedMutator getMutator() {
+            return mutator;
+        }
+
+        public MutationFailureListener getListener() {
+            return listener;
+        }
+
+    }
+
+    /**
+     * This class collects the failed mutations of a single buffered mutator, rather than failing the background
+     * flush, so the failures are raised in the thread which owns the mutations, after all of them are sent.
+     */
+    private static class MutationFailureListener implements BufferedMutator.ExceptionListener {
+
+        private List<RetriesExhaustedWithDetailsException> failures = new ArrayList<>();
+
+        @Override
+        public synchronized void onException(RetriesExhaustedWithDetailsException e, BufferedMutator mutator) {
+            this.failures.add(e);
+        }
+
+        public synchronized void checkFailures() throws RetriesExhaustedWithDetailsException {
+            if (this.failures.isEmpty()) {
+                return;
+            }
+            if (this.failures.size() == 1) {
+                throw this.failures.get(0);
+            }
+            List<Throwable> causes = new ArrayList<>();
+            List<Row> actions = new ArrayList<>();
+            List<String> hosts = new ArrayList<>();
+            for (RetriesExhaustedWithDetailsException failure : this.failures) {
+                for (int i = 0; i < failure.getNumExceptions(); i++) {
+                    causes.add(failure.getCause(i));
+                    actions.add(failure.getRow(i));
+                    hosts.add(failure.getHostnamePort(i));
+                }
+            }
+            throw new RetriesExhaustedWithDetailsException(causes, actions, hosts);
+        }
+
+    }
+
     public static class HBaseUnsupportedOperationException extends AnalyticsException {
 
         private static final long serialVersionUID = -380641886204128313L;
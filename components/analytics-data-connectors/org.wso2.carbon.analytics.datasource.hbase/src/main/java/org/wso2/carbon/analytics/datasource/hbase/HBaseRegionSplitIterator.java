@@ -19,7 +19,10 @@ package org.wso2.carbon.analytics.datasource.hbase;
 
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.wso2.carbon.analytics.datasource.commons.AnalyticsIterator;
 import org.wso2.carbon.analytics.datasource.commons.Record;
@@ -44,13 +47,24 @@ public class HBaseRegionSplitIterator implements AnalyticsIterator<Record> {
     private String tableName;
     private Table table;
     private Iterator<Result> resultIterator = Collections.emptyIterator();
+    private ResultScanner scanner;
+    private int recordsCount;
+    private int globalCounter;
 
     Set<String> colSet = null;
 
     public HBaseRegionSplitIterator(int tenantId, String tableName, List<String> columns, int recordsCount, Connection conn,
                                     byte[] startRow, byte[] endRow) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        this(tenantId, tableName, columns, recordsCount, conn, startRow, endRow, -1L, Long.MAX_VALUE,
+                HBaseAnalyticsDSConstants.DEFAULT_SCAN_CACHING);
+    }
+
+    public HBaseRegionSplitIterator(int tenantId, String tableName, List<String> columns, int recordsCount, Connection conn,
+                                    byte[] startRow, byte[] endRow, long timeFrom, long timeTo, int scanCaching)
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
         this.tenantId = tenantId;
         this.tableName = tableName;
+        this.recordsCount = recordsCount;
         Admin admin = null;
         TableName finalName = TableName.valueOf(
                 HBaseUtils.generateTableName(tenantId, tableName, HBaseAnalyticsDSConstants.TableType.DATA));
@@ -73,14 +87,30 @@ public class HBaseRegionSplitIterator implements AnalyticsIterator<Record> {
         Scan splitScan = new Scan();
         splitScan.setStartRow(startRow);
         splitScan.setStopRow(endRow);
+        FilterList filters = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        /* the time range is checked against the timestamp column at the region server, which is cheaper than going
+         * through the timestamp index when a large part of the table is read */
+        if (timeFrom >= 0L) {
+            filters.addFilter(this.createTimestampFilter(CompareFilter.CompareOp.GREATER_OR_EQUAL, timeFrom));
+        }
+        if (timeTo < Long.MAX_VALUE - 1) {
+            filters.addFilter(this.createTimestampFilter(CompareFilter.CompareOp.LESS, timeTo));
+        }
         if (recordsCount > 0) {
-            splitScan.setFilter(new PageFilter(recordsCount));
+            /* the page filter is applied separately at each region server, so the count is enforced here as well */
+            filters.addFilter(new PageFilter(recordsCount));
+        }
+        if (!filters.getFilters().isEmpty()) {
+            splitScan.setFilter(filters);
         }
         splitScan.addFamily(HBaseAnalyticsDSConstants.ANALYTICS_DATA_COLUMN_FAMILY_NAME);
+        splitScan.setCaching(recordsCount > 0 ? Math.min(recordsCount, scanCaching) : scanCaching);
+        /* a one-off sequential read, which should not evict the frequently used blocks */
+        splitScan.setCacheBlocks(false);
 
         try {
-            ResultScanner scanner = table.getScanner(splitScan);
-            this.resultIterator = scanner.iterator();
+            this.scanner = table.getScanner(splitScan);
+            this.resultIterator = this.scanner.iterator();
         } catch (IOException e) {
             if (e instanceof RetriesExhaustedException) {
                 throw new AnalyticsTableNotAvailableException(tenantId, tableName);
@@ -90,8 +120,20 @@ public class HBaseRegionSplitIterator implements AnalyticsIterator<Record> {
         }
     }
 
+    private SingleColumnValueFilter createTimestampFilter(CompareFilter.CompareOp op, long timestamp) {
+        /* the timestamps are non-negative, so the binary comparison of the encoded values follows the numeric order */
+        SingleColumnValueFilter filter = new SingleColumnValueFilter(
+                HBaseAnalyticsDSConstants.ANALYTICS_DATA_COLUMN_FAMILY_NAME,
+                HBaseAnalyticsDSConstants.ANALYTICS_TS_QUALIFIER_NAME, op, HBaseUtils.encodeLong(timestamp));
+        filter.setFilterIfMissing(true);
+        return filter;
+    }
+
     @Override
     public boolean hasNext() {
+        if (this.recordsCount > 0 && this.globalCounter >= this.recordsCount) {
+            return false;
+        }
         return this.resultIterator.hasNext();
     }
 
@@ -105,6 +147,7 @@ public class HBaseRegionSplitIterator implements AnalyticsIterator<Record> {
             byte[] rowId = currentResult.getRow();
             Record record = HBaseUtils.constructRecord(currentResult, tenantId, tableName, colSet);
             if (record != null) {
+                this.globalCounter++;
                 return record;
             } else {
                 throw new HBaseRuntimeException("Invalid data found on row " + Bytes.toString(rowId));
@@ -122,6 +165,7 @@ public class HBaseRegionSplitIterator implements AnalyticsIterator<Record> {
     }
 
     private void cleanup() {
+        GenericUtils.closeQuietly(this.scanner);
         GenericUtils.closeQuietly(this.table);
     }
 
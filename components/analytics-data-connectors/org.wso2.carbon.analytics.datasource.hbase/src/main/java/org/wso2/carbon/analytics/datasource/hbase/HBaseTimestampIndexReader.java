@@ -0,0 +1,203 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.datasource.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.UnknownScannerException;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.ScannerTimeoutException;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseAnalyticsDSConstants;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseIndexRowKeyCodec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Class for reading the timestamp index entries of a time range in timestamp order, where the entries of all the
+ * salt buckets of the index are merged. A scanner is opened for each salt bucket at the first batch, and kept open
+ * for the following batches, till its bucket runs out of entries or the reader is closed. If the lease of a
+ * scanner expires while the caller processes a batch, the scanner is reopened right after the last consumed row.
+ */
+public class HBaseTimestampIndexReader {
+
+    private Table indexTable;
+    private HBaseIndexRowKeyCodec codec;
+    private byte[][] startRows;
+    private byte[][] stopRows;
+    private boolean[] exhausted;
+    private ResultScanner[] scanners;
+    private PriorityQueue<ScannerHead> heads = new PriorityQueue<>();
+    private int caching;
+
+    public HBaseTimestampIndexReader(Table indexTable, HBaseIndexRowKeyCodec codec, long timeFrom, long timeTo) {
+        this.indexTable = indexTable;
+        this.codec = codec;
+        int keyRanges = codec.getKeyRangeCount();
+        this.startRows = new byte[keyRanges][];
+        this.stopRows = new byte[keyRanges][];
+        this.exhausted = new boolean[keyRanges];
+        for (int i = 0; i < keyRanges; i++) {
+            this.startRows[i] = codec.startRow(i, timeFrom);
+            this.stopRows[i] = codec.stopRow(i, timeTo);
+        }
+    }
+
+    public boolean isExhausted() {
+        for (boolean keyRangeExhausted : this.exhausted) {
+            if (!keyRangeExhausted) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next batch of index entries. Since whole index rows are read, the batch may contain more
+     * entries than requested, and it will only contain less, if the end of the time range has been reached.
+     * @param count The number of entries requested
+     * @return The index entries in timestamp order
+     * @throws IOException
+     */
+    public List<IndexEntry> next(int count) throws IOException {
+        List<IndexEntry> result = new ArrayList<>();
+        if (this.scanners == null) {
+            /* the batch is shared among the key ranges, so each scanner only needs to bring in its share */
+            this.caching = count / this.exhausted.length + 1;
+            this.scanners = new ResultScanner[this.exhausted.length];
+            for (int i = 0; i < this.exhausted.length; i++) {
+                this.scanners[i] = this.openScanner(i);
+                this.advance(i);
+            }
+        }
+        ScannerHead head;
+        while (result.size() < count && (head = this.heads.poll()) != null) {
+            byte[] row = head.result.getRow();
+            /* Using Result.rawCells() because the descriptors in the secondary index are never known in advance */
+            for (Cell cell : head.result.rawCells()) {
+                result.add(new IndexEntry(row, head.timestamp, Bytes.toString(CellUtil.cloneValue(cell))));
+            }
+            /* a reopened scan of the key range starts right after the consumed row */
+            this.startRows[head.keyRange] = Bytes.add(row, new byte[]{0});
+            this.advance(head.keyRange);
+        }
+        return result;
+    }
+
+    private ResultScanner openScanner(int keyRange) throws IOException {
+        Scan scan = new Scan(this.startRows[keyRange], this.stopRows[keyRange]);
+        scan.addFamily(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME);
+        scan.setCaching(this.caching);
+        return this.indexTable.getScanner(scan);
+    }
+
+    private void advance(int keyRange) throws IOException {
+        Result result;
+        try {
+            result = this.scanners[keyRange].next();
+        } catch (ScannerTimeoutException | UnknownScannerException e) {
+            /* the lease expired between two batches, and the last consumed row of the key range is known,
+             * so the scan is simply continued with a new scanner */
+            GenericUtils.closeQuietly(this.scanners[keyRange]);
+            this.scanners[keyRange] = this.openScanner(keyRange);
+            result = this.scanners[keyRange].next();
+        }
+        if (result == null) {
+            this.exhausted[keyRange] = true;
+            GenericUtils.closeQuietly(this.scanners[keyRange]);
+            this.scanners[keyRange] = null;
+        } else {
+            this.heads.add(new ScannerHead(keyRange, result, this.codec.decodeTimestamp(result.getRow())));
+        }
+    }
+
+    /**
+     * Closes the scanners which are still open, this must be called when the reader is no longer used.
+     */
+    public void close() {
+        if (this.scanners != null) {
+            for (int i = 0; i < this.scanners.length; i++) {
+                if (this.scanners[i] != null) {
+                    GenericUtils.closeQuietly(this.scanners[i]);
+                    this.scanners[i] = null;
+                }
+            }
+        }
+        this.heads.clear();
+    }
+
+    /**
+     * Represents a single timestamp index entry.
+     */
+    public static class IndexEntry {
+
+        private byte[] row;
+        private long timestamp;
+        private String recordId;
+
+        public IndexEntry(byte[] row, long timestamp, String recordId) {
+            this.row = row;
+            this.timestamp = timestamp;
+            this.recordId = recordId;
+        }
+
+        public byte[] getRow() {
+            return row;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getRecordId() {
+            return recordId;
+        }
+    }
+
+    /**
+     * The current row of a key range scanner, ordered by the timestamp.
+     */
+    private static class ScannerHead implements Comparable<ScannerHead> {
+
+        private int keyRange;
+        private Result result;
+        private long timestamp;
+
+        private ScannerHead(int keyRange, Result result, long timestamp) {
+            this.keyRange = keyRange;
+            this.result = result;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public int compareTo(ScannerHead other) {
+            if (this.timestamp != other.timestamp) {
+                return this.timestamp < other.timestamp ? -1 : 1;
+            }
+            return this.keyRange - other.keyRange;
+        }
+    }
+
+}
@@ -19,8 +19,6 @@ package org.wso2.carbon.analytics.datasource.hbase;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
-import org.apache.hadoop.hbase.Cell;
-import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -29,12 +27,21 @@ import org.wso2.carbon.analytics.datasource.commons.Record;
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.hbase.HBaseTimestampIndexReader.IndexEntry;
 import org.wso2.carbon.analytics.datasource.hbase.util.HBaseAnalyticsDSConstants;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseIndexRowKeyCodec;
 import org.wso2.carbon.analytics.datasource.hbase.util.HBaseRuntimeException;
 import org.wso2.carbon.analytics.datasource.hbase.util.HBaseUtils;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Subclass of java.util.Iterator for streaming in records based on timestamp ranges
@@ -48,53 +55,92 @@ public class HBaseTimestampIterator implements AnalyticsIterator<Record> {
     private int recordsCount;
     private int globalCounter;
 
-    private byte[] latestRow;
-    private byte[] endRow;
-    private static final long POSTFIX = 1L;
-
-    private boolean fullyFetched;
-    private boolean noStartTime = false;
-    private boolean noStopTime = false;
+    private volatile boolean fullyFetched;
     private String tableName;
     private Table table, indexTable;
+    private HBaseIndexRowKeyCodec indexCodec;
+    private HBaseTimestampIndexReader indexReader;
     private Iterator<Record> subIterator = Collections.emptyIterator();
+    private ExecutorService readAheadExecutor;
+    private Future<List<Record>> nextBatch;
 
     private Connection connection;
 
     HBaseTimestampIterator(int tenantId, String tableName, List<String> columns, long timeFrom, long timeTo, int recordsCount,
-                           Connection conn, int batchSize) throws AnalyticsException, AnalyticsTableNotAvailableException {
+                           Connection conn, int batchSize, HBaseIndexRowKeyCodec indexCodec,
+                           ExecutorService readAheadExecutor)
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
         if ((timeFrom > timeTo) || (batchSize <= 0)) {
             throw new AnalyticsException("Invalid parameters specified for reading data from table " + tableName +
                     " for tenant " + tenantId);
         } else {
             this.init(conn, tenantId, tableName, columns, recordsCount, batchSize);
-            if (timeFrom < 0) {
-                this.noStartTime = true;
-                /* Setting param to null, to recognize the first ever run. It will never become null after the first run. */
-                this.latestRow = null;
-            } else {
-                /* Setting the initial row to start time -1 because it will soon be incremented by 1L. */
-                this.latestRow = HBaseUtils.encodeLong(timeFrom - POSTFIX);
+            this.indexCodec = indexCodec;
+            this.indexReader = new HBaseTimestampIndexReader(this.indexTable, indexCodec, timeFrom, timeTo);
+            this.readAheadExecutor = readAheadExecutor;
+            /* pre-fetching from HBase and populating records for the first time */
+            this.subIterator = this.fetchRecords().iterator();
+            this.scheduleNextBatch();
+        }
+    }
+
+    /**
+     * Starts reading the next batch in the background, so that the index scan and the multi-get for it overlap
+     * with the consumption of the current batch.
+     */
+    private void scheduleNextBatch() {
+        if (this.fullyFetched) {
+            this.nextBatch = null;
+            return;
+        }
+        FutureTask<List<Record>> task = new FutureTask<>(new Callable<List<Record>>() {
+            @Override
+            public List<Record> call() throws Exception {
+                return fetchRecords();
             }
-            if (timeTo >= Long.MAX_VALUE - 1) {
-                this.noStopTime = true;
+        });
+        try {
+            this.readAheadExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            /* the read ahead pool is saturated, so the next batch is read right away */
+            task.run();
+        }
+        this.nextBatch = task;
+    }
+
+    private List<Record> awaitNextBatch() {
+        try {
+            return this.nextBatch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.cleanup();
+            throw new HBaseRuntimeException("Interrupted while reading data from table " + this.tableName +
+                    " for tenant " + this.tenantId, e);
+        } catch (CancellationException e) {
+            this.cleanup();
+            throw new HBaseRuntimeException("Reading data from table " + this.tableName + " for tenant " +
+                    this.tenantId + " was cancelled, since the record store is closed", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AnalyticsTableNotAvailableException) {
+                this.fullyFetched = true;
+                return new ArrayList<>(0);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             } else {
-                this.endRow = HBaseUtils.encodeLong(timeTo);
+                this.cleanup();
+                throw new HBaseRuntimeException("Error reading data from table " + this.tableName + " for tenant " +
+                        this.tenantId, cause);
             }
-            /* pre-fetching from HBase and populating records for the first time */
-            this.fetchRecords();
         }
     }
 
     @Override
     public boolean hasNext() {
-        boolean hasMore = this.subIterator.hasNext();
-        if (!hasMore) {
-            try {
-                this.fetchRecords();
-            } catch (AnalyticsTableNotAvailableException e) {
-                this.subIterator = Collections.emptyIterator();
-            }
+        /* a batch may come out empty when all its index entries are obsolete, so keep going till the index runs out */
+        while (!this.subIterator.hasNext() && this.nextBatch != null) {
+            this.subIterator = this.awaitNextBatch().iterator();
+            this.scheduleNextBatch();
         }
         return this.subIterator.hasNext();
     }
@@ -113,16 +159,16 @@ public class HBaseTimestampIterator implements AnalyticsIterator<Record> {
         /* nothing to do here, since this is a read-only iterator */
     }
 
-    private void fetchRecords() throws AnalyticsTableNotAvailableException {
+    private List<Record> fetchRecords() throws AnalyticsTableNotAvailableException {
+        List<Record> fetchedRecords = new ArrayList<>();
         if (this.fullyFetched) {
-            return;
+            return fetchedRecords;
         }
         ListMultimap<String, Long> batchedResults = this.populateNextRecordBatch();
         if (batchedResults.size() == 0) {
-            return;
+            return fetchedRecords;
         }
         Set<String> colSet = null;
-        List<Record> fetchedRecords = new ArrayList<>();
         List<Get> gets = new ArrayList<>();
 
         for (String currentId : batchedResults.keySet()) {
@@ -151,8 +197,8 @@ public class HBaseTimestampIterator implements AnalyticsIterator<Record> {
                         }
                         List<Delete> obsoleteEntries = new ArrayList<>();
                         for (Long timestamp : indexEntries) {
-                            obsoleteEntries.add(new Delete(Bytes.toBytes(timestamp)).addColumn(
-                                    HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, currentResult.getRow()));
+                            obsoleteEntries.add(new Delete(this.indexCodec.encode(timestamp, Bytes.toString(currentRecordId)))
+                                    .addColumn(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, currentRecordId));
                         }
                         this.deleteObsoleteEntries(obsoleteEntries);
                     }
@@ -167,7 +213,10 @@ public class HBaseTimestampIterator implements AnalyticsIterator<Record> {
                     this.deleteObsoleteEntries(obsoleteEntries);
                 }*/
             }
-            this.subIterator = fetchedRecords.iterator();
+            if (this.fullyFetched) {
+                this.cleanup();
+            }
+            return fetchedRecords;
         } catch (Exception e) {
             if (e instanceof RetriesExhaustedException) {
                 throw new AnalyticsTableNotAvailableException(tenantId, tableName);
@@ -186,55 +235,26 @@ public class HBaseTimestampIterator implements AnalyticsIterator<Record> {
                 return currentBatch;
             }
         }
-        int counter = 0;
-        Scan indexScan = new Scan();
-        long latestTime;
-        if (!this.noStartTime && (this.latestRow != null)) {
-            latestTime = HBaseUtils.decodeLong(this.latestRow);
-            indexScan.setStartRow(HBaseUtils.encodeLong(latestTime + POSTFIX));
-        }
-        if (!this.noStopTime) {
-            indexScan.setStopRow(this.endRow);
-        }
-        indexScan.addFamily(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME);
-        ResultScanner resultScanner;
+        List<IndexEntry> indexEntries;
         try {
-            resultScanner = this.indexTable.getScanner(indexScan);
-            outer:
-            for (Result rowResult : resultScanner) {
-                Cell[] cells = rowResult.rawCells();
-                for (Cell cell : cells) {
-                    if ((this.globalCounter == this.recordsCount)) {
-                        this.fullyFetched = true;
-                        break outer;
-                    }
-                    byte[] recordId = CellUtil.cloneValue(cell);
-                    byte[] currentIndexEntry = rowResult.getRow();
-                    currentBatch.put(Bytes.toString(recordId), Bytes.toLong(currentIndexEntry));
-                    counter++;
-                    this.globalCounter++;
-                }
-                if (counter >= this.batchSize) {
-                    /* Snap out of further processing, because either the batch end or the client limit has been reached. */
-                    this.latestRow = rowResult.getRow();
-                    break;
-                }
-                this.latestRow = rowResult.getRow();
-            }
-            resultScanner.close();
-            indexTable.close();
+            indexEntries = this.indexReader.next(this.batchSize);
         } catch (IOException e) {
             throw new HBaseRuntimeException("Error reading index data for table " + this.tableName + ", tenant " +
                     this.tenantId, e);
         }
-        if (counter < this.batchSize) {
-            /* Checking if processing had been interrupted PRIOR TO:
-            * - More results being scanned (counter equals 0 in this case), where there are no more records to be scanned
-            * - Batch size becoming equal to the counter (counter < batchSize case), signifying the scan ran out of records
-            *       where the scan has either exhausted all records on the table or has reached the limit from the client.
-            *  For both of the above cases, we understand that the end of processing for this particular query is at hand
-            *  (i.e. Iterator: I die in peace now, tell my family I love them..) */
+        for (IndexEntry indexEntry : indexEntries) {
+            if ((this.globalCounter == this.recordsCount)) {
+                this.fullyFetched = true;
+                break;
+            }
+            currentBatch.put(indexEntry.getRecordId(), indexEntry.getTimestamp());
+            this.globalCounter++;
+        }
+        if (this.indexReader.isExhausted()) {
+            /* the scans have run out of index entries for the given time range, so this is the last batch */
             this.fullyFetched = true;
+        }
+        if (this.fullyFetched && currentBatch.isEmpty()) {
             this.cleanup();
         }
         return currentBatch;
@@ -275,12 +295,28 @@ public class HBaseTimestampIterator implements AnalyticsIterator<Record> {
     }
 
     private void cleanup() {
+        if (this.indexReader != null) {
+            this.indexReader.close();
+        }
         GenericUtils.closeQuietly(this.indexTable);
         GenericUtils.closeQuietly(this.table);
     }
 
     @Override
     public void close() throws IOException {
+        Future<List<Record>> pending = this.nextBatch;
+        this.nextBatch = null;
+        this.fullyFetched = true;
+        if (pending != null) {
+            /* the tables must not be closed under a read which is still in progress */
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignore) {
+                /* the iterator is being discarded, so the failure of the read-ahead is of no consequence */
+            }
+        }
         cleanup();
     }
 }
\ No newline at end of file
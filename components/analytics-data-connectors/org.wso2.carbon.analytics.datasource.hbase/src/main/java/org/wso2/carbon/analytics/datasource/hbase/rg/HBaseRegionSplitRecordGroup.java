@@ -32,6 +32,8 @@ public class HBaseRegionSplitRecordGroup implements RecordGroup {
     private String location;
     private int recordsCount;
     private List<String> columns;
+    private long timeFrom = -1L;
+    private long timeTo = Long.MAX_VALUE;
 
     public HBaseRegionSplitRecordGroup() {
     }
@@ -47,6 +49,13 @@ public class HBaseRegionSplitRecordGroup implements RecordGroup {
         this.recordsCount = recordsCount;
     }
 
+    public HBaseRegionSplitRecordGroup(int tenantId, String tableName, List<String> columns, int recordsCount,
+                                       byte[] startRow, byte[] endRow, String location, long timeFrom, long timeTo) {
+        this(tenantId, tableName, columns, recordsCount, startRow, endRow, location);
+        this.timeFrom = timeFrom;
+        this.timeTo = timeTo;
+    }
+
     @Override
     public String[] getLocations() throws AnalyticsException {
         return new String[]{this.location};
@@ -76,4 +85,12 @@ public class HBaseRegionSplitRecordGroup implements RecordGroup {
         return recordsCount;
     }
 
+    public long getTimeFrom() {
+        return timeFrom;
+    }
+
+    public long getTimeTo() {
+        return timeTo;
+    }
+
 }
@@ -41,6 +41,15 @@ public class HBaseAnalyticsDSConstants {
     public static final byte[] ANALYTICS_TS_QUALIFIER_NAME = Bytes.toBytes("timestamp");
 
     public static final int DEFAULT_QUERY_BATCH_SIZE = 7000;
+    public static final long DEFAULT_WRITE_BUFFER_SIZE = 2097152L;
+    public static final int DEFAULT_SCAN_CACHING = 1000;
+    public static final long DEFAULT_FILTER_SCAN_MIN_TIME_RANGE = 2592000000L;
+    public static final int DEFAULT_INDEX_SALT_BUCKETS = 16;
+    public static final int DEFAULT_READ_AHEAD_POOL_SIZE = 10;
+    public static final int DEFAULT_READ_AHEAD_QUEUE_SIZE = 100;
+    public static final int MAX_INDEX_SALT_BUCKETS = 256;
+    /* index table descriptor property, which records the salt bucket count used for its row keys */
+    public static final String INDEX_SALT_BUCKETS_PROPERTY = "ANALYTICS_INDEX_SALT_BUCKETS";
     public static final String HBASE_ANALYTICS_CONFIG_FILE = "hbase-analytics-config.xml";
     public static final String DELIMITER = "~%~";
 
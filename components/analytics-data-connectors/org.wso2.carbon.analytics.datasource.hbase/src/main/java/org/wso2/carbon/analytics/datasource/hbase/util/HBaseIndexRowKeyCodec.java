@@ -0,0 +1,112 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.datasource.hbase.util;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Class for encoding and decoding the row keys of the timestamp index tables. Salted index row keys are made of
+ * a salt byte derived from the record ID, the timestamp and the record ID, so the entries of a single timestamp
+ * are spread across regions. Index tables created without salting use the timestamp itself as the row key, where
+ * all the record IDs of a timestamp are columns of the same row.
+ */
+public class HBaseIndexRowKeyCodec {
+
+    private static final int TIMESTAMP_LENGTH = Bytes.SIZEOF_LONG;
+
+    private int saltBuckets;
+
+    public HBaseIndexRowKeyCodec(int saltBuckets) {
+        this.saltBuckets = saltBuckets;
+    }
+
+    public boolean isSalted() {
+        return this.saltBuckets > 0;
+    }
+
+    /**
+     * Returns the number of separate key ranges a time range has to be read from, one for each salt bucket.
+     */
+    public int getKeyRangeCount() {
+        return this.isSalted() ? this.saltBuckets : 1;
+    }
+
+    public byte[] encode(long timestamp, String recordId) {
+        if (!this.isSalted()) {
+            return HBaseUtils.encodeLong(timestamp);
+        }
+        byte[] id = Bytes.toBytes(recordId);
+        byte[] row = new byte[1 + TIMESTAMP_LENGTH + id.length];
+        row[0] = (byte) this.salt(recordId);
+        Bytes.putLong(row, 1, timestamp);
+        System.arraycopy(id, 0, row, 1 + TIMESTAMP_LENGTH, id.length);
+        return row;
+    }
+
+    public long decodeTimestamp(byte[] row) {
+        if (!this.isSalted()) {
+            return HBaseUtils.decodeLong(row);
+        }
+        return Bytes.toLong(row, 1);
+    }
+
+    /**
+     * Returns the inclusive start row of the given key range for the given time, or the start of the key range
+     * if the time is not bounded.
+     */
+    public byte[] startRow(int keyRange, long timeFrom) {
+        if (!this.isSalted()) {
+            return timeFrom < 0L ? new byte[0] : HBaseUtils.encodeLong(timeFrom);
+        }
+        if (timeFrom < 0L) {
+            return new byte[]{(byte) keyRange};
+        }
+        return Bytes.add(new byte[]{(byte) keyRange}, HBaseUtils.encodeLong(timeFrom));
+    }
+
+    /**
+     * Returns the exclusive stop row of the given key range for the given time, or the end of the key range
+     * if the time is not bounded.
+     */
+    public byte[] stopRow(int keyRange, long timeTo) {
+        boolean unbounded = timeTo >= Long.MAX_VALUE - 1;
+        if (!this.isSalted()) {
+            return unbounded ? new byte[0] : HBaseUtils.encodeLong(timeTo);
+        }
+        if (unbounded) {
+            return keyRange + 1 < 256 ? new byte[]{(byte) (keyRange + 1)} : new byte[0];
+        }
+        return Bytes.add(new byte[]{(byte) keyRange}, HBaseUtils.encodeLong(timeTo));
+    }
+
+    /**
+     * Returns the split keys to pre-split a salted index table, so each salt bucket starts in its own region.
+     */
+    public byte[][] splitKeys() {
+        byte[][] result = new byte[this.saltBuckets - 1][];
+        for (int i = 1; i < this.saltBuckets; i++) {
+            result[i - 1] = new byte[]{(byte) i};
+        }
+        return result;
+    }
+
+    private int salt(String recordId) {
+        return (recordId.hashCode() & Integer.MAX_VALUE) % this.saltBuckets;
+    }
+
+}
@@ -26,6 +26,7 @@ import org.wso2.carbon.analytics.datasource.commons.Record;
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsDataSourceConstants;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.core.util.LazyRecordValues;
 import org.wso2.carbon.analytics.datasource.hbase.HBaseAnalyticsConfigurationEntry;
 
 import javax.xml.bind.JAXBContext;
@@ -110,7 +111,7 @@ public class HBaseUtils {
                             HBaseAnalyticsDSConstants.ANALYTICS_ROWDATA_QUALIFIER_NAME);
             byte[] data = CellUtil.cloneValue(dataCell);
             if (data.length > 0) {
-                values = GenericUtils.decodeRecordValues(data, colSet);
+                values = new LazyRecordValues(data, colSet);
             } else {
                 values = new HashMap<>();
             }
@@ -46,6 +46,8 @@ public class HBaseAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
     private HBaseAnalyticsConfigurationEntry createConfig() {
         HBaseAnalyticsConfigurationEntry entry = new HBaseAnalyticsConfigurationEntry();
         entry.setBatchSize(5000);
+        /* a small write buffer, so the puts are sent in multiple rounds */
+        entry.setWriteBufferSize(65536);
         return entry;
     }
 
@@ -0,0 +1,226 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.datasource.hbase;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.datasource.commons.Record;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsTableNotAvailableException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStoreTest;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseAnalyticsDSConstants;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * HBase record store tests, which run against an in-process HBase mini cluster, with a salted timestamp index
+ * and a small write buffer.
+ */
+public class HBaseMiniClusterRecordStoreTest extends AnalyticsRecordStoreTest {
+
+    private static final int INDEX_SALT_BUCKETS = 4;
+
+    private static final int READ_AHEAD_BENCHMARK_RECORD_COUNT = 20000;
+
+    private static final int READ_AHEAD_BENCHMARK_READERS = 8;
+
+    private HBaseTestingUtility testingUtility;
+
+    private HBaseAnalyticsRecordStore store;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        this.testingUtility = new HBaseTestingUtility();
+        this.testingUtility.startMiniCluster();
+        HBaseAnalyticsConfigurationEntry entry = new HBaseAnalyticsConfigurationEntry();
+        entry.setBatchSize(1000);
+        /* a small write buffer, so the puts are sent in multiple rounds */
+        entry.setWriteBufferSize(16384);
+        entry.setIndexSaltBuckets(INDEX_SALT_BUCKETS);
+        this.store = new HBaseAnalyticsRecordStore(this.testingUtility.getConnection(), entry);
+        super.init("HBaseMiniClusterRecordStore", this.store);
+    }
+
+    @Test
+    public void testSaltedIndexRegions() throws Exception {
+        this.store.deleteTable(9, "SALTED1");
+        this.store.createTable(9, "SALTED1");
+        TableName indexTable = TableName.valueOf(HBaseUtils.generateTableName(9, "SALTED1",
+                HBaseAnalyticsDSConstants.TableType.INDEX));
+        RegionLocator locator = this.testingUtility.getConnection().getRegionLocator(indexTable);
+        try {
+            Assert.assertEquals(locator.getStartKeys().length, INDEX_SALT_BUCKETS);
+        } finally {
+            locator.close();
+        }
+        /* records with the same timestamp are read back through the salted index */
+        List<Record> records = generateRecords(9, "SALTED1", 1, 500, 10000, 0);
+        this.store.put(records);
+        Assert.assertEquals(GenericUtils.listRecords(this.store, this.store.get(9, "SALTED1", 1, null, 10000,
+                10001, 0, -1)).size(), 500);
+        this.store.deleteTable(9, "SALTED1");
+    }
+
+    @Test
+    public void testConcurrentPuts() throws Exception {
+        final int threads = 8;
+        final int count = 2000;
+        this.store.deleteTable(9, "CONCURRENT1");
+        this.store.createTable(9, "CONCURRENT1");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int index = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = 0; j < count; j += 100) {
+                            store.put(generateRecords(9, "CONCURRENT1", index, 100, 20000 + index * count + j, 1));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(GenericUtils.listRecords(this.store, this.store.get(9, "CONCURRENT1", 1, null,
+                Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)).size(), threads * count);
+        Assert.assertEquals(GenericUtils.listRecords(this.store, this.store.get(9, "CONCURRENT1", 1, null,
+                20000, 20000 + threads * count, 0, -1)).size(), threads * count);
+        this.store.deleteTable(9, "CONCURRENT1");
+    }
+
+    @Test
+    public void testPutFailureIsolation() throws Exception {
+        this.store.deleteTable(9, "ISOLATION1");
+        this.store.deleteTable(9, "MISSING1");
+        this.store.createTable(9, "ISOLATION1");
+        final List<Record> records = generateRecords(9, "ISOLATION1", 1, 1000, 30000, 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            /* a put which succeeds while another put to a missing table fails */
+            Future<Void> future = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    store.put(records);
+                    return null;
+                }
+            });
+            try {
+                this.store.put(generateRecords(9, "MISSING1", 1, 10, 30000, 1));
+                Assert.fail("A put to a missing table must fail");
+            } catch (AnalyticsTableNotAvailableException ignore) {
+                /* expected */
+            }
+            future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(GenericUtils.listRecords(this.store, this.store.get(9, "ISOLATION1", 1, null,
+                Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)).size(), 1000);
+        /* deleting a table while it is being written to does not affect the puts to other tables */
+        this.store.createTable(9, "MISSING1");
+        this.store.deleteTable(9, "MISSING1");
+        this.store.put(generateRecords(9, "ISOLATION1", 2, 10, 40000, 1));
+        Assert.assertEquals(GenericUtils.listRecords(this.store, this.store.get(9, "ISOLATION1", 1, null,
+                Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)).size(), 1010);
+        this.store.deleteTable(9, "ISOLATION1");
+    }
+
+    private long readWithReadAheadPool(int poolSize, int queueSize) throws Exception {
+        HBaseAnalyticsConfigurationEntry entry = new HBaseAnalyticsConfigurationEntry();
+        entry.setBatchSize(1000);
+        entry.setIndexSaltBuckets(INDEX_SALT_BUCKETS);
+        entry.setReadAheadPoolSize(poolSize);
+        entry.setReadAheadQueueSize(queueSize);
+        /* a separate connection, since destroying the store closes its connection */
+        final HBaseAnalyticsRecordStore readStore = new HBaseAnalyticsRecordStore(
+                ConnectionFactory.createConnection(this.testingUtility.getConfiguration()), entry);
+        ExecutorService executor = Executors.newFixedThreadPool(READ_AHEAD_BENCHMARK_READERS);
+        try {
+            long start = System.currentTimeMillis();
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < READ_AHEAD_BENCHMARK_READERS; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        /* a bounded time range, so the records are read through the timestamp index */
+                        return GenericUtils.listRecords(readStore, readStore.get(9, "READAHEAD1", 1, null,
+                                50000, 50000 + READ_AHEAD_BENCHMARK_RECORD_COUNT, 0, -1)).size();
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(future.get().intValue(), READ_AHEAD_BENCHMARK_RECORD_COUNT);
+            }
+            return Math.max(System.currentTimeMillis() - start, 1);
+        } finally {
+            executor.shutdownNow();
+            readStore.destroy();
+        }
+    }
+
+    @Test
+    public void testReadAheadPoolThroughput() throws Exception {
+        this.store.deleteTable(9, "READAHEAD1");
+        this.store.createTable(9, "READAHEAD1");
+        for (int i = 0; i < READ_AHEAD_BENCHMARK_RECORD_COUNT; i += 1000) {
+            this.store.put(generateRecords(9, "READAHEAD1", i, 1000, 50000 + i, 1));
+        }
+        System.out.println("\n************** START HBASE READ AHEAD POOL PERF TEST **************");
+        long recordCount = (long) READ_AHEAD_BENCHMARK_RECORD_COUNT * READ_AHEAD_BENCHMARK_READERS;
+        /* the pool sizes are below, equal to and above the reader count, with a small queue, so the saturated 
+         * pool falls back to reading in the consumer's thread */
+        for (int poolSize : new int[] { 1, READ_AHEAD_BENCHMARK_READERS, READ_AHEAD_BENCHMARK_READERS * 4 }) {
+            long time = this.readWithReadAheadPool(poolSize, 2);
+            System.out.println("* Read ahead pool size: " + poolSize + ", readers: " + READ_AHEAD_BENCHMARK_READERS +
+                    ", " + recordCount + " records read in " + time + " ms, " + (recordCount * 1000 / time) +
+                    " records/sec");
+        }
+        System.out.println("\n************** END HBASE READ AHEAD POOL PERF TEST **************");
+        this.store.deleteTable(9, "READAHEAD1");
+    }
+
+    @AfterClass
+    public void destroy() throws Exception {
+        try {
+            this.cleanup();
+        } finally {
+            this.testingUtility.shutdownMiniCluster();
+        }
+    }
+
+}
@@ -29,10 +29,19 @@ public class RDBMSAnalyticsDSConstants {
     
     public static final String PARTITION_COUNT = "partitionCount";
     
+    public static final String TIME_PARTITION_INTERVAL = "timePartitionInterval";
+    
     public static final String DEFAULT_CHARSET = "UTF8";
         
     public static final int RECORD_BATCH_SIZE = 1000;
     
     public static final int DEFAULT_PARTITION_COUNT = 100;
+    
+    public static final int SEEK_CURSOR_CACHE_SIZE = 1000;
+    
+    public static final long TIME_PARTITION_LIST_REFRESH_INTERVAL = 30000L;
+    
+    /* MSSQL allows 2100 parameters in a statement, which is the lowest limit of the supported databases */
+    public static final int MAX_STATEMENT_PARAMETERS = 2000;
 
 }
@@ -28,6 +28,7 @@ import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.core.util.LazyRecordValues;
 import org.wso2.carbon.ndatasource.common.DataSourceException;
 
 import javax.sql.DataSource;
@@ -35,11 +36,15 @@ import javax.sql.DataSource;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * Abstract RDBMS database backed implementation of {@link AnalyticsRecordStore}.
@@ -50,6 +55,15 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
     private static final String RECORD_IDS_PLACEHOLDER = "{{RECORD_IDS}}";
 
     private static final String TABLE_NAME_PLACEHOLDER = "{{TABLE_NAME}}";
+    
+    private static final String TABLE_INDEX_PLACEHOLDER = "{{TABLE_INDEX}}";
+    
+    private static final String RECORD_TABLE_LOOKUP_QUERY = "SELECT record_id, {{TABLE_INDEX}} FROM " + 
+            TABLE_NAME_PLACEHOLDER + " WHERE record_id IN (" + RECORD_IDS_PLACEHOLDER + ")";
+    
+    private static final int TIME_PARTITIONED_WRITE_RETRY_COUNT = 3;
+    
+    private static final String RECORD_ID_INDEX_SUFFIX = "_IDS";
         
     private DataSource dataSource;
     
@@ -59,6 +73,31 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
     
     private int partitionCount = RDBMSAnalyticsDSConstants.DEFAULT_PARTITION_COUNT;
     
+    /* the time span of each of the physical tables a table's records are spread across by their timestamps,
+     * so old data can be purged by dropping whole tables, 0 if the tables are not time partitioned */
+    private long timePartitionInterval;
+    
+    /* the time partitions known to exist for each table, refreshed from the database metadata */
+    private ConcurrentMap<String, TimePartitionList> timePartitions = new ConcurrentHashMap<>();
+    
+    /* the tables which are known to exist, so they don't have to be checked in the database before each read,
+     * a stale entry here is corrected when a later SQL operation on the table fails */
+    private Set<String> knownTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
+    /* whether the tables have the (timestamp, record_id) index the seek query relies on, the tables created before
+     * the index was added to the init queries keep using offset paging, till they are created again */
+    private ConcurrentMap<String, Boolean> seekIndexedTables = new ConcurrentHashMap<>();
+    
+    /* the positions paged range reads ended at, so the next page can seek to it, rather than skipping records */
+    private Map<RangeCursorKey, RangeCursor> rangeCursors = Collections.synchronizedMap(
+            new LinkedHashMap<RangeCursorKey, RangeCursor>(16, 0.75f, true) {
+                private static final long serialVersionUID = -1318468419346633409L;
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<RangeCursorKey, RangeCursor> eldest) {
+                    return this.size() > RDBMSAnalyticsDSConstants.SEEK_CURSOR_CACHE_SIZE;
+                }
+            });
+    
     public RDBMSAnalyticsRecordStore() throws AnalyticsException {
         this.rdbmsQueryConfigurationEntry = null;
     }
@@ -76,6 +115,14 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         if (partitionCountProp != null) {
             this.partitionCount = Integer.parseInt(partitionCountProp);
         }
+        String timePartitionIntervalProp = properties.get(RDBMSAnalyticsDSConstants.TIME_PARTITION_INTERVAL);
+        if (timePartitionIntervalProp != null) {
+            this.timePartitionInterval = Long.parseLong(timePartitionIntervalProp.trim());
+            if (this.timePartitionInterval < 0) {
+                throw new AnalyticsException("The property '" + RDBMSAnalyticsDSConstants.TIME_PARTITION_INTERVAL + 
+                        "' cannot be negative: " + this.timePartitionInterval);
+            }
+        }
         try {
             this.dataSource = (DataSource) GenericUtils.loadGlobalDataSource(dsName);
         } catch (DataSourceException e) {
@@ -95,20 +142,28 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         return partitionCount;
     }
     
-    private String[] getRecordTableInitQueries(int tenantId, String tableName) {
+    public long getTimePartitionInterval() {
+        return timePartitionInterval;
+    }
+    
+    private boolean isTimePartitioned() {
+        return this.timePartitionInterval > 0;
+    }
+    
+    private String[] getRecordTableInitQueries(String targetTableName) {
         String[] queries = this.getQueryConfiguration().getRecordTableInitQueries();
         String[] result = new String[queries.length];
         for (int i = 0; i < queries.length; i++) {
-            result[i] = this.translateQueryWithTableInfo(queries[i], tenantId, tableName);
+            result[i] = this.translateQueryWithTargetTable(queries[i], targetTableName);
         }
         return result;
     }
     
-    private String[] getRecordTableDeleteQueries(int tenantId, String tableName) {
+    private String[] getRecordTableDeleteQueries(String targetTableName) {
         String[] queries = this.getQueryConfiguration().getRecordTableDeleteQueries();
         String[] result = new String[queries.length];
         for (int i = 0; i < queries.length; i++) {
-            result[i] = this.translateQueryWithTableInfo(queries[i], tenantId, tableName);
+            result[i] = this.translateQueryWithTargetTable(queries[i], targetTableName);
         }
         return result;
     }
@@ -141,7 +196,13 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             conn = this.getConnection(false);
             Collection<List<Record>> recordBatches = GenericUtils.generateRecordBatches(records);
             for (List<Record> batch : recordBatches) {
-                this.addRecordsSimilar(conn, batch);
+                if (this.isTimePartitioned()) {
+                    this.addRecordsSimilarTimePartitioned(conn, batch);
+                } else {
+                    Record firstRecord = batch.get(0);
+                    this.addRecordsSimilar(conn, batch, firstRecord.getTenantId(), firstRecord.getTableName(), 
+                            this.generateTargetTableName(firstRecord.getTenantId(), firstRecord.getTableName()));
+                }
             }
             conn.commit();
         } catch (SQLException e) {
@@ -155,23 +216,297 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
     
-    private void addRecordsSimilar(Connection conn, 
-            List<Record> records) throws SQLException, 
-            AnalyticsException, AnalyticsTableNotAvailableException {
-        Record firstRecord = records.get(0);
-        int tenantId = firstRecord.getTenantId();
-        String tableName = firstRecord.getTableName();
-        String mergeSQL = this.getRecordMergeSQL(tenantId, tableName);
+    private void addRecordsSimilar(Connection conn, List<Record> records, int tenantId, String tableName, 
+            String targetTableName) throws SQLException, AnalyticsException, AnalyticsTableNotAvailableException {
+        String mergeSQL = this.getRecordMergeSQL(targetTableName);
         if (mergeSQL != null) {
             try {
-                this.mergeRecordsSimilar(conn, records, tenantId, tableName, mergeSQL);
+                this.mergeRecordsSimilar(conn, records, tenantId, tableName, targetTableName, mergeSQL);
             } catch (SQLException e) {
                 /* merge has been failed, maybe because one of some constraint violations,
                 * lets try to sequentially insert/update */
-                this.insertAndUpdateRecordsSimilar(conn, records, tenantId, tableName);
+                this.insertAndUpdateRecordsSimilar(conn, records, tenantId, tableName, targetTableName);
             }
         } else {
-            this.insertAndUpdateRecordsSimilar(conn, records, tenantId, tableName);
+            this.insertAndUpdateRecordsSimilar(conn, records, tenantId, tableName, targetTableName);
+        }
+    }
+    
+    private void addRecordsSimilarTimePartitioned(Connection conn, List<Record> records) throws SQLException, 
+            AnalyticsException, AnalyticsTableNotAvailableException {
+        Record firstRecord = records.get(0);
+        int tenantId = firstRecord.getTenantId();
+        String tableName = firstRecord.getTableName();
+        if (!this.tableExists(tenantId, tableName)) {
+            throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+        }
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        /* a record id must only be in one time partition, so if a record is repeated in the batch, 
+         * only the last one is taken, as it would have overwritten the earlier ones */
+        Map<String, Record> latestRecords = new LinkedHashMap<>(records.size());
+        for (Record record : records) {
+            latestRecords.remove(record.getId());
+            latestRecords.put(record.getId(), record);
+        }
+        Map<Long, List<Record>> partitionedRecords = new TreeMap<>();
+        List<Record> partitionRecords;
+        for (Record record : latestRecords.values()) {
+            long partition = this.toTimePartition(record.getTimestamp());
+            partitionRecords = partitionedRecords.get(partition);
+            if (partitionRecords == null) {
+                partitionRecords = new ArrayList<>();
+                partitionedRecords.put(partition, partitionRecords);
+            }
+            partitionRecords.add(record);
+        }
+        /* a failed attempt is retried with the time partitions reloaded, since it is mostly a concurrent write 
+         * of the same records, or a partition dropped by a purge operation in the meantime */
+        for (int i = 0; ; i++) {
+            try {
+                this.addRecordsToTimePartitions(conn, partitionedRecords, tenantId, tableName, targetTableName,
+                        latestRecords.keySet(), this.lookupTimePartitionList(conn, targetTableName, i > 0));
+                conn.commit();
+                return;
+            } catch (SQLException e) {
+                RDBMSUtils.rollbackConnection(conn);
+                if (!this.tableExists(conn, tenantId, tableName)) {
+                    throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+                }
+                if (i >= TIME_PARTITIONED_WRITE_RETRY_COUNT) {
+                    throw e;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Retrying time partitioned write to " + printableTableName(tenantId, tableName) + 
+                            ": " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Writes the records to their time partitions in a single transaction, which is committed by the caller. 
+     * The partitions the records are already in are looked up with a single query, so a record which is moved 
+     * to another partition is only deleted from the partition it was in, and the rest are updated in place.
+     * If the table has a record id index, only the partitions it has for the records are looked at, and the
+     * index entries of the inserted records are written in the same transaction.
+     * A concurrent write of the same records shows up as a failed insert, or a delete of fewer records than 
+     * looked up, and the transaction is retried.
+     */
+    private void addRecordsToTimePartitions(Connection conn, Map<Long, List<Record>> partitionedRecords, 
+            int tenantId, String tableName, String targetTableName, Collection<String> ids, 
+            TimePartitionList partitionList) throws SQLException, AnalyticsException {
+        Map<String, Long> indexedPartitions = null;
+        if (partitionList.isRecordIdIndexed()) {
+            indexedPartitions = this.lookupIndexedTimePartitions(conn, targetTableName, ids);
+            /* the index may refer to a partition created by another node after the partitions were loaded */
+            if (!partitionList.getPartitions().containsAll(indexedPartitions.values())) {
+                partitionList = this.lookupTimePartitionList(conn, targetTableName, true);
+            }
+        }
+        NavigableSet<Long> partitions = partitionList.getPartitions();
+        Map<String, String> existingRecordTables = this.lookupRecordTables(conn, 
+                this.generateCandidateTableNames(targetTableName, partitions, indexedPartitions), ids);
+        /* a record moved by a concurrent write, after its index entry was read, could be missed in the lookup */
+        if (indexedPartitions != null && !indexedPartitions.equals(this.lookupIndexedTimePartitions(conn, 
+                targetTableName, ids))) {
+            throw new SQLException("The record id index of '" + targetTableName + "' has been changed concurrently");
+        }
+        List<Record> indexInserts = new ArrayList<>();
+        List<Record> indexUpdates = new ArrayList<>();
+        Map<String, List<String>> movedRecordIds = new HashMap<>();
+        for (Map.Entry<Long, List<Record>> entry : partitionedRecords.entrySet()) {
+            String partitionTableName = this.generateTimePartitionTableName(targetTableName, entry.getKey());
+            if (!partitions.contains(entry.getKey())) {
+                this.createTimePartition(targetTableName, entry.getKey(), partitions);
+            }
+            List<Record> inserts = new ArrayList<>();
+            List<Record> updates = new ArrayList<>();
+            for (Record record : entry.getValue()) {
+                String existingTableName = existingRecordTables.get(record.getId());
+                if (partitionTableName.equals(existingTableName)) {
+                    updates.add(record);
+                } else {
+                    inserts.add(record);
+                    if (existingTableName != null) {
+                        List<String> movedIds = movedRecordIds.get(existingTableName);
+                        if (movedIds == null) {
+                            movedIds = new ArrayList<>();
+                            movedRecordIds.put(existingTableName, movedIds);
+                        }
+                        movedIds.add(record.getId());
+                    }
+                }
+            }
+            this.executeRecordBatch(conn, this.getRecordUpdateSQL(partitionTableName), updates);
+            this.executeRecordBatch(conn, this.getRecordInsertSQL(partitionTableName), inserts);
+            if (indexedPartitions != null) {
+                for (Record record : inserts) {
+                    Record indexEntry = new Record(record.getId(), tenantId, tableName, 
+                            Collections.<String, Object>emptyMap(), entry.getKey());
+                    if (indexedPartitions.containsKey(record.getId())) {
+                        indexUpdates.add(indexEntry);
+                    } else {
+                        indexInserts.add(indexEntry);
+                    }
+                }
+            }
+        }
+        if (indexedPartitions != null) {
+            String indexTableName = this.generateRecordIdIndexTableName(targetTableName);
+            this.executeRecordBatch(conn, this.getRecordUpdateSQL(indexTableName), indexUpdates);
+            this.executeRecordBatch(conn, this.getRecordInsertSQL(indexTableName), indexInserts);
+        }
+        /* records which are updated with a timestamp in another time partition are removed from their 
+         * earlier partitions, including the non-partitioned table, which may have data written before
+         * time partitioning was enabled */
+        for (Map.Entry<String, List<String>> entry : movedRecordIds.entrySet()) {
+            for (List<String> idSubList : Lists.partition(entry.getValue(), 
+                    this.rdbmsQueryConfigurationEntry.getRecordBatchSize())) {
+                int count = this.deleteRecords(conn, entry.getKey(), idSubList);
+                if (count != idSubList.size()) {
+                    throw new SQLException("The records in '" + entry.getKey() + "' have been changed concurrently");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the physical tables the given record ids are in, looked up with a query over all the tables, 
+     * which is split up so no statement has more than {@link RDBMSAnalyticsDSConstants#MAX_STATEMENT_PARAMETERS} 
+     * parameters.
+     */
+    private Map<String, String> lookupRecordTables(Connection conn, List<String> tables, Collection<String> ids) 
+            throws SQLException {
+        Map<String, String> result = new HashMap<>();
+        for (List<String> tableSubList : Lists.partition(tables, RDBMSAnalyticsDSConstants.MAX_STATEMENT_PARAMETERS)) {
+            int idsPerStatement = Math.min(this.rdbmsQueryConfigurationEntry.getRecordBatchSize(), 
+                    Math.max(1, RDBMSAnalyticsDSConstants.MAX_STATEMENT_PARAMETERS / tableSubList.size()));
+            for (List<String> idSubList : Lists.partition(new ArrayList<>(ids), idsPerStatement)) {
+                result.putAll(this.lookupRecordTablesWithQuery(conn, tableSubList, idSubList));
+            }
+        }
+        return result;
+    }
+    
+    private Map<String, String> lookupRecordTablesWithQuery(Connection conn, List<String> tables, List<String> ids) 
+            throws SQLException {
+        Map<String, String> result = new HashMap<>();
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < tables.size(); i++) {
+            if (i > 0) {
+                query.append(" UNION ALL ");
+            }
+            query.append(this.translateQueryWithRecordIdsInfo(this.translateQueryWithTargetTable(
+                    RECORD_TABLE_LOOKUP_QUERY, tables.get(i)), ids.size()).replace(
+                            TABLE_INDEX_PLACEHOLDER, Integer.toString(i)));
+        }
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.prepareStatement(query.toString());
+            int index = 1;
+            for (int i = 0; i < tables.size(); i++) {
+                for (String id : ids) {
+                    stmt.setString(index++, id);
+                }
+            }
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                result.put(rs.getString(1), tables.get(rs.getInt(2)));
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, null);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the time partitions the record id index of a table has for the given records. An entry may be 
+     * stale, since the index entries are not removed with the records, so the partition is only a candidate.
+     */
+    private Map<String, Long> lookupIndexedTimePartitions(Connection conn, String targetTableName, 
+            Collection<String> ids) throws SQLException {
+        Map<String, Long> result = new HashMap<>();
+        String indexTableName = this.generateRecordIdIndexTableName(targetTableName);
+        for (List<String> idSubList : Lists.partition(new ArrayList<>(ids), Math.min(
+                this.rdbmsQueryConfigurationEntry.getRecordBatchSize(), 
+                RDBMSAnalyticsDSConstants.MAX_STATEMENT_PARAMETERS))) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+            try {
+                stmt = conn.prepareStatement(this.generateGetRecordRetrievalWithIdQuery(indexTableName, 
+                        idSubList.size()));
+                for (int i = 0; i < idSubList.size(); i++) {
+                    stmt.setString(i + 1, idSubList.get(i));
+                }
+                rs = stmt.executeQuery();
+                while (rs.next()) {
+                    /* the timestamp of an index entry is the time partition of the record */
+                    result.put(rs.getString(1), rs.getLong(2));
+                }
+            } finally {
+                RDBMSUtils.cleanupConnection(rs, stmt, null);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the physical tables the given records may be in, which are the table itself, and either the time 
+     * partitions the record id index has for the records, or all the time partitions, if there is no index.
+     */
+    private List<String> generateCandidateTableNames(String targetTableName, NavigableSet<Long> partitions, 
+            Map<String, Long> indexedPartitions) {
+        if (indexedPartitions == null) {
+            return this.generateTimePartitionTableNames(targetTableName, partitions, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        List<String> result = new ArrayList<>();
+        result.add(targetTableName);
+        for (long partition : new TreeSet<>(indexedPartitions.values())) {
+            if (partitions.contains(partition)) {
+                result.add(this.generateTimePartitionTableName(targetTableName, partition));
+            }
+        }
+        return result;
+    }
+    
+    private List<String> lookupCandidateTableNames(Connection conn, String targetTableName, 
+            TimePartitionList partitionList, Collection<String> ids) throws SQLException {
+        Map<String, Long> indexedPartitions = null;
+        if (partitionList.isRecordIdIndexed()) {
+            indexedPartitions = this.lookupIndexedTimePartitions(conn, targetTableName, ids);
+        }
+        return this.generateCandidateTableNames(targetTableName, partitionList.getPartitions(), indexedPartitions);
+    }
+    
+    private void executeRecordBatch(Connection conn, String query, List<Record> records) 
+            throws SQLException, AnalyticsException {
+        if (records.isEmpty()) {
+            return;
+        }
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(query);
+            for (Record record : records) {
+                this.populateStatementForAdd(stmt, record);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } finally {
+            RDBMSUtils.cleanupConnection(null, stmt, null);
+        }
+    }
+    
+    private int deleteRecords(Connection conn, String targetTableName, List<String> ids) throws SQLException {
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(this.generateRecordDeletionRecordsWithIdsQuery(targetTableName, ids.size()));
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setString(i + 1, ids.get(i));
+            }
+            return stmt.executeUpdate();
+        } finally {
+            RDBMSUtils.cleanupConnection(null, stmt, null);
         }
     }
     
@@ -200,8 +535,8 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         stmt.setString(4, record.getId());
     }
     
-    private void mergeRecordsSimilar(Connection conn,
-            List<Record> records, int tenantId, String tableName, String query) 
+    private void mergeRecordsSimilar(Connection conn, List<Record> records, int tenantId, String tableName, 
+            String targetTableName, String query) 
             throws SQLException, AnalyticsException, AnalyticsTableNotAvailableException {
         PreparedStatement stmt = null;
         try {
@@ -214,7 +549,7 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             conn.commit();
         } catch (SQLException e) {
             RDBMSUtils.rollbackConnection(conn);
-            if (!this.tableExists(conn, tenantId, tableName)) {
+            if (!this.tableExists(conn, tenantId, tableName, targetTableName)) {
                 throw new AnalyticsTableNotAvailableException(tenantId, tableName);
             } else {
                 throw e;
@@ -224,15 +559,15 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
     
-    private void insertAndUpdateRecordsSimilar(Connection conn, 
-            List<Record> records, int tenantId, String tableName) throws SQLException, 
+    private void insertAndUpdateRecordsSimilar(Connection conn, List<Record> records, int tenantId, 
+            String tableName, String targetTableName) throws SQLException, 
             AnalyticsException, AnalyticsTableNotAvailableException {
         try {
-            this.insertBatchRecordsSimilar(conn, records, tenantId, tableName);
+            this.insertBatchRecordsSimilar(conn, records, tenantId, tableName, targetTableName);
         } catch (SQLException e) {
             /* batch insert failed, maybe because one of the records were already there,
              * lets try to sequentially insert/update */
-            this.insertAndUpdateRecordsSimilarSequentially(conn, records, tenantId, tableName);
+            this.insertAndUpdateRecordsSimilarSequentially(conn, records, targetTableName);
         } catch (AnalyticsException e1) {
             throw e1;
         }
@@ -240,12 +575,12 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
 
 
     private void insertAndUpdateRecordsSimilarSequentially(Connection conn,
-                                                           List<Record> records, int tenantId, String tableName) throws SQLException, AnalyticsException {
+                                                           List<Record> records, String targetTableName) throws SQLException, AnalyticsException {
         PreparedStatement insertStatement = null;
         PreparedStatement updateStatement = null;
         try {
-            insertStatement = conn.prepareStatement(this.getRecordInsertSQL(tenantId, tableName));
-            updateStatement = conn.prepareStatement(this.getRecordUpdateSQL(tenantId, tableName));
+            insertStatement = conn.prepareStatement(this.getRecordInsertSQL(targetTableName));
+            updateStatement = conn.prepareStatement(this.getRecordUpdateSQL(targetTableName));
             for (Record record : records) {
                 try {
                     this.populateStatementForAdd(insertStatement, record);
@@ -270,10 +605,9 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
 
-    private void insertBatchRecordsSimilar(Connection conn, 
-            List<Record> records, int tenantId, String tableName) throws SQLException, 
-            AnalyticsException, AnalyticsTableNotAvailableException {
-        String query = this.getRecordInsertSQL(tenantId, tableName);
+    private void insertBatchRecordsSimilar(Connection conn, List<Record> records, int tenantId, String tableName, 
+            String targetTableName) throws SQLException, AnalyticsException, AnalyticsTableNotAvailableException {
+        String query = this.getRecordInsertSQL(targetTableName);
         PreparedStatement stmt = null;
         try {
             stmt = conn.prepareStatement(query);
@@ -285,7 +619,7 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             conn.commit();
         } catch (SQLException e) {
             RDBMSUtils.rollbackConnection(conn);
-            if (!this.tableExists(conn, tenantId, tableName)) {
+            if (!this.tableExists(conn, tenantId, tableName, targetTableName)) {
                 throw new AnalyticsTableNotAvailableException(tenantId, tableName);
             } else {
                 throw e;
@@ -295,22 +629,25 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
     
-    private String getRecordMergeSQL(int tenantId, String tableName) {
+    private String getRecordMergeSQL(String targetTableName) {
     	String query = this.getQueryConfiguration().getRecordMergeQuery();
-    	return translateQueryWithTableInfo(query, tenantId, tableName);
+    	return translateQueryWithTargetTable(query, targetTableName);
     }
     
-    private String getRecordInsertSQL(int tenantId, String tableName) {
+    private String getRecordInsertSQL(String targetTableName) {
         String query = this.getQueryConfiguration().getRecordInsertQuery();
-        return translateQueryWithTableInfo(query, tenantId, tableName);
+        return translateQueryWithTargetTable(query, targetTableName);
     }
     
-    private String getRecordUpdateSQL(int tenantId, String tableName) {
+    private String getRecordUpdateSQL(String targetTableName) {
         String query = this.getQueryConfiguration().getRecordUpdateQuery();
-        return translateQueryWithTableInfo(query, tenantId, tableName);
+        return translateQueryWithTargetTable(query, targetTableName);
     }
     
     private boolean tableExists(int tenantId, String tableName) throws AnalyticsException {
+        if (this.knownTables.contains(this.generateTargetTableName(tenantId, tableName))) {
+            return true;
+        }
         Connection conn = null;
         try {
             conn = this.getConnection();
@@ -348,16 +685,41 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         if (!this.tableExists(tenantId, tableName)) {
             throw new AnalyticsTableNotAvailableException(tenantId, tableName);
         }
-        if (numPartitionsHint > 1 && (recordsFrom > 0 || (recordsCount != -1 && recordsCount != Integer.MAX_VALUE))) {
+        boolean paged = recordsFrom > 0 || (recordsCount != -1 && recordsCount != Integer.MAX_VALUE);
+        if (numPartitionsHint > 1 && paged) {
             numPartitionsHint = 1;
         }
+        List<String> targetTables = null;
+        if (this.isTimePartitioned()) {
+            /* only the time partitions overlapping with the range are read */
+            targetTables = this.lookupTimePartitionTables(tenantId, tableName, timeFrom, timeTo);
+        }
+        RangeCursor cursor = null;
+        if (paged && targetTables == null && this.rdbmsQueryConfigurationEntry.getRecordRetrievalSeekQuery() != null 
+                && this.isSeekIndexed(tenantId, tableName)) {
+            cursor = this.rangeCursors.get(new RangeCursorKey(this.generateTargetTableName(tenantId, tableName), 
+                    timeFrom, timeTo, recordsFrom));
+            if (cursor == null) {
+                /* start from the beginning of the range, and skip to recordsFrom */
+                cursor = new RangeCursor(timeFrom, "", 0);
+            }
+        }
         List<Integer[]> params = this.generatePartitionPlan(numPartitionsHint);
         RDBMSRangeRecordGroup[] result = new RDBMSRangeRecordGroup[params.size()];
         Integer[] param;
         for (int i = 0; i < result.length; i++) {
             param = params.get(i);
-            result[i] = new RDBMSRangeRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, 
-                    recordsFrom, recordsCount, param[0], param[1]);
+            if (targetTables != null) {
+                result[i] = new RDBMSRangeRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, 
+                        recordsFrom, recordsCount, param[0], param[1], targetTables);
+            } else if (cursor != null) {
+                result[i] = new RDBMSRangeRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, 
+                        recordsFrom, recordsCount, param[0], param[1], cursor.getTimestamp(), cursor.getRecordId(), 
+                        cursor.getPosition());
+            } else {
+                result[i] = new RDBMSRangeRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, 
+                        recordsFrom, recordsCount, param[0], param[1]);
+            }
         }
         return result;
     }
@@ -366,6 +728,12 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
     public AnalyticsIterator<Record> readRecords(RecordGroup recordGroup) throws AnalyticsException {
         if (recordGroup instanceof RDBMSRangeRecordGroup) {
             RDBMSRangeRecordGroup recordRangeGroup = (RDBMSRangeRecordGroup) recordGroup;
+            if (recordRangeGroup.getTargetTables() != null) {
+                return this.getRecordsInTimePartitions(recordRangeGroup);
+            }
+            if (recordRangeGroup.isSeekEnabled()) {
+                return this.getRecordsWithSeek(recordRangeGroup);
+            }
             return this.getRecords(recordRangeGroup.getTenantId(), recordRangeGroup.getTableName(), 
                     recordRangeGroup.getColumns(), recordRangeGroup.getTimeFrom(), 
                     recordRangeGroup.getTimeTo(), recordRangeGroup.getRecordsFrom(), recordRangeGroup.getRecordsCount(),
@@ -384,15 +752,39 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
                                                 int recordsCount, int partitionStart, 
                                                 int partitionEnd) throws AnalyticsException, 
                                                 AnalyticsTableNotAvailableException {
+        return this.getRecords(tenantId, tableName, this.generateTargetTableName(tenantId, tableName), columns, 
+                timeFrom, timeTo, recordsFrom, recordsCount, partitionStart, partitionEnd);
+    }
+    
+    private AnalyticsIterator<Record> getRecordsInTimePartitions(final RDBMSRangeRecordGroup recordGroup) {
+        int recordsCount = recordGroup.getRecordsCount();
+        if (recordsCount == -1) {
+            recordsCount = Integer.MAX_VALUE;
+        }
+        return new RDBMSMultiTableIterator(recordGroup.getTargetTables(), recordGroup.getRecordsFrom(), 
+                recordsCount) {
+            @Override
+            protected AnalyticsIterator<Record> openTable(String targetTableName, int count) 
+                    throws AnalyticsException {
+                return getRecords(recordGroup.getTenantId(), recordGroup.getTableName(), targetTableName, 
+                        recordGroup.getColumns(), recordGroup.getTimeFrom(), recordGroup.getTimeTo(), 0, count, 
+                        recordGroup.getPartitionStart(), recordGroup.getPartitionEnd());
+            }
+        };
+    }
+    
+    private AnalyticsIterator<Record> getRecords(int tenantId, String tableName, String targetTableName, 
+            List<String> columns, long timeFrom, long timeTo, int recordsFrom, int recordsCount, 
+            int partitionStart, int partitionEnd) throws AnalyticsException, AnalyticsTableNotAvailableException {
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         try {
             conn = this.getConnection(false);
             if (!this.rdbmsQueryConfigurationEntry.isForwardOnlyReadEnabled()) {
-                stmt = conn.prepareStatement(this.getRecordRetrievalQuery(tenantId, tableName));
+                stmt = conn.prepareStatement(this.getRecordRetrievalQuery(targetTableName));
             } else {
-                stmt = conn.prepareStatement(this.getRecordRetrievalQuery(tenantId, tableName),
+                stmt = conn.prepareStatement(this.getRecordRetrievalQuery(targetTableName),
                         ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
                 stmt.setFetchSize(this.rdbmsQueryConfigurationEntry.getFetchSize());
             }
@@ -408,6 +800,72 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             stmt.setInt(6, paginationIndices[1]);
             rs = stmt.executeQuery();
             return new RDBMSResultSetIterator(tenantId, tableName, columns, conn, stmt, rs);
+        } catch (SQLException e) {
+            if (conn != null && !this.tableExists(conn, tenantId, tableName, targetTableName)) {
+                RDBMSUtils.cleanupConnection(rs, stmt, conn);
+                this.checkTimePartitionDropped(tenantId, tableName, targetTableName);
+                return new EmptyResultSetAnalyticsIterator();
+            } else {
+                RDBMSUtils.cleanupConnection(rs, stmt, conn);
+                throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
+            }            
+        }
+    }
+    
+    /**
+     * Checks if a missing table is a time partition, which has been dropped by a purge operation after it has
+     * been looked up, and not the table itself, and therefore can be read as empty.
+     */
+    private void checkTimePartitionDropped(int tenantId, String tableName, String targetTableName) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (targetTableName.equals(this.generateTargetTableName(tenantId, tableName)) || 
+                !this.tableExists(tenantId, tableName)) {
+            throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+        }
+    }
+    
+    private AnalyticsIterator<Record> getRecordsWithSeek(RDBMSRangeRecordGroup recordGroup) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
+        int tenantId = recordGroup.getTenantId();
+        String tableName = recordGroup.getTableName();
+        int recordsCount = recordGroup.getRecordsCount();
+        if (recordsCount == -1) {
+            recordsCount = Integer.MAX_VALUE;
+        }
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection(false);
+            String query = this.translateQueryWithTableInfo(
+                    this.getQueryConfiguration().getRecordRetrievalSeekQuery(), tenantId, tableName);
+            if (!this.rdbmsQueryConfigurationEntry.isForwardOnlyReadEnabled()) {
+                stmt = conn.prepareStatement(query);
+            } else {
+                stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                stmt.setFetchSize(this.rdbmsQueryConfigurationEntry.getFetchSize());
+            }
+            stmt.setLong(1, recordGroup.getPartitionStart());
+            stmt.setLong(2, recordGroup.getPartitionEnd());
+            stmt.setLong(3, recordGroup.getTimeFrom());
+            stmt.setLong(4, recordGroup.getTimeTo());
+            stmt.setLong(5, recordGroup.getSeekTimestamp());
+            stmt.setLong(6, recordGroup.getSeekTimestamp());
+            stmt.setString(7, recordGroup.getSeekRecordId());
+            int[] paginationIndices = this.calculateIndicesForPaginationMode(
+                    recordGroup.getRecordsFrom() - recordGroup.getSeekPosition(), recordsCount);
+            stmt.setInt(8, paginationIndices[0]);
+            stmt.setInt(9, paginationIndices[1]);
+            rs = stmt.executeQuery();
+            RDBMSResultSetIterator result = new RDBMSResultSetIterator(tenantId, tableName, 
+                    recordGroup.getColumns(), conn, stmt, rs);
+            long nextPosition = (long) recordGroup.getRecordsFrom() + recordsCount;
+            if (nextPosition < Integer.MAX_VALUE) {
+                result.trackRangeCursor(this.rangeCursors, new RangeCursorKey(this.generateTargetTableName(
+                        tenantId, tableName), recordGroup.getTimeFrom(), recordGroup.getTimeTo(), 
+                        (int) nextPosition), recordsCount);
+            }
+            return result;
         } catch (SQLException e) {
             if (conn != null && !this.tableExists(conn, tenantId, tableName)) {
                 RDBMSUtils.cleanupConnection(rs, stmt, conn);
@@ -419,6 +877,85 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
     
+    private boolean isSeekIndexed(int tenantId, String tableName) throws AnalyticsException {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        Boolean result = this.seekIndexedTables.get(targetTableName);
+        if (result == null) {
+            Connection conn = null;
+            try {
+                conn = this.getConnection();
+                result = this.hasSeekIndex(conn, targetTableName);
+            } catch (SQLException e) {
+                throw new AnalyticsException("Error in checking the seek index: " + e.getMessage(), e);
+            } finally {
+                RDBMSUtils.cleanupConnection(null, null, conn);
+            }
+            if (!result) {
+                log.warn("The table " + this.printableTableName(tenantId, tableName) + " does not have a " +
+                        "(timestamp, record_id) index, its paged reads will use offset paging till the table is " +
+                        "created again, which adds the index");
+            }
+            this.seekIndexedTables.put(targetTableName, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks the database metadata for an index on the given table, which starts with the timestamp and 
+     * the record id columns, so the seek query can read a page without sorting the rest of the range.
+     */
+    private boolean hasSeekIndex(Connection conn, String targetTableName) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        String name = targetTableName;
+        if (metaData.storesUpperCaseIdentifiers()) {
+            name = name.toUpperCase();
+        } else if (metaData.storesLowerCaseIdentifiers()) {
+            name = name.toLowerCase();
+        }
+        Map<String, Map<Short, String>> indexColumns = new HashMap<>();
+        ResultSet rs = null;
+        try {
+            rs = metaData.getIndexInfo(conn.getCatalog(), null, name, false, true);
+            String indexName, columnName;
+            Map<Short, String> columns;
+            while (rs.next()) {
+                indexName = rs.getString("INDEX_NAME");
+                columnName = rs.getString("COLUMN_NAME");
+                if (indexName == null || columnName == null) {
+                    continue;
+                }
+                columns = indexColumns.get(indexName);
+                if (columns == null) {
+                    columns = new TreeMap<>();
+                    indexColumns.put(indexName, columns);
+                }
+                columns.put(rs.getShort("ORDINAL_POSITION"), columnName);
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, null, null);
+        }
+        for (Map<Short, String> columns : indexColumns.values()) {
+            Iterator<String> itr = columns.values().iterator();
+            if (itr.hasNext() && "timestamp".equalsIgnoreCase(itr.next()) && itr.hasNext() && 
+                    "record_id".equalsIgnoreCase(itr.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void removeRangeCursors(int tenantId, String tableName) {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        synchronized (this.rangeCursors) {
+            Iterator<RangeCursorKey> itr = this.rangeCursors.keySet().iterator();
+            while (itr.hasNext()) {
+                if (itr.next().getTableName().equals(targetTableName)) {
+                    itr.remove();
+                }
+            }
+        }
+    }
+    
     private int[] calculateIndicesForPaginationMode(int recordsFrom, int recordsCount) {
         switch (this.rdbmsQueryConfigurationEntry.getPaginationMode()) {
         case MODE1:
@@ -451,7 +988,39 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             }
             return new RDBMSRecordIDListIterator(this, rdbmsIDsRecordGroups);
         }
-        String recordGetSQL = this.generateGetRecordRetrievalWithIdQuery(tenantId, tableName, ids.size());
+        if (this.isTimePartitioned()) {
+            return this.getRecordsInTimePartitions(tenantId, tableName, columns, ids);
+        }
+        return this.getRecords(tenantId, tableName, this.generateTargetTableName(tenantId, tableName), columns, ids);
+    }
+    
+    private AnalyticsIterator<Record> getRecordsInTimePartitions(final int tenantId, final String tableName, 
+            final List<String> columns, final List<String> ids) throws AnalyticsException {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        List<String> targetTables;
+        Connection conn = null;
+        try {
+            conn = this.getConnection();
+            /* only the time partitions the records may be in are read */
+            targetTables = this.lookupCandidateTableNames(conn, targetTableName, 
+                    this.lookupTimePartitionList(conn, targetTableName, true), ids);
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in looking up record time partitions: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+        return new RDBMSMultiTableIterator(targetTables, 0, Integer.MAX_VALUE) {
+            @Override
+            protected AnalyticsIterator<Record> openTable(String targetTableName, int count) 
+                    throws AnalyticsException {
+                return getRecords(tenantId, tableName, targetTableName, columns, ids);
+            }
+        };
+    }
+    
+    private AnalyticsIterator<Record> getRecords(int tenantId, String tableName, String targetTableName, 
+            List<String> columns, List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        String recordGetSQL = this.generateGetRecordRetrievalWithIdQuery(targetTableName, ids.size());
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
@@ -464,9 +1033,10 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             rs = stmt.executeQuery();
             return new RDBMSResultSetIterator(tenantId, tableName, columns, conn, stmt, rs);
         } catch (SQLException e) {
-            if (conn != null && !this.tableExists(conn, tenantId, tableName)) {
+            if (conn != null && !this.tableExists(conn, tenantId, tableName, targetTableName)) {
                 RDBMSUtils.cleanupConnection(rs, stmt, conn);
-                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+                this.checkTimePartitionDropped(tenantId, tableName, targetTableName);
+                return new EmptyResultSetAnalyticsIterator();
             } else {
                 RDBMSUtils.cleanupConnection(rs, stmt, conn);
                 throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
@@ -477,24 +1047,72 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
     @Override
     public void delete(int tenantId, String tableName, long timeFrom, long timeTo)
             throws AnalyticsException, AnalyticsTableNotAvailableException {
-        String sql = this.getRecordDeletionQuery(tenantId, tableName);
         Connection conn = null;
-        PreparedStatement stmt = null;
         try {
             conn = this.getConnection();
+            if (this.isTimePartitioned()) {
+                this.deleteTimePartitioned(conn, tenantId, tableName, timeFrom, timeTo);
+            } else {
+                this.delete(conn, tenantId, tableName, this.generateTargetTableName(tenantId, tableName), 
+                        timeFrom, timeTo);
+            }
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    private void delete(Connection conn, int tenantId, String tableName, String targetTableName, long timeFrom, 
+            long timeTo) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        String sql = this.getRecordDeletionQuery(targetTableName);
+        PreparedStatement stmt = null;
+        try {
             stmt = conn.prepareStatement(sql);
             stmt.setLong(1, timeFrom);
             stmt.setLong(2, timeTo);
             stmt.executeUpdate();
         } catch (SQLException e) {
             RDBMSUtils.rollbackConnection(conn);
-            if (conn != null && !this.tableExists(conn, tenantId, tableName)) {
+            if (!this.tableExists(conn, tenantId, tableName, targetTableName)) {
                 throw new AnalyticsTableNotAvailableException(tenantId, tableName);
             } else {
                 throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
             }
         } finally {
-            RDBMSUtils.cleanupConnection(null, stmt, conn);
+            RDBMSUtils.cleanupConnection(null, stmt, null);
+        }
+    }
+    
+    private void deleteTimePartitioned(Connection conn, int tenantId, String tableName, long timeFrom, 
+            long timeTo) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        /* the non-partitioned table may have data written before time partitioning was enabled */
+        this.delete(conn, tenantId, tableName, targetTableName, timeFrom, timeTo);
+        if (timeFrom >= timeTo) {
+            return;
+        }
+        TimePartitionList partitionList = this.lookupTimePartitionList(conn, targetTableName, true);
+        NavigableSet<Long> partitions = partitionList.getPartitions();
+        List<Long> rangePartitions = new ArrayList<>(partitions.subSet(this.toTimePartition(timeFrom), true, 
+                this.toTimePartition(timeTo - 1), true));
+        for (long partition : rangePartitions) {
+            if (this.getTimePartitionStart(partition) >= timeFrom && this.getTimePartitionEnd(partition) <= timeTo) {
+                /* the whole partition is in the range, so it is dropped, rather than deleting its records */
+                this.dropTimePartition(conn, targetTableName, partition, partitions);
+                if (partitionList.isRecordIdIndexed()) {
+                    this.delete(conn, tenantId, tableName, this.generateRecordIdIndexTableName(targetTableName), 
+                            partition, partition + 1);
+                }
+            } else {
+                try {
+                    this.delete(conn, tenantId, tableName, this.generateTimePartitionTableName(targetTableName, 
+                            partition), timeFrom, timeTo);
+                } catch (AnalyticsTableNotAvailableException e) {
+                    this.checkTimePartitionDropped(tenantId, tableName, 
+                            this.generateTimePartitionTableName(targetTableName, partition));
+                }
+            }
         }
     }
         
@@ -508,8 +1126,22 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         List<List<String>> idsSubLists = Lists.partition(ids, this.rdbmsQueryConfigurationEntry.getRecordBatchSize());
         try {
             conn = this.getConnection();
-            for (List<String> idSubList : idsSubLists) {
-                this.delete(conn, tenantId, tableName, idSubList);
+            String targetTableName = this.generateTargetTableName(tenantId, tableName);
+            if (this.isTimePartitioned()) {
+                if (!this.tableExists(conn, tenantId, tableName)) {
+                    throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+                }
+                TimePartitionList partitionList = this.lookupTimePartitionList(conn, targetTableName, true);
+                for (List<String> idSubList : idsSubLists) {
+                    for (String partitionTableName : this.lookupCandidateTableNames(conn, targetTableName, 
+                            partitionList, idSubList)) {
+                        this.deleteInTimePartition(conn, tenantId, tableName, partitionTableName, idSubList);
+                    }
+                }
+            } else {
+                for (List<String> idSubList : idsSubLists) {
+                    this.delete(conn, tenantId, tableName, targetTableName, idSubList);
+                }
             }
         } catch (SQLException e) {
             throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
@@ -523,9 +1155,18 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         /* do nothing */
     }
 
-    private void delete(Connection conn, int tenantId, String tableName, 
+    private void deleteInTimePartition(Connection conn, int tenantId, String tableName, String partitionTableName, 
             List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
-        String sql = this.generateRecordDeletionRecordsWithIdsQuery(tenantId, tableName, ids.size());
+        try {
+            this.delete(conn, tenantId, tableName, partitionTableName, ids);
+        } catch (AnalyticsTableNotAvailableException e) {
+            this.checkTimePartitionDropped(tenantId, tableName, partitionTableName);
+        }
+    }
+
+    private void delete(Connection conn, int tenantId, String tableName, String targetTableName,
+            List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        String sql = this.generateRecordDeletionRecordsWithIdsQuery(targetTableName, ids.size());
         PreparedStatement stmt = null;
         try {
             stmt = conn.prepareStatement(sql);
@@ -534,7 +1175,7 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             }
             stmt.executeUpdate();
         } catch (SQLException e) {
-            if (!this.tableExists(conn, tenantId, tableName)) {
+            if (!this.tableExists(conn, tenantId, tableName, targetTableName)) {
                 throw new AnalyticsTableNotAvailableException(tenantId, tableName);
             } else {
                 throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
@@ -549,31 +1190,35 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
     }
     
     private String translateQueryWithTableInfo(String query, int tenantId, String tableName) {
+        return this.translateQueryWithTargetTable(query, this.generateTargetTableName(tenantId, tableName));
+    }
+    
+    private String translateQueryWithTargetTable(String query, String targetTableName) {
         if (query == null) {
             return null;
         }
-        return query.replace(TABLE_NAME_PLACEHOLDER, this.generateTargetTableName(tenantId, tableName));
+        return query.replace(TABLE_NAME_PLACEHOLDER, targetTableName);
     }
     
     private String translateQueryWithRecordIdsInfo(String query, int recordCount) {
         return query.replace(RECORD_IDS_PLACEHOLDER, this.getDynamicSQLParams(recordCount));
     }
     
-    private String getRecordRetrievalQuery(int tenantId, String tableName) {
+    private String getRecordRetrievalQuery(String targetTableName) {
         String query = this.getQueryConfiguration().getRecordRetrievalQuery();
-        return this.translateQueryWithTableInfo(query, tenantId, tableName);
+        return this.translateQueryWithTargetTable(query, targetTableName);
     }
     
-    private String generateGetRecordRetrievalWithIdQuery(int tenantId, String tableName, int recordCount) {
+    private String generateGetRecordRetrievalWithIdQuery(String targetTableName, int recordCount) {
         String query = this.getQueryConfiguration().getRecordRetrievalWithIdsQuery();
-        query = this.translateQueryWithTableInfo(query, tenantId, tableName);
+        query = this.translateQueryWithTargetTable(query, targetTableName);
         query = this.translateQueryWithRecordIdsInfo(query, recordCount);
         return query;
     }
     
-    private String generateRecordDeletionRecordsWithIdsQuery(int tenantId, String tableName, int recordCount) {
+    private String generateRecordDeletionRecordsWithIdsQuery(String targetTableName, int recordCount) {
         String query = this.getQueryConfiguration().getRecordDeletionWithIdsQuery();
-        query = this.translateQueryWithTableInfo(query, tenantId, tableName);
+        query = this.translateQueryWithTargetTable(query, targetTableName);
         query = this.translateQueryWithRecordIdsInfo(query, recordCount);
         return query;
     }
@@ -590,9 +1235,9 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         return builder.toString();
     }
     
-    private String getRecordDeletionQuery(int tenantId, String tableName) {
+    private String getRecordDeletionQuery(String targetTableName) {
         String query = this.getQueryConfiguration().getRecordDeletionQuery();
-        return this.translateQueryWithTableInfo(query, tenantId, tableName);
+        return this.translateQueryWithTargetTable(query, targetTableName);
     }
     
     @Override
@@ -600,9 +1245,22 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         Connection conn = null;
         try {
             conn = this.getConnection();
+            if (this.isTimePartitioned()) {
+                String targetTableName = this.generateTargetTableName(tenantId, tableName);
+                NavigableSet<Long> partitions = this.lookupTimePartitions(conn, targetTableName, true);
+                for (long partition : new ArrayList<>(partitions)) {
+                    this.dropTimePartition(conn, targetTableName, partition, partitions);
+                }
+                this.dropRecordIdIndex(conn, targetTableName);
+                this.timePartitions.remove(targetTableName);
+            }
             Map<String, Object[]> queries = new HashMap<String, Object[]>();
-            String[] tableInitQueries = this.getRecordTableDeleteQueries(tenantId, tableName);
+            String[] tableInitQueries = this.getRecordTableDeleteQueries(this.generateTargetTableName(tenantId, 
+                    tableName));
             queries.putAll(RDBMSUtils.generateNoParamQueryMap(tableInitQueries));
+            this.knownTables.remove(this.generateTargetTableName(tenantId, tableName));
+            this.seekIndexedTables.remove(this.generateTargetTableName(tenantId, tableName));
+            this.removeRangeCursors(tenantId, tableName);
             RDBMSUtils.executeAllUpdateQueries(conn, queries);
         } catch (SQLException | AnalyticsException e) {
             if (conn == null || this.tableExists(conn, tenantId, tableName)) {
@@ -618,28 +1276,60 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         Connection conn = null;
         try {
             conn = this.getConnection();
-            String[] tableInitQueries = this.getRecordTableInitQueries(tenantId, tableName);
+            boolean newTable = !this.tableExists(conn, tenantId, tableName);
+            String[] tableInitQueries = this.getRecordTableInitQueries(this.generateTargetTableName(tenantId, 
+                    tableName));
             Map<String, Object[]> queries = RDBMSUtils.generateNoParamQueryMap(tableInitQueries);
+            /* each init query is run on its own, so for an existing table, the indices added to the init queries
+             * after the table was created are added here, and the failures of the rest are ignored below */
             RDBMSUtils.executeAllUpdateQueries(conn, queries);
+            this.knownTables.add(this.generateTargetTableName(tenantId, tableName));
+            if (newTable && this.isTimePartitioned()) {
+                this.createRecordIdIndex(conn, this.generateTargetTableName(tenantId, tableName));
+            }
         } catch (SQLException | AnalyticsException e) {
             if (conn == null || !this.tableExists(conn, tenantId, tableName)) {
                 throw new AnalyticsException("Error in creating table: " + e.getMessage(), e);
             }
         } finally {
+            this.seekIndexedTables.remove(this.generateTargetTableName(tenantId, tableName));
             RDBMSUtils.cleanupConnection(null, null, conn);
         }
     }
     
-    private String getRecordTableCheckQuery(int tenantId, String tableName) {
+    private String getRecordTableCheckQuery(String targetTableName) {
         String query = this.getQueryConfiguration().getRecordTableCheckQuery();
-        return this.translateQueryWithTableInfo(query, tenantId, tableName);
+        return this.translateQueryWithTargetTable(query, targetTableName);
     }
     
     private boolean tableExists(Connection conn, int tenantId, String tableName) {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        if (this.targetTableExists(conn, targetTableName)) {
+            this.knownTables.add(targetTableName);
+            return true;
+        } else {
+            this.knownTables.remove(targetTableName);
+            return false;
+        }
+    }
+    
+    /**
+     * Checks if the given physical table of a table exists, which is either the table itself, or one of its 
+     * time partitions.
+     */
+    private boolean tableExists(Connection conn, int tenantId, String tableName, String targetTableName) {
+        if (targetTableName.equals(this.generateTargetTableName(tenantId, tableName))) {
+            return this.tableExists(conn, tenantId, tableName);
+        } else {
+            return this.targetTableExists(conn, targetTableName);
+        }
+    }
+    
+    private boolean targetTableExists(Connection conn, String targetTableName) {
         PreparedStatement stmt = null;
         ResultSet rs = null;
         try {
-            String query = this.getRecordTableCheckQuery(tenantId, tableName);
+            String query = this.getRecordTableCheckQuery(targetTableName);
             stmt = conn.prepareStatement(query);
             rs = stmt.executeQuery();
             return true;
@@ -651,9 +1341,9 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
 
-    private String getRecordCountQuery(int tenantId, String tableName) {
+    private String getRecordCountQuery(String targetTableName) {
         String query = this.getQueryConfiguration().getRecordCountQuery();
-        return this.translateQueryWithTableInfo(query, tenantId, tableName);
+        return this.translateQueryWithTargetTable(query, targetTableName);
     }
     
     private String printableTableName(int tenantId, String tableName) {
@@ -670,39 +1360,302 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         return this.rdbmsQueryConfigurationEntry.isRecordCountSupported();
     }
 
+    @Override
+    public boolean isRangeDeleteSupported() {
+        /* time range deletes are done with a single DELETE statement on the timestamp range */
+        return true;
+    }
+
     @Override
     public long getRecordCount(int tenantId, String tableName, long timeFrom, long timeTo)
             throws AnalyticsException, AnalyticsTableNotAvailableException {
         if (this.rdbmsQueryConfigurationEntry.isRecordCountSupported()) {
-            String recordCountQuery = this.getRecordCountQuery(tenantId, tableName);
+            String targetTableName = this.generateTargetTableName(tenantId, tableName);
             Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
             try {
                 conn = this.getConnection();
-                stmt = conn.prepareStatement(recordCountQuery);
-                stmt.setLong(1, timeFrom);
-                stmt.setLong(2, timeTo);
-                rs = stmt.executeQuery();
-                if (rs.next()) {
-                    return rs.getLong(1);
-                } else {
-                    throw new AnalyticsException("Record count not available for " +
-                            printableTableName(tenantId, tableName));
+                if (!this.isTimePartitioned()) {
+                    return this.getRecordCount(conn, tenantId, tableName, targetTableName, timeFrom, timeTo);
                 }
-            } catch (SQLException e) {
-                if (conn != null && !this.tableExists(conn, tenantId, tableName)) {
+                if (!this.tableExists(conn, tenantId, tableName)) {
                     throw new AnalyticsTableNotAvailableException(tenantId, tableName);
                 }
+                long count = 0;
+                for (String partitionTableName : this.generateTimePartitionTableNames(targetTableName, 
+                        this.lookupTimePartitions(conn, targetTableName, true), timeFrom, timeTo)) {
+                    try {
+                        count += this.getRecordCount(conn, tenantId, tableName, partitionTableName, 
+                                timeFrom, timeTo);
+                    } catch (AnalyticsTableNotAvailableException e) {
+                        this.checkTimePartitionDropped(tenantId, tableName, partitionTableName);
+                    }
+                }
+                return count;
+            } catch (SQLException e) {
                 throw new AnalyticsException("Error in retrieving record count: " + e.getMessage(), e);
             } finally {
-                RDBMSUtils.cleanupConnection(rs, stmt, conn);
+                RDBMSUtils.cleanupConnection(null, null, conn);
             }
         } else {
             return -1L;
         }
     }
     
+    private long getRecordCount(Connection conn, int tenantId, String tableName, String targetTableName, 
+            long timeFrom, long timeTo) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.prepareStatement(this.getRecordCountQuery(targetTableName));
+            stmt.setLong(1, timeFrom);
+            stmt.setLong(2, timeTo);
+            rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getLong(1);
+            } else {
+                throw new AnalyticsException("Record count not available for " +
+                        printableTableName(tenantId, tableName));
+            }
+        } catch (SQLException e) {
+            if (!this.tableExists(conn, tenantId, tableName, targetTableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            }
+            throw new AnalyticsException("Error in retrieving record count: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, null);
+        }
+    }
+    
+    private long toTimePartition(long timestamp) {
+        long partition = timestamp / this.timePartitionInterval;
+        if (timestamp < 0 && partition * this.timePartitionInterval != timestamp) {
+            partition--;
+        }
+        return partition;
+    }
+    
+    private long getTimePartitionStart(long partition) {
+        return partition * this.timePartitionInterval;
+    }
+    
+    private long getTimePartitionEnd(long partition) {
+        long start = this.getTimePartitionStart(partition);
+        if (start > Long.MAX_VALUE - this.timePartitionInterval) {
+            return Long.MAX_VALUE;
+        }
+        return start + this.timePartitionInterval;
+    }
+    
+    private String generateTimePartitionTableName(String targetTableName, long partition) {
+        if (partition < 0) {
+            return targetTableName + "_N" + Math.abs(partition);
+        } else {
+            return targetTableName + "_P" + partition;
+        }
+    }
+    
+    /**
+     * Returns the physical tables to be looked at for the records in the given time range, which are the table 
+     * itself, which may have records written before time partitioning was enabled, followed by the overlapping
+     * time partitions in time order.
+     */
+    private List<String> generateTimePartitionTableNames(String targetTableName, NavigableSet<Long> partitions, 
+            long timeFrom, long timeTo) {
+        List<String> result = new ArrayList<>();
+        result.add(targetTableName);
+        if (timeFrom >= timeTo) {
+            return result;
+        }
+        for (long partition : partitions.subSet(this.toTimePartition(timeFrom), true, 
+                this.toTimePartition(timeTo - 1), true)) {
+            result.add(this.generateTimePartitionTableName(targetTableName, partition));
+        }
+        return result;
+    }
+    
+    private List<String> lookupTimePartitionTables(int tenantId, String tableName, long timeFrom, long timeTo) 
+            throws AnalyticsException {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        Connection conn = null;
+        try {
+            conn = this.getConnection();
+            return this.generateTimePartitionTableNames(targetTableName, 
+                    this.lookupTimePartitions(conn, targetTableName, true), timeFrom, timeTo);
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in looking up time partitions: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    /**
+     * Returns the time partitions of a table. The reads and deletes always refresh these from the database, 
+     * where the writes use the cached ones till they expire, so a partition created by another node just before 
+     * may be missed in removing the earlier copies of an updated record.
+     */
+    private NavigableSet<Long> lookupTimePartitions(Connection conn, String targetTableName, boolean refresh) 
+            throws AnalyticsException {
+        return this.lookupTimePartitionList(conn, targetTableName, refresh).getPartitions();
+    }
+    
+    private TimePartitionList lookupTimePartitionList(Connection conn, String targetTableName, boolean refresh) 
+            throws AnalyticsException {
+        TimePartitionList partitionList = this.timePartitions.get(targetTableName);
+        if (partitionList == null || refresh || partitionList.isExpired()) {
+            try {
+                partitionList = this.loadTimePartitions(conn, targetTableName);
+            } catch (SQLException e) {
+                throw new AnalyticsException("Error in loading time partitions: " + e.getMessage(), e);
+            }
+            this.timePartitions.put(targetTableName, partitionList);
+        }
+        return partitionList;
+    }
+    
+    /**
+     * Loads the time partitions of a table from the database metadata, together with whether the table has
+     * a record id index, which shows up in the same table listing.
+     */
+    private TimePartitionList loadTimePartitions(Connection conn, String targetTableName) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        String escape = metaData.getSearchStringEscape();
+        String pattern = targetTableName.replace("_", escape + "_") + escape + "_%";
+        boolean caseInsensitive = true;
+        if (metaData.storesUpperCaseIdentifiers()) {
+            pattern = pattern.toUpperCase();
+        } else if (metaData.storesLowerCaseIdentifiers()) {
+            pattern = pattern.toLowerCase();
+        } else {
+            caseInsensitive = false;
+        }
+        NavigableSet<Long> result = new ConcurrentSkipListSet<>();
+        String indexTableName = this.generateRecordIdIndexTableName(targetTableName);
+        boolean recordIdIndexed = false;
+        ResultSet rs = null;
+        try {
+            rs = metaData.getTables(conn.getCatalog(), null, pattern, null);
+            String name;
+            Long partition;
+            while (rs.next()) {
+                name = rs.getString("TABLE_NAME");
+                if (name != null && (caseInsensitive ? name.equalsIgnoreCase(indexTableName) : 
+                        name.equals(indexTableName))) {
+                    recordIdIndexed = true;
+                    continue;
+                }
+                partition = this.parseTimePartition(targetTableName, name, caseInsensitive);
+                if (partition != null) {
+                    result.add(partition);
+                }
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, null, null);
+        }
+        return new TimePartitionList(result, recordIdIndexed);
+    }
+    
+    private Long parseTimePartition(String targetTableName, String name, boolean caseInsensitive) {
+        int prefixLength = targetTableName.length();
+        if (name == null || name.length() < prefixLength + 3 || 
+                !name.regionMatches(caseInsensitive, 0, targetTableName, 0, prefixLength) || 
+                name.charAt(prefixLength) != '_') {
+            return null;
+        }
+        char sign = Character.toUpperCase(name.charAt(prefixLength + 1));
+        String number = name.substring(prefixLength + 2);
+        for (int i = 0; i < number.length(); i++) {
+            if (!Character.isDigit(number.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            if (sign == 'P') {
+                return Long.parseLong(number);
+            } else if (sign == 'N') {
+                return -Long.parseLong(number);
+            } else {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private void createTimePartition(String targetTableName, long partition, NavigableSet<Long> partitions) 
+            throws AnalyticsException {
+        String partitionTableName = this.generateTimePartitionTableName(targetTableName, partition);
+        Connection conn = null;
+        try {
+            conn = this.getConnection();
+            RDBMSUtils.executeAllUpdateQueries(conn, RDBMSUtils.generateNoParamQueryMap(
+                    this.getRecordTableInitQueries(partitionTableName)));
+        } catch (SQLException | AnalyticsException e) {
+            /* the partition may have been created by another node in the meantime */
+            if (conn == null || !this.targetTableExists(conn, partitionTableName)) {
+                throw new AnalyticsException("Error in creating time partition: " + e.getMessage(), e);
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+        partitions.add(partition);
+    }
+    
+    private void dropTimePartition(Connection conn, String targetTableName, long partition, 
+            NavigableSet<Long> partitions) throws AnalyticsException {
+        String partitionTableName = this.generateTimePartitionTableName(targetTableName, partition);
+        try {
+            RDBMSUtils.executeAllUpdateQueries(conn, RDBMSUtils.generateNoParamQueryMap(
+                    this.getRecordTableDeleteQueries(partitionTableName)));
+        } catch (AnalyticsException e) {
+            if (this.targetTableExists(conn, partitionTableName)) {
+                throw new AnalyticsException("Error in dropping time partition: " + e.getMessage(), e);
+            }
+        }
+        partitions.remove(partition);
+        if (log.isDebugEnabled()) {
+            log.debug("Dropped time partition: " + partitionTableName);
+        }
+    }
+    
+    private String generateRecordIdIndexTableName(String targetTableName) {
+        return targetTableName + RECORD_ID_INDEX_SUFFIX;
+    }
+    
+    /**
+     * Creates the record id index of a table, which maps each record id to the time partition the record was 
+     * last written to, so the earlier copies of a record are looked up only in that partition. The index is 
+     * only created with a new table, since the records of existing partitions would not be in it. It is a 
+     * record table, where the timestamp of an entry is the time partition.
+     */
+    private void createRecordIdIndex(Connection conn, String targetTableName) {
+        String indexTableName = this.generateRecordIdIndexTableName(targetTableName);
+        try {
+            RDBMSUtils.executeAllUpdateQueries(conn, RDBMSUtils.generateNoParamQueryMap(
+                    this.getRecordTableInitQueries(indexTableName)));
+        } catch (AnalyticsException e) {
+            /* without the index, the records are looked up in all the time partitions */
+            if (!this.targetTableExists(conn, indexTableName)) {
+                log.warn("Error in creating record id index '" + indexTableName + "': " + e.getMessage());
+            }
+        }
+        this.timePartitions.remove(targetTableName);
+    }
+    
+    private void dropRecordIdIndex(Connection conn, String targetTableName) throws AnalyticsException {
+        String indexTableName = this.generateRecordIdIndexTableName(targetTableName);
+        if (!this.targetTableExists(conn, indexTableName)) {
+            return;
+        }
+        try {
+            RDBMSUtils.executeAllUpdateQueries(conn, RDBMSUtils.generateNoParamQueryMap(
+                    this.getRecordTableDeleteQueries(indexTableName)));
+        } catch (AnalyticsException e) {
+            if (this.targetTableExists(conn, indexTableName)) {
+                throw new AnalyticsException("Error in dropping record id index: " + e.getMessage(), e);
+            }
+        }
+    }
+    
     /**
      * This class represents the RDBMS result set iterator, which will stream the result records out.
      */
@@ -724,6 +1677,16 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         
         private boolean prefetched;
         
+        private Map<RangeCursorKey, RangeCursor> rangeCursors;
+        
+        private RangeCursorKey nextCursorKey;
+        
+        private int pageSize;
+        
+        private int readCount;
+        
+        private Record lastRecord;
+        
         public RDBMSResultSetIterator(int tenantId, String tableName, List<String> columns, 
                 Connection conn, Statement stmt, ResultSet rs) {
             this.tenantId = tenantId;
@@ -734,6 +1697,17 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             this.rs = rs;
         }
         
+        /**
+         * Makes the iterator record the position it ends at, if it reads a full page, which is used by the 
+         * next page read to seek to it.
+         */
+        public void trackRangeCursor(Map<RangeCursorKey, RangeCursor> rangeCursors, RangeCursorKey nextCursorKey,
+                int pageSize) {
+            this.rangeCursors = rangeCursors;
+            this.nextCursorKey = nextCursorKey;
+            this.pageSize = pageSize;
+        }
+        
         @Override
         public boolean hasNext() {
             if (!this.prefetched) {
@@ -760,12 +1734,22 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
                     byte[] bytes = this.rs.getBytes(3);
                     Map<String, Object> values;
                     if (bytes != null) {
-                        values = GenericUtils.decodeRecordValues(bytes, colSet);
+                        values = new LazyRecordValues(bytes, colSet);
                     } else {
                         values = new HashMap<>(0);
                     }
-                    return new Record(this.rs.getString(1), this.tenantId, this.tableName, values, this.rs.getLong(2));                
+                    Record record = new Record(this.rs.getString(1), this.tenantId, this.tableName, values, 
+                            this.rs.getLong(2));
+                    if (this.nextCursorKey != null) {
+                        this.lastRecord = record;
+                        this.readCount++;
+                    }
+                    return record;
                 } else {
+                    if (this.nextCursorKey != null && this.readCount == this.pageSize) {
+                        this.rangeCursors.put(this.nextCursorKey, new RangeCursor(this.lastRecord.getTimestamp(), 
+                                this.lastRecord.getId(), this.nextCursorKey.getPosition()));
+                    }
                     /* end of the result set, time to clean up.. */
                     RDBMSUtils.cleanupConnection(this.rs, this.stmt, this.conn);
                     this.rs = null;
@@ -801,6 +1785,208 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
 
+    /**
+     * This class represents the time partitions of a table, as loaded at a given time.
+     */
+    private static class TimePartitionList {
+        
+        private NavigableSet<Long> partitions;
+        
+        private boolean recordIdIndexed;
+        
+        private long loadTime;
+        
+        public TimePartitionList(NavigableSet<Long> partitions, boolean recordIdIndexed) {
+            this.partitions = partitions;
+            this.recordIdIndexed = recordIdIndexed;
+            this.loadTime = System.currentTimeMillis();
+        }
+        
+        public NavigableSet<Long> getPartitions() {
+            return partitions;
+        }
+        
+        public boolean isRecordIdIndexed() {
+            return recordIdIndexed;
+        }
+        
+        public boolean isExpired() {
+            return System.currentTimeMillis() - this.loadTime > 
+                    RDBMSAnalyticsDSConstants.TIME_PARTITION_LIST_REFRESH_INTERVAL;
+        }
+        
+    }
+    
+    /**
+     * This class reads a set of physical tables one after the other, skipping and limiting the records 
+     * across all of them, as a single range would.
+     */
+    private abstract static class RDBMSMultiTableIterator implements AnalyticsIterator<Record> {
+        
+        private List<String> targetTables;
+        
+        private int index;
+        
+        private AnalyticsIterator<Record> itr;
+        
+        private int skipCount;
+        
+        private int remainingCount;
+        
+        public RDBMSMultiTableIterator(List<String> targetTables, int recordsFrom, int recordsCount) {
+            this.targetTables = targetTables;
+            this.skipCount = recordsFrom;
+            this.remainingCount = recordsCount;
+        }
+        
+        /**
+         * Opens a physical table for reading.
+         * @param targetTableName The physical table name
+         * @param count The maximum number of records needed from the table
+         * @return The iterator for the records of the table
+         * @throws AnalyticsException
+         */
+        protected abstract AnalyticsIterator<Record> openTable(String targetTableName, int count) 
+                throws AnalyticsException;
+        
+        @Override
+        public boolean hasNext() {
+            while (this.remainingCount > 0) {
+                if (this.itr != null) {
+                    while (this.skipCount > 0 && this.itr.hasNext()) {
+                        this.itr.next();
+                        this.skipCount--;
+                    }
+                    if (this.itr.hasNext()) {
+                        return true;
+                    }
+                    this.closeCurrent();
+                }
+                if (this.index >= this.targetTables.size()) {
+                    return false;
+                }
+                long count = (long) this.skipCount + this.remainingCount;
+                try {
+                    this.itr = this.openTable(this.targetTables.get(this.index++), 
+                            count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count);
+                } catch (AnalyticsException e) {
+                    throw new IllegalStateException("Error in traversing time partitions: " + e.getMessage(), e);
+                }
+            }
+            this.closeCurrent();
+            return false;
+        }
+        
+        @Override
+        public Record next() {
+            if (this.hasNext()) {
+                this.remainingCount--;
+                return this.itr.next();
+            } else {
+                return null;
+            }
+        }
+        
+        @Override
+        public void remove() {
+            /* this is a read-only iterator, nothing will be removed */
+        }
+        
+        private void closeCurrent() {
+            if (this.itr != null) {
+                try {
+                    this.itr.close();
+                } catch (IOException ignore) {
+                    /* ignore */
+                }
+                this.itr = null;
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            this.closeCurrent();
+        }
+        
+    }
+
+    /**
+     * This class represents the key of a range read cursor, which is the range and the position in it.
+     */
+    private static class RangeCursorKey {
+        
+        private String tableName;
+        
+        private long timeFrom;
+        
+        private long timeTo;
+        
+        private int position;
+        
+        public RangeCursorKey(String tableName, long timeFrom, long timeTo, int position) {
+            this.tableName = tableName;
+            this.timeFrom = timeFrom;
+            this.timeTo = timeTo;
+            this.position = position;
+        }
+        
+        public String getTableName() {
+            return tableName;
+        }
+        
+        public int getPosition() {
+            return position;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.tableName, this.timeFrom, this.timeTo, this.position);
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RangeCursorKey)) {
+                return false;
+            }
+            RangeCursorKey rhs = (RangeCursorKey) obj;
+            return this.tableName.equals(rhs.tableName) && this.timeFrom == rhs.timeFrom && 
+                    this.timeTo == rhs.timeTo && this.position == rhs.position;
+        }
+        
+    }
+    
+    /**
+     * This class represents a range read cursor, which is the (timestamp, record id) key of the last record read
+     * before a position in the range.
+     */
+    private static class RangeCursor {
+        
+        private long timestamp;
+        
+        private String recordId;
+        
+        private int position;
+        
+        public RangeCursor(long timestamp, String recordId, int position) {
+            this.timestamp = timestamp;
+            this.recordId = recordId;
+            this.position = position;
+        }
+        
+        public long getTimestamp() {
+            return timestamp;
+        }
+        
+        public String getRecordId() {
+            return recordId;
+        }
+        
+        public int getPosition() {
+            return position;
+        }
+        
+    }
+
     public static class EmptyResultSetAnalyticsIterator implements AnalyticsIterator<Record> {
 
         @Override
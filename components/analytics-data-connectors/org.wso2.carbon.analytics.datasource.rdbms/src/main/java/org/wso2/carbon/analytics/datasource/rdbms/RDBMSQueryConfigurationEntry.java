@@ -53,6 +53,8 @@ public class RDBMSQueryConfigurationEntry {
     
     private String recordRetrievalQuery;
     
+    private String recordRetrievalSeekQuery;
+    
     private String recordDeletionQuery;
     
     private String recordRetrievalWithIdsQuery;
@@ -169,6 +171,14 @@ public class RDBMSQueryConfigurationEntry {
         this.recordRetrievalQuery = recordRetrievalQuery;
     }
     
+    public String getRecordRetrievalSeekQuery() {
+        return recordRetrievalSeekQuery;
+    }
+
+    public void setRecordRetrievalSeekQuery(String recordRetrievalSeekQuery) {
+        this.recordRetrievalSeekQuery = recordRetrievalSeekQuery;
+    }
+
     public String getRecordDeletionQuery() {
         return recordDeletionQuery;
     }
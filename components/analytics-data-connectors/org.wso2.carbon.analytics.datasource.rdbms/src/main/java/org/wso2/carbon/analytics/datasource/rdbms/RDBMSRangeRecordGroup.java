@@ -48,6 +48,14 @@ public class RDBMSRangeRecordGroup implements RecordGroup {
     
     private int partitionEnd;
     
+    private long seekTimestamp;
+    
+    private String seekRecordId;
+    
+    private int seekPosition;
+    
+    private List<String> targetTables;
+    
     public RDBMSRangeRecordGroup() { }
     
     public RDBMSRangeRecordGroup(int tenantId, String tableName, List<String> columns, long timeFrom, long timeTo, 
@@ -63,6 +71,33 @@ public class RDBMSRangeRecordGroup implements RecordGroup {
         this.partitionEnd = partitionEnd;
     }
     
+    /**
+     * Creates a record group, which reads the records in (timestamp, record id) order, starting after the given
+     * seek key, rather than skipping the records from the start of the range.
+     * @param seekTimestamp The timestamp of the seek key
+     * @param seekRecordId The record id of the seek key
+     * @param seekPosition The position in the range, the record right after the seek key is at
+     */
+    public RDBMSRangeRecordGroup(int tenantId, String tableName, List<String> columns, long timeFrom, long timeTo, 
+            int recordsFrom, int recordsCount, int partitionStart, int partitionEnd, long seekTimestamp,
+            String seekRecordId, int seekPosition) {
+        this(tenantId, tableName, columns, timeFrom, timeTo, recordsFrom, recordsCount, partitionStart, partitionEnd);
+        this.seekTimestamp = seekTimestamp;
+        this.seekRecordId = seekRecordId;
+        this.seekPosition = seekPosition;
+    }
+    
+    /**
+     * Creates a record group, which reads the records from the given physical tables one after the other,
+     * i.e. the time partitions of the table which overlap with the time range.
+     * @param targetTables The physical tables to be read, in order
+     */
+    public RDBMSRangeRecordGroup(int tenantId, String tableName, List<String> columns, long timeFrom, long timeTo, 
+            int recordsFrom, int recordsCount, int partitionStart, int partitionEnd, List<String> targetTables) {
+        this(tenantId, tableName, columns, timeFrom, timeTo, recordsFrom, recordsCount, partitionStart, partitionEnd);
+        this.targetTables = targetTables;
+    }
+    
     public int getTenantId() {
         return tenantId;
     }
@@ -98,6 +133,26 @@ public class RDBMSRangeRecordGroup implements RecordGroup {
     public int getPartitionEnd() {
         return partitionEnd;
     }
+    
+    public long getSeekTimestamp() {
+        return seekTimestamp;
+    }
+    
+    public String getSeekRecordId() {
+        return seekRecordId;
+    }
+    
+    public int getSeekPosition() {
+        return seekPosition;
+    }
+    
+    public boolean isSeekEnabled() {
+        return seekRecordId != null;
+    }
+    
+    public List<String> getTargetTables() {
+        return targetTables;
+    }
 
     @Override
     public String[] getLocations() throws AnalyticsException {
@@ -18,16 +18,26 @@
  */
 package org.wso2.carbon.analytics.datasource.rdbms.h2;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.naming.NamingException;
 
+import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.datasource.commons.Record;
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStoreTest;
-import org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
 import org.wso2.carbon.analytics.datasource.rdbms.RDBMSAnalyticsRecordStore;
 
@@ -35,16 +45,99 @@ import org.wso2.carbon.analytics.datasource.rdbms.RDBMSAnalyticsRecordStore;
  * H2 implementation of analytics record store tests.
  */
 public class H2FileDBAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
+    
+    private RDBMSAnalyticsRecordStore ars;
                 
     @BeforeClass
     public void setup() throws NamingException, AnalyticsException {
         GenericUtils.clearGlobalCustomDataSourceRepo();
         System.setProperty(GenericUtils.WSO2_ANALYTICS_CONF_DIRECTORY_SYS_PROP, "src/test/resources/conf1");
-        AnalyticsRecordStore ars = new RDBMSAnalyticsRecordStore();
+        this.ars = new RDBMSAnalyticsRecordStore();
         Map<String, String> props = new HashMap<String, String>();
         props.put("datasource", "WSO2_ANALYTICS_EVENT_STORE_DB");
-        ars.init(props);
-        this.init("H2FileDBAnalyticsDataSource", ars);
+        this.ars.init(props);
+        this.init("H2FileDBAnalyticsDataSource", this.ars);
+    }
+    
+    private List<Record> readPages(String tableName, int pageSize) throws AnalyticsException {
+        List<Record> result = new ArrayList<>();
+        List<Record> page;
+        int from = 0;
+        do {
+            page = GenericUtils.listRecords(this.ars, this.ars.get(7, tableName, 1, null, Long.MIN_VALUE, 
+                    Long.MAX_VALUE, from, pageSize));
+            result.addAll(page);
+            from += pageSize;
+        } while (page.size() == pageSize);
+        return result;
+    }
+    
+    private void checkPages(List<Record> records, int count) {
+        Assert.assertEquals(records.size(), count);
+        Set<String> ids = new HashSet<>();
+        for (Record record : records) {
+            ids.add(record.getId());
+        }
+        /* no record is skipped or repeated at the page boundaries */
+        Assert.assertEquals(ids.size(), count);
+    }
+    
+    @Test
+    public void testSeekPagingWithEqualTimestamps() throws AnalyticsException {
+        this.ars.deleteTable(7, "SEEK1");
+        this.ars.createTable(7, "SEEK1");
+        /* most of the records share a timestamp, so the pages end in the middle of equal timestamps */
+        List<Record> records = generateRecords(7, "SEEK1", 1, 250, 1000, 0);
+        records.addAll(generateRecords(7, "SEEK1", 2, 50, 2000, 1));
+        this.ars.put(records);
+        List<Record> result = this.readPages("SEEK1", 30);
+        this.checkPages(result, 300);
+        for (int i = 1; i < result.size(); i++) {
+            Record prev = result.get(i - 1);
+            Record current = result.get(i);
+            Assert.assertTrue(prev.getTimestamp() < current.getTimestamp() || 
+                    (prev.getTimestamp() == current.getTimestamp() && prev.getId().compareTo(current.getId()) < 0));
+        }
+        /* a page which is not after a previous page is read from the start of the range */
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "SEEK1", 1, null, Long.MIN_VALUE, 
+                Long.MAX_VALUE, 285, 30)).size(), 15);
+        this.ars.deleteTable(7, "SEEK1");
+    }
+    
+    @Test
+    public void testSeekPagingWithoutSeekIndex() throws AnalyticsException, SQLException {
+        this.ars.deleteTable(7, "SEEK2");
+        this.ars.createTable(7, "SEEK2");
+        String indexName = GenericUtils.generateTableUUID(7, "SEEK2") + "_SEEK";
+        Connection conn = this.ars.getDataSource().getConnection();
+        try {
+            Statement stmt = conn.createStatement();
+            stmt.execute("DROP INDEX " + indexName);
+            stmt.close();
+        } finally {
+            conn.close();
+        }
+        /* a table created before the seek index was added is read with offset paging */
+        List<Record> records = generateRecords(7, "SEEK2", 1, 100, 1000, 0);
+        this.ars.put(records);
+        this.checkPages(this.readPages("SEEK2", 30), 100);
+        /* creating the table again adds the missing index */
+        this.ars.createTable(7, "SEEK2");
+        conn = this.ars.getDataSource().getConnection();
+        try {
+            ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, 
+                    GenericUtils.generateTableUUID(7, "SEEK2").toUpperCase(), false, true);
+            boolean found = false;
+            while (rs.next()) {
+                found |= indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"));
+            }
+            rs.close();
+            Assert.assertTrue(found);
+        } finally {
+            conn.close();
+        }
+        this.checkPages(this.readPages("SEEK2", 30), 100);
+        this.ars.deleteTable(7, "SEEK2");
     }
     
     @AfterClass
@@ -0,0 +1,220 @@
+/*
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms.h2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.naming.NamingException;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.datasource.commons.Record;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStoreTest;
+import org.wso2.carbon.analytics.datasource.core.rs.AnalyticsRecordStore;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.rdbms.RDBMSAnalyticsDSConstants;
+import org.wso2.carbon.analytics.datasource.rdbms.RDBMSAnalyticsRecordStore;
+
+/**
+ * H2 implementation of analytics data source tests, with the tables time partitioned.
+ */
+public class H2TimePartitionedAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
+
+    private AnalyticsRecordStore ars;
+
+    @BeforeClass
+    public void setup() throws NamingException, AnalyticsException {
+        GenericUtils.clearGlobalCustomDataSourceRepo();
+        System.setProperty(GenericUtils.WSO2_ANALYTICS_CONF_DIRECTORY_SYS_PROP, "src/test/resources/conf2");
+        this.ars = new RDBMSAnalyticsRecordStore();
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", "WSO2_ANALYTICS_RS_DB");
+        props.put(RDBMSAnalyticsDSConstants.TIME_PARTITION_INTERVAL, "10000");
+        this.ars.init(props);
+        this.init("H2TimePartitionedAnalyticsDataSource", this.ars);
+    }
+
+    @Test
+    public void testTimePartitionPurge() throws AnalyticsException {
+        this.ars.deleteTable(7, "TP1");
+        this.ars.createTable(7, "TP1");
+        /* 100 records in each of the 5 partitions, from 100000 to 150000 */
+        List<Record> records = generateRecords(7, "TP1", 1, 500, 100000, 100);
+        this.ars.put(records);
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP1", 3, null, Long.MIN_VALUE,
+                Long.MAX_VALUE, 0, -1)).size(), 500);
+        /* the first two partitions are dropped, and half of the third is deleted */
+        this.ars.delete(7, "TP1", Long.MIN_VALUE, 125000);
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP1", 2, null, Long.MIN_VALUE,
+                Long.MAX_VALUE, 0, -1)).size(), 250);
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP1", 1, null, 120000,
+                130000, 0, -1)).size(), 50);
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP1", 1, null, Long.MIN_VALUE,
+                Long.MAX_VALUE, 100, 200)).size(), 150);
+        /* the records can be written again to a dropped partition */
+        this.ars.put(records.subList(0, 10));
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP1", 1, null, Long.MIN_VALUE,
+                Long.MAX_VALUE, 0, -1)).size(), 260);
+        this.ars.deleteTable(7, "TP1");
+    }
+
+    @Test
+    public void testTimePartitionedUpdates() throws AnalyticsException {
+        this.ars.deleteTable(7, "TP2");
+        this.ars.createTable(7, "TP2");
+        List<Record> records = generateRecords(7, "TP2", 1, 100, 100000, 100);
+        this.ars.put(records);
+        /* half of the records are moved to a later partition, and the rest are updated in place */
+        List<Record> updates = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            updates.add(new Record(record.getId(), 7, "TP2", record.getValues(), 
+                    i % 2 == 0 ? record.getTimestamp() + 50000 : record.getTimestamp() + 1));
+        }
+        this.ars.put(updates);
+        this.checkUniqueRecords("TP2", 100);
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP2", 1, null, 100000,
+                110001, 0, -1)).size(), 50);
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP2", 1, null, 150000,
+                160000, 0, -1)).size(), 50);
+        this.ars.deleteTable(7, "TP2");
+    }
+
+    @Test
+    public void testConcurrentTimePartitionedUpdates() throws Exception {
+        this.ars.deleteTable(7, "TP3");
+        this.ars.createTable(7, "TP3");
+        final List<Record> records = generateRecords(7, "TP3", 1, 200, 100000, 10);
+        this.ars.put(records);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                /* each writer moves the same records to a different partition */
+                final long timeOffset = (i + 1) * 10000;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<Record> updates = new ArrayList<>();
+                        for (Record record : records) {
+                            updates.add(new Record(record.getId(), 7, "TP3", record.getValues(), 
+                                    record.getTimestamp() + timeOffset));
+                        }
+                        try {
+                            ars.put(updates);
+                        } catch (AnalyticsException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        this.checkUniqueRecords("TP3", 200);
+        this.ars.deleteTable(7, "TP3");
+    }
+
+    @Test
+    public void testRecordIdIndexedLookups() throws AnalyticsException {
+        this.ars.deleteTable(7, "TP4");
+        this.ars.createTable(7, "TP4");
+        List<Record> records = generateRecords(7, "TP4", 1, 200, 100000, 500);
+        this.ars.put(records);
+        /* the records are moved across partitions twice, so the index entries are updated as well */
+        for (int round = 1; round <= 2; round++) {
+            List<Record> updates = new ArrayList<>();
+            for (Record record : records) {
+                updates.add(new Record(record.getId(), 7, "TP4", record.getValues(), 
+                        record.getTimestamp() + round * 20000));
+            }
+            this.ars.put(updates);
+            this.checkUniqueRecords("TP4", 200);
+        }
+        List<String> ids = new ArrayList<>();
+        for (Record record : records) {
+            ids.add(record.getId());
+        }
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP4", 1, null, ids)).size(), 200);
+        this.ars.delete(7, "TP4", ids.subList(0, 50));
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP4", 1, null, ids)).size(), 150);
+        this.checkUniqueRecords("TP4", 150);
+        /* the index entries of a dropped partition are removed, and the records can be written there again */
+        this.ars.delete(7, "TP4", Long.MIN_VALUE, Long.MAX_VALUE);
+        this.ars.put(records);
+        this.checkUniqueRecords("TP4", 200);
+        this.ars.deleteTable(7, "TP4");
+    }
+
+    @Test
+    public void testLookupsWithoutRecordIdIndex() throws AnalyticsException {
+        /* a table created before time partitioning was enabled does not get the record id index */
+        RDBMSAnalyticsRecordStore plainStore = new RDBMSAnalyticsRecordStore();
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", "WSO2_ANALYTICS_RS_DB");
+        plainStore.init(props);
+        this.ars.deleteTable(7, "TP5");
+        plainStore.createTable(7, "TP5");
+        List<Record> records = generateRecords(7, "TP5", 1, 400, 100000, 1000);
+        plainStore.put(records.subList(0, 100));
+        this.ars.createTable(7, "TP5");
+        /* the table itself and its 40 partitions are looked up for 400 ids, which is split up to stay below
+         * the statement parameter limit */
+        this.ars.put(records);
+        this.ars.put(records);
+        this.checkUniqueRecords("TP5", 400);
+        List<String> ids = new ArrayList<>();
+        for (Record record : records) {
+            ids.add(record.getId());
+        }
+        Assert.assertEquals(GenericUtils.listRecords(this.ars, this.ars.get(7, "TP5", 1, null, ids)).size(), 400);
+        this.ars.deleteTable(7, "TP5");
+    }
+
+    private void checkUniqueRecords(String tableName, int count) throws AnalyticsException {
+        List<Record> result = GenericUtils.listRecords(this.ars, this.ars.get(7, tableName, 1, null, Long.MIN_VALUE,
+                Long.MAX_VALUE, 0, -1));
+        Set<String> ids = new HashSet<>();
+        for (Record record : result) {
+            ids.add(record.getId());
+        }
+        Assert.assertEquals(result.size(), count);
+        Assert.assertEquals(ids.size(), count);
+    }
+
+    @AfterClass
+    public void destroy() throws AnalyticsException {
+        this.cleanup();
+    }
+
+}
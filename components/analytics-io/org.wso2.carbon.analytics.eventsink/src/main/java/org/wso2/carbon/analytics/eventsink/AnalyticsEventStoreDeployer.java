@@ -111,6 +111,10 @@ public class AnalyticsEventStoreDeployer extends AbstractDeployer {
                 ServiceHolder.getAnalyticsDataAPI().setTableSchema(tenantId, eventStore.getName(),
                         this.resolveAndMergeSchemata(tenantId, eventStore));
                 for (String streamId : eventStore.getEventSource().getStreamIds()) {
+                    /* the cached converters of the stream are built for the earlier schema */
+                    if (ServiceHolder.getAnalyticsDSConnector() != null) {
+                        ServiceHolder.getAnalyticsDSConnector().removeConverter(tenantId, streamId);
+                    }
                     if (ServiceHolder.getStreamDefinitionStoreService().getStreamDefinition(streamId, tenantId) != null) {
                         ServiceHolder.getAnalyticsEventStreamListener().subscribeForStream(tenantId, streamId);
                     }
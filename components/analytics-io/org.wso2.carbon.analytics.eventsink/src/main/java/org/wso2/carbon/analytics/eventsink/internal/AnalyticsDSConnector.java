@@ -23,15 +23,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.analytics.datasource.commons.AnalyticsSchema;
-import org.wso2.carbon.analytics.datasource.commons.ColumnDefinition;
 import org.wso2.carbon.analytics.datasource.commons.Record;
 import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
-import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
 import org.wso2.carbon.analytics.eventsink.internal.jmx.EventCounter;
 import org.wso2.carbon.analytics.eventsink.internal.util.AnalyticsEventSinkConstants;
 import org.wso2.carbon.analytics.eventsink.internal.util.AnalyticsEventSinkUtil;
 import org.wso2.carbon.analytics.eventsink.internal.util.ServiceHolder;
-import org.wso2.carbon.databridge.commons.Attribute;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
 import org.wso2.carbon.databridge.core.definitionstore.AbstractStreamDefinitionStore;
@@ -51,6 +48,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -61,6 +60,8 @@ public class AnalyticsDSConnector {
 
     private Gson gson;
 
+    private ConcurrentMap<String, EventRecordConverter> converters = new ConcurrentHashMap<>();
+
     private AtomicInteger recordsPersisted;
     private AtomicInteger totalRecordCounter;
     private long startTime;
@@ -155,42 +156,20 @@ public class AnalyticsDSConnector {
     private List<Record> convertEventsToRecord(int tenantId, List<Event> events)
             throws StreamDefinitionStoreException, AnalyticsException {
         List<Record> records = new ArrayList<>(events.size());
-        String tableName;
-        StreamDefinition streamDefinition;
-        AnalyticsSchema analyticsSchema;
         AbstractStreamDefinitionStore streamDefinitionStore = ServiceHolder.getStreamDefinitionStoreService();
         if (streamDefinitionStore == null) {
             throw new AnalyticsException("Stream Definition store is not available. dropping Event");
         }
+        /* the converters are validated once per batch for each stream, rather than for each event */
+        Map<String, EventRecordConverter> batchConverters = new HashMap<>();
+        EventRecordConverter converter;
         for (Event event : events) {
-            long timestamp = System.currentTimeMillis();
-            streamDefinition = streamDefinitionStore.getStreamDefinition(event.getStreamId(), tenantId);
-            tableName = AnalyticsEventSinkUtil.generateAnalyticsTableName(streamDefinition.getName());
-            analyticsSchema = ServiceHolder.getAnalyticsDataAPI().getTableSchema(tenantId, tableName);
-            Map<String, Object> eventAttributes = new HashMap<>();
-            populateCommonAttributes(streamDefinition, analyticsSchema, eventAttributes);
-            populateTypedAttributes(analyticsSchema, AnalyticsEventSinkConstants.EVENT_META_DATA_TYPE,
-                                    streamDefinition.getMetaData(),
-                                    event.getMetaData(), eventAttributes);
-            populateTypedAttributes(analyticsSchema, AnalyticsEventSinkConstants.EVENT_CORRELATION_DATA_TYPE,
-                                    streamDefinition.getCorrelationData(),
-                                    event.getCorrelationData(), eventAttributes);
-            Long payloadTimestamp = populateTypedPayloadAttributes(analyticsSchema, null,
-                                                                   streamDefinition.getPayloadData(),
-                                                                   event.getPayloadData(), eventAttributes);
-            if (payloadTimestamp != null) {
-                timestamp = payloadTimestamp;
-            } else if (event.getTimeStamp() != 0L) {
-                timestamp = event.getTimeStamp();
-            }
-            if (event.getArbitraryDataMap() != null && !event.getArbitraryDataMap().isEmpty()) {
-                for (String attributeName : event.getArbitraryDataMap().keySet()) {
-                    String attributeKey = "_" + attributeName;
-                    eventAttributes.put(attributeKey, getRecordValue(analyticsSchema, attributeKey,
-                            event.getArbitraryDataMap().get(attributeName), true));
-                }
+            converter = batchConverters.get(event.getStreamId());
+            if (converter == null) {
+                converter = this.lookupConverter(streamDefinitionStore, tenantId, event.getStreamId());
+                batchConverters.put(event.getStreamId(), converter);
             }
-            Record record = new Record(tenantId, tableName, eventAttributes, timestamp);
+            Record record = converter.convert(event);
             if (log.isDebugEnabled()) {
                 log.debug("Record being added: " + record);
             }
@@ -199,103 +178,31 @@ public class AnalyticsDSConnector {
         return records;
     }
 
-    private void populateTypedAttributes(AnalyticsSchema schema, String type, List<Attribute> attributes, Object[] values,
-                                         Map<String, Object> eventAttribute) throws AnalyticsException {
-        if (attributes == null) {
-            return;
-        }
-        int iteration = 0;
-        for (Attribute attribute : attributes) {
-            String attributeKey = getAttributeKey(type, attribute.getName());
-            Object recordValue = getRecordValue(schema, attributeKey, values[iteration], false);
-            if (recordValue != null) {
-                eventAttribute.put(attributeKey, recordValue);
-            }
-            iteration++;
-        }
-    }
-
-    private Long populateTypedPayloadAttributes(AnalyticsSchema schema, String type, List<Attribute> attributes,
-                                                Object[] values, Map<String, Object> eventAttribute)
-            throws AnalyticsException {
-        Long timestamp = null;
-        if (attributes == null) {
-            return null;
+    private EventRecordConverter lookupConverter(AbstractStreamDefinitionStore streamDefinitionStore, int tenantId,
+                                                 String streamId)
+            throws StreamDefinitionStoreException, AnalyticsException {
+        String converterKey = tenantId + "_" + streamId;
+        EventRecordConverter converter = this.converters.get(converterKey);
+        /* the stream definition and the table schema are only looked up again once in a validation interval,
+         * since the converters are removed right away on the changes done through the event sink */
+        if (converter != null && !converter.isValidationExpired(
+                AnalyticsEventSinkConstants.CONVERTER_VALIDATION_INTERVAL)) {
+            return converter;
         }
-        int iteration = 0;
-        for (Attribute attribute : attributes) {
-            if (AnalyticsEventSinkConstants.PAYLOAD_TIMESTAMP.equals(attribute.getName())) {
-                if (values[iteration] != null) {
-                    timestamp = (Long) values[iteration];
-                    continue;
-                } else {
-                    log.error("Timestamp value is null.");
-                }
-            }
-            String attributeKey = getAttributeKey(type, attribute.getName());
-            Object recordValue = getRecordValue(schema, attributeKey, values[iteration], false);
-            if (recordValue != null) {
-                eventAttribute.put(attributeKey, recordValue);
+        StreamDefinition streamDefinition = streamDefinitionStore.getStreamDefinition(streamId, tenantId);
+        String tableName = AnalyticsEventSinkUtil.generateAnalyticsTableName(streamDefinition.getName());
+        AnalyticsSchema analyticsSchema = ServiceHolder.getAnalyticsDataAPI().getTableSchema(tenantId, tableName);
+        if (converter == null || !converter.isValidFor(streamDefinition, analyticsSchema)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Creating the event record converter for stream: " + streamId + " tenant: " + tenantId);
             }
-            iteration++;
+            converter = new EventRecordConverter(tenantId, tableName, streamDefinition, analyticsSchema, this.gson);
+            this.converters.put(converterKey, converter);
         }
-        return timestamp;
-    }
-
-    private String getAttributeKey(String type, String attributeName) {
-        if (type == null) {
-            return attributeName;
-        } else {
-            return type + "_" + attributeName;
-        }
-    }
-
-    private void populateCommonAttributes(StreamDefinition streamDefinition, AnalyticsSchema schema,
-                                          Map<String, Object> eventAttributes) throws AnalyticsException {
-        eventAttributes.put(AnalyticsEventSinkConstants.STREAM_VERSION_KEY, getRecordValue(schema,
-                AnalyticsEventSinkConstants.STREAM_VERSION_KEY, streamDefinition.getVersion(), true));
+        return converter;
     }
 
-    private Object getRecordValue(AnalyticsSchema schema, String fieldName, Object fieldValue, boolean mandatoryValue)
-            throws AnalyticsException {
-        ColumnDefinition columnDefinition = schema.getColumns().get(fieldName);
-        if (columnDefinition != null) {
-            if (fieldValue instanceof String) {
-                String fieldStrValue = (String) fieldValue;
-                switch (columnDefinition.getType()) {
-                    case STRING:
-                        if (columnDefinition.isFacet()) {
-                            //converting the json array to comma separated String
-                            try {
-                                return StringUtils.join(gson.fromJson(fieldStrValue, List.class), ',');
-                            } catch (Exception e) {
-                                return fieldStrValue;
-                            }
-                        }
-                        return fieldStrValue;
-                    case BINARY:
-                        return GenericUtils.serializeObject(fieldStrValue);
-                    case BOOLEAN:
-                        return Boolean.parseBoolean(fieldStrValue);
-                    case DOUBLE:
-                        return Double.parseDouble(fieldStrValue);
-                    case FLOAT:
-                        return Float.parseFloat(fieldStrValue);
-                    case INTEGER:
-                        return Integer.parseInt(fieldStrValue);
-                    case LONG:
-                        return Long.parseLong(fieldStrValue);
-                    case FACET:
-                        return fieldStrValue;
-                }
-                return fieldValue;
-            } else {
-                return fieldValue;
-            }
-        } else if (mandatoryValue) {
-            return fieldValue;
-        } else {
-            return null;
-        }
+    public void removeConverter(int tenantId, String streamId) {
+        this.converters.remove(tenantId + "_" + streamId);
     }
 }
@@ -25,7 +25,9 @@ import org.wso2.carbon.analytics.eventsink.AnalyticsEventSinkService;
 import org.wso2.carbon.analytics.eventsink.AnalyticsEventSinkServiceImpl;
 import org.wso2.carbon.analytics.eventsink.AnalyticsEventStoreCAppDeployer;
 import org.wso2.carbon.analytics.eventsink.internal.jmx.QueueEventBufferSizeCalculator;
+import org.wso2.carbon.analytics.eventsink.internal.jmx.EventQueueStats;
 import org.wso2.carbon.analytics.eventsink.internal.jmx.EventReceiverCounter;
+import org.wso2.carbon.analytics.eventsink.internal.queue.AnalyticsEventQueueManager;
 import org.wso2.carbon.analytics.eventsink.internal.util.AnalyticsEventSinkConstants;
 import org.wso2.carbon.analytics.eventsink.internal.util.ServiceHolder;
 import org.wso2.carbon.analytics.eventsink.subscriber.AnalyticsEventStreamListener;
@@ -37,6 +39,7 @@ import org.wso2.carbon.event.stream.core.EventStreamListener;
 import org.wso2.carbon.event.stream.core.EventStreamService;
 import org.wso2.carbon.utils.CarbonUtils;
 
+import javax.management.JMException;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import javax.xml.bind.JAXBContext;
@@ -82,28 +85,30 @@ public class AnalyticsEventSinkComponent {
             ServiceHolder.getEventManagementService().subscribe(ServiceHolder.getEventPublisherManagementService());
             this.loadAnalyticsEventSinkConfiguration();
             ServiceHolder.setAnalyticsDSConnector(new AnalyticsDSConnector());
+            AnalyticsEventQueueManager.getInstance().recoverSpillQueues();
         } catch (Exception e) {
             log.error("Error while activating the AnalyticsEventSinkComponent.", e);
         }
         try {
-            MBeanServer platformMBeanServer = ManagementFactory.getPlatformMBeanServer();
-            String eventCounterObject = "org.wso2.carbon:00=analytics,01=EVENT_PERSISTENCE_COUNTER";
-            ObjectName eventCounterMbean = new ObjectName(eventCounterObject);
-            if (!platformMBeanServer.isRegistered(eventCounterMbean)) {
-                EventReceiverCounter counter = new EventReceiverCounter();
-                platformMBeanServer.registerMBean(counter, eventCounterMbean);
-            }
-            String queueBufferSize = "org.wso2.carbon:00=analytics,01=RECEIVER_REMAINING_PERSISTENCE_QUEUE_BUFFER_SIZE_IN_BYTES";
-            ObjectName queueBufferMbean = new ObjectName(queueBufferSize);
-            if (!platformMBeanServer.isRegistered(queueBufferMbean)) {
-                QueueEventBufferSizeCalculator counter = new QueueEventBufferSizeCalculator();
-                platformMBeanServer.registerMBean(counter, queueBufferMbean);
-            }
+            this.registerMBean("org.wso2.carbon:00=analytics,01=EVENT_PERSISTENCE_COUNTER",
+                    new EventReceiverCounter());
+            this.registerMBean("org.wso2.carbon:00=analytics,01=RECEIVER_REMAINING_PERSISTENCE_QUEUE_BUFFER_SIZE_IN_BYTES",
+                    new QueueEventBufferSizeCalculator());
+            this.registerMBean("org.wso2.carbon:00=analytics,01=EVENT_PERSISTENCE_SPILL_QUEUE_STATS",
+                    new EventQueueStats());
         } catch (Exception e) {
             log.error("Unable to create EventCounter stat MBean: " + e.getMessage(), e);
         }
     }
 
+    private void registerMBean(String name, Object mbean) throws JMException {
+        MBeanServer platformMBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(name);
+        if (!platformMBeanServer.isRegistered(objectName)) {
+            platformMBeanServer.registerMBean(mbean, objectName);
+        }
+    }
+
     private void loadAnalyticsEventSinkConfiguration() {
         File analyticsConfFile = new File(CarbonUtils.getCarbonConfigDirPath() + File.separator +
                 AnalyticsEventSinkConstants.ANALYTICS_CONF_DIR + File.separator +
@@ -128,6 +133,7 @@ public class AnalyticsEventSinkComponent {
         if (log.isDebugEnabled()) {
             log.debug("Stopped AnalyticsEventSink component");
         }
+        AnalyticsEventQueueManager.getInstance().closeSpillQueues();
     }
 
     protected void setStreamDefinitionStoreService(AbstractStreamDefinitionStore abstractStreamDefinitionStore) {
@@ -32,12 +32,36 @@ public class AnalyticsEventSinkConfiguration {
     private int batchSize;
     private int workerPoolSize;
     private int maxQueueCapacity;
+    private String queueShardingMode;
+    private int queueShardWorkerPoolSize;
+    private int maxQueueShardCapacity;
+    private long queueShardIdleTimeout;
+    private boolean spillEnabled;
+    private long maxSpillCapacity;
+    private long spillReplayInterval;
+    private int maxSpillReplayAttempts;
+    private boolean adaptiveBatching;
+    private int minBatchSize;
+    private long targetPersistLatency;
+    private long maxBatchLingerTime;
 
     public AnalyticsEventSinkConfiguration() {
         this.queueSize = AnalyticsEventSinkConstants.DEFAULT_EVENT_QUEUE_SIZE;
         this.batchSize = AnalyticsEventSinkConstants.DEFAULT_BATCH_SIZE * 1000;
         this.workerPoolSize = AnalyticsEventSinkConstants.DEFAULT_WORKER_POOL_SIZE;
         this.maxQueueCapacity = AnalyticsEventSinkConstants.DEFAULT_MAX_QUEUE_CAPACITY * 1000000;
+        this.queueShardingMode = AnalyticsEventSinkConstants.QUEUE_SHARDING_NONE;
+        this.queueShardWorkerPoolSize = -1;
+        this.maxQueueShardCapacity = -1;
+        this.queueShardIdleTimeout = AnalyticsEventSinkConstants.DEFAULT_QUEUE_SHARD_IDLE_TIMEOUT;
+        this.spillEnabled = false;
+        this.maxSpillCapacity = AnalyticsEventSinkConstants.DEFAULT_MAX_SPILL_CAPACITY * 1000000L;
+        this.spillReplayInterval = AnalyticsEventSinkConstants.DEFAULT_SPILL_REPLAY_INTERVAL;
+        this.maxSpillReplayAttempts = AnalyticsEventSinkConstants.DEFAULT_MAX_SPILL_REPLAY_ATTEMPTS;
+        this.adaptiveBatching = false;
+        this.minBatchSize = AnalyticsEventSinkConstants.DEFAULT_MIN_BATCH_SIZE * 1000;
+        this.targetPersistLatency = AnalyticsEventSinkConstants.DEFAULT_TARGET_PERSIST_LATENCY;
+        this.maxBatchLingerTime = AnalyticsEventSinkConstants.DEFAULT_MAX_BATCH_LINGER_TIME;
     }
 
     @XmlElement(name = "QueueSize")
@@ -75,4 +99,141 @@ public class AnalyticsEventSinkConfiguration {
     public void setMaxQueueCapacity(int maxQueueCapacity) {
         this.maxQueueCapacity = maxQueueCapacity * 1000000;
     }
+
+    /**
+     * The queue sharding mode, "NONE" for a single queue per tenant, "STREAM" for a queue per stream, and
+     * "TABLE" for a queue per target table, which is shared by the streams persisted to the same table.
+     */
+    @XmlElement(name = "QueueShardingMode")
+    public String getQueueShardingMode() {
+        return queueShardingMode;
+    }
+
+    public void setQueueShardingMode(String queueShardingMode) {
+        this.queueShardingMode = queueShardingMode.trim().toUpperCase();
+    }
+
+    /**
+     * The worker pool size of a queue shard, which defaults to a share of the tenant worker pool size.
+     */
+    @XmlElement(name = "QueueShardWorkerPoolSize")
+    public int getQueueShardWorkerPoolSize() {
+        if (queueShardWorkerPoolSize <= 0) {
+            return Math.max(1, workerPoolSize / AnalyticsEventSinkConstants.DEFAULT_QUEUE_SHARD_SHARE);
+        }
+        return queueShardWorkerPoolSize;
+    }
+
+    public void setQueueShardWorkerPoolSize(int queueShardWorkerPoolSize) {
+        this.queueShardWorkerPoolSize = queueShardWorkerPoolSize;
+    }
+
+    /**
+     * The maximum capacity of a queue shard, which defaults to a share of the tenant queue capacity. The shards
+     * of a tenant together are also bounded by the tenant queue capacity.
+     */
+    @XmlElement(name = "maxQueueShardCapacity")
+    public int getMaxQueueShardCapacity() {
+        if (maxQueueShardCapacity <= 0) {
+            return maxQueueCapacity / AnalyticsEventSinkConstants.DEFAULT_QUEUE_SHARD_SHARE;
+        }
+        return maxQueueShardCapacity;
+    }
+
+    public void setMaxQueueShardCapacity(int maxQueueShardCapacity) {
+        this.maxQueueShardCapacity = maxQueueShardCapacity * 1000000;
+    }
+
+    /**
+     * The interval in milliseconds, in which the queue shards which have not received any events since the
+     * previous interval are closed, 0 disables it.
+     */
+    @XmlElement(name = "QueueShardIdleTimeout")
+    public long getQueueShardIdleTimeout() {
+        return queueShardIdleTimeout;
+    }
+
+    public void setQueueShardIdleTimeout(long queueShardIdleTimeout) {
+        this.queueShardIdleTimeout = queueShardIdleTimeout;
+    }
+
+    /**
+     * If enabled, the event batches which could not be persisted are spilled to a local log,
+     * and replayed once the data store is available.
+     */
+    @XmlElement(name = "SpillEnabled")
+    public boolean isSpillEnabled() {
+        return spillEnabled;
+    }
+
+    public void setSpillEnabled(boolean spillEnabled) {
+        this.spillEnabled = spillEnabled;
+    }
+
+    @XmlElement(name = "maxSpillCapacity")
+    public long getMaxSpillCapacity() {
+        return maxSpillCapacity;
+    }
+
+    public void setMaxSpillCapacity(long maxSpillCapacity) {
+        this.maxSpillCapacity = maxSpillCapacity * 1000000L;
+    }
+
+    @XmlElement(name = "SpillReplayInterval")
+    public long getSpillReplayInterval() {
+        return spillReplayInterval;
+    }
+
+    public void setSpillReplayInterval(long spillReplayInterval) {
+        this.spillReplayInterval = spillReplayInterval;
+    }
+
+    @XmlElement(name = "MaxSpillReplayAttempts")
+    public int getMaxSpillReplayAttempts() {
+        return maxSpillReplayAttempts;
+    }
+
+    public void setMaxSpillReplayAttempts(int maxSpillReplayAttempts) {
+        this.maxSpillReplayAttempts = maxSpillReplayAttempts;
+    }
+
+    /**
+     * If enabled, the batch size is tuned between the minimum and the maximum batch sizes,
+     * based on the persist latency and the queue usage.
+     */
+    @XmlElement(name = "AdaptiveBatching")
+    public boolean isAdaptiveBatching() {
+        return adaptiveBatching;
+    }
+
+    public void setAdaptiveBatching(boolean adaptiveBatching) {
+        this.adaptiveBatching = adaptiveBatching;
+    }
+
+    @XmlElement(name = "minBatchSize")
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public void setMinBatchSize(int minBatchSize) {
+        this.minBatchSize = minBatchSize * 1000;
+    }
+
+    @XmlElement(name = "TargetPersistLatency")
+    public long getTargetPersistLatency() {
+        return targetPersistLatency;
+    }
+
+    public void setTargetPersistLatency(long targetPersistLatency) {
+        this.targetPersistLatency = targetPersistLatency;
+    }
+
+    @XmlElement(name = "maxBatchLingerTime")
+    public long getMaxBatchLingerTime() {
+        return maxBatchLingerTime;
+    }
+
+    public void setMaxBatchLingerTime(long maxBatchLingerTime) {
+        this.maxBatchLingerTime = maxBatchLingerTime;
+    }
 }
@@ -0,0 +1,247 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal;
+
+import com.google.gson.Gson;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.datasource.commons.AnalyticsSchema;
+import org.wso2.carbon.analytics.datasource.commons.ColumnDefinition;
+import org.wso2.carbon.analytics.datasource.commons.Record;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.eventsink.internal.util.AnalyticsEventSinkConstants;
+import org.wso2.carbon.databridge.commons.Attribute;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class converts the events of a single stream to analytics records. The record column names and
+ * the target column definitions of the stream attributes are resolved once, when the converter is created
+ * for a given stream definition and table schema. A converter is reused without looking up the stream definition
+ * and the table schema again, till its validation expires, or it is removed on a change done through the event sink.
+ */
+public class EventRecordConverter {
+
+    private static final Log log = LogFactory.getLog(EventRecordConverter.class);
+
+    private int tenantId;
+
+    private String tableName;
+
+    private StreamDefinition streamDefinition;
+
+    private AnalyticsSchema schema;
+
+    private Gson gson;
+
+    private Object streamVersionValue;
+
+    private String[] metaKeys;
+
+    private ColumnDefinition[] metaColumns;
+
+    private String[] correlationKeys;
+
+    private ColumnDefinition[] correlationColumns;
+
+    private String[] payloadKeys;
+
+    private ColumnDefinition[] payloadColumns;
+
+    private int payloadTimestampIndex = -1;
+
+    private int recordSize;
+
+    private volatile long validationTime;
+
+    public EventRecordConverter(int tenantId, String tableName, StreamDefinition streamDefinition,
+                                AnalyticsSchema schema, Gson gson) throws AnalyticsException {
+        this.tenantId = tenantId;
+        this.tableName = tableName;
+        this.streamDefinition = streamDefinition;
+        this.schema = schema;
+        this.gson = gson;
+        this.streamVersionValue = this.toRecordValue(this.lookupColumn(AnalyticsEventSinkConstants.STREAM_VERSION_KEY),
+                streamDefinition.getVersion());
+        List<Attribute> attributes = streamDefinition.getMetaData();
+        this.metaKeys = this.generateKeys(AnalyticsEventSinkConstants.EVENT_META_DATA_TYPE, attributes);
+        this.metaColumns = this.lookupColumns(this.metaKeys);
+        attributes = streamDefinition.getCorrelationData();
+        this.correlationKeys = this.generateKeys(AnalyticsEventSinkConstants.EVENT_CORRELATION_DATA_TYPE, attributes);
+        this.correlationColumns = this.lookupColumns(this.correlationKeys);
+        attributes = streamDefinition.getPayloadData();
+        this.payloadKeys = this.generateKeys(null, attributes);
+        this.payloadColumns = this.lookupColumns(this.payloadKeys);
+        for (int i = 0; i < this.payloadKeys.length; i++) {
+            if (AnalyticsEventSinkConstants.PAYLOAD_TIMESTAMP.equals(this.payloadKeys[i])) {
+                this.payloadTimestampIndex = i;
+                break;
+            }
+        }
+        this.recordSize = this.metaKeys.length + this.correlationKeys.length + this.payloadKeys.length + 1;
+        this.validationTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Checks if the given time has passed since this converter was last validated against the current
+     * stream definition and table schema.
+     */
+    public boolean isValidationExpired(long validationInterval) {
+        return System.currentTimeMillis() - this.validationTime >= validationInterval;
+    }
+
+    /**
+     * Checks if this converter can still be used for the given stream definition and table schema,
+     * a new converter has to be created if any of them has changed.
+     */
+    public boolean isValidFor(StreamDefinition streamDefinition, AnalyticsSchema schema) {
+        boolean valid = (this.streamDefinition == streamDefinition ||
+                this.streamDefinition.equals(streamDefinition)) && (this.schema == schema || this.schema.equals(schema));
+        if (valid) {
+            this.validationTime = System.currentTimeMillis();
+        }
+        return valid;
+    }
+
+    private String[] generateKeys(String type, List<Attribute> attributes) {
+        if (attributes == null) {
+            return new String[0];
+        }
+        String[] result = new String[attributes.size()];
+        for (int i = 0; i < result.length; i++) {
+            if (type == null) {
+                result[i] = attributes.get(i).getName();
+            } else {
+                result[i] = type + "_" + attributes.get(i).getName();
+            }
+        }
+        return result;
+    }
+
+    private ColumnDefinition lookupColumn(String key) {
+        return this.schema.getColumns().get(key);
+    }
+
+    private ColumnDefinition[] lookupColumns(String[] keys) {
+        ColumnDefinition[] result = new ColumnDefinition[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = this.lookupColumn(keys[i]);
+        }
+        return result;
+    }
+
+    private Object toRecordValue(ColumnDefinition column, Object value) throws AnalyticsException {
+        if (column == null || !(value instanceof String)) {
+            return value;
+        }
+        String strValue = (String) value;
+        switch (column.getType()) {
+            case STRING:
+                if (column.isFacet()) {
+                    return this.toFacetValue(strValue);
+                }
+                return strValue;
+            case BINARY:
+                return GenericUtils.serializeObject(strValue);
+            case BOOLEAN:
+                return Boolean.parseBoolean(strValue);
+            case DOUBLE:
+                return Double.parseDouble(strValue);
+            case FLOAT:
+                return Float.parseFloat(strValue);
+            case INTEGER:
+                return Integer.parseInt(strValue);
+            case LONG:
+                return Long.parseLong(strValue);
+            default:
+                return strValue;
+        }
+    }
+
+    private Object toFacetValue(String value) {
+        /* converting the json array to comma separated String, anything other than a json array is kept as it is,
+         * which avoids invoking the json parser for plain values */
+        if (!value.trim().startsWith("[")) {
+            return value;
+        }
+        try {
+            return StringUtils.join(this.gson.fromJson(value, List.class), ',');
+        } catch (Exception e) {
+            return value;
+        }
+    }
+
+    private void populateValues(String[] keys, ColumnDefinition[] columns, Object[] values, int skipIndex,
+                                Map<String, Object> result) throws AnalyticsException {
+        if (values == null) {
+            return;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            /* attributes which are not in the schema are not stored */
+            if (i != skipIndex && columns[i] != null) {
+                Object value = this.toRecordValue(columns[i], values[i]);
+                if (value != null) {
+                    result.put(keys[i], value);
+                }
+            }
+        }
+    }
+
+    public Record convert(Event event) throws AnalyticsException {
+        Map<String, Object> values = new HashMap<>(this.recordSize * 2);
+        values.put(AnalyticsEventSinkConstants.STREAM_VERSION_KEY, this.streamVersionValue);
+        this.populateValues(this.metaKeys, this.metaColumns, event.getMetaData(), -1, values);
+        this.populateValues(this.correlationKeys, this.correlationColumns, event.getCorrelationData(), -1, values);
+        Object[] payload = event.getPayloadData();
+        Object payloadTimestamp = null;
+        int skipIndex = -1;
+        if (this.payloadTimestampIndex != -1 && payload != null) {
+            payloadTimestamp = payload[this.payloadTimestampIndex];
+            if (payloadTimestamp != null) {
+                skipIndex = this.payloadTimestampIndex;
+            } else {
+                log.error("Timestamp value is null.");
+            }
+        }
+        this.populateValues(this.payloadKeys, this.payloadColumns, payload, skipIndex, values);
+        if (event.getArbitraryDataMap() != null && !event.getArbitraryDataMap().isEmpty()) {
+            String key;
+            for (String attributeName : event.getArbitraryDataMap().keySet()) {
+                key = "_" + attributeName;
+                values.put(key, this.toRecordValue(this.lookupColumn(key),
+                        event.getArbitraryDataMap().get(attributeName)));
+            }
+        }
+        long timestamp;
+        if (payloadTimestamp != null) {
+            timestamp = (Long) payloadTimestamp;
+        } else if (event.getTimeStamp() != 0L) {
+            timestamp = event.getTimeStamp();
+        } else {
+            timestamp = System.currentTimeMillis();
+        }
+        return new Record(this.tenantId, this.tableName, values, timestamp);
+    }
+
+}
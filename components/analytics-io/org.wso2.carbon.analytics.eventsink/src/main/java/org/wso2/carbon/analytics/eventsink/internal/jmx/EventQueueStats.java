@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.wso2.carbon.analytics.eventsink.internal.jmx;
+
+import org.wso2.carbon.analytics.eventsink.internal.queue.AnalyticsEventBatchController;
+import org.wso2.carbon.analytics.eventsink.internal.queue.AnalyticsEventQueue;
+import org.wso2.carbon.analytics.eventsink.internal.queue.AnalyticsEventQueueManager;
+import org.wso2.carbon.analytics.eventsink.internal.queue.AnalyticsEventSpillQueue;
+
+/**
+ * Implementation of the EventQueueStatsMBean interface.
+ */
+public class EventQueueStats implements EventQueueStatsMBean {
+
+    private AnalyticsEventQueue lookupQueue(int tenantId, String shardName) {
+        if (shardName == null || shardName.isEmpty()) {
+            return AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(tenantId);
+        } else {
+            return AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(tenantId, shardName);
+        }
+    }
+
+    private AnalyticsEventBatchController lookupBatchController(int tenantId, String shardName) {
+        AnalyticsEventQueue analyticsEventQueue = this.lookupQueue(tenantId, shardName);
+        return analyticsEventQueue != null ? analyticsEventQueue.getBatchController() : null;
+    }
+
+    private AnalyticsEventSpillQueue lookupSpillQueue(int tenantId, String shardName) {
+        AnalyticsEventQueue analyticsEventQueue = this.lookupQueue(tenantId, shardName);
+        return analyticsEventQueue != null ? analyticsEventQueue.getSpillQueue() : null;
+    }
+
+    @Override
+    public int getCurrentBatchSize(int tenantId, String shardName) {
+        AnalyticsEventBatchController controller = this.lookupBatchController(tenantId, shardName);
+        return controller != null ? controller.getBatchSize() : -1;
+    }
+
+    @Override
+    public long getPersistedBatchCount(int tenantId, String shardName) {
+        AnalyticsEventBatchController controller = this.lookupBatchController(tenantId, shardName);
+        return controller != null ? controller.getPersistCount() : -1;
+    }
+
+    @Override
+    public double getAveragePersistLatency(int tenantId, String shardName) {
+        AnalyticsEventBatchController controller = this.lookupBatchController(tenantId, shardName);
+        return controller != null ? controller.getAveragePersistLatency() : -1;
+    }
+
+    @Override
+    public String getPersistLatencyDistribution(int tenantId, String shardName) {
+        AnalyticsEventBatchController controller = this.lookupBatchController(tenantId, shardName);
+        return controller != null ? controller.getPersistLatencyDistribution() : null;
+    }
+
+    @Override
+    public String getBatchSizeDistribution(int tenantId, String shardName) {
+        AnalyticsEventBatchController controller = this.lookupBatchController(tenantId, shardName);
+        return controller != null ? controller.getBatchSizeDistribution() : null;
+    }
+
+    @Override
+    public long getSpilledEventCount(int tenantId, String shardName) {
+        AnalyticsEventSpillQueue spillQueue = this.lookupSpillQueue(tenantId, shardName);
+        return spillQueue != null ? spillQueue.getSpilledEventCount() : -1;
+    }
+
+    @Override
+    public long getReplayedEventCount(int tenantId, String shardName) {
+        AnalyticsEventSpillQueue spillQueue = this.lookupSpillQueue(tenantId, shardName);
+        return spillQueue != null ? spillQueue.getReplayedEventCount() : -1;
+    }
+
+    @Override
+    public long getDroppedEventCount(int tenantId, String shardName) {
+        AnalyticsEventSpillQueue spillQueue = this.lookupSpillQueue(tenantId, shardName);
+        return spillQueue != null ? spillQueue.getDroppedEventCount() : -1;
+    }
+
+    @Override
+    public long getPendingSpillSizeInBytes(int tenantId, String shardName) {
+        AnalyticsEventSpillQueue spillQueue = this.lookupSpillQueue(tenantId, shardName);
+        return spillQueue != null ? spillQueue.getPendingSize() : -1;
+    }
+
+    @Override
+    public double getReplayRate(int tenantId, String shardName) {
+        AnalyticsEventSpillQueue spillQueue = this.lookupSpillQueue(tenantId, shardName);
+        return spillQueue != null ? spillQueue.getReplayRate() : -1;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.wso2.carbon.analytics.eventsink.internal.jmx;
+
+/**
+ * This interface exposes the batching and spill statistics of the event queues.
+ * The shard name is only given when queue sharding is enabled. It is registered as
+ * EVENT_PERSISTENCE_SPILL_QUEUE_STATS, the name the spill statistics were first exposed with.
+ */
+public interface EventQueueStatsMBean {
+
+    /**
+     * This will return the current batch size of the queue worker.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The batch size in bytes.
+     */
+    int getCurrentBatchSize(int tenantId, String shardName);
+
+    /**
+     * This will return the number of batches persisted by the queue worker.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The persisted batch count.
+     */
+    long getPersistedBatchCount(int tenantId, String shardName);
+
+    /**
+     * This will return the average persist latency of the batches.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The average persist latency in milliseconds.
+     */
+    double getAveragePersistLatency(int tenantId, String shardName);
+
+    /**
+     * This will return the distribution of the batch persist latencies.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The batch counts per latency range.
+     */
+    String getPersistLatencyDistribution(int tenantId, String shardName);
+
+    /**
+     * This will return the distribution of the persisted batch sizes.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The batch counts per size range.
+     */
+    String getBatchSizeDistribution(int tenantId, String shardName);
+
+    /**
+     * This will return the number of events spilled to the local log.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The spilled event count.
+     */
+    long getSpilledEventCount(int tenantId, String shardName);
+
+    /**
+     * This will return the number of spilled events replayed to the data store.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The replayed event count.
+     */
+    long getReplayedEventCount(int tenantId, String shardName);
+
+    /**
+     * This will return the number of events dropped, since the spill queue was full or the replay failed.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The dropped event count.
+     */
+    long getDroppedEventCount(int tenantId, String shardName);
+
+    /**
+     * This will return the size of the spilled batches waiting to be replayed.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The pending size in bytes.
+     */
+    long getPendingSpillSizeInBytes(int tenantId, String shardName);
+
+    /**
+     * This will return the replay rate of the last replay run.
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The replay rate in events per second.
+     */
+    double getReplayRate(int tenantId, String shardName);
+}
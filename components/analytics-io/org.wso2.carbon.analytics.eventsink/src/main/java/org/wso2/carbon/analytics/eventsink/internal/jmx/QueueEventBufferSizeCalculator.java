@@ -46,4 +46,50 @@ public class QueueEventBufferSizeCalculator implements QueueEventBufferSizeCalcu
         }
         return currentSize;
     }
+
+    @Override
+    public String[] getQueueShardNames(int tenantId) {
+        return AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueueShardNames(tenantId).toArray(
+                new String[0]);
+    }
+
+    @Override
+    public long getRemainingBufferCapacityInBytes(int tenantId, String shardName) {
+        AnalyticsEventQueue analyticsEventQueue = AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(
+                tenantId, shardName);
+        if (analyticsEventQueue != null) {
+            return analyticsEventQueue.getRemainingBufferCapacity();
+        }
+        return -1;
+    }
+
+    @Override
+    public int getRemainingQueueSize(int tenantId, String shardName) {
+        AnalyticsEventQueue analyticsEventQueue = AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(
+                tenantId, shardName);
+        if (analyticsEventQueue != null) {
+            return analyticsEventQueue.getRemainingQueueSize();
+        }
+        return -1;
+    }
+
+    @Override
+    public long getReceivedEventCount(int tenantId, String shardName) {
+        AnalyticsEventQueue analyticsEventQueue = AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(
+                tenantId, shardName);
+        if (analyticsEventQueue != null) {
+            return analyticsEventQueue.getReceivedEventCount();
+        }
+        return -1;
+    }
+
+    @Override
+    public long getReleasedEventCount(int tenantId, String shardName) {
+        AnalyticsEventQueue analyticsEventQueue = AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(
+                tenantId, shardName);
+        if (analyticsEventQueue != null) {
+            return analyticsEventQueue.getReleasedEventCount();
+        }
+        return -1;
+    }
 }
@@ -38,4 +38,48 @@ public interface QueueEventBufferSizeCalculatorMBean {
      * @return Current occupied buffer size.
      */
     int getRemainingQueueSize(int tenantId);
+
+    /**
+     * This will return the names of the queue shards of the tenant, when queue sharding is enabled.
+     *
+     * @param tenantId tenant ID
+     * @return The queue shard names.
+     */
+    String[] getQueueShardNames(int tenantId);
+
+    /**
+     * This will return remaining capacity in the given queue shard ring buffer.
+     *
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return Remaining buffer value in bytes.
+     */
+    long getRemainingBufferCapacityInBytes(int tenantId, String shardName);
+
+    /**
+     * This will return the remaining number of slots in the given queue shard.
+     *
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return Remaining queue size.
+     */
+    int getRemainingQueueSize(int tenantId, String shardName);
+
+    /**
+     * This will return the number of events put into the given queue shard.
+     *
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The received event count.
+     */
+    long getReceivedEventCount(int tenantId, String shardName);
+
+    /**
+     * This will return the number of events taken out of the given queue shard by its worker.
+     *
+     * @param tenantId tenant ID
+     * @param shardName queue shard name
+     * @return The released event count.
+     */
+    long getReleasedEventCount(int tenantId, String shardName);
 }
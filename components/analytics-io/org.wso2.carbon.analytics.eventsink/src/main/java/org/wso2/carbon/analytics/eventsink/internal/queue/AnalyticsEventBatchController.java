@@ -0,0 +1,168 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal.queue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * This class decides the batch size and the linger time of a queue worker. With adaptive batching, the batch size
+ * is halved when the persist latency goes above the target latency or a persist fails, and grown by a quarter when
+ * the persist latency is well below the target while the batches are filled up or the queue is backing up. The
+ * persist latencies and batch sizes are also recorded as distributions.
+ */
+public class AnalyticsEventBatchController {
+
+    private static final Log log = LogFactory.getLog(AnalyticsEventBatchController.class);
+
+    private static final long[] LATENCY_BUCKETS = { 10, 50, 100, 250, 500, 1000, 2500, 5000, Long.MAX_VALUE };
+
+    private static final long[] BATCH_SIZE_BUCKETS = { 1000, 8000, 64000, 256000, 1000000, 4000000, Long.MAX_VALUE };
+
+    private static final double QUEUE_BACKLOG_RATIO = 0.5;
+
+    private boolean adaptive;
+
+    private int minBatchSize;
+
+    private int maxBatchSize;
+
+    private long targetLatency;
+
+    private long lingerTime;
+
+    private volatile int batchSize;
+
+    private long[] latencyCounts = new long[LATENCY_BUCKETS.length];
+
+    private long[] batchSizeCounts = new long[BATCH_SIZE_BUCKETS.length];
+
+    private long persistCount;
+
+    private long totalLatency;
+
+    public AnalyticsEventBatchController(boolean adaptive, int minBatchSize, int maxBatchSize, long targetLatency,
+                                         long lingerTime) {
+        this.adaptive = adaptive;
+        this.minBatchSize = Math.min(minBatchSize, maxBatchSize);
+        this.maxBatchSize = maxBatchSize;
+        this.targetLatency = targetLatency;
+        this.lingerTime = lingerTime;
+        this.batchSize = maxBatchSize;
+    }
+
+    /**
+     * The current batch size in bytes.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getLingerTime() {
+        return lingerTime;
+    }
+
+    /**
+     * Checks if a batch which is smaller than the batch size should be kept for more events, rather than being
+     * persisted at the end of the currently available events.
+     * @param pendingSize the current batch size in bytes
+     * @param pendingTime the time since the first event of the current batch
+     * @param queueUsage the used ratio of the queue buffer
+     */
+    public boolean shouldLinger(int pendingSize, long pendingTime, double queueUsage) {
+        return this.lingerTime > 0 && pendingSize < this.batchSize && pendingTime < this.lingerTime &&
+                queueUsage < QUEUE_BACKLOG_RATIO;
+    }
+
+    private static void recordInBucket(long[] buckets, long[] counts, long value) {
+        for (int i = 0; i < buckets.length; i++) {
+            if (value <= buckets[i]) {
+                counts[i]++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records a persist operation of a batch, and adjusts the batch size, if adaptive batching is enabled.
+     * @param size the batch size in bytes
+     * @param latency the persist latency in milliseconds
+     * @param success true if the batch was persisted successfully
+     * @param queueUsage the used ratio of the queue buffer
+     */
+    public synchronized void recordPersist(int size, long latency, boolean success, double queueUsage) {
+        recordInBucket(LATENCY_BUCKETS, this.latencyCounts, latency);
+        recordInBucket(BATCH_SIZE_BUCKETS, this.batchSizeCounts, size);
+        this.persistCount++;
+        this.totalLatency += latency;
+        if (!this.adaptive) {
+            return;
+        }
+        int currentBatchSize = this.batchSize;
+        int newBatchSize = currentBatchSize;
+        if (!success || latency > this.targetLatency) {
+            newBatchSize = Math.max(this.minBatchSize, currentBatchSize / 2);
+        } else if (latency < this.targetLatency / 2 && (size >= currentBatchSize * 3 / 4 ||
+                queueUsage >= QUEUE_BACKLOG_RATIO)) {
+            newBatchSize = Math.min(this.maxBatchSize, currentBatchSize + Math.max(currentBatchSize / 4, 1));
+        }
+        if (newBatchSize != currentBatchSize) {
+            this.batchSize = newBatchSize;
+            if (log.isDebugEnabled()) {
+                log.debug("Batch size changed: " + currentBatchSize + " -> " + newBatchSize + ", persist latency: " +
+                        latency + " ms, queue usage: " + queueUsage);
+            }
+        }
+    }
+
+    public synchronized long getPersistCount() {
+        return persistCount;
+    }
+
+    public synchronized double getAveragePersistLatency() {
+        if (this.persistCount == 0) {
+            return 0;
+        }
+        return this.totalLatency / (double) this.persistCount;
+    }
+
+    private static String toDistribution(long[] buckets, long[] counts, String unit) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < buckets.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            if (buckets[i] == Long.MAX_VALUE) {
+                builder.append(">").append(buckets[i - 1]);
+            } else {
+                builder.append("<=").append(buckets[i]);
+            }
+            builder.append(unit).append(": ").append(counts[i]);
+        }
+        return builder.toString();
+    }
+
+    public synchronized String getPersistLatencyDistribution() {
+        return toDistribution(LATENCY_BUCKETS, this.latencyCounts, "ms");
+    }
+
+    public synchronized String getBatchSizeDistribution() {
+        return toDistribution(BATCH_SIZE_BUCKETS, this.batchSizeCounts, "B");
+    }
+
+}
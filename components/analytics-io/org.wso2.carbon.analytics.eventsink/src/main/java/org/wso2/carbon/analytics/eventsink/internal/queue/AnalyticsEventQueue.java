@@ -17,88 +17,158 @@
 */
 package org.wso2.carbon.analytics.eventsink.internal.queue;
 
+import com.lmax.disruptor.BlockingWaitStrategy;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.analytics.eventsink.internal.util.ServiceHolder;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.utils.DataBridgeCommonsUtils;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This is the Queue which is created per tenant basis, and it will buffer all the events received for the tenant,
- * so that the consumers can do batch insertion.
+ * so that the consumers can do batch insertion. When queue sharding is enabled, a queue is created per tenant shard.
  */
 
 public class AnalyticsEventQueue {
     private static final Log log = LogFactory.getLog(AnalyticsEventQueue.class);
+    private static final long CAPACITY_WAIT_TIMEOUT = 1000;
+    private Disruptor<WrappedEventFactory.WrappedEvent> disruptor;
+    private ExecutorService disruptorExecutor;
     private RingBuffer<WrappedEventFactory.WrappedEvent> ringBuffer;
-    private AtomicInteger currentSize;
-    private int currentEventSize;
+    private String shardName;
+    private AnalyticsEventQueueWorker worker;
+    private AtomicLong currentSize;
     private int maxSize;
-    private Semaphore semaphore;
-    private final Object lock = new Object();
+    private AtomicInteger waitingProducers;
+    private AtomicLong receivedEventCount;
+    private AtomicLong releasedEventCount;
+    private AnalyticsEventQueueBudget budget;
+    private AtomicInteger activeProducers;
+    private volatile boolean closed;
+    private long idleCheckEventCount = -1;
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final Condition capacityAvailable = this.capacityLock.newCondition();
 
-    @SuppressWarnings("unchecked")
     public AnalyticsEventQueue(int tenantId) {
-        Disruptor<WrappedEventFactory.WrappedEvent> eventQueue = new Disruptor<>(new WrappedEventFactory(),
-                ServiceHolder.getAnalyticsEventSinkConfiguration().getQueueSize(),
-                Executors.newCachedThreadPool());
-        eventQueue.handleEventsWith(new AnalyticsEventQueueWorker(tenantId, this));
-        this.currentEventSize = 0;
-        this.ringBuffer = eventQueue.start();
-        this.currentSize = new AtomicInteger(0);
-        this.maxSize = ServiceHolder.getAnalyticsEventSinkConfiguration().getMaxQueueCapacity();
-        this.semaphore = new Semaphore(1);
+        this(tenantId, null, ServiceHolder.getAnalyticsEventSinkConfiguration().getQueueSize(),
+                ServiceHolder.getAnalyticsEventSinkConfiguration().getMaxQueueCapacity(),
+                ServiceHolder.getAnalyticsEventSinkConfiguration().getWorkerPoolSize());
+    }
+
+    public AnalyticsEventQueue(int tenantId, String shardName, int queueSize, int maxSize, int workerPoolSize) {
+        this(tenantId, shardName, queueSize, maxSize, workerPoolSize, null);
+    }
+
+    /**
+     * Creates a queue with its own worker, byte budget and worker pool, a non-null shard name is given
+     * when the tenant events are sharded to several queues, and those share the given tenant budget.
+     */
+    @SuppressWarnings("unchecked")
+    public AnalyticsEventQueue(int tenantId, String shardName, int queueSize, int maxSize, int workerPoolSize,
+                               AnalyticsEventQueueBudget budget) {
+        long lingerTime = ServiceHolder.getAnalyticsEventSinkConfiguration().getMaxBatchLingerTime();
+        /* with a linger time, the worker is notified when there are no events, to persist a lingering batch */
+        WaitStrategy waitStrategy = lingerTime > 0 ? new TimeoutBlockingWaitStrategy(lingerTime,
+                TimeUnit.MILLISECONDS) : new BlockingWaitStrategy();
+        this.disruptorExecutor = Executors.newCachedThreadPool();
+        this.disruptor = new Disruptor<>(new WrappedEventFactory(), queueSize, this.disruptorExecutor,
+                ProducerType.MULTI, waitStrategy);
+        this.shardName = shardName;
+        this.worker = new AnalyticsEventQueueWorker(tenantId, this, workerPoolSize);
+        this.disruptor.handleEventsWith(this.worker);
+        this.ringBuffer = this.disruptor.start();
+        this.currentSize = new AtomicLong(0);
+        this.waitingProducers = new AtomicInteger(0);
+        this.receivedEventCount = new AtomicLong(0);
+        this.releasedEventCount = new AtomicLong(0);
+        this.maxSize = maxSize;
+        this.budget = budget;
+        this.activeProducers = new AtomicInteger(0);
         if (log.isDebugEnabled()) {
-            log.debug("Event Queue Size = " + ServiceHolder.getAnalyticsEventSinkConfiguration().getQueueSize());
+            log.debug("Event Queue Size = " + queueSize + (shardName != null ? ", Shard = " + shardName : ""));
         }
     }
 
-    public synchronized void put(Event event) {
-        this.currentEventSize = DataBridgeCommonsUtils.getSize(event) + 4; //for the int value for size field.
-        if (currentSize.get() >= maxSize) {
-            try {
-                semaphore.acquire();
-                if (semaphore.availablePermits() == 0) {
-                    synchronized (lock) {
-                        if (semaphore.availablePermits() == 0) {
-                            semaphore.release();
-                        }
-                    }
-                }
-            } catch (InterruptedException ignored) {
+    /**
+     * Adds the event to the queue, this can be called concurrently by any number of producers. The producers are
+     * blocked only when the buffered events have reached the maximum queue capacity in bytes, or the shared
+     * tenant budget is used up.
+     * @return false if the queue is closed, and the event is not added
+     */
+    public boolean put(Event event) {
+        this.activeProducers.incrementAndGet();
+        try {
+            if (this.closed) {
+                return false;
             }
-        }
-        long sequence = this.ringBuffer.next();
-        WrappedEventFactory.WrappedEvent bufferedEvent = this.ringBuffer.get(sequence);
-        bufferedEvent.setEvent(event);
-        bufferedEvent.setSize(this.currentEventSize);
-        this.ringBuffer.publish(sequence);
-        if (currentSize.addAndGet(this.currentEventSize) >= maxSize) {
-            try {
-                semaphore.acquire();
-            } catch (InterruptedException ignored) {
+            int eventSize = DataBridgeCommonsUtils.getSize(event) + 4; //for the int value for size field.
+            if (this.currentSize.get() >= this.maxSize) {
+                this.awaitCapacity();
             }
+            if (this.budget != null) {
+                this.budget.acquire(eventSize);
+            }
+            /* the size is accounted before publishing, so the consumer always releases a size which is already
+             * added */
+            long size = this.currentSize.addAndGet(eventSize);
+            long sequence = this.ringBuffer.next();
+            WrappedEventFactory.WrappedEvent bufferedEvent = this.ringBuffer.get(sequence);
+            bufferedEvent.setEvent(event);
+            bufferedEvent.setSize(eventSize);
+            this.ringBuffer.publish(sequence);
+            this.receivedEventCount.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("current queue size in bytes : " + size + ", remaining capacity : " +
+                        this.ringBuffer.remainingCapacity());
+            }
+            return true;
+        } finally {
+            this.activeProducers.decrementAndGet();
         }
-        if (log.isDebugEnabled()) {
-            log.debug("current queue size in bytes : " + currentSize + ", remaining capacity : " +
-                    this.ringBuffer.remainingCapacity());
+    }
+
+    private void awaitCapacity() {
+        this.waitingProducers.incrementAndGet();
+        this.capacityLock.lock();
+        try {
+            while (this.currentSize.get() >= this.maxSize) {
+                this.capacityAvailable.await(CAPACITY_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.capacityLock.unlock();
+            this.waitingProducers.decrementAndGet();
         }
     }
 
     public void notifyReleasedEvent(WrappedEventFactory.WrappedEvent wrappedEvent, boolean endOfBatch) {
-        currentSize.addAndGet(-wrappedEvent.getSize());
+        long size = this.currentSize.addAndGet(-wrappedEvent.getSize());
+        if (this.budget != null) {
+            this.budget.release(wrappedEvent.getSize());
+        }
         wrappedEvent.setEvent(null);
-        if (semaphore.availablePermits() == 0 && ((currentEventSize + currentSize.get()) < maxSize) || endOfBatch) {
-            synchronized (lock) {
-                if (semaphore.availablePermits() == 0 && ((currentEventSize + currentSize.get()) < maxSize) || endOfBatch) {
-                    semaphore.release();
-                }
+        this.releasedEventCount.incrementAndGet();
+        /* the lock is only taken when there are producers waiting for capacity */
+        if (this.waitingProducers.get() > 0 && (size < this.maxSize || endOfBatch)) {
+            this.capacityLock.lock();
+            try {
+                this.capacityAvailable.signalAll();
+            } finally {
+                this.capacityLock.unlock();
             }
         }
     }
@@ -110,4 +180,57 @@ public class AnalyticsEventQueue {
     public long getRemainingBufferCapacity() {
         return this.maxSize - this.currentSize.get();
     }
+
+    public double getUsedBufferRatio() {
+        return this.currentSize.get() / (double) this.maxSize;
+    }
+
+    public AnalyticsEventBatchController getBatchController() {
+        return this.worker.getBatchController();
+    }
+
+    public String getShardName() {
+        return shardName;
+    }
+
+    public long getReceivedEventCount() {
+        return this.receivedEventCount.get();
+    }
+
+    public long getReleasedEventCount() {
+        return this.releasedEventCount.get();
+    }
+
+    /**
+     * Returns the spill queue of this queue, or null if spilling is not enabled.
+     */
+    public AnalyticsEventSpillQueue getSpillQueue() {
+        return this.worker.getSpillQueue();
+    }
+
+    /**
+     * Closes the queue, if it has not received any events since the earlier call of this, and all its events
+     * are handed over to be persisted. After this, the events put to the queue are rejected. This is called
+     * periodically by a single thread.
+     * @return true if the queue is closed
+     */
+    public boolean closeIfIdle() {
+        long receivedCount = this.receivedEventCount.get();
+        boolean idle = receivedCount == this.idleCheckEventCount && this.releasedEventCount.get() == receivedCount
+                && !this.worker.hasPendingEvents();
+        this.idleCheckEventCount = receivedCount;
+        if (!idle) {
+            return false;
+        }
+        this.closed = true;
+        /* a producer which has not seen the closed flag, can still add an event */
+        if (this.activeProducers.get() > 0 || this.receivedEventCount.get() != receivedCount) {
+            this.closed = false;
+            return false;
+        }
+        this.disruptor.shutdown();
+        this.disruptorExecutor.shutdown();
+        this.worker.shutdown();
+        return true;
+    }
 }
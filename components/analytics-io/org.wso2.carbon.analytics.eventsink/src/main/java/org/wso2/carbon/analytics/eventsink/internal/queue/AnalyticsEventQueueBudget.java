@@ -0,0 +1,82 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This is the byte budget shared by the queue shards of a tenant, so the events buffered by all the shards
+ * together are bounded by the tenant queue capacity, regardless of the number of shards. Same as in a queue,
+ * the producers are blocked only when the budget is used up.
+ */
+public class AnalyticsEventQueueBudget {
+    private static final long CAPACITY_WAIT_TIMEOUT = 1000;
+    private long maxSize;
+    private AtomicLong currentSize;
+    private AtomicInteger waitingProducers;
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final Condition capacityAvailable = this.capacityLock.newCondition();
+
+    public AnalyticsEventQueueBudget(long maxSize) {
+        this.maxSize = maxSize;
+        this.currentSize = new AtomicLong(0);
+        this.waitingProducers = new AtomicInteger(0);
+    }
+
+    public void acquire(int size) {
+        if (this.currentSize.get() >= this.maxSize) {
+            this.awaitCapacity();
+        }
+        this.currentSize.addAndGet(size);
+    }
+
+    private void awaitCapacity() {
+        this.waitingProducers.incrementAndGet();
+        this.capacityLock.lock();
+        try {
+            while (this.currentSize.get() >= this.maxSize) {
+                this.capacityAvailable.await(CAPACITY_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.capacityLock.unlock();
+            this.waitingProducers.decrementAndGet();
+        }
+    }
+
+    public void release(int size) {
+        long currentSize = this.currentSize.addAndGet(-size);
+        if (this.waitingProducers.get() > 0 && currentSize < this.maxSize) {
+            this.capacityLock.lock();
+            try {
+                this.capacityAvailable.signalAll();
+            } finally {
+                this.capacityLock.unlock();
+            }
+        }
+    }
+
+    public long getRemainingCapacity() {
+        return this.maxSize - this.currentSize.get();
+    }
+}
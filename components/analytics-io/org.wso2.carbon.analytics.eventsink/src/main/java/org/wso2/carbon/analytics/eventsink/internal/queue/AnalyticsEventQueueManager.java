@@ -20,19 +20,45 @@ package org.wso2.carbon.analytics.eventsink.internal.queue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.eventsink.internal.AnalyticsEventSinkConfiguration;
+import org.wso2.carbon.analytics.eventsink.internal.util.AnalyticsEventSinkConstants;
+import org.wso2.carbon.analytics.eventsink.internal.util.AnalyticsEventSinkUtil;
+import org.wso2.carbon.analytics.eventsink.internal.util.ServiceHolder;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.databridge.commons.Event;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the manager class to hold all tenants queues, so that based on the
- * event arrival it can direct it to the relevant queues.
+ * event arrival it can direct it to the relevant queues. If queue sharding is enabled,
+ * a tenant has a queue per stream or per table, so a slow table does not block the other streams. The shards of
+ * a tenant share the tenant queue capacity, and the shards which are idle for a while are closed.
+ * The spill queues are held here as well, by their names, so the batches spilled before a restart are replayed
+ * even if their queues do not receive events anymore.
  */
 public class AnalyticsEventQueueManager {
     private static final Log log = LogFactory.getLog(AnalyticsEventQueueManager.class);
     private static AnalyticsEventQueueManager instance = new AnalyticsEventQueueManager();
     private static ConcurrentHashMap<Integer, AnalyticsEventQueue> queueMap =
             new ConcurrentHashMap<Integer, AnalyticsEventQueue>();
+    private static ConcurrentHashMap<Integer, ConcurrentHashMap<String, AnalyticsEventQueue>> shardQueueMap =
+            new ConcurrentHashMap<Integer, ConcurrentHashMap<String, AnalyticsEventQueue>>();
+    private static ConcurrentHashMap<Integer, AnalyticsEventQueueBudget> shardBudgetMap =
+            new ConcurrentHashMap<Integer, AnalyticsEventQueueBudget>();
+    private static ConcurrentHashMap<String, AnalyticsEventSpillQueue> spillQueueMap =
+            new ConcurrentHashMap<String, AnalyticsEventSpillQueue>();
+    private static ScheduledExecutorService shardEvictionExecutor;
 
     private AnalyticsEventQueueManager() {
     }
@@ -42,23 +68,218 @@ public class AnalyticsEventQueueManager {
     }
 
     public void put(int tenantId, Event event) {
-        AnalyticsEventQueue eventQueue = queueMap.get(tenantId);
+        String shardName = this.lookupShardName(event);
+        AnalyticsEventQueue eventQueue;
+        if (shardName == null) {
+            eventQueue = queueMap.get(tenantId);
+            if (eventQueue == null) {
+                synchronized (this) {
+                    eventQueue = queueMap.get(tenantId);
+                    if (eventQueue == null) {
+                        eventQueue = new AnalyticsEventQueue(tenantId);
+                        queueMap.put(tenantId, eventQueue);
+                    }
+                }
+            }
+        } else {
+            eventQueue = this.lookupShardQueue(tenantId, shardName);
+        }
+        if (log.isDebugEnabled()){
+            log.debug("Adding event : " + event);
+        }
+        /* a shard queue can be closed as idle, just before the event is added, then it is added to a new one */
+        while (!eventQueue.put(event)) {
+            eventQueue = this.lookupShardQueue(tenantId, shardName);
+        }
+    }
+
+    private String lookupShardName(Event event) {
+        AnalyticsEventSinkConfiguration config = ServiceHolder.getAnalyticsEventSinkConfiguration();
+        String mode = config.getQueueShardingMode();
+        if (AnalyticsEventSinkConstants.QUEUE_SHARDING_STREAM.equals(mode)) {
+            return event.getStreamId();
+        } else if (AnalyticsEventSinkConstants.QUEUE_SHARDING_TABLE.equals(mode)) {
+            return AnalyticsEventSinkUtil.generateAnalyticsTableName(
+                    AnalyticsEventSinkUtil.getStreamNameFromStreamId(event.getStreamId()));
+        } else {
+            return null;
+        }
+    }
+
+    private AnalyticsEventQueue lookupShardQueue(int tenantId, String shardName) {
+        ConcurrentHashMap<String, AnalyticsEventQueue> tenantQueues = shardQueueMap.get(tenantId);
+        if (tenantQueues == null) {
+            tenantQueues = new ConcurrentHashMap<String, AnalyticsEventQueue>();
+            ConcurrentHashMap<String, AnalyticsEventQueue> existingQueues = shardQueueMap.putIfAbsent(tenantId,
+                    tenantQueues);
+            if (existingQueues != null) {
+                tenantQueues = existingQueues;
+            }
+        }
+        AnalyticsEventQueue eventQueue = tenantQueues.get(shardName);
         if (eventQueue == null) {
             synchronized (this) {
-                eventQueue = queueMap.get(tenantId);
+                eventQueue = tenantQueues.get(shardName);
                 if (eventQueue == null) {
-                    eventQueue = new AnalyticsEventQueue(tenantId);
-                    queueMap.put(tenantId, eventQueue);
+                    AnalyticsEventSinkConfiguration config = ServiceHolder.getAnalyticsEventSinkConfiguration();
+                    AnalyticsEventQueueBudget budget = shardBudgetMap.get(tenantId);
+                    if (budget == null) {
+                        budget = new AnalyticsEventQueueBudget(config.getMaxQueueCapacity());
+                        shardBudgetMap.put(tenantId, budget);
+                    }
+                    eventQueue = new AnalyticsEventQueue(tenantId, shardName, config.getQueueSize(),
+                            config.getMaxQueueShardCapacity(), config.getQueueShardWorkerPoolSize(), budget);
+                    tenantQueues.put(shardName, eventQueue);
+                    this.scheduleShardEviction(config.getQueueShardIdleTimeout());
+                    if (log.isDebugEnabled()) {
+                        log.debug("Created the event queue shard: " + shardName + " for tenant: " + tenantId);
+                    }
                 }
             }
         }
-        if (log.isDebugEnabled()){
-            log.debug("Adding event : " + event);
+        return eventQueue;
+    }
+
+    private void scheduleShardEviction(long idleTimeout) {
+        if (shardEvictionExecutor != null || idleTimeout <= 0) {
+            return;
+        }
+        shardEvictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "analytics-event-queue-shard-eviction");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        shardEvictionExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evictIdleShards();
+                } catch (Throwable e) {
+                    log.error("Error in evicting idle event queue shards: " + e.getMessage(), e);
+                }
+            }
+        }, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes and removes the shard queues which have not received any events since the earlier call of this,
+     * and have persisted, or spilled, all their events. A shard is created again when it receives an event.
+     */
+    public void evictIdleShards() {
+        for (Map.Entry<Integer, ConcurrentHashMap<String, AnalyticsEventQueue>> tenantEntry :
+                shardQueueMap.entrySet()) {
+            for (Map.Entry<String, AnalyticsEventQueue> entry : tenantEntry.getValue().entrySet()) {
+                synchronized (this) {
+                    if (entry.getValue().closeIfIdle()) {
+                        tenantEntry.getValue().remove(entry.getKey(), entry.getValue());
+                        if (log.isDebugEnabled()) {
+                            log.debug("Closed the idle event queue shard: " + entry.getKey() + " for tenant: " +
+                                    tenantEntry.getKey());
+                        }
+                    }
+                }
+            }
         }
-        eventQueue.put(event);
     }
 
     public AnalyticsEventQueue getAnalyticsEventQueue(int tenantId) {
         return queueMap.get(tenantId);
     }
+
+    public AnalyticsEventQueue getAnalyticsEventQueue(int tenantId, String shardName) {
+        ConcurrentHashMap<String, AnalyticsEventQueue> tenantQueues = shardQueueMap.get(tenantId);
+        if (tenantQueues == null) {
+            return null;
+        }
+        return tenantQueues.get(shardName);
+    }
+
+    public List<String> getAnalyticsEventQueueShardNames(int tenantId) {
+        ConcurrentHashMap<String, AnalyticsEventQueue> tenantQueues = shardQueueMap.get(tenantId);
+        if (tenantQueues == null) {
+            return new ArrayList<String>(0);
+        }
+        return new ArrayList<String>(tenantQueues.keySet());
+    }
+
+    public AnalyticsEventSpillQueue lookupSpillQueue(int tenantId, String shardName) throws AnalyticsException {
+        String name = String.valueOf(tenantId);
+        if (shardName != null) {
+            name += "_" + shardName.replaceAll("[^a-zA-Z0-9_.-]", "_");
+        }
+        return this.openSpillQueue(tenantId, name);
+    }
+
+    private synchronized AnalyticsEventSpillQueue openSpillQueue(final int tenantId, String name)
+            throws AnalyticsException {
+        AnalyticsEventSpillQueue spillQueue = spillQueueMap.get(name);
+        if (spillQueue == null) {
+            AnalyticsEventSinkConfiguration config = ServiceHolder.getAnalyticsEventSinkConfiguration();
+            spillQueue = new AnalyticsEventSpillQueue(name, config.getMaxSpillCapacity(),
+                    config.getSpillReplayInterval(), config.getMaxSpillReplayAttempts(),
+                    new AnalyticsEventSpillQueue.BatchPersister() {
+                        @Override
+                        public void persist(List<Event> events) throws Exception {
+                            persistEvents(tenantId, events);
+                        }
+                    });
+            spillQueueMap.put(name, spillQueue);
+        }
+        return spillQueue;
+    }
+
+    /**
+     * Opens the spill queues left with batches from an earlier run, so they are replayed, regardless of the
+     * queues of the current sharding mode.
+     */
+    public synchronized void recoverSpillQueues() {
+        File[] files = new File(GenericUtils.resolveLocation(AnalyticsEventSinkConstants.DEFAULT_SPILL_LOCATION))
+                .listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.isDirectory() || spillQueueMap.containsKey(file.getName())) {
+                continue;
+            }
+            String name = file.getName();
+            int index = name.indexOf('_');
+            int tenantId;
+            try {
+                tenantId = Integer.parseInt(index == -1 ? name : name.substring(0, index));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring unknown event spill queue: " + file.getAbsolutePath());
+                continue;
+            }
+            try {
+                AnalyticsEventSpillQueue spillQueue = this.openSpillQueue(tenantId, name);
+                if (spillQueue.isEmpty()) {
+                    spillQueueMap.remove(name);
+                    spillQueue.close();
+                }
+            } catch (AnalyticsException e) {
+                log.error("Error in recovering event spill queue: " + name + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public synchronized void closeSpillQueues() {
+        for (AnalyticsEventSpillQueue spillQueue : spillQueueMap.values()) {
+            spillQueue.close();
+        }
+        spillQueueMap.clear();
+    }
+
+    static void persistEvents(int tenantId, List<Event> events) throws Exception {
+        try {
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId, true);
+            ServiceHolder.getAnalyticsDSConnector().insertEvents(tenantId, events);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
 }
@@ -19,10 +19,12 @@
 package org.wso2.carbon.analytics.eventsink.internal.queue;
 
 import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.TimeoutHandler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.eventsink.internal.AnalyticsEventSinkConfiguration;
 import org.wso2.carbon.analytics.eventsink.internal.util.ServiceHolder;
-import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.databridge.commons.Event;
 
 import java.util.ArrayList;
@@ -32,53 +34,133 @@ import java.util.List;
  * This is the queue worker which listens to analytics queue; and once the batch size is reached, it will
  * do an insertion operation on the analytics data service.
  */
-public class AnalyticsEventQueueWorker implements EventHandler<WrappedEventFactory.WrappedEvent> {
+public class AnalyticsEventQueueWorker implements EventHandler<WrappedEventFactory.WrappedEvent>, TimeoutHandler {
     private static final Log log = LogFactory.getLog(AnalyticsEventQueueWorker.class);
     private AnalyticsEventQueue queue;
     private List<Event> events;
     private int tenantId;
     private int totalSize;
     private AnalyticsBlockingExecutor threadPoolExecutor;
+    private AnalyticsEventSpillQueue spillQueue;
+    private AnalyticsEventBatchController batchController;
+    private long firstEventTime;
+    private volatile boolean pendingEvents;
 
     public AnalyticsEventQueueWorker(int tenantId, AnalyticsEventQueue queue) {
+        this(tenantId, queue, ServiceHolder.getAnalyticsEventSinkConfiguration().getWorkerPoolSize());
+    }
+
+    public AnalyticsEventQueueWorker(int tenantId, AnalyticsEventQueue queue, int workerPoolSize) {
         this.tenantId = tenantId;
         this.events = new ArrayList<>();
         this.queue = queue;
-        this.threadPoolExecutor = new AnalyticsBlockingExecutor(
-                ServiceHolder.getAnalyticsEventSinkConfiguration().getWorkerPoolSize());
+        this.threadPoolExecutor = new AnalyticsBlockingExecutor(workerPoolSize);
         this.totalSize = 0;
+        AnalyticsEventSinkConfiguration config = ServiceHolder.getAnalyticsEventSinkConfiguration();
+        this.batchController = new AnalyticsEventBatchController(config.isAdaptiveBatching(),
+                config.getMinBatchSize(), config.getBatchSize(), config.getTargetPersistLatency(),
+                config.getMaxBatchLingerTime());
+        if (ServiceHolder.getAnalyticsEventSinkConfiguration().isSpillEnabled()) {
+            this.spillQueue = this.createSpillQueue();
+        }
+    }
+
+    private AnalyticsEventSpillQueue createSpillQueue() {
+        try {
+            return AnalyticsEventQueueManager.getInstance().lookupSpillQueue(this.tenantId,
+                    this.queue.getShardName());
+        } catch (AnalyticsException e) {
+            log.error("Error in creating the event spill queue for tenant: " + this.tenantId +
+                    ", the events which cannot be persisted will be dropped: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    public AnalyticsEventSpillQueue getSpillQueue() {
+        return spillQueue;
+    }
+
+    private void persistEvents(List<Event> events) throws Exception {
+        AnalyticsEventQueueManager.persistEvents(this.tenantId, events);
+    }
+
+    private void spillEvents(List<Event> events) {
+        try {
+            if (!this.spillQueue.spill(events)) {
+                log.error("Event spill queue is full for tenant: " + this.tenantId + ", dropping " +
+                        events.size() + " events.");
+            }
+        } catch (AnalyticsException e) {
+            log.error("Error in spilling events, dropping " + events.size() + " events: " + e.getMessage(), e);
+        }
     }
 
     @Override
     public void onEvent(WrappedEventFactory.WrappedEvent wrappedEvent, long sequence, boolean endOfBatch) throws Exception {
-        if (totalSize + wrappedEvent.getSize() > ServiceHolder.getAnalyticsEventSinkConfiguration().getBatchSize()) {
+        int batchSize = this.batchController.getBatchSize();
+        if (totalSize + wrappedEvent.getSize() > batchSize) {
             if (!this.events.isEmpty()) {
                 pushEvents();
-                this.events.add(wrappedEvent.getEvent());
-                totalSize += wrappedEvent.getSize();
+                this.addEvent(wrappedEvent);
             } else {
-                this.events.add(wrappedEvent.getEvent());
-                totalSize += wrappedEvent.getSize();
+                this.addEvent(wrappedEvent);
                 pushEvents();
             }
         } else {
-            this.events.add(wrappedEvent.getEvent());
-            totalSize += wrappedEvent.getSize();
+            this.addEvent(wrappedEvent);
             if (log.isDebugEnabled()){
                 log.debug("Collecting events, current totalSize : "+ totalSize);
             }
         }
-        if (endOfBatch && !this.events.isEmpty()){
+        /* a small batch can be kept for a short time, waiting for more events, rather than persisting it right away */
+        if (endOfBatch && !this.events.isEmpty() && !this.batchController.shouldLinger(totalSize,
+                System.currentTimeMillis() - this.firstEventTime, this.queue.getUsedBufferRatio())) {
             pushEvents();
         }
         this.queue.notifyReleasedEvent(wrappedEvent, endOfBatch);
     }
 
+    @Override
+    public void onTimeout(long sequence) throws Exception {
+        /* no events were received within the linger time */
+        if (!this.events.isEmpty()) {
+            pushEvents();
+        }
+    }
+
+    private void addEvent(WrappedEventFactory.WrappedEvent wrappedEvent) {
+        if (this.events.isEmpty()) {
+            this.firstEventTime = System.currentTimeMillis();
+            this.pendingEvents = true;
+        }
+        this.events.add(wrappedEvent.getEvent());
+        totalSize += wrappedEvent.getSize();
+    }
+
+    public AnalyticsEventBatchController getBatchController() {
+        return batchController;
+    }
+
+    /**
+     * Returns whether there are events collected for a batch, which are not submitted to be persisted yet.
+     */
+    public boolean hasPendingEvents() {
+        return pendingEvents;
+    }
+
+    /**
+     * Shuts down the worker pool, after the batches already submitted are persisted.
+     */
+    public void shutdown() {
+        this.threadPoolExecutor.shutdown();
+    }
+
     private void pushEvents() {
         List<Event> tmpEvents = this.events;
         this.events = new ArrayList<>();
         submitJob(tmpEvents);
         totalSize = 0;
+        this.pendingEvents = false;
     }
 
     private void submitJob(List<Event> tmpEvents) {
@@ -96,18 +178,31 @@ public class AnalyticsEventQueueWorker implements EventHandler<WrappedEventFacto
         }
 
         public void run() {
+            /* till the data store accepts the replayed events, the new events wait behind them in the spill queue */
+            if (spillQueue != null && spillQueue.isSpillRequired()) {
+                spillEvents(this.events);
+                return;
+            }
+            long startTime = System.currentTimeMillis();
+            boolean success = false;
             try {
-                PrivilegedCarbonContext.startTenantFlow();
-                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId, true);
                 if (log.isDebugEnabled()){
                     log.debug("Batch size of : "+ this.size +" is going to be inserted in DAL");
                 }
-                ServiceHolder.getAnalyticsDSConnector().insertEvents(tenantId, this.events);
+                persistEvents(this.events);
+                success = true;
             } catch (Exception e) {
-                String errorMsg = "Error processing event. ";
-                log.error(errorMsg, e);
+                if (spillQueue != null) {
+                    log.warn("Error processing event, spilling " + this.events.size() + " events: " +
+                            e.getMessage(), e);
+                    spillEvents(this.events);
+                } else {
+                    String errorMsg = "Error processing event. ";
+                    log.error(errorMsg, e);
+                }
             } finally {
-                PrivilegedCarbonContext.endTenantFlow();
+                batchController.recordPersist(this.size, System.currentTimeMillis() - startTime, success,
+                        queue.getUsedBufferRatio());
             }
         }
     }
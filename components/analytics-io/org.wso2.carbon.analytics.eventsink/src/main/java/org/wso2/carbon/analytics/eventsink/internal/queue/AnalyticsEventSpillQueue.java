@@ -0,0 +1,318 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal.queue;
+
+import com.leansoft.bigqueue.BigArrayImpl;
+import com.leansoft.bigqueue.IBigArray;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.eventsink.internal.util.AnalyticsEventSinkConstants;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a local append-only log of event batches, which could not be persisted to the data store. The batches
+ * are replayed in order by a background task, once the data store is available again. While there are spilled
+ * batches, the new batches are also spilled, till a replayed batch is persisted. From then on, the new batches are
+ * persisted directly, next to the replay, so the log is drained even when the replay alone is slower than the
+ * incoming events. The size of the log is bounded by the total size of the pending batches.
+ */
+public class AnalyticsEventSpillQueue {
+
+    private static final Log log = LogFactory.getLog(AnalyticsEventSpillQueue.class);
+
+    private static ScheduledExecutorService replayExecutor = Executors.newScheduledThreadPool(
+            AnalyticsEventSinkConstants.SPILL_REPLAY_THREAD_COUNT, new ThreadFactory() {
+                private AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "analytics-event-spill-replay-" + this.count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private String name;
+
+    private IBigArray queue;
+
+    private BatchPersister persister;
+
+    private long maxSize;
+
+    private int maxReplayAttempts;
+
+    private long pendingSize;
+
+    private int headReplayAttempts;
+
+    /* set when a replayed batch is persisted, and cleared when a batch is spilled or a replay fails */
+    private volatile boolean replaySucceeded;
+
+    private AtomicLong spilledEventCount = new AtomicLong();
+
+    private AtomicLong replayedEventCount = new AtomicLong();
+
+    private AtomicLong droppedEventCount = new AtomicLong();
+
+    private volatile double replayRate;
+
+    private ScheduledFuture<?> replayTask;
+
+    private boolean closed;
+
+    public AnalyticsEventSpillQueue(String name, long maxSize, long replayInterval, int maxReplayAttempts,
+                                    BatchPersister persister) throws AnalyticsException {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.maxReplayAttempts = maxReplayAttempts;
+        this.persister = persister;
+        String path = GenericUtils.resolveLocation(AnalyticsEventSinkConstants.DEFAULT_SPILL_LOCATION);
+        try {
+            this.queue = new BigArrayImpl(path, name);
+            /* the batches spilled before a restart are replayed as well */
+            for (long i = this.queue.getTailIndex(); i < this.queue.getHeadIndex(); i++) {
+                this.pendingSize += this.queue.get(i).length;
+            }
+        } catch (IOException e) {
+            throw new AnalyticsException("Error in creating event spill queue: " + e.getMessage(), e);
+        }
+        if (this.queue.size() > 0) {
+            log.info("Event spill queue recovery [" + name + "]: " + this.queue.size() + " batches");
+        }
+        this.replayTask = replayExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                replay();
+            }
+        }, replayInterval, replayInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.closed || this.queue.isEmpty();
+    }
+
+    /**
+     * Checks whether a new batch must be spilled, rather than persisted directly, which is the case while there
+     * are pending batches and the data store has not accepted a replayed batch since the last spill.
+     */
+    public synchronized boolean isSpillRequired() {
+        return !this.replaySucceeded && !this.isEmpty();
+    }
+
+    /**
+     * Appends the given batch to the log.
+     * @return false if the batch does not fit in the maximum spill size, and therefore dropped
+     */
+    public synchronized boolean spill(List<Event> events) throws AnalyticsException {
+        if (this.closed) {
+            throw new AnalyticsException("The event spill queue [" + this.name + "] is closed");
+        }
+        byte[] data = GenericUtils.serializeObject(new ArrayList<Event>(events));
+        try {
+            if (this.pendingSize + data.length > this.maxSize) {
+                this.droppedEventCount.addAndGet(events.size());
+                return false;
+            }
+            this.queue.append(data);
+            this.queue.flush();
+        } catch (IOException e) {
+            throw new AnalyticsException("Error in spilling events: " + e.getMessage(), e);
+        }
+        this.pendingSize += data.length;
+        this.spilledEventCount.addAndGet(events.size());
+        /* a batch is spilled only when the data store failed it, or had not recovered */
+        this.replaySucceeded = false;
+        return true;
+    }
+
+    private synchronized byte[] peekHead() throws IOException {
+        if (this.closed || this.queue.isEmpty()) {
+            return null;
+        }
+        return this.queue.get(this.queue.getTailIndex());
+    }
+
+    private synchronized void removeHead(int size) throws IOException {
+        if (this.closed) {
+            return;
+        }
+        long nextIndex = this.queue.getTailIndex() + 1;
+        /* the last entry cannot be removed by index, since it has to be before a valid index */
+        if (nextIndex < this.queue.getHeadIndex()) {
+            this.queue.removeBeforeIndex(nextIndex);
+        } else {
+            this.queue.removeAll();
+        }
+        this.pendingSize -= size;
+        this.headReplayAttempts = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Event> readBatch(byte[] data) throws AnalyticsException {
+        Object batch;
+        try {
+            batch = GenericUtils.deserializeObject(data);
+        } catch (RuntimeException e) {
+            throw new AnalyticsException("Error in reading spilled event batch: " + e.getMessage(), e);
+        }
+        if (!(batch instanceof List)) {
+            throw new AnalyticsException("Invalid spilled event batch: " + batch);
+        }
+        return (List<Event>) batch;
+    }
+
+    private void replay() {
+        long startTime = System.currentTimeMillis();
+        long count = 0;
+        try {
+            byte[] data;
+            List<Event> events;
+            while ((data = this.peekHead()) != null) {
+                try {
+                    events = this.readBatch(data);
+                } catch (AnalyticsException e) {
+                    /* a batch which cannot be read will never be replayed, so it must not block the ones after it */
+                    log.error("Dropping an unreadable spilled event batch of " + data.length + " bytes [" +
+                            this.name + "]: " + e.getMessage(), e);
+                    this.removeHead(data.length);
+                    continue;
+                }
+                try {
+                    this.persister.persist(events);
+                } catch (Exception e) {
+                    this.replaySucceeded = false;
+                    this.headReplayAttempts++;
+                    if (this.headReplayAttempts < this.maxReplayAttempts) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Error in replaying spilled events [" + this.name + "], attempt " +
+                                    this.headReplayAttempts + ": " + e.getMessage(), e);
+                        }
+                        return;
+                    }
+                    log.error("Dropping " + events.size() + " spilled events [" + this.name + "] after " +
+                            this.headReplayAttempts + " replay attempts: " + e.getMessage(), e);
+                    this.droppedEventCount.addAndGet(events.size());
+                    this.removeHead(data.length);
+                    continue;
+                }
+                this.removeHead(data.length);
+                this.replaySucceeded = true;
+                this.replayedEventCount.addAndGet(events.size());
+                count += events.size();
+            }
+        } catch (Throwable e) {
+            log.error("Error in replaying spilled events [" + this.name + "]: " + e.getMessage(), e);
+        } finally {
+            if (count > 0) {
+                long time = Math.max(System.currentTimeMillis() - startTime, 1);
+                this.replayRate = count * 1000.0 / time;
+                log.info("Replayed " + count + " spilled events [" + this.name + "] at " +
+                        (long) this.replayRate + " events/sec");
+            }
+        }
+    }
+
+    /**
+     * Stops replaying the batches and closes the log; the remaining batches are replayed when the log is
+     * opened again.
+     */
+    public void close() {
+        this.replayTask.cancel(false);
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                this.queue.close();
+            } catch (IOException e) {
+                log.warn("Error in closing event spill queue [" + this.name + "]: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public long getSpilledEventCount() {
+        return spilledEventCount.get();
+    }
+
+    public long getReplayedEventCount() {
+        return replayedEventCount.get();
+    }
+
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    public synchronized long getPendingSize() {
+        return pendingSize;
+    }
+
+    public synchronized long getPendingBatchCount() {
+        return this.closed ? 0 : this.queue.size();
+    }
+
+    /**
+     * The disk space allocated for the log in bytes, which is made of whole pages, so it may be well above
+     * the pending size the maximum spill size is checked against.
+     */
+    public synchronized long getDiskSize() {
+        if (this.closed) {
+            return 0;
+        }
+        try {
+            return this.queue.getBackFileSize();
+        } catch (IOException e) {
+            log.warn("Error in reading event spill queue size [" + this.name + "]: " + e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * The replay rate in events per second, of the last replay run.
+     */
+    public double getReplayRate() {
+        return replayRate;
+    }
+
+    /**
+     * This interface represents the target the spilled batches are replayed to.
+     */
+    public interface BatchPersister {
+
+        void persist(List<Event> events) throws Exception;
+
+    }
+
+}
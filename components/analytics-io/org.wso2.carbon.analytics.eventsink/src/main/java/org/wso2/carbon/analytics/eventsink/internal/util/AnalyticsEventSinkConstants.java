@@ -17,6 +17,10 @@
 */
 package org.wso2.carbon.analytics.eventsink.internal.util;
 
+import org.wso2.carbon.analytics.datasource.core.AnalyticsDataSourceConstants;
+
+import java.io.File;
+
 /**
  * This class holds the constant used in the component.
  */
@@ -27,6 +31,21 @@ public class AnalyticsEventSinkConstants {
     public static final int DEFAULT_BATCH_SIZE = 10;
     public static final int DEFAULT_WORKER_POOL_SIZE = 10;
     public static final int DEFAULT_MAX_QUEUE_CAPACITY = 50;
+    public static final String QUEUE_SHARDING_NONE = "NONE";
+    public static final String QUEUE_SHARDING_STREAM = "STREAM";
+    public static final String QUEUE_SHARDING_TABLE = "TABLE";
+    public static final int DEFAULT_QUEUE_SHARD_SHARE = 4;
+    public static final long DEFAULT_QUEUE_SHARD_IDLE_TIMEOUT = 300000;
+    public static final int DEFAULT_MAX_SPILL_CAPACITY = 1024;
+    public static final long DEFAULT_SPILL_REPLAY_INTERVAL = 5000;
+    public static final int DEFAULT_MAX_SPILL_REPLAY_ATTEMPTS = 720;
+    public static final int SPILL_REPLAY_THREAD_COUNT = 2;
+    public static final int DEFAULT_MIN_BATCH_SIZE = 16;
+    public static final long DEFAULT_TARGET_PERSIST_LATENCY = 1000;
+    public static final long DEFAULT_MAX_BATCH_LINGER_TIME = 0;
+    public static final long CONVERTER_VALIDATION_INTERVAL = 30000;
+    public static final String DEFAULT_SPILL_LOCATION = AnalyticsDataSourceConstants.CARBON_HOME_VAR + File.separator +
+            "repository" + File.separator + "data" + File.separator + "eventsink_spill_queues" + File.separator;
 
     public static final String EVENT_META_DATA_TYPE = "meta";
     public static final String EVENT_CORRELATION_DATA_TYPE = "correlation";
@@ -37,6 +37,14 @@ import java.util.Set;
  */
 public class AnalyticsEventSinkUtil {
 
+    public static String getStreamNameFromStreamId(String streamId) {
+        int index = streamId.lastIndexOf(':');
+        if (index == -1) {
+            return streamId;
+        }
+        return streamId.substring(0, index);
+    }
+
     public static String generateAnalyticsTableName(String streamName) {
         String tableName = "";
         if (streamName != null && !streamName.isEmpty()) {
@@ -45,6 +45,10 @@ public class AnalyticsEventStreamListener implements EventStreamListener {
 
     @Override
     public void removedEventStream(int tenantId, String streamName, String version) {
+        if (ServiceHolder.getAnalyticsDSConnector() != null) {
+            ServiceHolder.getAnalyticsDSConnector().removeConverter(tenantId,
+                    DataBridgeCommonsUtils.generateStreamId(streamName, version));
+        }
         List<AnalyticsWSO2EventConsumer> tenantConsumers = consumerCache.get(tenantId);
         if (tenantConsumers != null) {
             String streamId = DataBridgeCommonsUtils.generateStreamId(streamName, version);
@@ -0,0 +1,149 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal;
+
+import com.google.gson.Gson;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.analytics.datasource.commons.AnalyticsSchema;
+import org.wso2.carbon.analytics.datasource.commons.AnalyticsSchema.ColumnType;
+import org.wso2.carbon.analytics.datasource.commons.ColumnDefinition;
+import org.wso2.carbon.analytics.datasource.commons.Record;
+import org.wso2.carbon.analytics.datasource.commons.exception.AnalyticsException;
+import org.wso2.carbon.databridge.commons.Attribute;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.commons.exception.MalformedStreamDefinitionException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class represents the tests of {@link EventRecordConverter}.
+ */
+public class EventRecordConverterTest {
+
+    private static final int BENCHMARK_EVENT_COUNT = 500000;
+
+    private StreamDefinition createStreamDefinition() throws MalformedStreamDefinitionException {
+        StreamDefinition streamDefinition = new StreamDefinition("org.wso2.test.Stream", "1.0.0");
+        streamDefinition.setMetaData(Arrays.asList(new Attribute("host", AttributeType.STRING)));
+        streamDefinition.setCorrelationData(Arrays.asList(new Attribute("activity", AttributeType.STRING)));
+        streamDefinition.setPayloadData(Arrays.asList(new Attribute("count", AttributeType.STRING),
+                new Attribute("tags", AttributeType.STRING), new Attribute("_timestamp", AttributeType.LONG),
+                new Attribute("ignored", AttributeType.STRING)));
+        return streamDefinition;
+    }
+
+    private AnalyticsSchema createSchema() {
+        List<ColumnDefinition> columns = new ArrayList<>();
+        columns.add(new ColumnDefinition("_version", ColumnType.STRING));
+        columns.add(new ColumnDefinition("meta_host", ColumnType.STRING, true, false));
+        columns.add(new ColumnDefinition("correlation_activity", ColumnType.STRING));
+        columns.add(new ColumnDefinition("count", ColumnType.LONG, true, false));
+        columns.add(new ColumnDefinition("tags", ColumnType.FACET, true, false));
+        columns.add(new ColumnDefinition("_timestamp", ColumnType.LONG));
+        return new AnalyticsSchema(columns, null);
+    }
+
+    private Event createEvent(StreamDefinition streamDefinition, int i) {
+        Event event = new Event();
+        event.setStreamId(streamDefinition.getStreamId());
+        event.setTimeStamp(1000 + i);
+        event.setMetaData(new Object[] { "host" + (i % 10) });
+        event.setCorrelationData(new Object[] { "A" + i });
+        event.setPayloadData(new Object[] { String.valueOf(i), "[\"x\",\"y\"]", 5000L + i, "value" });
+        return event;
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        StreamDefinition streamDefinition = this.createStreamDefinition();
+        EventRecordConverter converter = new EventRecordConverter(-1234, "ORG_WSO2_TEST_STREAM",
+                streamDefinition, this.createSchema(), new Gson());
+        Record record = converter.convert(this.createEvent(streamDefinition, 7));
+        Assert.assertEquals(-1234, record.getTenantId());
+        Assert.assertEquals("ORG_WSO2_TEST_STREAM", record.getTableName());
+        Assert.assertEquals("1.0.0", record.getValue("_version"));
+        Assert.assertEquals("host7", record.getValue("meta_host"));
+        Assert.assertEquals("A7", record.getValue("correlation_activity"));
+        Assert.assertEquals(7L, record.getValue("count"));
+        /* facet values are stored as they are received */
+        Assert.assertEquals("[\"x\",\"y\"]", record.getValue("tags"));
+        /* the payload timestamp is the record timestamp, and the attributes not in the schema are not stored */
+        Assert.assertEquals(5007L, record.getTimestamp());
+        Assert.assertFalse(record.getValues().containsKey("_timestamp"));
+        Assert.assertFalse(record.getValues().containsKey("ignored"));
+    }
+
+    @Test
+    public void testConvertWithoutPayloadTimestamp() throws Exception {
+        StreamDefinition streamDefinition = this.createStreamDefinition();
+        EventRecordConverter converter = new EventRecordConverter(1, "ORG_WSO2_TEST_STREAM",
+                streamDefinition, this.createSchema(), new Gson());
+        Event event = this.createEvent(streamDefinition, 3);
+        event.getPayloadData()[2] = null;
+        Record record = converter.convert(event);
+        Assert.assertEquals(1003L, record.getTimestamp());
+    }
+
+    @Test
+    public void testValidation() throws Exception {
+        AnalyticsSchema schema = this.createSchema();
+        EventRecordConverter converter = new EventRecordConverter(1, "ORG_WSO2_TEST_STREAM",
+                this.createStreamDefinition(), schema, new Gson());
+        Assert.assertTrue(converter.isValidFor(this.createStreamDefinition(), this.createSchema()));
+        Assert.assertFalse(converter.isValidationExpired(60000));
+        Assert.assertTrue(converter.isValidationExpired(0));
+        AnalyticsSchema changedSchema = this.createSchema();
+        changedSchema.getColumns().remove("count");
+        Assert.assertFalse(converter.isValidFor(this.createStreamDefinition(), changedSchema));
+    }
+
+    @Test
+    public void testConversionThroughput() throws Exception {
+        StreamDefinition streamDefinition = this.createStreamDefinition();
+        EventRecordConverter converter = new EventRecordConverter(1, "ORG_WSO2_TEST_STREAM",
+                streamDefinition, this.createSchema(), new Gson());
+        List<Event> events = new ArrayList<>(BENCHMARK_EVENT_COUNT);
+        for (int i = 0; i < BENCHMARK_EVENT_COUNT; i++) {
+            events.add(this.createEvent(streamDefinition, i));
+        }
+        /* warm up */
+        this.convert(converter, events.subList(0, BENCHMARK_EVENT_COUNT / 10));
+        long start = System.currentTimeMillis();
+        long count = this.convert(converter, events);
+        long time = Math.max(System.currentTimeMillis() - start, 1);
+        System.out.println("* Converted " + count + " events in " + time + " ms, " +
+                (count * 1000 / time) + " events/sec");
+        Assert.assertEquals(BENCHMARK_EVENT_COUNT, count);
+    }
+
+    private long convert(EventRecordConverter converter, List<Event> events) throws AnalyticsException {
+        long count = 0;
+        for (Event event : events) {
+            if (converter.convert(event) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
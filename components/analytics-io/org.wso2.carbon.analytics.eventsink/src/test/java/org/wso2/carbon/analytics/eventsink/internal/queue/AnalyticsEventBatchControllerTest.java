@@ -0,0 +1,179 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal.queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.analytics.eventsink.internal.AnalyticsEventSinkConfiguration;
+import org.wso2.carbon.analytics.eventsink.internal.util.ServiceHolder;
+
+/**
+ * This class represents the tests of the adaptive batching done by {@link AnalyticsEventBatchController}.
+ */
+public class AnalyticsEventBatchControllerTest {
+
+    private static final int MIN_BATCH_SIZE = 1000;
+
+    private static final int MAX_BATCH_SIZE = 64000;
+
+    private static final long TARGET_LATENCY = 100;
+
+    private static final int BENCHMARK_EVENT_COUNT = 50000;
+
+    private static final String STREAM_ID = "org.wso2.test.Stream:1.0.0";
+
+    private AnalyticsEventBatchController createController(boolean adaptive) {
+        return new AnalyticsEventBatchController(adaptive, MIN_BATCH_SIZE, MAX_BATCH_SIZE, TARGET_LATENCY, 50);
+    }
+
+    @Test
+    public void testShrinkOnHighLatency() {
+        AnalyticsEventBatchController controller = this.createController(true);
+        Assert.assertEquals(MAX_BATCH_SIZE, controller.getBatchSize());
+        controller.recordPersist(MAX_BATCH_SIZE, TARGET_LATENCY + 1, true, 0);
+        Assert.assertEquals(MAX_BATCH_SIZE / 2, controller.getBatchSize());
+        controller.recordPersist(MAX_BATCH_SIZE / 2, TARGET_LATENCY, true, 0);
+        Assert.assertEquals(MAX_BATCH_SIZE / 2, controller.getBatchSize());
+    }
+
+    @Test
+    public void testShrinkOnFailure() {
+        AnalyticsEventBatchController controller = this.createController(true);
+        controller.recordPersist(MAX_BATCH_SIZE, 1, false, 0);
+        Assert.assertEquals(MAX_BATCH_SIZE / 2, controller.getBatchSize());
+    }
+
+    @Test
+    public void testMinBatchSize() {
+        AnalyticsEventBatchController controller = this.createController(true);
+        for (int i = 0; i < 20; i++) {
+            controller.recordPersist(controller.getBatchSize(), 1, false, 0);
+        }
+        Assert.assertEquals(MIN_BATCH_SIZE, controller.getBatchSize());
+        /* the min batch size is bounded by the max batch size */
+        controller = new AnalyticsEventBatchController(true, MAX_BATCH_SIZE * 2, MAX_BATCH_SIZE, TARGET_LATENCY, 0);
+        controller.recordPersist(MAX_BATCH_SIZE, 1, false, 0);
+        Assert.assertEquals(MAX_BATCH_SIZE, controller.getBatchSize());
+    }
+
+    @Test
+    public void testGrowth() {
+        AnalyticsEventBatchController controller = this.createController(true);
+        controller.recordPersist(MAX_BATCH_SIZE, 1, false, 0);
+        controller.recordPersist(MAX_BATCH_SIZE / 2, 1, false, 0);
+        int batchSize = controller.getBatchSize();
+        Assert.assertEquals(MAX_BATCH_SIZE / 4, batchSize);
+        /* a small batch with an idle queue does not grow the batch size */
+        controller.recordPersist(batchSize / 2, 1, true, 0);
+        Assert.assertEquals(batchSize, controller.getBatchSize());
+        /* a latency which is not well below the target does not grow the batch size */
+        controller.recordPersist(batchSize, TARGET_LATENCY / 2, true, 0);
+        Assert.assertEquals(batchSize, controller.getBatchSize());
+        /* a full batch */
+        controller.recordPersist(batchSize, 1, true, 0);
+        Assert.assertEquals(batchSize + batchSize / 4, controller.getBatchSize());
+        batchSize = controller.getBatchSize();
+        /* a backed up queue */
+        controller.recordPersist(1, 1, true, 0.5);
+        Assert.assertEquals(batchSize + batchSize / 4, controller.getBatchSize());
+        for (int i = 0; i < 20; i++) {
+            controller.recordPersist(controller.getBatchSize(), 1, true, 0);
+        }
+        Assert.assertEquals(MAX_BATCH_SIZE, controller.getBatchSize());
+    }
+
+    @Test
+    public void testNonAdaptive() {
+        AnalyticsEventBatchController controller = this.createController(false);
+        controller.recordPersist(MAX_BATCH_SIZE, TARGET_LATENCY * 10, false, 0);
+        controller.recordPersist(MAX_BATCH_SIZE, TARGET_LATENCY * 10, true, 1);
+        Assert.assertEquals(MAX_BATCH_SIZE, controller.getBatchSize());
+        Assert.assertEquals(2, controller.getPersistCount());
+    }
+
+    @Test
+    public void testShouldLinger() {
+        AnalyticsEventBatchController controller = this.createController(false);
+        Assert.assertTrue(controller.shouldLinger(100, 10, 0));
+        Assert.assertFalse(controller.shouldLinger(MAX_BATCH_SIZE, 10, 0));
+        Assert.assertFalse(controller.shouldLinger(100, 50, 0));
+        Assert.assertFalse(controller.shouldLinger(100, 10, 0.5));
+        controller = new AnalyticsEventBatchController(false, MIN_BATCH_SIZE, MAX_BATCH_SIZE, TARGET_LATENCY, 0);
+        Assert.assertFalse(controller.shouldLinger(100, 0, 0));
+    }
+
+    @Test
+    public void testDistributions() {
+        AnalyticsEventBatchController controller = this.createController(false);
+        Assert.assertEquals(0, controller.getAveragePersistLatency(), 0);
+        controller.recordPersist(500, 5, true, 0);
+        controller.recordPersist(2000, 15, true, 0);
+        controller.recordPersist(5000000, 10000, true, 0);
+        Assert.assertEquals(3, controller.getPersistCount());
+        Assert.assertEquals((5 + 15 + 10000) / 3.0, controller.getAveragePersistLatency(), 0.0001);
+        Assert.assertEquals("<=10ms: 1, <=50ms: 1, <=100ms: 0, <=250ms: 0, <=500ms: 0, <=1000ms: 0, " +
+                "<=2500ms: 0, <=5000ms: 0, >5000ms: 1", controller.getPersistLatencyDistribution());
+        Assert.assertEquals("<=1000B: 1, <=8000B: 1, <=64000B: 0, <=256000B: 0, <=1000000B: 0, " +
+                "<=4000000B: 0, >4000000B: 1", controller.getBatchSizeDistribution());
+    }
+
+    private void runBatchingBenchmark(String name, boolean adaptive, int minBatchSize, int maxBatchSize)
+            throws InterruptedException {
+        if (System.getProperty("carbon.home") == null) {
+            System.setProperty("carbon.home", "target");
+        }
+        AnalyticsEventSinkConfiguration config = new AnalyticsEventSinkConfiguration();
+        config.setAdaptiveBatching(adaptive);
+        config.setMinBatchSize(minBatchSize);
+        config.setBatchSize(maxBatchSize);
+        config.setTargetPersistLatency(TARGET_LATENCY);
+        config.setWorkerPoolSize(1);
+        ServiceHolder.setAnalyticsEventSinkConfiguration(config);
+        RecordingAnalyticsDSConnector connector = new RecordingAnalyticsDSConnector();
+        /* the persist latency grows with the batch size, so it goes above the target with the max batch size */
+        connector.setPersistLatency(5, 20);
+        ServiceHolder.setAnalyticsDSConnector(connector);
+        AnalyticsEventQueue queue = new AnalyticsEventQueue(-1234, null, config.getQueueSize(),
+                config.getMaxQueueCapacity(), config.getWorkerPoolSize());
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < BENCHMARK_EVENT_COUNT; i++) {
+            queue.put(RecordingAnalyticsDSConnector.createEvent(STREAM_ID, i));
+        }
+        Assert.assertTrue(connector.awaitEvents(BENCHMARK_EVENT_COUNT, 120000));
+        long time = Math.max(System.currentTimeMillis() - start, 1);
+        AnalyticsEventBatchController controller = queue.getBatchController();
+        System.out.println("* " + name + " batching: " + BENCHMARK_EVENT_COUNT + " events in " + time + " ms, " +
+                (BENCHMARK_EVENT_COUNT * 1000L / time) + " events/sec, batches: " + controller.getPersistCount() +
+                ", average persist latency: " + controller.getAveragePersistLatency() + " ms, final batch size: " +
+                controller.getBatchSize() + " B");
+        Assert.assertEquals(BENCHMARK_EVENT_COUNT, connector.getUniqueEventCount());
+        /* the first check only records the event count, the second one closes the idle queue */
+        queue.closeIfIdle();
+        queue.closeIfIdle();
+    }
+
+    @Test
+    public void testAdaptiveBatchingBenchmark() throws InterruptedException {
+        System.out.println("\n************** START EVENT BATCHING BENCHMARK **************");
+        this.runBatchingBenchmark("Fixed min size", false, 16, 16);
+        this.runBatchingBenchmark("Fixed max size", false, 16, 1000);
+        this.runBatchingBenchmark("Adaptive", true, 16, 1000);
+        System.out.println("\n************** END EVENT BATCHING BENCHMARK **************");
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal.queue;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.analytics.eventsink.internal.AnalyticsEventSinkConfiguration;
+import org.wso2.carbon.analytics.eventsink.internal.util.AnalyticsEventSinkConstants;
+import org.wso2.carbon.analytics.eventsink.internal.util.ServiceHolder;
+
+import java.util.List;
+
+/**
+ * This class represents the tests of the queue sharding done by {@link AnalyticsEventQueueManager}. The manager
+ * keeps its queues globally, so each test uses its own tenant.
+ */
+public class AnalyticsEventQueueManagerTest {
+
+    private AnalyticsEventSinkConfiguration config;
+
+    private RecordingAnalyticsDSConnector connector;
+
+    @Before
+    public void setup() {
+        if (System.getProperty("carbon.home") == null) {
+            System.setProperty("carbon.home", "target");
+        }
+        this.config = new AnalyticsEventSinkConfiguration();
+        this.config.setQueueSize(256);
+        this.config.setQueueShardWorkerPoolSize(1);
+        this.config.setMaxQueueShardCapacity(1);
+        ServiceHolder.setAnalyticsEventSinkConfiguration(this.config);
+        this.connector = new RecordingAnalyticsDSConnector();
+        ServiceHolder.setAnalyticsDSConnector(this.connector);
+    }
+
+    private void put(int tenantId, String streamId, int count) {
+        for (int i = 0; i < count; i++) {
+            AnalyticsEventQueueManager.getInstance().put(tenantId,
+                    RecordingAnalyticsDSConnector.createEvent(streamId, streamId + "_" + i));
+        }
+    }
+
+    @Test
+    public void testNoSharding() throws InterruptedException {
+        this.config.setQueueShardingMode(AnalyticsEventSinkConstants.QUEUE_SHARDING_NONE);
+        this.put(101, "org.wso2.test.A:1.0.0", 10);
+        this.put(101, "org.wso2.test.B:1.0.0", 10);
+        Assert.assertNotNull(AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(101));
+        Assert.assertTrue(AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueueShardNames(101).isEmpty());
+        Assert.assertTrue(this.connector.awaitEvents(20, 10000));
+    }
+
+    @Test
+    public void testStreamSharding() throws InterruptedException {
+        this.config.setQueueShardingMode(AnalyticsEventSinkConstants.QUEUE_SHARDING_STREAM);
+        this.put(102, "org.wso2.test.A:1.0.0", 10);
+        this.put(102, "org.wso2.test.A:2.0.0", 10);
+        this.put(102, "org.wso2.test.B:1.0.0", 10);
+        List<String> shards = AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueueShardNames(102);
+        Assert.assertEquals(3, shards.size());
+        Assert.assertNull(AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(102));
+        AnalyticsEventQueue queue = AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(102,
+                "org.wso2.test.B:1.0.0");
+        Assert.assertNotNull(queue);
+        Assert.assertEquals(10, queue.getReceivedEventCount());
+        /* the shards have their own capacity */
+        Assert.assertTrue(queue.getRemainingBufferCapacity() <= this.config.getMaxQueueShardCapacity());
+        Assert.assertTrue(this.connector.awaitEvents(30, 10000));
+    }
+
+    @Test
+    public void testTableSharding() throws InterruptedException {
+        this.config.setQueueShardingMode(AnalyticsEventSinkConstants.QUEUE_SHARDING_TABLE);
+        this.put(103, "org.wso2.test.A:1.0.0", 10);
+        this.put(103, "org.wso2.test.A:2.0.0", 10);
+        this.put(103, "org.wso2.test.B:1.0.0", 10);
+        /* the versions of a stream are persisted to the same table */
+        List<String> shards = AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueueShardNames(103);
+        Assert.assertEquals(2, shards.size());
+        Assert.assertTrue(shards.contains("org_wso2_test_A"));
+        Assert.assertTrue(shards.contains("org_wso2_test_B"));
+        Assert.assertEquals(20, AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(103,
+                "org_wso2_test_A").getReceivedEventCount());
+        Assert.assertTrue(this.connector.awaitEvents(30, 10000));
+    }
+
+    @Test
+    public void testIdleShardEviction() throws InterruptedException {
+        this.config.setQueueShardingMode(AnalyticsEventSinkConstants.QUEUE_SHARDING_STREAM);
+        this.config.setQueueShardIdleTimeout(0);
+        this.put(104, "org.wso2.test.A:1.0.0", 10);
+        Assert.assertTrue(this.connector.awaitEvents(10, 10000));
+        AnalyticsEventQueue queue = AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(104,
+                "org.wso2.test.A:1.0.0");
+        /* the first check only records the received events, and the shard is closed if there are none after */
+        AnalyticsEventQueueManager.getInstance().evictIdleShards();
+        Assert.assertEquals(1, AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueueShardNames(104).size());
+        AnalyticsEventQueueManager.getInstance().evictIdleShards();
+        Assert.assertTrue(AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueueShardNames(104).isEmpty());
+        Assert.assertFalse(queue.put(RecordingAnalyticsDSConnector.createEvent("org.wso2.test.A:1.0.0", "closed")));
+        this.put(104, "org.wso2.test.A:1.0.0", 10);
+        AnalyticsEventQueue newQueue = AnalyticsEventQueueManager.getInstance().getAnalyticsEventQueue(104,
+                "org.wso2.test.A:1.0.0");
+        Assert.assertNotSame(queue, newQueue);
+        Assert.assertEquals(10, newQueue.getReceivedEventCount());
+        Assert.assertTrue(this.connector.awaitEvents(20, 10000));
+    }
+
+    @Test
+    public void testShardDefaults() {
+        AnalyticsEventSinkConfiguration config = new AnalyticsEventSinkConfiguration();
+        config.setWorkerPoolSize(10);
+        config.setMaxQueueCapacity(20);
+        Assert.assertEquals(2, config.getQueueShardWorkerPoolSize());
+        Assert.assertEquals(5000000, config.getMaxQueueShardCapacity());
+        config.setWorkerPoolSize(2);
+        Assert.assertEquals(1, config.getQueueShardWorkerPoolSize());
+    }
+
+}
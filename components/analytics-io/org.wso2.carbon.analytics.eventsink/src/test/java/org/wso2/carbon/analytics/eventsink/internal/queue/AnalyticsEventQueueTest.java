@@ -0,0 +1,166 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal.queue;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.analytics.eventsink.internal.AnalyticsEventSinkConfiguration;
+import org.wso2.carbon.analytics.eventsink.internal.util.ServiceHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents the tests of {@link AnalyticsEventQueue}, with concurrent producers, and the
+ * producers blocked at the queue capacity.
+ */
+public class AnalyticsEventQueueTest {
+
+    private static final int TENANT_ID = -1234;
+
+    private static final String STREAM_ID = "org.wso2.test.Stream:1.0.0";
+
+    private static final int BENCHMARK_EVENT_COUNT = 320000;
+
+    private RecordingAnalyticsDSConnector connector;
+
+    @Before
+    public void setup() {
+        if (System.getProperty("carbon.home") == null) {
+            System.setProperty("carbon.home", "target");
+        }
+        ServiceHolder.setAnalyticsEventSinkConfiguration(new AnalyticsEventSinkConfiguration());
+        this.connector = new RecordingAnalyticsDSConnector();
+        ServiceHolder.setAnalyticsDSConnector(this.connector);
+    }
+
+    private List<Thread> startProducers(final AnalyticsEventQueue queue, int producerCount,
+                                        final int eventsPerProducer) {
+        List<Thread> producers = new ArrayList<>(producerCount);
+        for (int i = 0; i < producerCount; i++) {
+            final int producerId = i;
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventsPerProducer; j++) {
+                        queue.put(RecordingAnalyticsDSConnector.createEvent(STREAM_ID, producerId + "_" + j));
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        return producers;
+    }
+
+    private void join(List<Thread> producers) throws InterruptedException {
+        for (Thread producer : producers) {
+            producer.join(60000);
+            Assert.assertFalse(producer.isAlive());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        /* a small capacity, so the producers are also blocked at the capacity from time to time */
+        AnalyticsEventQueue queue = new AnalyticsEventQueue(TENANT_ID, null, 1024, 20000, 4);
+        this.join(this.startProducers(queue, 8, 5000));
+        Assert.assertTrue(this.connector.awaitEvents(40000, 60000));
+        Assert.assertEquals(40000, this.connector.getEventCount());
+        Assert.assertEquals(40000, this.connector.getUniqueEventCount());
+        /* an event is released by the worker right after its batch is handed over to be persisted */
+        long end = System.currentTimeMillis() + 10000;
+        while (queue.getReleasedEventCount() < 40000 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(40000, queue.getReceivedEventCount());
+        Assert.assertEquals(40000, queue.getReleasedEventCount());
+        Assert.assertEquals(20000, queue.getRemainingBufferCapacity());
+    }
+
+    @Test
+    public void testProducerBlockedAtCapacity() throws InterruptedException {
+        this.connector.close();
+        AnalyticsEventQueue queue = new AnalyticsEventQueue(TENANT_ID, null, 1024, 2000, 1);
+        Thread producer = this.startProducers(queue, 1, 500).get(0);
+        long end = System.currentTimeMillis() + 10000;
+        while ((queue.getRemainingBufferCapacity() > 0 || producer.getState() == Thread.State.RUNNABLE) &&
+                System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        /* the persisting is held, so the producer is waiting for capacity */
+        Assert.assertTrue(producer.isAlive());
+        Assert.assertTrue(queue.getRemainingBufferCapacity() <= 0);
+        Assert.assertTrue(queue.getReceivedEventCount() < 500);
+        this.connector.open();
+        producer.join(10000);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertTrue(this.connector.awaitEvents(500, 10000));
+        Assert.assertEquals(500, this.connector.getUniqueEventCount());
+    }
+
+    @Test
+    public void testProducersBlockedAtSharedBudget() throws InterruptedException {
+        this.connector.close();
+        AnalyticsEventQueueBudget budget = new AnalyticsEventQueueBudget(2000);
+        AnalyticsEventQueue queue1 = new AnalyticsEventQueue(TENANT_ID, "S1", 1024, 1000000, 1, budget);
+        AnalyticsEventQueue queue2 = new AnalyticsEventQueue(TENANT_ID, "S2", 1024, 1000000, 1, budget);
+        Thread producer1 = this.startProducers(queue1, 1, 500).get(0);
+        long end = System.currentTimeMillis() + 10000;
+        while ((budget.getRemainingCapacity() > 0 || producer1.getState() == Thread.State.RUNNABLE) &&
+                System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(producer1.isAlive());
+        /* the other shard is within its own capacity, but the tenant budget is used up */
+        Thread producer2 = this.startProducers(queue2, 1, 500).get(0);
+        end = System.currentTimeMillis() + 10000;
+        while (producer2.getState() == Thread.State.RUNNABLE && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(producer2.isAlive());
+        Assert.assertTrue(queue1.getRemainingBufferCapacity() > 0);
+        Assert.assertTrue(queue2.getReceivedEventCount() < 500);
+        this.connector.open();
+        producer1.join(10000);
+        producer2.join(10000);
+        Assert.assertFalse(producer1.isAlive());
+        Assert.assertFalse(producer2.isAlive());
+        Assert.assertTrue(this.connector.awaitEvents(1000, 10000));
+    }
+
+    @Test
+    public void testProducerThroughput() throws InterruptedException {
+        for (int producerCount : new int[] { 1, 8, 32 }) {
+            this.connector = new RecordingAnalyticsDSConnector();
+            ServiceHolder.setAnalyticsDSConnector(this.connector);
+            AnalyticsEventQueue queue = new AnalyticsEventQueue(TENANT_ID, null,
+                    ServiceHolder.getAnalyticsEventSinkConfiguration().getQueueSize(),
+                    ServiceHolder.getAnalyticsEventSinkConfiguration().getMaxQueueCapacity(),
+                    ServiceHolder.getAnalyticsEventSinkConfiguration().getWorkerPoolSize());
+            long start = System.currentTimeMillis();
+            this.join(this.startProducers(queue, producerCount, BENCHMARK_EVENT_COUNT / producerCount));
+            Assert.assertTrue(this.connector.awaitEvents(BENCHMARK_EVENT_COUNT, 120000));
+            long time = Math.max(System.currentTimeMillis() - start, 1);
+            System.out.println("* Event queue producers: " + producerCount + ", " + BENCHMARK_EVENT_COUNT +
+                    " events in " + time + " ms, " + (BENCHMARK_EVENT_COUNT * 1000L / time) + " events/sec");
+        }
+    }
+
+}
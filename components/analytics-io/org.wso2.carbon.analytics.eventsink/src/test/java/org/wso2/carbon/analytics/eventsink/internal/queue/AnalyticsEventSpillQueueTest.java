@@ -0,0 +1,161 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal.queue;
+
+import com.leansoft.bigqueue.BigArrayImpl;
+import com.leansoft.bigqueue.IBigArray;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.eventsink.internal.util.AnalyticsEventSinkConstants;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class represents the tests of {@link AnalyticsEventSpillQueue}, with the spilled batches replayed to a
+ * recording persister.
+ */
+public class AnalyticsEventSpillQueueTest {
+
+    private static final String STREAM_ID = "org.wso2.test.Stream:1.0.0";
+
+    private static final long MAX_SPILL_SIZE = 100000000L;
+
+    private static final long REPLAY_INTERVAL = 20;
+
+    private List<Event> persistedEvents;
+
+    private AnalyticsEventSpillQueue.BatchPersister persister;
+
+    @Before
+    public void setup() {
+        if (System.getProperty("carbon.home") == null) {
+            System.setProperty("carbon.home", "target");
+        }
+        this.persistedEvents = Collections.synchronizedList(new ArrayList<Event>());
+        this.persister = new AnalyticsEventSpillQueue.BatchPersister() {
+            @Override
+            public void persist(List<Event> events) throws Exception {
+                persistedEvents.addAll(events);
+            }
+        };
+    }
+
+    private String createQueueName() {
+        return "spill_test_" + System.nanoTime();
+    }
+
+    private List<Event> createBatch(String prefix, int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(RecordingAnalyticsDSConnector.createEvent(STREAM_ID, prefix + "_" + i));
+        }
+        return events;
+    }
+
+    private boolean awaitEmpty(AnalyticsEventSpillQueue spillQueue, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (!spillQueue.isEmpty() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        return spillQueue.isEmpty();
+    }
+
+    @Test
+    public void testUnreadableBatchDropped() throws Exception {
+        String name = this.createQueueName();
+        IBigArray array = new BigArrayImpl(GenericUtils.resolveLocation(
+                AnalyticsEventSinkConstants.DEFAULT_SPILL_LOCATION), name);
+        try {
+            /* a size header followed by an unknown class id */
+            array.append(new byte[] { 0, 0, 0, 4, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F });
+            array.append(GenericUtils.serializeObject(this.createBatch("A", 10)));
+        } finally {
+            array.close();
+        }
+        AnalyticsEventSpillQueue spillQueue = new AnalyticsEventSpillQueue(name, MAX_SPILL_SIZE,
+                REPLAY_INTERVAL, 3, this.persister);
+        try {
+            Assert.assertTrue(this.awaitEmpty(spillQueue, 10000));
+            Assert.assertEquals(10, this.persistedEvents.size());
+            Assert.assertEquals(0, spillQueue.getPendingSize());
+        } finally {
+            spillQueue.close();
+        }
+    }
+
+    @Test
+    public void testMaxSpillSize() throws Exception {
+        List<Event> batch = this.createBatch("B", 10);
+        long batchSize = GenericUtils.serializeObject(new ArrayList<>(batch)).length;
+        /* the replay is kept out of the way, so the spilled batches stay pending */
+        AnalyticsEventSpillQueue spillQueue = new AnalyticsEventSpillQueue(this.createQueueName(),
+                batchSize * 3 + batchSize / 2, 60000, 3, this.persister);
+        try {
+            for (int i = 0; i < 3; i++) {
+                Assert.assertTrue(spillQueue.spill(batch));
+            }
+            Assert.assertFalse(spillQueue.spill(batch));
+            Assert.assertEquals(batchSize * 3, spillQueue.getPendingSize());
+            Assert.assertEquals(3, spillQueue.getPendingBatchCount());
+            Assert.assertEquals(10, spillQueue.getDroppedEventCount());
+            Assert.assertTrue(spillQueue.isSpillRequired());
+        } finally {
+            spillQueue.close();
+        }
+    }
+
+    @Test
+    public void testSpillBypassedAfterReplay() throws Exception {
+        final CountDownLatch secondReplayed = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        /* a longer replay interval, so both batches are spilled before the first replay */
+        AnalyticsEventSpillQueue spillQueue = new AnalyticsEventSpillQueue(this.createQueueName(), MAX_SPILL_SIZE,
+                500, 3, new AnalyticsEventSpillQueue.BatchPersister() {
+                    @Override
+                    public void persist(List<Event> events) throws Exception {
+                        /* the second batch is held, so the log is still pending after a successful replay */
+                        if (!persistedEvents.isEmpty()) {
+                            secondReplayed.countDown();
+                            release.await();
+                        }
+                        persistedEvents.addAll(events);
+                    }
+                });
+        try {
+            spillQueue.spill(this.createBatch("C", 10));
+            spillQueue.spill(this.createBatch("D", 10));
+            Assert.assertTrue(secondReplayed.await(10, TimeUnit.SECONDS));
+            Assert.assertFalse(spillQueue.isEmpty());
+            Assert.assertFalse(spillQueue.isSpillRequired());
+            release.countDown();
+            Assert.assertTrue(this.awaitEmpty(spillQueue, 10000));
+            Assert.assertEquals(20, this.persistedEvents.size());
+        } finally {
+            release.countDown();
+            spillQueue.close();
+        }
+    }
+
+}
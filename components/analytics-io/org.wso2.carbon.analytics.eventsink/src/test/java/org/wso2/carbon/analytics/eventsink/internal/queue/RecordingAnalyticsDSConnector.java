@@ -0,0 +1,111 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.eventsink.internal.queue;
+
+import org.wso2.carbon.analytics.eventsink.internal.AnalyticsDSConnector;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An analytics data service connector for the queue tests, which only records the persisted events, and can
+ * hold the persist calls till it is opened. A persist latency can also be simulated, which grows with the
+ * batch size.
+ */
+public class RecordingAnalyticsDSConnector extends AnalyticsDSConnector {
+
+    private AtomicLong eventCount = new AtomicLong();
+
+    private Set<Object> eventIds = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    private volatile long baseLatency;
+
+    private volatile int eventsPerMilli;
+
+    public void close() {
+        this.gate = new CountDownLatch(1);
+    }
+
+    public void open() {
+        this.gate.countDown();
+    }
+
+    /**
+     * Sets the simulated persist latency of a batch, which is the base latency, plus a millisecond for each
+     * given number of events in the batch.
+     */
+    public void setPersistLatency(long baseLatency, int eventsPerMilli) {
+        this.baseLatency = baseLatency;
+        this.eventsPerMilli = eventsPerMilli;
+    }
+
+    @Override
+    public void insertEvents(int tenantId, List<Event> events) {
+        try {
+            this.gate.await();
+            if (this.eventsPerMilli > 0) {
+                Thread.sleep(this.baseLatency + events.size() / this.eventsPerMilli);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Event event : events) {
+            this.eventIds.add(event.getPayloadData()[0]);
+        }
+        this.eventCount.addAndGet(events.size());
+    }
+
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    public int getUniqueEventCount() {
+        return eventIds.size();
+    }
+
+    /**
+     * Waits till the given number of events are persisted, or the timeout is reached.
+     */
+    public boolean awaitEvents(long count, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (this.eventCount.get() < count && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        return this.eventCount.get() >= count;
+    }
+
+    public static Event createEvent(String streamId, Object id) {
+        Event event = new Event();
+        event.setStreamId(streamId);
+        event.setTimeStamp(System.currentTimeMillis());
+        event.setMetaData(new Object[] { "meta" });
+        event.setCorrelationData(new Object[] { "correlation" });
+        event.setPayloadData(new Object[] { id, "payload value" });
+        event.setArbitraryDataMap(new HashMap<String, String>());
+        return event;
+    }
+
+}
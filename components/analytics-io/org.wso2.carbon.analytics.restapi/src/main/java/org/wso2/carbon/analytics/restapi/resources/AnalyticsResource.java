@@ -95,6 +95,7 @@ public class AnalyticsResource extends AbstractResource {
 	private static final int DEFAULT_INFINITY_INDEX = -1;
     private static final long DEFAULT_FROM_TIME = Long.MIN_VALUE;
     private static final long DEFAULT_TO_TIME = Long.MAX_VALUE;
+    private static final int EXPORT_READ_CONCURRENCY = 4;
     private static final Gson gson = new Gson();
 	/** The logger. */
 	private static final Log logger = LogFactory.getLog(AnalyticsResource.class);
@@ -471,28 +472,37 @@ public class AnalyticsResource extends AbstractResource {
                 columnList = null;
             }
         }
-        final AnalyticsDataResponse resp = analyticsDataService.get(username, tableName, 1, columnList, timeFrom,
-                timeTo, recordsFrom, count);
-        final Iterator<Record> iterator = AnalyticsDataServiceUtils.responseToIterator(analyticsDataService, resp);
+        /* a full export is read as several record groups in parallel, paged reads stay in a single group */
+        boolean export = recordsFrom == DEFAULT_START_INDEX && count < 0;
+        int numPartitionsHint = export ? EXPORT_READ_CONCURRENCY : 1;
+        final AnalyticsDataResponse resp = analyticsDataService.get(username, tableName, numPartitionsHint,
+                columnList, timeFrom, timeTo, recordsFrom, count);
+        final AnalyticsIterator<Record> iterator = AnalyticsDataServiceUtils.responseToIterator(analyticsDataService,
+                resp, numPartitionsHint, true);
         return new StreamingOutput() {
             @Override
             public void write(OutputStream outputStream)
                     throws IOException, WebApplicationException {
-                Writer recordWriter = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
-                recordWriter.write(STR_JSON_ARRAY_OPEN_SQUARE_BRACKET);
-                while (iterator.hasNext()) {
-                    RecordBean recordBean = Utils.createRecordBean(iterator.next());
-                    recordWriter.write(gson.toJson(recordBean));
-                    if (iterator.hasNext()) {
-                        recordWriter.write(STR_JSON_COMMA);
-                    }
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("Retrieved -- Record Id: " + recordBean.getId() + " values :" +
-                                     recordBean.toString());
+                try {
+                    Writer recordWriter = new BufferedWriter(new OutputStreamWriter(outputStream,
+                            StandardCharsets.UTF_8));
+                    recordWriter.write(STR_JSON_ARRAY_OPEN_SQUARE_BRACKET);
+                    while (iterator.hasNext()) {
+                        RecordBean recordBean = Utils.createRecordBean(iterator.next());
+                        recordWriter.write(gson.toJson(recordBean));
+                        if (iterator.hasNext()) {
+                            recordWriter.write(STR_JSON_COMMA);
+                        }
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Retrieved -- Record Id: " + recordBean.getId() + " values :" +
+                                         recordBean.toString());
+                        }
                     }
+                    recordWriter.write(STR_JSON_ARRAY_CLOSING_SQUARE_BRACKET);
+                    recordWriter.flush();
+                } finally {
+                    iterator.close();
                 }
-                recordWriter.write(STR_JSON_ARRAY_CLOSING_SQUARE_BRACKET);
-                recordWriter.flush();
             }
         };
 	}